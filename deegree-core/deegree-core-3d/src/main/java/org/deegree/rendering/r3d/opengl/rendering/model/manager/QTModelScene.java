@@ -39,11 +39,11 @@ package org.deegree.rendering.r3d.opengl.rendering.model.manager;
 import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import javax.vecmath.Point3d;
 
+import org.deegree.commons.index.IndexVisitor;
 import org.deegree.commons.index.PositionableModel;
 import org.deegree.commons.index.QTree;
 import org.deegree.commons.utils.math.VectorUtils;
@@ -186,12 +186,15 @@ public class QTModelScene<T extends PositionableModel> extends QTree<T> {
      * @param object
      * @return true if this tree contains the given object
      */
-    public boolean contains( PositionableModel object ) {
+    public boolean contains( final PositionableModel object ) {
         if ( object != null && intersects( envelope, object.getModelBBox(), getMaxOffset() ) ) {
-            List<T> r = getObjects( object.getModelBBox() );
-            if ( r != null && !r.isEmpty() ) {
-                return r.contains( object );
-            }
+            // stops at the first match instead of collecting all intersecting objects
+            return !visitIntersecting( object.getModelBBox(), new IndexVisitor<T>() {
+                @Override
+                public boolean visit( T candidate ) {
+                    return !object.equals( candidate );
+                }
+            } );
         }
         return false;
     }
@@ -44,6 +44,7 @@ import org.deegree.feature.types.FeatureCollectionType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.compiled.FilterCompiler;
 import org.deegree.geometry.Envelope;
 
 /**
@@ -80,8 +81,9 @@ public abstract class AbstractFeatureCollection extends AbstractFeature implemen
                             throws FilterEvaluationException {
 
         List<Feature> matchingFeatures = new ArrayList<Feature>();
+        Filter compiled = FilterCompiler.compile( filter );
         for ( Feature feature : this ) {
-            if ( filter.evaluate( feature, evaluator ) ) {
+            if ( compiled.evaluate( feature, evaluator ) ) {
                 matchingFeatures.add( feature );
             }
         }
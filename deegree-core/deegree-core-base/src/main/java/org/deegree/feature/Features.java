@@ -37,12 +37,11 @@ package org.deegree.feature;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import org.deegree.commons.tom.ElementNode;
 import org.deegree.commons.tom.Reference;
@@ -94,6 +93,9 @@ public class Features {
 
     /**
      * Returns a sorted {@link FeatureCollection}.
+     * <p>
+     * The sort is stable, i.e. features with identical sort values keep their order.
+     * </p>
      * 
      * @param fc
      *            feature collection to be sorted, must not be <code>null</code>
@@ -102,49 +104,65 @@ public class Features {
      * @return sorted feature collection, never <code>null</code>
      */
     public static FeatureCollection sortFc( final FeatureCollection fc, final SortProperty[] sortCrits ) {
+        FeatureCollection sortedFc = fc;
+        if ( sortCrits != null && sortCrits.length > 0 ) {
+            List<Feature> sortedFeatures = new ArrayList<Feature>( fc );
+            Collections.sort( sortedFeatures, getComparator( sortCrits ) );
+            sortedFc = new GenericFeatureCollection( fc.getId(), sortedFeatures );
+        }
+        return sortedFc;
+    }
+
+    /**
+     * Returns a {@link Comparator} that orders {@link Feature}s according to the given sort criteria.
+     * <p>
+     * The criteria are applied in order, i.e. a criterion is only considered if the features have identical values
+     * for all preceding criteria. Values that cannot be compared are treated as equal.
+     * </p>
+     * 
+     * @param sortCrits
+     *            sort criteria, must not be <code>null</code>
+     * @return comparator, never <code>null</code>
+     */
+    public static Comparator<Feature> getComparator( final SortProperty[] sortCrits ) {
 
         // TODO
         final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
 
-        FeatureCollection sortedFc = fc;
-        if ( sortCrits != null && sortCrits.length > 0 ) {
-            SortedSet<Feature> sortedFeatures = new TreeSet<Feature>( new Comparator<Feature>() {
-                @SuppressWarnings({ "unchecked", "synthetic-access" })
-                @Override
-                public int compare( Feature f1, Feature f2 ) {
-                    int order = 0;
-                    for ( SortProperty sortCrit : sortCrits ) {
-                        ValueReference propName = sortCrit.getSortProperty();
-                        try {
-                            // TODO handle multi properties correctly
-                            TypedObjectNode[] values1 = evaluator.eval( f1, propName );
-                            TypedObjectNode[] values2 = evaluator.eval( f2, propName );
-                            for ( TypedObjectNode value1 : values1 ) {
-                                if ( value1 != null ) {
-                                    for ( TypedObjectNode value2 : values2 ) {
-                                        if ( value2 != null ) {
-                                            Pair<Object, Object> comparablePair = getPrimitives( value1, value2 );
-                                            order = ( (Comparable<Object>) comparablePair.first ).compareTo( comparablePair.second );
-                                            if ( !sortCrit.getSortOrder() ) {
-                                                order *= -1;
-                                            }
+        return new Comparator<Feature>() {
+            @SuppressWarnings({ "unchecked", "synthetic-access" })
+            @Override
+            public int compare( Feature f1, Feature f2 ) {
+                int order = 0;
+                for ( SortProperty sortCrit : sortCrits ) {
+                    ValueReference propName = sortCrit.getSortProperty();
+                    try {
+                        // TODO handle multi properties correctly
+                        TypedObjectNode[] values1 = evaluator.eval( f1, propName );
+                        TypedObjectNode[] values2 = evaluator.eval( f2, propName );
+                        for ( TypedObjectNode value1 : values1 ) {
+                            if ( value1 != null ) {
+                                for ( TypedObjectNode value2 : values2 ) {
+                                    if ( value2 != null ) {
+                                        Pair<Object, Object> comparablePair = getPrimitives( value1, value2 );
+                                        order = ( (Comparable<Object>) comparablePair.first ).compareTo( comparablePair.second );
+                                        if ( !sortCrit.getSortOrder() ) {
+                                            order *= -1;
                                         }
                                     }
                                 }
                             }
-                        } catch ( Exception e ) {
-                            LOG.debug( "Cannot compare values: " + e.getMessage() );
                         }
+                    } catch ( Exception e ) {
+                        LOG.debug( "Cannot compare values: " + e.getMessage() );
+                    }
+                    if ( order != 0 ) {
+                        break;
                     }
-                    return order;
                 }
-            } );
-            for ( Feature feature : fc ) {
-                sortedFeatures.add( feature );
+                return order;
             }
-            sortedFc = new GenericFeatureCollection( fc.getId(), sortedFeatures );
-        }
-        return sortedFc;
+        };
     }
 
     /**
@@ -0,0 +1,174 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CombinedFeatureInputStream} whose member streams are produced concurrently by an {@link ExecutorService}.
+ * <p>
+ * The members are returned in the order of the given tasks. While a member is being consumed, the following tasks are
+ * already executed. The number of tasks that have been started, but whose streams have not been closed yet, is limited
+ * to <code>maxConcurrent</code>. This bounds the resources (e.g. database connections) that are held at the same time.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ConcurrentFeatureInputStream extends CombinedFeatureInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ConcurrentFeatureInputStream.class );
+
+    /**
+     * Creates a new {@link ConcurrentFeatureInputStream} and starts the execution of the first tasks.
+     * 
+     * @param executor
+     *            executor for running the tasks, must not be <code>null</code>
+     * @param tasks
+     *            tasks that produce the member streams, must not be <code>null</code>
+     * @param maxConcurrent
+     *            maximum number of tasks/member streams that are active at the same time, must be greater than zero
+     */
+    public ConcurrentFeatureInputStream( ExecutorService executor, List<Callable<FeatureInputStream>> tasks,
+                                         int maxConcurrent ) {
+        super( new FutureIterator( executor, tasks, maxConcurrent ) );
+    }
+
+    @Override
+    public void close() {
+        if ( currentResultSet != null ) {
+            currentResultSet.close();
+        }
+        ( (FutureIterator) resultSetIter ).cancel();
+    }
+
+    private static class FutureIterator implements Iterator<FeatureInputStream> {
+
+        private final ExecutorService executor;
+
+        private final List<Callable<FeatureInputStream>> tasks;
+
+        private final List<Future<FeatureInputStream>> futures;
+
+        private final int maxConcurrent;
+
+        private int next;
+
+        private FutureIterator( ExecutorService executor, List<Callable<FeatureInputStream>> tasks, int maxConcurrent ) {
+            this.executor = executor;
+            this.tasks = tasks;
+            this.futures = new ArrayList<Future<FeatureInputStream>>( tasks.size() );
+            this.maxConcurrent = maxConcurrent;
+            submit();
+        }
+
+        private void submit() {
+            // the streams before index 'next' have been closed already
+            int limit = Math.min( tasks.size(), next + maxConcurrent );
+            while ( futures.size() < limit ) {
+                futures.add( executor.submit( tasks.get( futures.size() ) ) );
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < tasks.size();
+        }
+
+        @Override
+        public FeatureInputStream next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            submit();
+            Future<FeatureInputStream> future = futures.get( next );
+            futures.set( next++, null );
+            try {
+                return future.get();
+            } catch ( ExecutionException e ) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                LOG.debug( cause.getMessage(), cause );
+                cancel();
+                throw new RuntimeException( cause.getMessage(), cause );
+            } catch ( InterruptedException e ) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( e.getMessage(), e );
+            }
+        }
+
+        /**
+         * Skips the remaining tasks. Tasks that are already running are waited for, so their streams can be closed.
+         */
+        private void cancel() {
+            // cancel all tasks that have not been started before waiting for the running ones (which would free
+            // executor threads for the queued tasks)
+            List<Future<FeatureInputStream>> running = new ArrayList<Future<FeatureInputStream>>();
+            for ( int i = next; i < futures.size(); i++ ) {
+                Future<FeatureInputStream> future = futures.get( i );
+                if ( !future.cancel( false ) ) {
+                    running.add( future );
+                }
+            }
+            for ( Future<FeatureInputStream> future : running ) {
+                try {
+                    future.get().close();
+                } catch ( Throwable t ) {
+                    LOG.debug( "Skipped task failed: " + t.getMessage(), t );
+                }
+            }
+            next = tasks.size();
+            futures.clear();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.deegree.feature.Feature;
+
+/**
+ * Encodes {@link Feature}s to bytes and back, e.g. for swapping features to temporary files.
+ * 
+ * @see SortedFeatureInputStream
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface FeatureCodec {
+
+    /**
+     * Encodes the given feature.
+     * 
+     * @param feature
+     *            feature to be encoded, must not be <code>null</code>
+     * @param os
+     *            stream to write to, must not be <code>null</code> (may be closed by the method)
+     * @throws IOException
+     *             if the feature cannot be encoded
+     */
+    void encode( Feature feature, OutputStream os )
+                            throws IOException;
+
+    /**
+     * Decodes a feature that has been written by {@link #encode(Feature, OutputStream)}.
+     * 
+     * @param is
+     *            stream that contains exactly one encoded feature, must not be <code>null</code>
+     * @return the decoded feature, never <code>null</code>
+     * @throws IOException
+     *             if the feature cannot be decoded
+     */
+    Feature decode( InputStream is )
+                            throws IOException;
+
+}
@@ -44,6 +44,7 @@ import org.deegree.feature.Features;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.compiled.FilterCompiler;
 
 /**
  * {@link FeatureInputStream} that is derived by filtering another {@link FeatureInputStream}.
@@ -69,7 +70,7 @@ public class FilteredFeatureInputStream implements FeatureInputStream {
      */
     public FilteredFeatureInputStream( FeatureInputStream rs, Filter filter ) {
         this.rs = rs;
-        this.filter = filter;
+        this.filter = FilterCompiler.compile( filter );
     }
 
     @Override
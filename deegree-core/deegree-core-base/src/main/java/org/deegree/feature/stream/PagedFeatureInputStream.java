@@ -0,0 +1,139 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+
+/**
+ * {@link FeatureInputStream} that skips the first features of another {@link FeatureInputStream} and limits the number
+ * of returned features.
+ * <p>
+ * Used for paging in memory if the backend cannot perform the paging itself.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PagedFeatureInputStream implements FeatureInputStream {
+
+    private final FeatureInputStream rs;
+
+    private final int startIndex;
+
+    private final int maxFeatures;
+
+    /**
+     * Creates a new {@link PagedFeatureInputStream} that is backed by the given {@link FeatureInputStream}.
+     * 
+     * @param rs
+     *            FeatureResultSet to back the result set, must not be <code>null</code>
+     * @param startIndex
+     *            number of features to skip, must not be negative
+     * @param maxFeatures
+     *            maximum number of features to return, -1 (or any other value less than 1) for no limit
+     */
+    public PagedFeatureInputStream( FeatureInputStream rs, int startIndex, int maxFeatures ) {
+        this.rs = rs;
+        this.startIndex = startIndex;
+        this.maxFeatures = maxFeatures;
+    }
+
+    @Override
+    public void close() {
+        rs.close();
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            Iterator<Feature> iter = rs.iterator();
+
+            int skipped = 0;
+
+            int returned = 0;
+
+            @Override
+            public boolean hasNext() {
+                if ( maxFeatures > 0 && returned >= maxFeatures ) {
+                    return false;
+                }
+                while ( skipped < startIndex && iter.hasNext() ) {
+                    iter.next();
+                    skipped++;
+                }
+                return iter.hasNext();
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                returned++;
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+}
@@ -0,0 +1,243 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.Filter;
+import org.deegree.filter.compiled.FilterCompiler;
+
+/**
+ * {@link FeatureInputStream} that is derived by filtering another {@link FeatureInputStream}, evaluating the filter
+ * for several batches of features in parallel.
+ * <p>
+ * The features are read from the underlying stream in batches, and the filter is evaluated for every batch by a thread
+ * of a {@link PrefetchPool}. The matching features are returned in their original order. At most
+ * <code>maxBatches</code> batches are read ahead. If the result of a batch is needed before a pool thread has picked
+ * it up, the filter is evaluated by the consuming thread itself, so a busy pool never blocks the stream.
+ * </p>
+ * 
+ * @see FilteredFeatureInputStream
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelFilteredFeatureInputStream implements FeatureInputStream {
+
+    private final FeatureInputStream rs;
+
+    private final Filter filter;
+
+    private final PrefetchPool pool;
+
+    private final int batchSize;
+
+    private final int maxBatches;
+
+    private final LinkedList<Batch> pending = new LinkedList<Batch>();
+
+    /**
+     * Creates a new {@link ParallelFilteredFeatureInputStream} that is backed by the given {@link FeatureInputStream}.
+     * 
+     * @param rs
+     *            stream to be filtered, must not be <code>null</code>
+     * @param filter
+     *            filter, must not be <code>null</code>
+     * @param pool
+     *            pool that provides the threads for evaluating the filter, must not be <code>null</code>
+     * @param batchSize
+     *            number of features that are evaluated by a single task, must be positive
+     * @param maxBatches
+     *            maximum number of batches that are evaluated concurrently, must be positive
+     */
+    public ParallelFilteredFeatureInputStream( FeatureInputStream rs, Filter filter, PrefetchPool pool, int batchSize,
+                                               int maxBatches ) {
+        this.rs = rs;
+        this.filter = FilterCompiler.compile( filter );
+        this.pool = pool;
+        this.batchSize = Math.max( 1, batchSize );
+        this.maxBatches = Math.max( 1, maxBatches );
+    }
+
+    @Override
+    public void close() {
+        synchronized ( pending ) {
+            for ( Batch batch : pending ) {
+                // tasks that have not been started yet become no-ops
+                batch.claimed.set( true );
+            }
+            pending.clear();
+        }
+        rs.close();
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            private final Iterator<Feature> iter = rs.iterator();
+
+            private Iterator<Feature> matches = Collections.<Feature> emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while ( !matches.hasNext() ) {
+                    Batch batch;
+                    synchronized ( pending ) {
+                        while ( pending.size() < maxBatches && iter.hasNext() ) {
+                            List<Feature> features = new ArrayList<Feature>( batchSize );
+                            while ( features.size() < batchSize && iter.hasNext() ) {
+                                features.add( iter.next() );
+                            }
+                            Batch b = new Batch( features );
+                            pending.add( b );
+                            pool.execute( b );
+                        }
+                        batch = pending.poll();
+                    }
+                    if ( batch == null ) {
+                        return false;
+                    }
+                    matches = batch.getMatches().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                return matches.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+
+    private class Batch implements Runnable {
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        private List<Feature> features;
+
+        private List<Feature> matches;
+
+        // failure of the evaluation, rethrown in the consuming thread
+        private Throwable error;
+
+        private Batch( List<Feature> features ) {
+            this.features = features;
+        }
+
+        @Override
+        public void run() {
+            if ( claimed.compareAndSet( false, true ) ) {
+                evaluate();
+            }
+        }
+
+        private void evaluate() {
+            try {
+                TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+                List<Feature> result = new ArrayList<Feature>( features.size() );
+                for ( Feature feature : features ) {
+                    if ( filter.evaluate( feature, evaluator ) ) {
+                        result.add( feature );
+                    }
+                }
+                matches = result;
+            } catch ( Throwable t ) {
+                error = t;
+            } finally {
+                features = null;
+                done.countDown();
+            }
+        }
+
+        private List<Feature> getMatches() {
+            if ( claimed.compareAndSet( false, true ) ) {
+                evaluate();
+            } else {
+                try {
+                    done.await();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( "Interrupted while waiting for filter evaluation.", e );
+                }
+            }
+            if ( error != null ) {
+                throw new RuntimeException( "Filter evaluation failed: " + error.getMessage(), error );
+            }
+            return matches;
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.workspace.Destroyable;
+import org.deegree.workspace.Initializable;
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the {@link PrefetchPool}s used by {@link ThreadedFeatureInputStream}s.
+ * <p>
+ * Pools are identified by a name, usually the identifier of the feature store that produces the features, so a slow
+ * store cannot block the prefetching for other stores. The number of threads of a pool defaults to
+ * {@value #DEFAULT_POOL_SIZE} and can be configured using the system property
+ * <code>deegree.prefetch.poolsize.&lt;id&gt;</code> (or <code>deegree.prefetch.poolsize</code> for all pools) or
+ * {@link #setPoolSize(String, int)}. All pools are shut down when the workspace is destroyed.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PrefetchManager implements Initializable, Destroyable {
+
+    private static final Logger LOG = LoggerFactory.getLogger( PrefetchManager.class );
+
+    /** Default number of threads per pool. */
+    public static final int DEFAULT_POOL_SIZE = 10;
+
+    /** Prefix of the system properties that configure the number of threads. */
+    public static final String POOL_SIZE_PROPERTY = "deegree.prefetch.poolsize";
+
+    /** Identifier of the pool that is used if no identifier is given. */
+    public static final String DEFAULT_POOL = "default";
+
+    private static final Map<String, PrefetchPool> pools = new HashMap<String, PrefetchPool>();
+
+    private static final Map<String, Integer> poolSizes = new HashMap<String, Integer>();
+
+    /**
+     * Returns the pool with the given identifier, creating it if necessary.
+     * 
+     * @param id
+     *            identifier of the pool, can be <code>null</code> (default pool)
+     * @return the pool, never <code>null</code>
+     */
+    public static synchronized PrefetchPool getPool( String id ) {
+        if ( id == null ) {
+            id = DEFAULT_POOL;
+        }
+        PrefetchPool pool = pools.get( id );
+        if ( pool == null ) {
+            int poolSize = getConfiguredPoolSize( id );
+            LOG.debug( "Creating prefetch pool '{}' with {} threads.", id, poolSize );
+            pool = new PrefetchPool( id, poolSize );
+            pools.put( id, pool );
+        }
+        return pool;
+    }
+
+    /**
+     * Sets the number of threads of the pool with the given identifier. If the pool already exists, it is resized.
+     * 
+     * @param id
+     *            identifier of the pool, can be <code>null</code> (default pool)
+     * @param poolSize
+     *            maximum number of threads, must be positive
+     */
+    public static synchronized void setPoolSize( String id, int poolSize ) {
+        if ( poolSize < 1 ) {
+            throw new IllegalArgumentException( "The number of prefetch threads must be positive." );
+        }
+        if ( id == null ) {
+            id = DEFAULT_POOL;
+        }
+        poolSizes.put( id, poolSize );
+        PrefetchPool pool = pools.get( id );
+        if ( pool != null ) {
+            pool.setPoolSize( poolSize );
+        }
+    }
+
+    /**
+     * Returns all pools that have been created so far, e.g. for monitoring the prefetching.
+     * 
+     * @return the pools, can be empty, but never <code>null</code>
+     */
+    public static synchronized List<PrefetchPool> getPools() {
+        return new ArrayList<PrefetchPool>( pools.values() );
+    }
+
+    /**
+     * Shuts down all pools. Producers that are still running are interrupted.
+     */
+    public static synchronized void shutdown() {
+        for ( PrefetchPool pool : pools.values() ) {
+            LOG.debug( "Shutting down {}", pool );
+            pool.shutdown();
+        }
+        pools.clear();
+    }
+
+    private static int getConfiguredPoolSize( String id ) {
+        Integer poolSize = poolSizes.get( id );
+        if ( poolSize == null ) {
+            poolSize = Integer.getInteger( POOL_SIZE_PROPERTY + "." + id );
+        }
+        if ( poolSize == null ) {
+            poolSize = Integer.getInteger( POOL_SIZE_PROPERTY );
+        }
+        if ( poolSize == null || poolSize < 1 ) {
+            return DEFAULT_POOL_SIZE;
+        }
+        return poolSize;
+    }
+
+    @Override
+    public void init( Workspace workspace ) {
+        // pools are created on demand
+    }
+
+    @Override
+    public void destroy( Workspace workspace ) {
+        shutdown();
+    }
+
+}
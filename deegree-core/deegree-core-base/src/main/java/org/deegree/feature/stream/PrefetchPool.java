@@ -0,0 +1,234 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool that runs the producers of {@link ThreadedFeatureInputStream}s (and other feature stream processing
+ * tasks), plus statistics on the prefetching.
+ * <p>
+ * Instances are managed by the {@link PrefetchManager}, usually there is one pool per feature store.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PrefetchPool {
+
+    private final String id;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private final AtomicInteger queuedFeatures = new AtomicInteger();
+
+    private final AtomicLong streams = new AtomicLong();
+
+    private final AtomicLong cancelledStreams = new AtomicLong();
+
+    private final AtomicLong stalls = new AtomicLong();
+
+    private final AtomicLong stallTime = new AtomicLong();
+
+    PrefetchPool( final String id, int poolSize ) {
+        this.id = id;
+        ThreadFactory factory = new ThreadFactory() {
+
+            private final AtomicInteger threadNum = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, "prefetch-" + id + "-" + threadNum.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor( poolSize, poolSize, 60, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(), factory );
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Returns the identifier of the pool.
+     * 
+     * @return identifier, never <code>null</code>
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the maximum number of producer threads.
+     * 
+     * @return maximum number of producer threads
+     */
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Returns the number of streams that are currently open.
+     * 
+     * @return number of open streams
+     */
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    /**
+     * Returns the number of streams that are waiting for a free producer thread.
+     * 
+     * @return number of waiting streams
+     */
+    public int getWaitingStreams() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of features that have been fetched, but not consumed yet (summed up over all open streams).
+     * 
+     * @return number of prefetched features
+     */
+    public int getQueuedFeatures() {
+        return queuedFeatures.get();
+    }
+
+    /**
+     * Returns the total number of streams that have been opened.
+     * 
+     * @return total number of streams
+     */
+    public long getStreams() {
+        return streams.get();
+    }
+
+    /**
+     * Returns the number of streams that have been closed before all features were consumed.
+     * 
+     * @return number of cancelled streams
+     */
+    public long getCancelledStreams() {
+        return cancelledStreams.get();
+    }
+
+    /**
+     * Returns how often a producer had to wait because the consumer did not keep up (queue full).
+     * 
+     * @return number of producer stalls
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    /**
+     * Returns the total time that producers had to wait because the consumer did not keep up.
+     * 
+     * @return producer stall time in milliseconds
+     */
+    public long getStallTime() {
+        return stallTime.get();
+    }
+
+    Future<?> submit( Runnable producer ) {
+        streams.incrementAndGet();
+        activeStreams.incrementAndGet();
+        return executor.submit( producer );
+    }
+
+    /**
+     * Runs the given task in a thread of the pool.
+     * 
+     * @param task
+     *            task to be run, must not be <code>null</code>
+     * @return true, if the task has been accepted, false if the pool has been shut down
+     */
+    boolean execute( Runnable task ) {
+        try {
+            executor.execute( task );
+            return true;
+        } catch ( RejectedExecutionException e ) {
+            return false;
+        }
+    }
+
+    void streamClosed( boolean cancelled ) {
+        activeStreams.decrementAndGet();
+        if ( cancelled ) {
+            cancelledStreams.incrementAndGet();
+        }
+    }
+
+    void featuresQueued( int num ) {
+        queuedFeatures.addAndGet( num );
+    }
+
+    void producerStalled( long millis ) {
+        stalls.incrementAndGet();
+        stallTime.addAndGet( millis );
+    }
+
+    void setPoolSize( int poolSize ) {
+        if ( poolSize > executor.getMaximumPoolSize() ) {
+            executor.setMaximumPoolSize( poolSize );
+            executor.setCorePoolSize( poolSize );
+        } else {
+            executor.setCorePoolSize( poolSize );
+            executor.setMaximumPoolSize( poolSize );
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "prefetch pool '" + id + "' (threads: " + getPoolSize() + ", open streams: " + getActiveStreams()
+               + ", queued features: " + getQueuedFeatures() + ", producer stalls: " + getStalls() + ")";
+    }
+
+}
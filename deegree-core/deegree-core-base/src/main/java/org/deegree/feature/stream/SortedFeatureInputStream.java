@@ -0,0 +1,362 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.filter.sort.SortProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FeatureInputStream} that sorts the features of another {@link FeatureInputStream}, swapping them to temporary
+ * files if there are too many to be sorted in memory.
+ * <p>
+ * As long as the number of features does not exceed the given limit, they are sorted in memory. Otherwise, every
+ * chunk of features is sorted and written to a temporary file (a sorted run) using a {@link FeatureCodec}. The runs
+ * are merged while the stream is consumed, so only one feature per run is kept in memory. The sort is stable, i.e.
+ * features with identical sort values keep their original order. The temporary files are deleted when the stream is
+ * closed.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SortedFeatureInputStream implements FeatureInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger( SortedFeatureInputStream.class );
+
+    // maximum number of runs that are merged at once (each one needs an open file and a read buffer)
+    private static final int MAX_MERGE_WIDTH = 64;
+
+    private final FeatureInputStream rs;
+
+    private final Comparator<Feature> comparator;
+
+    private final FeatureCodec codec;
+
+    private final int maxFeaturesInMemory;
+
+    private final List<SortedRun> runs = new ArrayList<SortedRun>();
+
+    // all temporary files, including the ones of intermediate merges
+    private final List<SortedRun> tmpFiles = new ArrayList<SortedRun>();
+
+    private final List<DataInputStream> openRuns = new ArrayList<DataInputStream>();
+
+    private Iterator<Feature> iter;
+
+    /**
+     * Creates a new {@link SortedFeatureInputStream}.
+     * 
+     * @param rs
+     *            stream to be sorted, must not be <code>null</code>
+     * @param sortCrits
+     *            sort criteria, must not be <code>null</code>
+     * @param codec
+     *            used for writing features to temporary files, can be <code>null</code> (always sort in memory)
+     * @param maxFeaturesInMemory
+     *            maximum number of features that are kept in memory for sorting, must be positive
+     */
+    public SortedFeatureInputStream( FeatureInputStream rs, SortProperty[] sortCrits, FeatureCodec codec,
+                                     int maxFeaturesInMemory ) {
+        this.rs = rs;
+        this.comparator = Features.getComparator( sortCrits );
+        this.codec = codec;
+        this.maxFeaturesInMemory = Math.max( 1, maxFeaturesInMemory );
+    }
+
+    @Override
+    public synchronized Iterator<Feature> iterator() {
+        if ( iter == null ) {
+            try {
+                iter = sort();
+            } catch ( IOException e ) {
+                close();
+                throw new RuntimeException( "Sorting features failed: " + e.getMessage(), e );
+            }
+        }
+        return iter;
+    }
+
+    @Override
+    public synchronized void close() {
+        rs.close();
+        closeRuns();
+        for ( SortedRun run : tmpFiles ) {
+            run.delete();
+        }
+        tmpFiles.clear();
+        runs.clear();
+    }
+
+    private void closeRuns() {
+        for ( DataInputStream is : openRuns ) {
+            IOUtils.closeQuietly( is );
+        }
+        openRuns.clear();
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+
+    private Iterator<Feature> sort()
+                            throws IOException {
+        List<Feature> features = new ArrayList<Feature>();
+        try {
+            for ( Feature feature : rs ) {
+                features.add( feature );
+                if ( codec != null && features.size() >= maxFeaturesInMemory ) {
+                    Collections.sort( features, comparator );
+                    runs.add( writeRun( features.iterator() ) );
+                    features.clear();
+                }
+            }
+        } finally {
+            rs.close();
+        }
+        Collections.sort( features, comparator );
+        if ( runs.isEmpty() ) {
+            return features.iterator();
+        }
+
+        LOG.debug( "Merging {} sorted runs of features.", runs.size() + 1 );
+        while ( runs.size() >= MAX_MERGE_WIDTH ) {
+            List<SortedRun> merged = new ArrayList<SortedRun>();
+            for ( int i = 0; i < runs.size(); i += MAX_MERGE_WIDTH ) {
+                List<SortedRun> group = runs.subList( i, Math.min( i + MAX_MERGE_WIDTH, runs.size() ) );
+                if ( group.size() == 1 ) {
+                    merged.add( group.get( 0 ) );
+                } else {
+                    List<Iterator<Feature>> sources = new ArrayList<Iterator<Feature>>();
+                    for ( SortedRun run : group ) {
+                        sources.add( openRun( run ) );
+                    }
+                    merged.add( writeRun( new MergeIterator( sources ) ) );
+                    closeRuns();
+                    for ( SortedRun run : group ) {
+                        run.delete();
+                    }
+                }
+            }
+            runs.clear();
+            runs.addAll( merged );
+        }
+        List<Iterator<Feature>> sources = new ArrayList<Iterator<Feature>>();
+        for ( SortedRun run : runs ) {
+            sources.add( openRun( run ) );
+        }
+        // the features in memory are the last ones of the original order
+        sources.add( features.iterator() );
+        return new MergeIterator( sources );
+    }
+
+    private SortedRun writeRun( Iterator<Feature> features )
+                            throws IOException {
+        File file = File.createTempFile( "deegree-sort", ".tmp" );
+        LOG.debug( "Writing sorted run of features to temporary file '{}'.", file );
+        SortedRun run = new SortedRun( file );
+        tmpFiles.add( run );
+        DataOutputStream os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            while ( features.hasNext() ) {
+                bos.reset();
+                codec.encode( features.next(), bos );
+                os.writeInt( bos.size() );
+                bos.writeTo( os );
+                run.size++;
+            }
+        } catch ( IOException e ) {
+            IOUtils.closeQuietly( os );
+            run.delete();
+            throw e;
+        }
+        os.close();
+        return run;
+    }
+
+    private Iterator<Feature> openRun( final SortedRun run )
+                            throws IOException {
+        final DataInputStream is = new DataInputStream( new BufferedInputStream( new FileInputStream( run.file ) ) );
+        openRuns.add( is );
+        return new Iterator<Feature>() {
+
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return read < run.size;
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    byte[] bytes = new byte[is.readInt()];
+                    is.readFully( bytes );
+                    read++;
+                    return codec.decode( new ByteArrayInputStream( bytes ) );
+                } catch ( IOException e ) {
+                    throw new RuntimeException( "Reading sorted run of features failed: " + e.getMessage(), e );
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static class SortedRun {
+
+        private final File file;
+
+        private int size;
+
+        private SortedRun( File file ) {
+            this.file = file;
+        }
+
+        private void delete() {
+            if ( file.exists() && !file.delete() ) {
+                LOG.debug( "Could not delete temporary file '{}'.", file );
+            }
+        }
+    }
+
+    /**
+     * Merges sorted sources, features that are equal according to the comparator are returned in source order.
+     */
+    private class MergeIterator implements Iterator<Feature> {
+
+        private final PriorityQueue<Head> heads;
+
+        private MergeIterator( List<Iterator<Feature>> sources ) {
+            heads = new PriorityQueue<Head>( sources.size() + 1, new Comparator<Head>() {
+                @Override
+                public int compare( Head h1, Head h2 ) {
+                    int order = comparator.compare( h1.feature, h2.feature );
+                    return order != 0 ? order : h1.source - h2.source;
+                }
+            } );
+            for ( int i = 0; i < sources.size(); i++ ) {
+                Iterator<Feature> source = sources.get( i );
+                if ( source.hasNext() ) {
+                    heads.add( new Head( source.next(), i, source ) );
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Feature next() {
+            Head head = heads.poll();
+            if ( head == null ) {
+                throw new NoSuchElementException();
+            }
+            Feature feature = head.feature;
+            if ( head.iter.hasNext() ) {
+                head.feature = head.iter.next();
+                heads.add( head );
+            }
+            return feature;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class Head {
+
+        private Feature feature;
+
+        private final int source;
+
+        private final Iterator<Feature> iter;
+
+        private Head( Feature feature, int source, Iterator<Feature> iter ) {
+            this.feature = feature;
+            this.source = source;
+            this.iter = iter;
+        }
+    }
+
+}
@@ -35,12 +35,16 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.stream;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
@@ -50,6 +54,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@link FeatureInputStream} that uses a separate thread to keep an internal queue of features filled.
+ * <p>
+ * The features are handed over in batches, and the number of queued batches is limited, so the producer never gets
+ * more than <code>batchSize * maxBatches</code> features ahead of the consumer. Closing the stream before all features
+ * have been consumed (e.g. after a feature limit has been reached) stops the producer and closes the underlying stream.
+ * When {@link #close()} returns, the producer has finished, the underlying stream is closed and the queued features
+ * have been released from the {@link PrefetchPool} that provides the producer threads.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author: schneider $
@@ -60,27 +71,112 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
     private static Logger LOG = LoggerFactory.getLogger( ThreadedFeatureInputStream.class );
 
-    // TODO where to manage this?
-    private static ExecutorService service = Executors.newFixedThreadPool( 10 );
+    // signals the end of the stream to the consumer
+    private static final List<Feature> END = new ArrayList<Feature>( 0 );
 
-    private final QueueFiller producer;
+    private final FeatureInputStream rs;
+
+    private final PrefetchPool pool;
+
+    private final int batchSize;
+
+    private final BlockingQueue<List<Feature>> queue;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final Future<?> future;
+
+    // counted down when a started producer has closed the underlying stream and stopped queueing batches
+    private final CountDownLatch producerDone = new CountDownLatch( 1 );
+
+    private volatile boolean exitRequested;
+
+    private volatile Throwable error;
+
+    private Iterator<Feature> batch = Collections.<Feature> emptyList().iterator();
+
+    private boolean finished;
 
     /**
-     * Creates a new {@link ThreadedFeatureInputStream} based on the given {@link FeatureInputStream} that uses the
-     * given thread to keep the internal queue of results filled.
+     * Creates a new {@link ThreadedFeatureInputStream} based on the given {@link FeatureInputStream} that uses a
+     * thread of the default {@link PrefetchPool} to keep the internal queue of results filled.
      * 
      * @param rs
+     *            stream to read the features from, must not be <code>null</code>
      * @param maxFill
+     *            maximum number of prefetched features
      * @param minFill
+     *            number of features that are handed over at once
      */
     public ThreadedFeatureInputStream( FeatureInputStream rs, int maxFill, int minFill ) {
-        producer = new QueueFiller( rs, maxFill, minFill );
-        service.execute( producer );
+        this( rs, PrefetchManager.getPool( null ), minFill, Math.max( 1, maxFill / Math.max( 1, minFill ) ) );
+    }
+
+    /**
+     * Creates a new {@link ThreadedFeatureInputStream} based on the given {@link FeatureInputStream} that uses a
+     * thread of the given pool to keep the internal queue of results filled.
+     * 
+     * @param rs
+     *            stream to read the features from, must not be <code>null</code>
+     * @param pool
+     *            pool that provides the producer thread, must not be <code>null</code>
+     * @param batchSize
+     *            number of features that are handed over at once, must be positive
+     * @param maxBatches
+     *            maximum number of batches in the queue, must be positive
+     */
+    public ThreadedFeatureInputStream( FeatureInputStream rs, PrefetchPool pool, int batchSize, int maxBatches ) {
+        this.rs = rs;
+        this.pool = pool;
+        this.batchSize = Math.max( 1, batchSize );
+        this.queue = new ArrayBlockingQueue<List<Feature>>( Math.max( 1, maxBatches ) );
+        future = pool.submit( new Producer() );
     }
 
     @Override
     public void close() {
-        producer.exit();
+        if ( !closed.compareAndSet( false, true ) ) {
+            return;
+        }
+        boolean cancelled = !finished;
+        exitRequested = true;
+        if ( cancelled ) {
+            LOG.debug( "Stream closed before all features have been consumed, stopping producer." );
+            synchronized ( queue ) {
+                // the producer only adds batches while holding the lock and checks for the exit request first
+                discardQueued();
+                queue.notifyAll();
+            }
+            future.cancel( true );
+            if ( started.compareAndSet( false, true ) ) {
+                // producer never ran
+                rs.close();
+            } else {
+                awaitProducer();
+            }
+        }
+        pool.streamClosed( cancelled );
+    }
+
+    private void awaitProducer() {
+        try {
+            producerDone.await();
+        } catch ( InterruptedException e ) {
+            LOG.debug( "Interrupted while waiting for the producer to finish." );
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void discardQueued() {
+        List<List<Feature>> batches = new ArrayList<List<Feature>>();
+        queue.drainTo( batches );
+        for ( List<Feature> b : batches ) {
+            if ( b != END ) {
+                pool.featuresQueued( -b.size() );
+            }
+        }
     }
 
     @Override
@@ -94,12 +190,15 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
             @Override
             public boolean hasNext() {
-                return producer.hasNext();
+                return ThreadedFeatureInputStream.this.hasNext();
             }
 
             @Override
             public Feature next() {
-                return producer.next();
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next();
             }
 
             @Override
@@ -120,120 +219,121 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
         return i;
     }
 
-    private class QueueFiller implements Runnable {
-
-        private final FeatureInputStream rs;
-
-        private final Queue<Feature> featureQueue;
-
-        private int minFill;
-
-        private boolean exitRequested;
-
-        private boolean sleeping;
-
-        private boolean finished;
-
-        private QueueFiller( FeatureInputStream rs, int maxFill, int minFill ) {
-            this.rs = rs;
-            this.featureQueue = new ArrayBlockingQueue<Feature>( maxFill, true );
-            this.minFill = minFill;
+    private boolean hasNext() {
+        if ( closed.get() ) {
+            return false;
         }
+        while ( !batch.hasNext() ) {
+            if ( finished ) {
+                return false;
+            }
+            List<Feature> next;
+            try {
+                next = queue.take();
+                synchronized ( queue ) {
+                    // wake up the producer if it waits for space in the queue
+                    queue.notifyAll();
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                close();
+                return false;
+            }
+            if ( next == END ) {
+                finished = true;
+                if ( error != null ) {
+                    throw new RuntimeException( error.getMessage(), error );
+                }
+                return false;
+            }
+            pool.featuresQueued( -next.size() );
+            batch = next.iterator();
+        }
+        return true;
+    }
+
+    private class Producer implements Runnable {
 
         @Override
         public void run() {
+            if ( !started.compareAndSet( false, true ) ) {
+                // consumer closed the stream before the producer started
+                return;
+            }
             LOG.debug( "Producer thread starting" );
             try {
                 Iterator<Feature> iter = rs.iterator();
-                try {
-                    Feature f = null;
-                    while ( iter.hasNext() && !exitRequested ) {
-                        if ( f == null ) {
-                            f = iter.next();
-                        }
-                        synchronized ( this ) {
-                            if ( !featureQueue.offer( f ) ) {
-                                // wait until we get notified that queue needs to be filled up again
-
-                                // LOG.debug( "Producer thread going to sleep: fill=" + featureQueue.size() );
-                                sleeping = true;
-                                wait();
-                                sleeping = false;
-                                // LOG.debug( "Producer thread waking up: fill=" + featureQueue.size() );
-                            } else {
-                                f = null;
-                                // Wake reading thread
-                                notify();
-                            }
-                        }
+                List<Feature> features = new ArrayList<Feature>( batchSize );
+                while ( !exitRequested && iter.hasNext() ) {
+                    features.add( iter.next() );
+                    if ( features.size() == batchSize ) {
+                        put( features );
+                        features = new ArrayList<Feature>( batchSize );
                     }
-                } catch ( InterruptedException e ) {
-                    LOG.debug( "Got interrupted." );
                 }
+                if ( !features.isEmpty() && !exitRequested ) {
+                    put( features );
+                }
+            } catch ( InterruptedException e ) {
+                LOG.debug( "Got interrupted." );
+            } catch ( Throwable t ) {
+                LOG.debug( "Producer failed: " + t.getMessage(), t );
+                error = t;
             } finally {
-                finished = true;
                 rs.close();
-                
-                // Consumer may still be waiting for more input
-                synchronized ( this ) {
-                    notify();
-                }
-                
+                signalEnd();
+                producerDone.countDown();
                 LOG.debug( "Producer thread exiting" );
             }
         }
 
-        private boolean hasNext() {
-            int fill = featureQueue.size();
-            if ( sleeping && fill < minFill ) {
-                // LOG.debug( "Queue below min fill. Waking producer thread." );
-                synchronized ( this ) {
-                    notify();
-                }
-            }
-            if ( fill > 0 ) {
-                return true;
-            }
-            synchronized (this) {
-                while ( true ) {
-                    // LOG.debug( "Queue empty. Checking if more features are coming from producer." );
-                    if ( finished && featureQueue.isEmpty() ) {
-                        return false;
-                    }
-                    if ( !featureQueue.isEmpty() ) {
-                        return true;
-                    }
-                    try {
-                        wait(1000);
-                    } catch(InterruptedException ex) {
-                        // Ignore
+        private void put( List<Feature> features )
+                                throws InterruptedException {
+            long start = -1;
+            try {
+                synchronized ( queue ) {
+                    while ( !exitRequested ) {
+                        if ( queue.offer( features ) ) {
+                            pool.featuresQueued( features.size() );
+                            return;
+                        }
+                        // consumer does not keep up
+                        if ( start < 0 ) {
+                            start = System.currentTimeMillis();
+                        }
+                        queue.wait();
                     }
                 }
+                throw new InterruptedException();
+            } finally {
+                if ( start >= 0 ) {
+                    pool.producerStalled( System.currentTimeMillis() - start );
+                }
             }
         }
 
-        private Feature next() {
-            if ( !hasNext() ) {
-                throw new NoSuchElementException();
-            }
-            return featureQueue.poll();
-        }
-
-        private void exit() {
-            exitRequested = true;
-            if ( sleeping ) {
-                synchronized ( this ) {
-                    notify();
+        private void signalEnd() {
+            try {
+                synchronized ( queue ) {
+                    // consumer may still be waiting for more input
+                    while ( !exitRequested && !queue.offer( END ) ) {
+                        queue.wait();
+                    }
                 }
+            } catch ( InterruptedException e ) {
+                // stream has been closed
             }
         }
     }
 
     /**
+     * Shuts down all producer threads.
      * 
+     * @deprecated the threads are managed by the {@link PrefetchManager} now, use {@link PrefetchManager#shutdown()}
      */
+    @Deprecated
     public static void shutdown() {
-        service.shutdown();
+        PrefetchManager.shutdown();
     }
 
 }
@@ -300,14 +300,30 @@ class GMLObjectNavigator extends DefaultNavigator {
 
     /**
      * Returns the top-level document node.
+     * <p>
+     * If no root has been provided on construction, the document node is derived from the topmost ancestor of the
+     * context node. This allows to use a single {@link GMLObjectXPath} for evaluating an expression on different
+     * objects.
+     * </p>
      * 
      * @param contextNode
      *            any node in the document
      * @return the root node
      */
+    @SuppressWarnings("unchecked")
     @Override
     public Object getDocumentNode( Object contextNode ) {
         if ( documentNode == null ) {
+            XPathNode<?> node = contextNode instanceof XPathNode<?> ? (XPathNode<?>) contextNode : null;
+            while ( node != null && node.getParent() != null ) {
+                node = node.getParent();
+            }
+            if ( node instanceof DocumentNode ) {
+                return node;
+            }
+            if ( node instanceof GMLObjectNode<?, ?> ) {
+                return new DocumentNode( (GMLObjectNode<GMLObject, ? extends GMLObject>) node );
+            }
             String msg = "getDocumentNode(Object) not possible, no document node provided";
             throw new UnsupportedOperationException( msg );
         }
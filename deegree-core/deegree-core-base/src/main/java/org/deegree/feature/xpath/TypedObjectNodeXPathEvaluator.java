@@ -101,45 +101,90 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
 
         // simple property with just a simple element step?
         QName simplePropName = propName.getAsQName();
-        if ( bindings != null && simplePropName != null
-             && ( simplePropName.getNamespaceURI() == null || simplePropName.getNamespaceURI().isEmpty() ) ) {
-            QName altName = bindings.get( simplePropName.getLocalPart() );
-            if ( altName != null ) {
-                LOG.debug( "Repairing namespace binding for property {}", simplePropName.getLocalPart() );
-                simplePropName = altName;
-            }
-        }
         if ( simplePropName != null ) {
-            List<Property> props = context.getProperties( simplePropName );
+            List<Property> props = context.getProperties( resolvePropertyName( simplePropName ) );
             TypedObjectNode[] propArray = new TypedObjectNode[props.size()];
             return props.toArray( propArray );
         }
+        return eval( context, createXPath( propName ) );
+    }
 
-        TypedObjectNode[] resultValues = null;
+    /**
+     * Evaluates a precompiled XPath expression on the given {@link GMLObject}.
+     * 
+     * @param context
+     *            object to evaluate the expression on, must not be <code>null</code>
+     * @param xpath
+     *            expression, must have been created using {@link #createXPath(ValueReference)}
+     * @return selected values, may be empty, but never <code>null</code>
+     * @throws FilterEvaluationException
+     *             if the evaluation fails
+     */
+    public TypedObjectNode[] eval( GMLObject context, XPath xpath )
+                            throws FilterEvaluationException {
         try {
-            synchronized ( context ) {
-                XPath xpath = new GMLObjectXPath( propName.getAsText(), context );
-                xpath.setNamespaceContext( propName.getNsContext() );
-                List<?> selectedNodes;
-                selectedNodes = xpath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, context ) );
-                resultValues = new TypedObjectNode[selectedNodes.size()];
-                int i = 0;
-                for ( Object node : selectedNodes ) {
-                    if ( node instanceof XPathNode<?> ) {
-                        resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                    } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                        resultValues[i++] = new PrimitiveValue( node );
-                    } else {
-                        throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                    + node.getClass().getName() + "' (=" + node
-                                                    + ") during XPath-evaluation." );
-                    }
-                }
+            // the node wrapper is the only navigation state, so concurrent calls on the same object do not interfere
+            return toValues( xpath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, context ) ) );
+        } catch ( JaxenException e ) {
+            LOG.debug( e.getMessage(), e );
+            throw new FilterEvaluationException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Returns the name of the property that is selected by the given (simple) property name, taking the repair
+     * bindings into account.
+     * 
+     * @param propName
+     *            property name, must not be <code>null</code>
+     * @return name of the selected property, never <code>null</code>
+     */
+    public QName resolvePropertyName( QName propName ) {
+        if ( bindings != null && ( propName.getNamespaceURI() == null || propName.getNamespaceURI().isEmpty() ) ) {
+            QName altName = bindings.get( propName.getLocalPart() );
+            if ( altName != null ) {
+                LOG.debug( "Repairing namespace binding for property {}", propName.getLocalPart() );
+                return altName;
             }
+        }
+        return propName;
+    }
+
+    /**
+     * Compiles the given {@link ValueReference} into an XPath expression that can be evaluated on any
+     * {@link GMLObject} (using {@link #eval(GMLObject, XPath)}) and by multiple threads concurrently.
+     * 
+     * @param propName
+     *            value reference, must not be <code>null</code>
+     * @return compiled expression, never <code>null</code>
+     * @throws FilterEvaluationException
+     *             if the expression is invalid
+     */
+    public static XPath createXPath( ValueReference propName )
+                            throws FilterEvaluationException {
+        try {
+            XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
+            xpath.setNamespaceContext( propName.getNsContext() );
+            return xpath;
         } catch ( JaxenException e ) {
-            e.printStackTrace();
             throw new FilterEvaluationException( e.getMessage() );
         }
+    }
+
+    private TypedObjectNode[] toValues( List<?> selectedNodes ) {
+        TypedObjectNode[] resultValues = new TypedObjectNode[selectedNodes.size()];
+        int i = 0;
+        for ( Object node : selectedNodes ) {
+            if ( node instanceof XPathNode<?> ) {
+                resultValues[i++] = ( (XPathNode<?>) node ).getValue();
+            } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
+                resultValues[i++] = new PrimitiveValue( node );
+            } else {
+                throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
+                                            + node.getClass().getName() + "' (=" + node
+                                            + ") during XPath-evaluation." );
+            }
+        }
         return resultValues;
     }
 
@@ -150,21 +195,7 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
         try {
             XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
             xpath.setNamespaceContext( propName.getNsContext() );
-            List<?> selectedNodes;
-            selectedNodes = xpath.selectNodes( new XMLElementNode( null, element ) );
-            resultValues = new TypedObjectNode[selectedNodes.size()];
-            int i = 0;
-            for ( Object node : selectedNodes ) {
-                if ( node instanceof XPathNode<?> ) {
-                    resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                    resultValues[i++] = new PrimitiveValue( node );
-                } else {
-                    throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                + node.getClass().getName() + "' (=" + node
-                                                + ") during XPath-evaluation." );
-                }
-            }
+            resultValues = toValues( xpath.selectNodes( new XMLElementNode( null, element ) ) );
         } catch ( JaxenException e ) {
             throw new FilterEvaluationException( e.getMessage() );
         }
@@ -178,21 +209,7 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
         try {
             XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
             xpath.setNamespaceContext( propName.getNsContext() );
-            List<?> selectedNodes;
-            selectedNodes = xpath.selectNodes( new PropertyNode( null, element ) );
-            resultValues = new TypedObjectNode[selectedNodes.size()];
-            int i = 0;
-            for ( Object node : selectedNodes ) {
-                if ( node instanceof XPathNode<?> ) {
-                    resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                    resultValues[i++] = new PrimitiveValue( node );
-                } else {
-                    throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                + node.getClass().getName() + "' (=" + node
-                                                + ") during XPath-evaluation." );
-                }
-            }
+            resultValues = toValues( xpath.selectNodes( new PropertyNode( null, element ) ) );
         } catch ( JaxenException e ) {
             throw new FilterEvaluationException( e.getMessage() );
         }
@@ -325,10 +325,32 @@ public class Filters {
                 }
             }
             break;
+        case TEMPORAL:
+            TemporalOperator temporalOper = (TemporalOperator) operator;
+            addPropertyNames( temporalOper.getParameter1(), propNames );
+            addPropertyNames( temporalOper.getParameter2(), propNames );
+            break;
         }
     }
 
+    /**
+     * Returns all {@link ValueReference}s contained in the given {@link Expression} (taking nesting into account).
+     * 
+     * @param expr
+     *            expression to be traversed, must not be <code>null</code>
+     * @return {@link ValueReference}s found on any nodes of the {@link Expression}, can be empty, but never
+     *         <code>null</code>
+     */
+    public static ValueReference[] getPropertyNames( Expression expr ) {
+        List<ValueReference> propNames = new LinkedList<ValueReference>();
+        addPropertyNames( expr, propNames );
+        return propNames.toArray( new ValueReference[propNames.size()] );
+    }
+
     private static void addPropertyNames( Expression expr, List<ValueReference> propNames ) {
+        if ( expr == null ) {
+            return;
+        }
         if ( expr instanceof ValueReference ) {
             propNames.add( (ValueReference) expr );
         } else {
@@ -0,0 +1,195 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.compiled;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator.SubType;
+
+/**
+ * {@link CompiledOperator} for {@link BinaryComparisonOperator}s that compare the values of a property with a literal.
+ * <p>
+ * The literal is parsed once, so comparing numeric property values does not require to convert the literal for every
+ * single value.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ComparisonEvaluator extends CompiledOperator {
+
+    private static final PrimitiveValue NULL_VALUE = new PrimitiveValue( "null" );
+
+    private final SubType type;
+
+    private final PropertyAccessor accessor;
+
+    private final PrimitiveValue literal;
+
+    private final String literalText;
+
+    private final boolean matchCase;
+
+    private final BigDecimal literalDecimal;
+
+    private final boolean literalIsLong;
+
+    ComparisonEvaluator( SubType type, PropertyAccessor accessor, PrimitiveValue literal, boolean matchCase ) {
+        this.type = type;
+        this.accessor = accessor;
+        this.literal = literal;
+        this.literalText = literal.toString();
+        this.matchCase = matchCase;
+        BigDecimal decimal = null;
+        try {
+            decimal = new BigDecimal( literal.getValue().toString() );
+        } catch ( NumberFormatException e ) {
+            // not a numeric literal
+        }
+        literalDecimal = decimal;
+        literalIsLong = isLong( decimal );
+    }
+
+    @Override
+    <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                            throws FilterEvaluationException {
+        List<? extends TypedObjectNode> values = accessor.getValues( obj, xpathEvaluator );
+        for ( int i = 0; i < values.size(); i++ ) {
+            TypedObjectNode value = values.get( i );
+            if ( value != null && matches( getPrimitiveValue( value ) ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches( PrimitiveValue value ) {
+        switch ( type ) {
+        case PROPERTY_IS_EQUAL_TO:
+            return isEqual( value );
+        case PROPERTY_IS_NOT_EQUAL_TO:
+            return !isEqual( value );
+        case PROPERTY_IS_LESS_THAN:
+            return compare( value ) < 0;
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+            return compare( value ) <= 0;
+        case PROPERTY_IS_GREATER_THAN:
+            return compare( value ) > 0;
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+            return compare( value ) >= 0;
+        default:
+            throw new IllegalArgumentException( "Unhandled comparison operator type: " + type );
+        }
+    }
+
+    private boolean isEqual( PrimitiveValue value ) {
+        if ( !matchCase ) {
+            return value.toString().equalsIgnoreCase( literalText );
+        }
+        if ( literalDecimal != null && value.getValue() instanceof Number ) {
+            return compare( value ) == 0;
+        }
+        return value.equals( literal );
+    }
+
+    private int compare( PrimitiveValue value ) {
+        Object o = value.getValue();
+        if ( literalDecimal != null && o instanceof Number ) {
+            if ( literalIsLong && isIntegral( o ) ) {
+                long l1 = ( (Number) o ).longValue();
+                long l2 = literalDecimal.longValue();
+                return l1 < l2 ? -1 : ( l1 == l2 ? 0 : 1 );
+            }
+            BigDecimal decimal = o instanceof BigDecimal ? (BigDecimal) o : new BigDecimal( o.toString() );
+            return decimal.compareTo( literalDecimal );
+        }
+        return value.compareTo( literal );
+    }
+
+    @Override
+    int getCost() {
+        return accessor.getCost();
+    }
+
+    private static boolean isIntegral( Object o ) {
+        return o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte;
+    }
+
+    private static boolean isLong( BigDecimal decimal ) {
+        if ( decimal == null ) {
+            return false;
+        }
+        try {
+            decimal.longValueExact();
+            return true;
+        } catch ( ArithmeticException e ) {
+            return false;
+        }
+    }
+
+    /**
+     * Same conversion as in the {@link org.deegree.filter.comparison.ComparisonOperator}.
+     */
+    static PrimitiveValue getPrimitiveValue( TypedObjectNode node ) {
+        if ( node == null ) {
+            return NULL_VALUE;
+        }
+        if ( node instanceof PrimitiveValue ) {
+            return (PrimitiveValue) node;
+        }
+        if ( node instanceof Property ) {
+            return getPrimitiveValue( ( (Property) node ).getValue() );
+        }
+        if ( node instanceof ElementNode ) {
+            List<TypedObjectNode> children = ( (ElementNode) node ).getChildren();
+            if ( children == null || children.isEmpty() ) {
+                return NULL_VALUE;
+            }
+            return getPrimitiveValue( children.get( 0 ) );
+        }
+        return new PrimitiveValue( node.toString() );
+    }
+}
@@ -0,0 +1,80 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.compiled;
+
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Operator;
+import org.deegree.filter.XPathEvaluator;
+
+/**
+ * Node of a compiled {@link Operator} tree.
+ * 
+ * @see FilterCompiler
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+abstract class CompiledOperator {
+
+    /** Estimated cost of accessing a property by name. */
+    static final int COST_PROPERTY = 1;
+
+    /** Estimated cost of accessing values using an XPath expression. */
+    static final int COST_XPATH = 10;
+
+    /** Estimated cost of evaluating an operator that has not been compiled. */
+    static final int COST_GENERIC = 20;
+
+    /** Estimated cost of evaluating a spatial operator. */
+    static final int COST_SPATIAL = 50;
+
+    /**
+     * Determines the value of the operator.
+     * 
+     * @see Operator#evaluate(Object, XPathEvaluator)
+     */
+    abstract <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                            throws FilterEvaluationException;
+
+    /**
+     * Returns the estimated cost of evaluating the operator, used for ordering the operands of logical operators.
+     * 
+     * @return estimated cost, always positive
+     */
+    abstract int getCost();
+}
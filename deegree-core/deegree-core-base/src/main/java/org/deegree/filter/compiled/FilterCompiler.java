@@ -0,0 +1,169 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.compiled;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.MatchAction;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator.SubType;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.LogicalOperator;
+
+/**
+ * Compiles {@link Filter}s into a form that can be evaluated efficiently on many objects.
+ * <p>
+ * Compilation turns the operator tree into a tree of specialized evaluators:
+ * <ul>
+ * <li>Property names are resolved once per object type, XPath expressions are parsed only once.</li>
+ * <li>Literals (e.g. numbers or like patterns) are parsed only once.</li>
+ * <li>The operands of logical operators are evaluated cheapest first.</li>
+ * </ul>
+ * Operators without a specialized evaluator are evaluated as before. Compiled filters are immutable and can be
+ * evaluated by multiple threads concurrently. Compiling pays off if a filter is evaluated on more than a few objects,
+ * e.g. for in-memory filtering of a feature stream.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FilterCompiler {
+
+    private FilterCompiler() {
+        // avoid instantiation
+    }
+
+    /**
+     * Compiles the given filter.
+     * 
+     * @param filter
+     *            filter to be compiled, can be <code>null</code>
+     * @return compiled filter (an instance of {@link CompiledFilter} for {@link OperatorFilter}s), the filter itself if
+     *         it is <code>null</code>, already compiled or cannot be compiled (e.g. an id filter)
+     */
+    public static Filter compile( Filter filter ) {
+        if ( filter instanceof OperatorFilter && !( filter instanceof CompiledFilter ) ) {
+            Operator operator = ( (OperatorFilter) filter ).getOperator();
+            return new CompiledFilter( operator, compile( operator ) );
+        }
+        return filter;
+    }
+
+    private static CompiledOperator compile( Operator operator ) {
+        switch ( operator.getType() ) {
+        case LOGICAL: {
+            LogicalOperator logical = (LogicalOperator) operator;
+            Operator[] params = logical.getParams();
+            CompiledOperator[] operands = new CompiledOperator[params.length];
+            for ( int i = 0; i < params.length; i++ ) {
+                operands[i] = compile( params[i] );
+            }
+            return new LogicalEvaluator( logical.getSubType(), operands );
+        }
+        case COMPARISON: {
+            CompiledOperator compiled = compile( (ComparisonOperator) operator );
+            if ( compiled != null ) {
+                return compiled;
+            }
+            break;
+        }
+        default:
+            break;
+        }
+        return new OperatorEvaluator( operator );
+    }
+
+    private static CompiledOperator compile( ComparisonOperator operator ) {
+        SubType type = operator.getSubType();
+        switch ( type ) {
+        case PROPERTY_IS_EQUAL_TO:
+        case PROPERTY_IS_NOT_EQUAL_TO:
+        case PROPERTY_IS_LESS_THAN:
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+        case PROPERTY_IS_GREATER_THAN:
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO: {
+            BinaryComparisonOperator op = (BinaryComparisonOperator) operator;
+            PrimitiveValue literal = getPrimitiveLiteral( op.getParameter2() );
+            if ( !( op.getParameter1() instanceof ValueReference ) || literal == null || op.isMatchCase() == null ) {
+                return null;
+            }
+            // PropertyIsNotEqualTo ignores the match action
+            MatchAction ma = op.getMatchAction();
+            if ( type != SubType.PROPERTY_IS_NOT_EQUAL_TO && ma != null && ma != MatchAction.ANY ) {
+                return null;
+            }
+            PropertyAccessor accessor = new PropertyAccessor( (ValueReference) op.getParameter1() );
+            return new ComparisonEvaluator( type, accessor, literal, op.isMatchCase() );
+        }
+        case PROPERTY_IS_LIKE: {
+            PropertyIsLike op = (PropertyIsLike) operator;
+            PrimitiveValue literal = getPrimitiveLiteral( op.getPattern() );
+            String wildCard = op.getWildCard();
+            String singleChar = op.getSingleChar();
+            String escapeChar = op.getEscapeChar();
+            if ( !( op.getExpression() instanceof ValueReference ) || literal == null || wildCard.length() != 1
+                 || singleChar.length() != 1 || escapeChar.length() != 1 ) {
+                return null;
+            }
+            String pattern = literal.toString();
+            if ( pattern == null || pattern.indexOf( escapeChar.charAt( 0 ) ) != -1 ) {
+                return null;
+            }
+            PropertyAccessor accessor = new PropertyAccessor( (ValueReference) op.getExpression() );
+            return new LikeEvaluator( accessor, pattern, wildCard.charAt( 0 ), singleChar.charAt( 0 ),
+                                      op.isMatchCase() );
+        }
+        default:
+            return null;
+        }
+    }
+
+    private static PrimitiveValue getPrimitiveLiteral( Expression expr ) {
+        if ( expr instanceof Literal<?> && ( (Literal<?>) expr ).getValue() instanceof PrimitiveValue ) {
+            PrimitiveValue value = (PrimitiveValue) ( (Literal<?>) expr ).getValue();
+            return value.getValue() != null ? value : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.compiled;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.comparison.PropertyIsLike;
+
+/**
+ * {@link CompiledOperator} for {@link PropertyIsLike} operators with a literal pattern.
+ * <p>
+ * The pattern is translated into a regular expression once, instead of being re-parsed for every value.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class LikeEvaluator extends CompiledOperator {
+
+    private final PropertyAccessor accessor;
+
+    private final Pattern pattern;
+
+    private final boolean matchCase;
+
+    /**
+     * Creates a new {@link LikeEvaluator} instance.
+     * 
+     * @param accessor
+     *            accessor for the tested values, must not be <code>null</code>
+     * @param pattern
+     *            like pattern, must not contain the escape character
+     * @param wildCard
+     *            wildcard character
+     * @param singleChar
+     *            single character wildcard
+     * @param matchCase
+     *            true, if the comparison is case sensitive
+     */
+    LikeEvaluator( PropertyAccessor accessor, String pattern, char wildCard, char singleChar, boolean matchCase ) {
+        this.accessor = accessor;
+        this.matchCase = matchCase;
+        if ( !matchCase ) {
+            pattern = pattern.toLowerCase();
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for ( int i = 0; i < pattern.length(); i++ ) {
+            char c = pattern.charAt( i );
+            if ( c == wildCard || c == singleChar ) {
+                if ( literal.length() > 0 ) {
+                    regex.append( Pattern.quote( literal.toString() ) );
+                    literal.setLength( 0 );
+                }
+                regex.append( c == wildCard ? ".*" : "." );
+            } else {
+                literal.append( c );
+            }
+        }
+        if ( literal.length() > 0 ) {
+            regex.append( Pattern.quote( literal.toString() ) );
+        }
+        this.pattern = Pattern.compile( regex.toString(), Pattern.DOTALL );
+    }
+
+    @Override
+    <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                            throws FilterEvaluationException {
+        List<? extends TypedObjectNode> values = accessor.getValues( obj, xpathEvaluator );
+        for ( int i = 0; i < values.size(); i++ ) {
+            TypedObjectNode value = values.get( i );
+            if ( value != null ) {
+                String s = ComparisonEvaluator.getPrimitiveValue( value ).toString();
+                if ( !matchCase ) {
+                    s = s.toLowerCase();
+                }
+                if ( pattern.matcher( s ).matches() ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    int getCost() {
+        return accessor.getCost() + 1;
+    }
+}
@@ -0,0 +1,121 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.compiled;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.logical.LogicalOperator;
+import org.deegree.filter.logical.LogicalOperator.SubType;
+
+/**
+ * {@link CompiledOperator} for {@link LogicalOperator}s.
+ * <p>
+ * The operands of <code>And</code> and <code>Or</code> are evaluated in the order of their estimated cost, so the
+ * evaluation of expensive operands (e.g. spatial ones) is skipped whenever a cheaper operand already determines the
+ * result.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class LogicalEvaluator extends CompiledOperator {
+
+    private static final Comparator<CompiledOperator> BY_COST = new Comparator<CompiledOperator>() {
+        @Override
+        public int compare( CompiledOperator o1, CompiledOperator o2 ) {
+            int c1 = o1.getCost();
+            int c2 = o2.getCost();
+            return c1 < c2 ? -1 : ( c1 == c2 ? 0 : 1 );
+        }
+    };
+
+    private final SubType type;
+
+    private final CompiledOperator[] operands;
+
+    private final int cost;
+
+    LogicalEvaluator( SubType type, CompiledOperator[] operands ) {
+        this.type = type;
+        this.operands = operands;
+        if ( type != SubType.NOT ) {
+            // stable, so operands with equal cost keep their original order
+            Arrays.sort( operands, BY_COST );
+        }
+        int cost = 0;
+        for ( CompiledOperator operand : operands ) {
+            cost += operand.getCost();
+        }
+        this.cost = cost;
+    }
+
+    @Override
+    <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                            throws FilterEvaluationException {
+        switch ( type ) {
+        case AND: {
+            for ( CompiledOperator operand : operands ) {
+                if ( !operand.evaluate( obj, xpathEvaluator ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        case OR: {
+            for ( CompiledOperator operand : operands ) {
+                if ( operand.evaluate( obj, xpathEvaluator ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        case NOT: {
+            return !operands[0].evaluate( obj, xpathEvaluator );
+        }
+        }
+        throw new IllegalArgumentException( "Unhandled logical operator type: " + type );
+    }
+
+    @Override
+    int getCost() {
+        return cost;
+    }
+}
@@ -0,0 +1,157 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.compiled;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.GMLObjectType;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.jaxen.XPath;
+
+/**
+ * Retrieves the values that a {@link ValueReference} selects from an object.
+ * <p>
+ * For {@link GMLObject}s (evaluated using a {@link TypedObjectNodeXPathEvaluator}), simple property names are resolved
+ * against the property declarations once per object type, and complex expressions are compiled into an {@link XPath}
+ * once and reused for every object. Other objects are handed to the {@link XPathEvaluator}.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class PropertyAccessor {
+
+    private final ValueReference path;
+
+    private final QName name;
+
+    private volatile XPath xpath;
+
+    private volatile ResolvedName resolved;
+
+    PropertyAccessor( ValueReference path ) {
+        this.path = path;
+        this.name = path.getAsQName();
+    }
+
+    /**
+     * Returns the values that are selected from the given object.
+     * 
+     * @param obj
+     *            object to select from, must not be <code>null</code>
+     * @param xpathEvaluator
+     *            evaluator for the object, must not be <code>null</code>
+     * @return selected values, may be empty, but never <code>null</code>
+     * @throws FilterEvaluationException
+     *             if the evaluation fails
+     */
+    <T> List<? extends TypedObjectNode> getValues( T obj, XPathEvaluator<T> xpathEvaluator )
+                            throws FilterEvaluationException {
+        if ( obj instanceof GMLObject && xpathEvaluator instanceof TypedObjectNodeXPathEvaluator ) {
+            GMLObject object = (GMLObject) obj;
+            TypedObjectNodeXPathEvaluator evaluator = (TypedObjectNodeXPathEvaluator) xpathEvaluator;
+            if ( name != null ) {
+                return object.getProperties( getPropertyName( object, evaluator ) );
+            }
+            return Arrays.asList( evaluator.eval( object, getXPath() ) );
+        }
+        return Arrays.asList( xpathEvaluator.eval( obj, path ) );
+    }
+
+    /**
+     * Returns the estimated cost of retrieving the values.
+     * 
+     * @return estimated cost
+     */
+    int getCost() {
+        return name != null ? CompiledOperator.COST_PROPERTY : CompiledOperator.COST_XPATH;
+    }
+
+    private QName getPropertyName( GMLObject object, TypedObjectNodeXPathEvaluator evaluator ) {
+        QName requested = evaluator.resolvePropertyName( name );
+        GMLObjectType type = object.getType();
+        ResolvedName resolved = this.resolved;
+        if ( resolved == null || resolved.type != type || resolved.requested != requested ) {
+            // use the name instance of the declaration, so comparisons with the property names are cheap
+            QName declared = requested;
+            if ( type != null ) {
+                PropertyType pt = type.getPropertyDeclaration( requested );
+                if ( pt != null ) {
+                    declared = pt.getName();
+                }
+            }
+            resolved = new ResolvedName( type, requested, declared );
+            this.resolved = resolved;
+        }
+        return resolved.declared;
+    }
+
+    private XPath getXPath()
+                            throws FilterEvaluationException {
+        XPath xpath = this.xpath;
+        if ( xpath == null ) {
+            xpath = TypedObjectNodeXPathEvaluator.createXPath( path );
+            this.xpath = xpath;
+        }
+        return xpath;
+    }
+
+    private static class ResolvedName {
+
+        private final GMLObjectType type;
+
+        private final QName requested;
+
+        private final QName declared;
+
+        private ResolvedName( GMLObjectType type, QName requested, QName declared ) {
+            this.type = type;
+            this.requested = requested;
+            this.declared = declared;
+        }
+    }
+}
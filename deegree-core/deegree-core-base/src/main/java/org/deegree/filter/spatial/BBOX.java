@@ -43,6 +43,7 @@ import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.standard.PreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -122,6 +123,10 @@ public class BBOX extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
+                    PreparedGeometry prepared = getPreparedGeometry( param1Value, param2 );
+                    if ( prepared != null ) {
+                        return prepared.intersects( param1Value );
+                    }
                     Envelope transformedBBox = (Envelope) getCompatibleGeometry( param1Value, param2 );
                     return transformedBBox.intersects( param1Value );
                 }
@@ -131,6 +136,10 @@ public class BBOX extends SpatialOperator {
             Feature f = (Feature) obj;
             Envelope env = f.getEnvelope();
             if ( env != null ) {
+                PreparedGeometry prepared = getPreparedGeometry( env, param2 );
+                if ( prepared != null ) {
+                    return prepared.intersects( env );
+                }
                 Envelope transformedBBox = (Envelope) getCompatibleGeometry( env, param2 );
                 return transformedBBox.intersects( env );
             }
@@ -41,6 +41,7 @@ import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.standard.PreparedGeometry;
 
 /**
  * {@link SpatialOperator} that evaluates to true, iff geometries are beyond the specified distance of each other.
@@ -82,6 +83,10 @@ public class Beyond extends SpatialOperator {
         for ( TypedObjectNode param1Value : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( param1Value );
             if ( geom != null ) {
+                PreparedGeometry prepared = getPreparedGeometry( geom, geometry );
+                if ( prepared != null ) {
+                    return !prepared.isWithinDistance( geom, distance.getValueAsDouble() );
+                }
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
                 // TODO what about the units of the distance when transforming?
                 return geom.isBeyond( transformedLiteral, distance );
@@ -41,6 +41,7 @@ import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.standard.PreparedGeometry;
 
 /**
  * If geometries are within the specified distance of one another.
@@ -68,6 +69,10 @@ public class DWithin extends SpatialOperator {
         for ( TypedObjectNode param1Value : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( param1Value );
             if ( geom != null ) {
+                PreparedGeometry prepared = getPreparedGeometry( geom, geometry );
+                if ( prepared != null ) {
+                    return prepared.isWithinDistance( geom, distance.getValueAsDouble() );
+                }
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
                 // TODO what about the units of the distance when transforming?
                 return geom.isWithinDistance( transformedLiteral, distance );
@@ -40,6 +40,7 @@ import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.standard.PreparedGeometry;
 
 /**
  * TODO add documentation here
@@ -64,6 +65,10 @@ public class Disjoint extends SpatialOperator {
         for ( TypedObjectNode paramValue : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
+                PreparedGeometry prepared = getPreparedGeometry( geom, geometry );
+                if ( prepared != null ) {
+                    return prepared.isDisjoint( geom );
+                }
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
                 return geom.isDisjoint( transformedLiteral );
             }
@@ -43,6 +43,7 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.standard.PreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +81,10 @@ public class Intersects extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
+                    PreparedGeometry prepared = getPreparedGeometry( param1Value, geometry );
+                    if ( prepared != null ) {
+                        return prepared.intersects( param1Value );
+                    }
                     Geometry transformedGeom = getCompatibleGeometry( param1Value, geometry );
                     return transformedGeom.intersects( param1Value );
                 }
@@ -91,30 +96,21 @@ public class Intersects extends SpatialOperator {
             for ( Property prop : f.getProperties() ) {
                 if ( prop.getValue() instanceof Geometry ) {
                     foundGeom = true;
-                    Geometry geom = (Geometry) prop.getValue();
-                    Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                    if ( transformedGeom.intersects( geometry ) ) {
+                    if ( intersects( (Geometry) prop.getValue() ) ) {
                         return true;
                     }
                 }
             }
             if ( !foundGeom ) {
                 Envelope env = f.getEnvelope();
-                if ( env != null ) {
-                    Geometry g = getCompatibleGeometry( geometry, env );
-                    if ( g.intersects( geometry ) ) {
-                        return true;
-                    }
+                if ( env != null && intersects( env ) ) {
+                    return true;
                 }
             }
             if ( f.getExtraProperties() != null ) {
                 for ( Property prop : f.getExtraProperties().getProperties() ) {
-                    if ( prop.getValue() instanceof Geometry ) {
-                        Geometry geom = (Geometry) prop.getValue();
-                        Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                        if ( transformedGeom.intersects( geometry ) ) {
-                            return true;
-                        }
+                    if ( prop.getValue() instanceof Geometry && intersects( (Geometry) prop.getValue() ) ) {
+                        return true;
                     }
                 }
             }
@@ -124,6 +120,16 @@ public class Intersects extends SpatialOperator {
         return false;
     }
 
+    private boolean intersects( Geometry geom )
+                            throws FilterEvaluationException {
+        PreparedGeometry prepared = getPreparedGeometry( geom, geometry );
+        if ( prepared != null ) {
+            return prepared.intersects( geom );
+        }
+        Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
+        return transformedGeom.intersects( geometry );
+    }
+
     /**
      * @return the geometry
      */
@@ -35,12 +35,13 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
 import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
@@ -49,6 +50,7 @@ import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.i18n.Messages;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.standard.PreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,12 +66,18 @@ public abstract class SpatialOperator implements Operator {
 
     private static final Logger LOG = LoggerFactory.getLogger( SpatialOperator.class );
 
-    private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+    // key: srs name, value: pair of (untransformed) literal and transformed literal
+    private final Map<String, Pair<Geometry, Geometry>> srsNameToTransformedGeometry;
+
+    // key: srs name, value: prepared (and transformed) literal
+    private final Map<String, PreparedGeometry> srsNameToPreparedGeometry;
 
     protected final Expression propName;
 
     protected SpatialOperator( Expression param1 ) {
         this.propName = param1;
+        srsNameToTransformedGeometry = new ConcurrentHashMap<String, Pair<Geometry, Geometry>>();
+        srsNameToPreparedGeometry = new ConcurrentHashMap<String, PreparedGeometry>();
     }
 
     /**
@@ -193,15 +201,18 @@ public abstract class SpatialOperator implements Operator {
         Geometry transformedLiteral = literal;
         ICRS paramCRS = param.getCoordinateSystem();
         ICRS literalCRS = literal.getCoordinateSystem();
-        if ( literalCRS != null && !( paramCRS.equals( literalCRS ) ) ) {
+        if ( literalCRS != null && paramCRS != null && !( paramCRS.equals( literalCRS ) ) ) {
             LOG.debug( "Need transformed literal geometry for evaluation: " + literalCRS.getAlias() + " -> "
                        + paramCRS.getAlias() );
-            transformedLiteral = srsNameToTransformedGeometry.get( paramCRS.getAlias() );
-            if ( transformedLiteral == null ) {
+            Pair<Geometry, Geometry> cached = srsNameToTransformedGeometry.get( paramCRS.getAlias() );
+            if ( cached != null && cached.first == literal ) {
+                transformedLiteral = cached.second;
+            } else {
                 try {
                     GeometryTransformer transformer = new GeometryTransformer( paramCRS );
                     transformedLiteral = transformer.transform( literal );
-                    srsNameToTransformedGeometry.put( paramCRS.getAlias(), transformedLiteral );
+                    srsNameToTransformedGeometry.put( paramCRS.getAlias(),
+                                                      new Pair<Geometry, Geometry>( literal, transformedLiteral ) );
                 } catch ( Exception e ) {
                     throw new FilterEvaluationException( e.getMessage() );
                 }
@@ -210,5 +221,38 @@ public abstract class SpatialOperator implements Operator {
         return transformedLiteral;
     }
 
+    /**
+     * Returns a prepared version of the given geometry literal that has the same srs as the given geometry parameter.
+     * <p>
+     * The prepared literal is cached (per srs), so it is only created once for all evaluations of the operator.
+     * </p>
+     * 
+     * @param param
+     *            geometry parameter, must not be <code>null</code>
+     * @param literal
+     *            geometry literal, must not be <code>null</code>
+     * @return prepared literal geometry with the same srs as the parameter geometry, or <code>null</code> if the
+     *         literal cannot be prepared
+     * @throws FilterEvaluationException
+     *             if the transformation failed
+     */
+    protected PreparedGeometry getPreparedGeometry( Geometry param, Geometry literal )
+                            throws FilterEvaluationException {
+        Geometry compatibleLiteral = getCompatibleGeometry( param, literal );
+        ICRS crs = compatibleLiteral.getCoordinateSystem();
+        String key = crs != null ? crs.getAlias() : "";
+        PreparedGeometry prepared = srsNameToPreparedGeometry.get( key );
+        if ( prepared == null || prepared.getGeometry() != compatibleLiteral ) {
+            try {
+                prepared = new PreparedGeometry( compatibleLiteral );
+            } catch ( IllegalArgumentException e ) {
+                LOG.debug( "Cannot prepare geometry literal: " + e.getMessage() );
+                return null;
+            }
+            srsNameToPreparedGeometry.put( key, prepared );
+        }
+        return prepared;
+    }
+
     public abstract Object[] getParams();
 }
@@ -54,6 +54,7 @@ import org.deegree.cs.coordinatesystems.CRS;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
 import org.deegree.geometry.primitive.Point;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.commons.AbstractGMLObjectReader;
@@ -118,6 +119,39 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
     protected List<Point> parsePosList( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLParsingException, XMLStreamException {
 
+        int coordDim = determinePosListDimension( xmlStream, crs );
+        double[] coords = parsePosListCoordinates( xmlStream, coordDim );
+        int numPoints = coords.length / coordDim;
+        List<Point> points = new ArrayList<Point>( numPoints );
+        for ( int i = 0; i < numPoints; i++ ) {
+            double[] pointCoords = new double[coordDim];
+            System.arraycopy( coords, i * coordDim, pointCoords, 0, coordDim );
+            points.add( geomFac.createPoint( null, pointCoords, crs ) );
+        }
+        return points;
+    }
+
+    /**
+     * Parses a <code>gml:posList</code> element into a packed coordinate array, without creating {@link Point}
+     * objects.
+     * 
+     * @param xmlStream
+     *            cursor must point at the <code>START_ELEMENT</code> event (&lt;gml:posList&gt;), points at the
+     *            corresponding <code>END_ELEMENT</code> event afterwards
+     * @param crs
+     *            CRS of the points, can be <code>null</code>
+     * @return the points, never <code>null</code>
+     * @throws XMLParsingException
+     * @throws XMLStreamException
+     */
+    protected Points parsePackedPosList( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLParsingException, XMLStreamException {
+        int coordDim = determinePosListDimension( xmlStream, crs );
+        double[] coords = parsePosListCoordinates( xmlStream, coordDim );
+        return geomFac.createPoints( crs, coords, coordDim );
+    }
+
+    private int determinePosListDimension( XMLStreamReaderWrapper xmlStream, ICRS crs ) {
         int coordDim = determineCoordDimensions( xmlStream, -1 );
         if ( coordDim == -1 && crs != null ) {
             try {
@@ -133,38 +167,31 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
             }
             coordDim = defaultCoordDim;
         }
+        return coordDim;
+    }
 
+    private double[] parsePosListCoordinates( XMLStreamReaderWrapper xmlStream, int coordDim )
+                            throws XMLParsingException, XMLStreamException {
         String s = xmlStream.getElementText();
         // don't use String.split(regex) here (speed)
         StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        int numCoords = tokens.size();
+        int numCoords = st.countTokens();
         if ( numCoords % coordDim != 0 ) {
-            String msg = "Cannot parse 'gml:posList': contains " + tokens.size()
-                         + " values, but coordinate dimension is " + coordDim + ". This does not match.";
+            String msg = "Cannot parse 'gml:posList': contains " + numCoords + " values, but coordinate dimension is "
+                         + coordDim + ". This does not match.";
             throw new XMLParsingException( xmlStream, msg );
         }
-
-        int numPoints = numCoords / coordDim;
-        List<Point> points = new ArrayList<Point>();
-
-        int tokenPos = 0;
-        for ( int i = 0; i < numPoints; i++ ) {
-            double[] pointCoords = new double[coordDim];
-            for ( int j = 0; j < coordDim; j++ ) {
-                try {
-                    pointCoords[j] = Double.parseDouble( tokens.get( tokenPos++ ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( tokenPos - 1 ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
+        double[] coords = new double[numCoords];
+        for ( int i = 0; i < numCoords; i++ ) {
+            String token = st.nextToken();
+            try {
+                coords[i] = Double.parseDouble( token );
+            } catch ( NumberFormatException e ) {
+                String msg = "Value '" + token + "' cannot be parsed as a double.";
+                throw new XMLParsingException( xmlStream, msg );
             }
-            points.add( geomFac.createPoint( null, pointCoords, crs ) );
         }
-        return points;
+        return coords;
     }
 
     protected List<Point> parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
@@ -1152,45 +1152,46 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
         GMLObjectType type = getType( xmlStream );
         List<Property> props = readStandardProperties( xmlStream, type, crs );
 
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "posList".equals( name ) ) {
-                points = parsePosList( xmlStream, crs );
+                points = parsePackedPosList( xmlStream, crs );
                 xmlStream.nextTag();
             } else if ( "coordinates".equals( name ) ) {
                 // deprecated since GML 3.1.0, only included for backward compatibility
-                points = parseCoordinates( xmlStream, crs );
+                points = geomFac.createPoints( parseCoordinates( xmlStream, crs ) );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new ArrayList<Point>();
                 do {
                     if ( "pos".equals( name ) ) {
                         double[] coords = parseDoubleList( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else if ( "pointProperty".equals( name ) || "pointRep".equals( name ) ) {
                         // pointRep has been deprecated since GML 3.1.0, only included for backward compatibility
-                        points.add( parsePointProperty( xmlStream, crs ) );
+                        pointList.add( parsePointProperty( xmlStream, crs ) );
                     } else if ( "coord".equals( name ) ) {
                         // deprecated since GML 3.0, only included for backward compatibility
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         String msg = "Error in 'gml:LineString' element.";
                         throw new XMLParsingException( xmlStream, msg );
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
-        if ( points.size() < 2 ) {
+        if ( points == null || points.size() < 2 ) {
             String msg = "Error in 'gml:LineString' element. Must consist of two points at least.";
             throw new XMLParsingException( xmlStream, msg );
         }
 
-        LineString lineString = geomFac.createLineString( gid, crs, geomFac.createPoints( points ) );
+        LineString lineString = geomFac.createLineString( gid, crs, points );
         lineString.setType( type );
 
         props.addAll( readAdditionalProperties( xmlStream, type, crs ) );
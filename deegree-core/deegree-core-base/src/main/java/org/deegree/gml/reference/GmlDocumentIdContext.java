@@ -158,6 +158,52 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
         return refs;
     }
 
+    /**
+     * Removes all {@link GMLObject} and {@link GMLReference} instances that have been added before.
+     * <p>
+     * This allows to process arbitrarily large GML documents in a streaming fashion (e.g. when iterating over the
+     * members of a {@link org.deegree.gml.feature.StreamFeatureCollection}). Before the objects are removed, all local
+     * references that point to added objects are bound to them, so they stay resolvable. Local references that cannot
+     * be resolved yet (e.g. forward references) are kept and bound by later invocations. Local references to objects
+     * that have been removed by a previous invocation cannot be resolved anymore (see
+     * {@link #getUnresolvedLocalRefs()}).
+     * </p>
+     */
+    public void clear() {
+        List<GMLReference<?>> unresolved = getUnresolvedLocalRefs();
+        idToObject.clear();
+        refs.clear();
+        localRefs.clear();
+        refs.addAll( unresolved );
+        localRefs.addAll( unresolved );
+    }
+
+    /**
+     * Binds all local references that have been added before to the added objects and returns the ones that cannot be
+     * resolved.
+     * 
+     * @return local references that cannot be resolved (currently), may be empty, but never <code>null</code>
+     */
+    public List<GMLReference<?>> getUnresolvedLocalRefs() {
+        List<GMLReference<?>> unresolved = new ArrayList<GMLReference<?>>();
+        for ( GMLReference<?> ref : localRefs ) {
+            if ( !ref.isResolved() ) {
+                GMLObject object = idToObject.get( ref.getURI().substring( 1 ) );
+                if ( object != null ) {
+                    bind( ref, object );
+                } else {
+                    unresolved.add( ref );
+                }
+            }
+        }
+        return unresolved;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void bind( GMLReference<?> ref, GMLObject object ) {
+        ( (GMLReference<GMLObject>) ref ).resolve( object );
+    }
+
     @Override
     public GMLObject getObject( String uri, String baseURL ) {
         GMLObject object = null;
@@ -0,0 +1,141 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.sort.SortProperty;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Features}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeaturesTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final SimplePropertyType KEY = new SimplePropertyType( new QName( NS, "key" ), 1, 1, INTEGER,
+                                                                          null, null );
+
+    private static final FeatureType FT = new GenericFeatureType( new QName( NS, "Parcel" ),
+                                                                  Collections.<PropertyType> singletonList( KEY ),
+                                                                  false );
+
+    @Test
+    public void testSortFcAscending() {
+        FeatureCollection sorted = Features.sortFc( createFc( 3, 1, 2 ), sortBy( true ) );
+        assertKeys( sorted, 1, 2, 3 );
+    }
+
+    @Test
+    public void testSortFcDescending() {
+        FeatureCollection sorted = Features.sortFc( createFc( 3, 1, 2 ), sortBy( false ) );
+        assertKeys( sorted, 3, 2, 1 );
+    }
+
+    @Test
+    public void testSortFcIsStable() {
+        FeatureCollection fc = createFc( 2, 1, 2, 1, 2, 1 );
+        List<Feature> original = new ArrayList<Feature>( fc );
+
+        List<Feature> sorted = new ArrayList<Feature>( Features.sortFc( fc, sortBy( true ) ) );
+        // features with equal keys keep their order
+        assertSame( original.get( 1 ), sorted.get( 0 ) );
+        assertSame( original.get( 3 ), sorted.get( 1 ) );
+        assertSame( original.get( 5 ), sorted.get( 2 ) );
+        assertSame( original.get( 0 ), sorted.get( 3 ) );
+        assertSame( original.get( 2 ), sorted.get( 4 ) );
+        assertSame( original.get( 4 ), sorted.get( 5 ) );
+
+        sorted = new ArrayList<Feature>( Features.sortFc( fc, sortBy( false ) ) );
+        assertSame( original.get( 0 ), sorted.get( 0 ) );
+        assertSame( original.get( 2 ), sorted.get( 1 ) );
+        assertSame( original.get( 4 ), sorted.get( 2 ) );
+        assertSame( original.get( 1 ), sorted.get( 3 ) );
+        assertSame( original.get( 3 ), sorted.get( 4 ) );
+        assertSame( original.get( 5 ), sorted.get( 5 ) );
+    }
+
+    @Test
+    public void testSortFcWithoutCriteria() {
+        FeatureCollection fc = createFc( 3, 1, 2 );
+        assertSame( fc, Features.sortFc( fc, null ) );
+        assertSame( fc, Features.sortFc( fc, new SortProperty[0] ) );
+    }
+
+    private static SortProperty[] sortBy( boolean ascending ) {
+        return new SortProperty[] { new SortProperty( new ValueReference( KEY.getName() ), ascending ) };
+    }
+
+    private static FeatureCollection createFc( int... keys ) {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( int i = 0; i < keys.length; i++ ) {
+            List<Property> props = new ArrayList<Property>();
+            props.add( new SimpleProperty( KEY, "" + keys[i] ) );
+            features.add( new GenericFeature( FT, "PARCEL_" + i, props, null ) );
+        }
+        return new GenericFeatureCollection( null, features );
+    }
+
+    private static void assertKeys( FeatureCollection fc, int... keys ) {
+        assertEquals( keys.length, fc.size() );
+        int i = 0;
+        for ( Feature f : fc ) {
+            SimpleProperty prop = (SimpleProperty) f.getProperties( KEY.getName() ).get( 0 );
+            assertEquals( "" + keys[i++], prop.getValue().getAsText() );
+        }
+    }
+}
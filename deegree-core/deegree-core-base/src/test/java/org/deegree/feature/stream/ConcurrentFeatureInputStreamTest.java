@@ -0,0 +1,269 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentFeatureInputStream}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ConcurrentFeatureInputStreamTest {
+
+    private ExecutorService executor;
+
+    // number of tasks that have been started, but whose streams have not been closed yet
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        if ( executor != null ) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMembersAreReturnedInTaskOrder() {
+        executor = Executors.newFixedThreadPool( 4 );
+        List<Feature> features = new ArrayList<Feature>();
+        List<Callable<FeatureInputStream>> tasks = new ArrayList<Callable<FeatureInputStream>>();
+        for ( int i = 0; i < 6; i++ ) {
+            Feature f = mock( Feature.class );
+            features.add( f );
+            // later tasks finish first
+            tasks.add( new TestTask( new TestStream( f ), ( 6 - i ) * 20, null ) );
+        }
+        ConcurrentFeatureInputStream stream = new ConcurrentFeatureInputStream( executor, tasks, 4 );
+        int i = 0;
+        for ( Feature f : stream ) {
+            assertSame( features.get( i++ ), f );
+        }
+        stream.close();
+        assertEquals( 6, i );
+    }
+
+    @Test
+    public void testNumberOfActiveTasksIsLimited()
+                            throws Exception {
+        executor = Executors.newFixedThreadPool( 8 );
+        List<TestTask> tasks = new ArrayList<TestTask>();
+        for ( int i = 0; i < 10; i++ ) {
+            tasks.add( new TestTask( new TestStream( mock( Feature.class ), mock( Feature.class ) ), 10, null ) );
+        }
+        ConcurrentFeatureInputStream stream = new ConcurrentFeatureInputStream( executor, asCallables( tasks ), 2 );
+
+        // only the first two tasks are submitted before the first member is requested
+        tasks.get( 0 ).started.await( 5, TimeUnit.SECONDS );
+        tasks.get( 1 ).started.await( 5, TimeUnit.SECONDS );
+        Thread.sleep( 100 );
+        assertEquals( 2, getNumStarted( tasks ) );
+
+        assertEquals( 20, stream.count() );
+        assertEquals( 10, getNumStarted( tasks ) );
+        assertEquals( 2, maxActive.get() );
+        assertEquals( 0, active.get() );
+    }
+
+    @Test
+    public void testCloseSkipsPendingTasksAndClosesRunningOnes()
+                            throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch( 1 );
+        List<TestTask> tasks = new ArrayList<TestTask>();
+        tasks.add( new TestTask( new TestStream( mock( Feature.class ) ), 0, null ) );
+        tasks.add( new TestTask( new TestStream( mock( Feature.class ) ), 0, release ) );
+        tasks.add( new TestTask( new TestStream( mock( Feature.class ) ), 0, null ) );
+        tasks.add( new TestTask( new TestStream( mock( Feature.class ) ), 0, null ) );
+        final ConcurrentFeatureInputStream stream = new ConcurrentFeatureInputStream( executor,
+                                                                                      asCallables( tasks ), 3 );
+        Iterator<Feature> iter = stream.iterator();
+        assertTrue( iter.hasNext() );
+        iter.next();
+        assertTrue( tasks.get( 1 ).started.await( 5, TimeUnit.SECONDS ) );
+
+        // task 1 is still running when the stream is closed
+        releaseLater( release, 200 );
+        stream.close();
+
+        assertTrue( tasks.get( 0 ).stream.closed );
+        assertTrue( tasks.get( 1 ).stream.closed );
+        // task 2 had been submitted, but was still queued, task 3 had not been submitted
+        Thread.sleep( 100 );
+        assertEquals( 1, tasks.get( 2 ).started.getCount() );
+        assertEquals( 1, tasks.get( 3 ).started.getCount() );
+        assertEquals( 0, active.get() );
+    }
+
+    @Test
+    public void testFailingTaskSkipsRemainingTasks()
+                            throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        List<Callable<FeatureInputStream>> tasks = new ArrayList<Callable<FeatureInputStream>>();
+        tasks.add( new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call()
+                                    throws Exception {
+                throw new IllegalStateException( "query failed" );
+            }
+        } );
+        TestTask second = new TestTask( new TestStream( mock( Feature.class ) ), 0, null );
+        tasks.add( second );
+        ConcurrentFeatureInputStream stream = new ConcurrentFeatureInputStream( executor, tasks, 2 );
+        try {
+            stream.iterator().hasNext();
+            fail( "Failure of the first task must be propagated." );
+        } catch ( RuntimeException e ) {
+            assertEquals( "query failed", e.getMessage() );
+        }
+        // the second task has either been skipped or its stream has been closed
+        assertTrue( second.started.getCount() == 1 || second.stream.closed );
+        assertFalse( stream.iterator().hasNext() );
+        stream.close();
+    }
+
+    private int getNumStarted( List<TestTask> tasks ) {
+        int numStarted = 0;
+        for ( TestTask task : tasks ) {
+            if ( task.started.getCount() == 0 ) {
+                numStarted++;
+            }
+        }
+        return numStarted;
+    }
+
+    private List<Callable<FeatureInputStream>> asCallables( List<TestTask> tasks ) {
+        return new ArrayList<Callable<FeatureInputStream>>( tasks );
+    }
+
+    private void releaseLater( final CountDownLatch latch, final long millis ) {
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep( millis );
+                } catch ( InterruptedException e ) {
+                    // release anyway
+                }
+                latch.countDown();
+            }
+        }.start();
+    }
+
+    private class TestTask implements Callable<FeatureInputStream> {
+
+        private final TestStream stream;
+
+        private final long delay;
+
+        private final CountDownLatch release;
+
+        private final CountDownLatch started = new CountDownLatch( 1 );
+
+        private TestTask( TestStream stream, long delay, CountDownLatch release ) {
+            this.stream = stream;
+            this.delay = delay;
+            this.release = release;
+        }
+
+        @Override
+        public FeatureInputStream call()
+                                throws Exception {
+            int numActive = active.incrementAndGet();
+            synchronized ( maxActive ) {
+                maxActive.set( Math.max( maxActive.get(), numActive ) );
+            }
+            started.countDown();
+            if ( release != null ) {
+                release.await();
+            }
+            if ( delay > 0 ) {
+                Thread.sleep( delay );
+            }
+            return stream;
+        }
+    }
+
+    private class TestStream extends MemoryFeatureInputStream {
+
+        private volatile boolean closed;
+
+        private TestStream( Feature... features ) {
+            super( new GenericFeatureCollection( null, toList( features ) ) );
+        }
+
+        @Override
+        public void close() {
+            if ( !closed ) {
+                closed = true;
+                active.decrementAndGet();
+            }
+            super.close();
+        }
+    }
+
+    private static List<Feature> toList( Feature... features ) {
+        List<Feature> list = new ArrayList<Feature>();
+        Collections.addAll( list, features );
+        return list;
+    }
+}
@@ -0,0 +1,142 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PagedFeatureInputStream}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PagedFeatureInputStreamTest {
+
+    private final List<Feature> features = new ArrayList<Feature>();
+
+    public PagedFeatureInputStreamTest() {
+        for ( int i = 0; i < 10; i++ ) {
+            features.add( mock( Feature.class ) );
+        }
+    }
+
+    @Test
+    public void testOffsetAndLimit() {
+        assertPage( 3, 4, 3, 4, 5, 6 );
+    }
+
+    @Test
+    public void testOffsetOnly() {
+        assertPage( 7, -1, 7, 8, 9 );
+    }
+
+    @Test
+    public void testLimitOnly() {
+        assertPage( 0, 2, 0, 1 );
+    }
+
+    @Test
+    public void testNoPaging() {
+        assertPage( 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 );
+    }
+
+    @Test
+    public void testLimitBeyondEnd() {
+        assertPage( 8, 5, 8, 9 );
+    }
+
+    @Test
+    public void testOffsetBeyondEnd() {
+        assertPage( 10, 5 );
+        assertPage( 20, -1 );
+    }
+
+    @Test
+    public void testHasNextIsIdempotent() {
+        PagedFeatureInputStream stream = new PagedFeatureInputStream( createSource(), 2, 1 );
+        Iterator<Feature> iter = stream.iterator();
+        assertTrue( iter.hasNext() );
+        assertTrue( iter.hasNext() );
+        assertSame( features.get( 2 ), iter.next() );
+        assertFalse( iter.hasNext() );
+        stream.close();
+    }
+
+    @Test
+    public void testCount() {
+        assertEquals( 4, new PagedFeatureInputStream( createSource(), 6, 10 ).count() );
+        assertEquals( 3, new PagedFeatureInputStream( createSource(), 1, 3 ).count() );
+    }
+
+    @Test
+    public void testToCollection() {
+        FeatureCollection fc = new PagedFeatureInputStream( createSource(), 4, 2 ).toCollection();
+        assertEquals( 2, fc.size() );
+        Iterator<Feature> iter = fc.iterator();
+        assertSame( features.get( 4 ), iter.next() );
+        assertSame( features.get( 5 ), iter.next() );
+    }
+
+    private void assertPage( int startIndex, int maxFeatures, int... expected ) {
+        PagedFeatureInputStream stream = new PagedFeatureInputStream( createSource(), startIndex, maxFeatures );
+        int i = 0;
+        for ( Feature f : stream ) {
+            assertSame( features.get( expected[i++] ), f );
+        }
+        stream.close();
+        assertEquals( expected.length, i );
+    }
+
+    private FeatureInputStream createSource() {
+        return new MemoryFeatureInputStream( new GenericFeatureCollection( null, features ) );
+    }
+
+}
@@ -0,0 +1,261 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.filter.Filter;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelFilteredFeatureInputStream}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelFilteredFeatureInputStreamTest {
+
+    @Test
+    public void testMatchesInOriginalOrder() {
+        List<Feature> features = createFeatures( 1003 );
+        Set<Feature> matching = new HashSet<Feature>();
+        List<Feature> expected = new ArrayList<Feature>();
+        for ( int i = 0; i < features.size(); i++ ) {
+            if ( i % 3 == 0 ) {
+                matching.add( features.get( i ) );
+                expected.add( features.get( i ) );
+            }
+        }
+        ClosingStream source = new ClosingStream( features );
+        Filter filter = new MatchFilter( matching );
+        ParallelFilteredFeatureInputStream stream = new ParallelFilteredFeatureInputStream( source, filter, getPool(),
+                                                                                            10, 4 );
+        int i = 0;
+        for ( Feature f : stream ) {
+            assertSame( expected.get( i++ ), f );
+        }
+        stream.close();
+        assertEquals( expected.size(), i );
+        assertTrue( source.closed );
+    }
+
+    @Test
+    public void testNoMatches() {
+        ClosingStream source = new ClosingStream( createFeatures( 100 ) );
+        Filter filter = new MatchFilter( new HashSet<Feature>() );
+        ParallelFilteredFeatureInputStream stream = new ParallelFilteredFeatureInputStream( source, filter, getPool(),
+                                                                                            10, 4 );
+        assertEquals( 0, stream.count() );
+        assertTrue( source.closed );
+    }
+
+    @Test
+    public void testFilterEvaluationExceptionIsRethrown() {
+        List<Feature> features = createFeatures( 100 );
+        FilterEvaluationException error = new FilterEvaluationException( "Evaluation failed." );
+        Filter filter = new FailingFilter( features.get( 55 ), error );
+        ClosingStream source = new ClosingStream( features );
+        ParallelFilteredFeatureInputStream stream = new ParallelFilteredFeatureInputStream( source, filter, getPool(),
+                                                                                            10, 4 );
+        assertRethrown( stream, error, 50 );
+        assertTrue( source.closed );
+    }
+
+    @Test
+    public void testRuntimeExceptionIsRethrown() {
+        List<Feature> features = createFeatures( 100 );
+        IllegalStateException error = new IllegalStateException( "Unexpected value." );
+        Filter filter = new FailingFilter( features.get( 55 ), error );
+        ClosingStream source = new ClosingStream( features );
+        ParallelFilteredFeatureInputStream stream = new ParallelFilteredFeatureInputStream( source, filter, getPool(),
+                                                                                            10, 4 );
+        assertRethrown( stream, error, 50 );
+        assertTrue( source.closed );
+    }
+
+    @Test
+    public void testEarlyClose() {
+        List<Feature> features = createFeatures( 10000 );
+        ClosingStream source = new ClosingStream( features );
+        Filter filter = new MatchFilter( new HashSet<Feature>( features ) );
+        ParallelFilteredFeatureInputStream stream = new ParallelFilteredFeatureInputStream( source, filter, getPool(),
+                                                                                            10, 4 );
+        Iterator<Feature> iter = stream.iterator();
+        for ( int i = 0; i < 15; i++ ) {
+            assertSame( features.get( i ), iter.next() );
+        }
+        stream.close();
+        assertTrue( source.closed );
+        // only the batches that have been read ahead are consumed from the source
+        assertTrue( source.read <= 15 + 4 * 10 );
+    }
+
+    private static void assertRethrown( ParallelFilteredFeatureInputStream stream, Throwable error, int matches ) {
+        int i = 0;
+        try {
+            for ( @SuppressWarnings("unused")
+            Feature f : stream ) {
+                i++;
+            }
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            assertSame( error, e.getCause() );
+        } finally {
+            stream.close();
+        }
+        // all matches of the preceding batches have been returned
+        assertEquals( matches, i );
+    }
+
+    private static PrefetchPool getPool() {
+        return PrefetchManager.getPool( ParallelFilteredFeatureInputStreamTest.class.getSimpleName() );
+    }
+
+    private static List<Feature> createFeatures( int num ) {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( int i = 0; i < num; i++ ) {
+            features.add( mock( Feature.class ) );
+        }
+        return features;
+    }
+
+    private static class MatchFilter implements Filter {
+
+        private final Set<Feature> matching;
+
+        private MatchFilter( Set<Feature> matching ) {
+            this.matching = matching;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.OPERATOR_FILTER;
+        }
+
+        @Override
+        public <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                                throws FilterEvaluationException {
+            return matching.contains( obj );
+        }
+    }
+
+    /**
+     * Matches all features, but fails for a specific one.
+     */
+    private static class FailingFilter implements Filter {
+
+        private final Feature failing;
+
+        private final Throwable error;
+
+        private FailingFilter( Feature failing, Throwable error ) {
+            this.failing = failing;
+            this.error = error;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.OPERATOR_FILTER;
+        }
+
+        @Override
+        public <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                                throws FilterEvaluationException {
+            if ( obj == failing ) {
+                if ( error instanceof FilterEvaluationException ) {
+                    throw (FilterEvaluationException) error;
+                }
+                throw (RuntimeException) error;
+            }
+            return true;
+        }
+    }
+
+    private static class ClosingStream extends MemoryFeatureInputStream {
+
+        private volatile boolean closed;
+
+        private volatile int read;
+
+        private ClosingStream( List<Feature> features ) {
+            super( new GenericFeatureCollection( null, features ) );
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = super.iterator();
+            return new Iterator<Feature>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public Feature next() {
+                    read++;
+                    return iter.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
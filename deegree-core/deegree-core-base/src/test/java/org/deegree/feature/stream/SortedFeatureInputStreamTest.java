@@ -0,0 +1,262 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.sort.SortProperty;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SortedFeatureInputStream}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SortedFeatureInputStreamTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final SimplePropertyType KEY = new SimplePropertyType( new QName( NS, "key" ), 1, 1, INTEGER,
+                                                                          null, null );
+
+    private static final FeatureType FT = new GenericFeatureType( new QName( NS, "Parcel" ),
+                                                                  Collections.<PropertyType> singletonList( KEY ),
+                                                                  false );
+
+    private static final SortProperty[] SORT_BY_KEY = { new SortProperty( new ValueReference( KEY.getName() ), true ) };
+
+    @Test
+    public void testSortInMemory() {
+        List<Feature> features = createFeatures( 100, 7 );
+        TestCodec codec = new TestCodec( features );
+        SortedFeatureInputStream stream = new SortedFeatureInputStream( createStream( features ), SORT_BY_KEY,
+                                                                        codec, 1000 );
+        assertSortedAndStable( features, stream );
+        assertEquals( 0, codec.encoded );
+    }
+
+    @Test
+    public void testSortWithoutCodec() {
+        List<Feature> features = createFeatures( 100, 7 );
+        SortedFeatureInputStream stream = new SortedFeatureInputStream( createStream( features ), SORT_BY_KEY, null,
+                                                                        10 );
+        assertSortedAndStable( features, stream );
+    }
+
+    @Test
+    public void testSortWithSpilledRuns() {
+        List<Feature> features = createFeatures( 95, 7 );
+        TestCodec codec = new TestCodec( features );
+        SortedFeatureInputStream stream = new SortedFeatureInputStream( createStream( features ), SORT_BY_KEY,
+                                                                        codec, 10 );
+        assertSortedAndStable( features, stream );
+        // nine runs are written, the last five features stay in memory
+        assertEquals( 90, codec.encoded );
+        assertEquals( 90, codec.decoded );
+    }
+
+    @Test
+    public void testSortWithIntermediateMerge() {
+        // more runs than can be merged at once
+        List<Feature> features = createFeatures( 2000, 13 );
+        TestCodec codec = new TestCodec( features );
+        SortedFeatureInputStream stream = new SortedFeatureInputStream( createStream( features ), SORT_BY_KEY,
+                                                                        codec, 10 );
+        assertSortedAndStable( features, stream );
+        assertTrue( codec.encoded > 2000 );
+    }
+
+    @Test
+    public void testSortWithEqualKeys() {
+        List<Feature> features = createFeatures( 50, 1 );
+        TestCodec codec = new TestCodec( features );
+        SortedFeatureInputStream stream = new SortedFeatureInputStream( createStream( features ), SORT_BY_KEY,
+                                                                        codec, 7 );
+        int i = 0;
+        for ( Feature f : stream ) {
+            assertSame( features.get( i++ ), f );
+        }
+        stream.close();
+        assertEquals( features.size(), i );
+    }
+
+    @Test
+    public void testTemporaryFilesAreDeletedOnEarlyClose() {
+        int tmpFiles = countTemporaryFiles();
+        List<Feature> features = createFeatures( 100, 7 );
+        ClosingStream source = createStream( features );
+        SortedFeatureInputStream stream = new SortedFeatureInputStream( source, SORT_BY_KEY,
+                                                                        new TestCodec( features ), 10 );
+        Iterator<Feature> iter = stream.iterator();
+        iter.next();
+        assertTrue( source.closed );
+        assertEquals( tmpFiles + 10, countTemporaryFiles() );
+        stream.close();
+        assertEquals( tmpFiles, countTemporaryFiles() );
+    }
+
+    private static void assertSortedAndStable( List<Feature> original, SortedFeatureInputStream stream ) {
+        int count = 0;
+        int lastKey = Integer.MIN_VALUE;
+        int lastPos = -1;
+        for ( Feature f : stream ) {
+            int key = getKey( f );
+            int pos = original.indexOf( f );
+            assertTrue( key >= lastKey );
+            if ( key == lastKey ) {
+                // equal keys keep their original order
+                assertTrue( pos > lastPos );
+            }
+            lastKey = key;
+            lastPos = pos;
+            count++;
+        }
+        stream.close();
+        assertEquals( original.size(), count );
+    }
+
+    private static int countTemporaryFiles() {
+        String[] files = new File( System.getProperty( "java.io.tmpdir" ) ).list( new FilenameFilter() {
+            @Override
+            public boolean accept( File dir, String name ) {
+                return name.startsWith( "deegree-sort" );
+            }
+        } );
+        return files == null ? 0 : files.length;
+    }
+
+    private static int getKey( Feature f ) {
+        SimpleProperty prop = (SimpleProperty) f.getProperties( KEY.getName() ).get( 0 );
+        return Integer.parseInt( prop.getValue().getAsText() );
+    }
+
+    private static List<Feature> createFeatures( int num, int distinctKeys ) {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( int i = 0; i < num; i++ ) {
+            List<Property> props = new ArrayList<Property>();
+            // descending keys with repetitions
+            props.add( new SimpleProperty( KEY, "" + ( ( num - i ) % distinctKeys ) ) );
+            features.add( new GenericFeature( FT, "PARCEL_" + i, props, null ) );
+        }
+        return features;
+    }
+
+    private static ClosingStream createStream( List<Feature> features ) {
+        return new ClosingStream( features );
+    }
+
+    private static class ClosingStream extends MemoryFeatureInputStream {
+
+        private boolean closed;
+
+        private ClosingStream( List<Feature> features ) {
+            super( new GenericFeatureCollection( null, features ) );
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Encodes the feature id only, decoding returns the original instance.
+     */
+    private static class TestCodec implements FeatureCodec {
+
+        private final Map<String, Feature> idToFeature = new HashMap<String, Feature>();
+
+        private int encoded;
+
+        private int decoded;
+
+        private TestCodec( List<Feature> features ) {
+            for ( Feature f : features ) {
+                idToFeature.put( f.getId(), f );
+            }
+        }
+
+        @Override
+        public void encode( Feature feature, OutputStream os )
+                                throws IOException {
+            DataOutputStream dos = new DataOutputStream( os );
+            dos.writeUTF( feature.getId() );
+            dos.flush();
+            encoded++;
+        }
+
+        @Override
+        public Feature decode( InputStream is )
+                                throws IOException {
+            String id = new DataInputStream( is ).readUTF();
+            assertEquals( -1, is.read() );
+            decoded++;
+            return idToFeature.get( id );
+        }
+    }
+}
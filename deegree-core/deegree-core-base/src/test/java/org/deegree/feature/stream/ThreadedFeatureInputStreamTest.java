@@ -0,0 +1,204 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ThreadedFeatureInputStream}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ThreadedFeatureInputStreamTest {
+
+    @Test
+    public void testAllFeaturesInOrder() {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( int i = 0; i < 1005; i++ ) {
+            features.add( mock( Feature.class ) );
+        }
+        TestStream source = new TestStream( features );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( source, getPool(), 20, 5 );
+        int i = 0;
+        for ( Feature f : stream ) {
+            assertSame( features.get( i++ ), f );
+        }
+        stream.close();
+        assertEquals( features.size(), i );
+        assertTrue( source.closed );
+    }
+
+    @Test
+    public void testEarlyClose() {
+        TestStream source = new TestStream( Collections.nCopies( 100000, mock( Feature.class ) ) );
+        PrefetchPool pool = getPool();
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( source, pool, 10, 2 );
+        Iterator<Feature> iter = stream.iterator();
+        for ( int i = 0; i < 15; i++ ) {
+            iter.next();
+        }
+        stream.close();
+        // close() waits for the producer
+        assertTrue( source.closed );
+        assertEquals( 0, pool.getQueuedFeatures() );
+        assertFalse( iter.hasNext() );
+        // consumed features, two queued batches, one batch in production and one in hand-off
+        assertTrue( source.produced <= 15 + 4 * 10 );
+    }
+
+    @Test
+    public void testRepeatedEarlyClose() {
+        PrefetchPool pool = getPool();
+        List<Feature> features = Collections.nCopies( 1000, mock( Feature.class ) );
+        for ( int i = 0; i < 200; i++ ) {
+            TestStream source = new TestStream( features );
+            ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( source, pool, 5, 2 );
+            Iterator<Feature> iter = stream.iterator();
+            for ( int j = 0; j < i % 20; j++ ) {
+                iter.next();
+            }
+            stream.close();
+            assertTrue( source.closed );
+            assertEquals( 0, pool.getQueuedFeatures() );
+        }
+    }
+
+    @Test
+    public void testProducerExceptionIsRethrown() {
+        TestStream source = new TestStream( Collections.nCopies( 100, mock( Feature.class ) ), 35 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( source, getPool(), 10, 2 );
+        Iterator<Feature> iter = stream.iterator();
+        int consumed = 0;
+        try {
+            while ( iter.hasNext() ) {
+                iter.next();
+                consumed++;
+            }
+            fail( "Producer exception has not been rethrown." );
+        } catch ( RuntimeException e ) {
+            assertSame( TestStream.FAILURE, e.getCause() );
+        } finally {
+            stream.close();
+        }
+        // complete batches are handed over before the failure
+        assertEquals( 30, consumed );
+        assertTrue( source.closed );
+    }
+
+    private PrefetchPool getPool() {
+        return PrefetchManager.getPool( ThreadedFeatureInputStreamTest.class.getSimpleName() );
+    }
+
+    private static class TestStream implements FeatureInputStream {
+
+        private static final RuntimeException FAILURE = new IllegalStateException( "Reading failed." );
+
+        private final List<Feature> features;
+
+        private final int failAfter;
+
+        private volatile boolean closed;
+
+        private volatile int produced;
+
+        private TestStream( List<Feature> features ) {
+            this( features, -1 );
+        }
+
+        private TestStream( List<Feature> features, int failAfter ) {
+            this.features = features;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            return new Iterator<Feature>() {
+
+                @Override
+                public boolean hasNext() {
+                    return produced < features.size();
+                }
+
+                @Override
+                public Feature next() {
+                    if ( produced == failAfter ) {
+                        throw FAILURE;
+                    }
+                    return features.get( produced++ );
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            return features.size();
+        }
+    }
+
+}
@@ -45,8 +45,15 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.gml.property.Property;
@@ -64,6 +71,7 @@ import org.deegree.gml.feature.GMLFeatureReaderTest;
 import org.deegree.gml.schema.GMLAppSchemaReader;
 import org.deegree.workspace.standard.DefaultWorkspace;
 import org.jaxen.SimpleNamespaceContext;
+import org.jaxen.XPath;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -380,6 +388,58 @@ public class GMLObjectXPathTest {
         assertEquals( "POLYGON_1", ( (PrimitiveValue) result[0] ).getAsText() );
     }
 
+    @Test
+    public void testSharedXPathConcurrently()
+                            throws Exception {
+        final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        String placeName = "app:placeOfBirth/app:Place/app:name/text()";
+        final XPath xpath = TypedObjectNodeXPathEvaluator.createXPath( new ValueReference( placeName, nsContext ) );
+        final List<Feature> philosophers = new ArrayList<Feature>();
+        for ( TypedObjectNode node : evaluator.eval( fc, new ValueReference( "gml:featureMember/app:Philosopher",
+                                                                             nsContext ) ) ) {
+            philosophers.add( (Feature) node );
+        }
+        final List<String> expected = evalPlaceNames( evaluator, xpath, philosophers );
+        assertEquals( 7, expected.size() );
+        assertTrue( expected.contains( "[Mondovi]" ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for ( int i = 0; i < 16; i++ ) {
+                results.add( executor.submit( new Callable<List<String>>() {
+                    @Override
+                    public List<String> call()
+                                            throws FilterEvaluationException {
+                        List<String> names = new ArrayList<String>();
+                        for ( int j = 0; j < 100; j++ ) {
+                            names = evalPlaceNames( evaluator, xpath, philosophers );
+                            if ( !expected.equals( names ) ) {
+                                break;
+                            }
+                        }
+                        return names;
+                    }
+                } ) );
+            }
+            for ( Future<List<String>> result : results ) {
+                assertEquals( expected, result.get() );
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private List<String> evalPlaceNames( TypedObjectNodeXPathEvaluator evaluator, XPath xpath, List<Feature> features )
+                            throws FilterEvaluationException {
+        List<String> names = new ArrayList<String>();
+        for ( Feature feature : features ) {
+            TypedObjectNode[] result = evaluator.eval( feature, xpath );
+            names.add( Arrays.toString( result ) );
+        }
+        return names;
+    }
+
     // @Test
     // public void testXPath23()
     // throws FilterEvaluationException {
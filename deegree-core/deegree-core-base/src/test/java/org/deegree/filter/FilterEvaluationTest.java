@@ -50,6 +50,8 @@ import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.compiled.CompiledFilter;
+import org.deegree.filter.compiled.FilterCompiler;
 import org.deegree.filter.function.FunctionManager;
 import org.deegree.filter.xml.Filter110XMLDecoder;
 import org.deegree.filter.xml.Filter200XMLDecoder;
@@ -256,6 +258,26 @@ public class FilterEvaluationTest {
         assertResultSet( fc.getMembers( filter, new TypedObjectNodeXPathEvaluator() ), "PHILOSOPHER_1" );
     }
 
+    @Test
+    public void compiledFiltersMatchOriginalFilters()
+                            throws FilterEvaluationException, XMLStreamException, FactoryConfigurationError {
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        for ( int i = 1; i <= 28; i++ ) {
+            if ( i == 10 ) {
+                continue;
+            }
+            OperatorFilter filter = (OperatorFilter) parseFilter110( "testfilter" + i + ".xml" );
+            Filter compiled = FilterCompiler.compile( filter );
+            Assert.assertTrue( compiled instanceof CompiledFilter );
+            Assert.assertSame( filter.getOperator(), ( (OperatorFilter) compiled ).getOperator() );
+            for ( Feature feature : fc ) {
+                Assert.assertEquals( "testfilter" + i + ".xml, " + feature.getId(),
+                                     filter.getOperator().evaluate( feature, evaluator ),
+                                     compiled.evaluate( feature, evaluator ) );
+            }
+        }
+    }
+
     private void assertResultSet( FeatureCollection fc, String... expectedIds ) {
         Assert.assertEquals( expectedIds.length, fc.size() );
         Set<String> ids = new HashSet<String>();
@@ -0,0 +1,241 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.uom.Measure;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.standard.PreparedGeometry;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the evaluation of {@link SpatialOperator}s with prepared geometry literals (see {@link PreparedGeometry}).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SpatialOperatorTest {
+
+    private static final ValueReference GEOM = new ValueReference( new QName( "geom" ) );
+
+    private static final Measure DISTANCE = new Measure( "2", null );
+
+    // the context object is the geometry itself
+    private static final XPathEvaluator<Geometry> EVALUATOR = new XPathEvaluator<Geometry>() {
+        @Override
+        public TypedObjectNode[] eval( Geometry context, ValueReference valueRef ) {
+            return new TypedObjectNode[] { context };
+        }
+
+        @Override
+        public String getId( Geometry context ) {
+            return context.getId();
+        }
+    };
+
+    private ICRS wgs84;
+
+    private ICRS utm32;
+
+    private List<Geometry> literals;
+
+    private List<Geometry> params;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        wgs84 = CRSManager.lookup( "EPSG:4326" );
+        utm32 = CRSManager.lookup( "EPSG:25832" );
+        GeometryFactory fac = new GeometryFactory();
+
+        literals = new ArrayList<Geometry>();
+        literals.add( read( "POLYGON((0 0,10 0,10 10,0 10,0 0),(4 4,6 4,6 6,4 6,4 4))" ) );
+        literals.add( read( "LINESTRING(0 0,10 10)" ) );
+        literals.add( read( "POINT(5 5)" ) );
+        literals.add( read( "MULTIPOLYGON(((20 20,30 20,30 30,20 30,20 20)),((0 0,2 0,2 2,0 2,0 0)))" ) );
+        literals.add( fac.createEnvelope( 1, 1, 8, 3, wgs84 ) );
+
+        params = new ArrayList<Geometry>();
+        params.add( read( "POINT(5 5)" ) );
+        params.add( read( "POINT(1 1)" ) );
+        params.add( read( "POINT(10 5)" ) );
+        params.add( read( "POINT(50 50)" ) );
+        params.add( read( "LINESTRING(-5 5,15 5)" ) );
+        params.add( read( "LINESTRING(1 1,2 2)" ) );
+        params.add( read( "LINESTRING(10 0,10 10)" ) );
+        params.add( read( "POLYGON((0 0,10 0,10 10,0 10,0 0),(4 4,6 4,6 6,4 6,4 4))" ) );
+        params.add( read( "POLYGON((5 5,15 5,15 15,5 15,5 5))" ) );
+        params.add( read( "POLYGON((1 1,2 1,2 2,1 2,1 1))" ) );
+        params.add( read( "POLYGON((-10 -10,40 -10,40 40,-10 40,-10 -10))" ) );
+        params.add( read( "POLYGON((10 0,20 0,20 10,10 10,10 0))" ) );
+        params.add( fac.createEnvelope( 1, 1, 3, 3, wgs84 ) );
+        params.add( fac.createEnvelope( 40, 40, 50, 50, wgs84 ) );
+    }
+
+    @Test
+    public void preparedLiteralsMatchUnpreparedEvaluation()
+                            throws FilterEvaluationException {
+        for ( Geometry literal : literals ) {
+            List<SpatialOperator> ops = new ArrayList<SpatialOperator>();
+            ops.add( new Intersects( GEOM, literal ) );
+            ops.add( new Disjoint( GEOM, literal ) );
+            ops.add( new Within( GEOM, literal ) );
+            ops.add( new Contains( GEOM, literal ) );
+            ops.add( new Touches( GEOM, literal ) );
+            ops.add( new Overlaps( GEOM, literal ) );
+            ops.add( new Crosses( GEOM, literal ) );
+            ops.add( new Equals( GEOM, literal ) );
+            ops.add( new DWithin( GEOM, literal, DISTANCE ) );
+            ops.add( new Beyond( GEOM, literal, DISTANCE ) );
+            if ( literal instanceof Envelope ) {
+                ops.add( new BBOX( GEOM, (Envelope) literal ) );
+            }
+            for ( SpatialOperator op : ops ) {
+                for ( Geometry param : params ) {
+                    assertNotNull( op.getPreparedGeometry( param, literal ) );
+                    String msg = op.getSubType() + ", " + literal + ", " + param;
+                    assertEquals( msg, evaluateUnprepared( op, param, literal ), op.evaluate( param, EVALUATOR ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void preparedLiteralIsCachedPerCrs()
+                            throws Exception {
+        Geometry literal = literals.get( 0 );
+        Intersects op = new Intersects( GEOM, literal );
+
+        PreparedGeometry prepared = op.getPreparedGeometry( params.get( 0 ), literal );
+        assertSame( literal, prepared.getGeometry() );
+        assertSame( prepared, op.getPreparedGeometry( params.get( 1 ), literal ) );
+
+        Geometry utmParam = readUtm( "POINT(535000 5595000)" );
+        PreparedGeometry transformed = op.getPreparedGeometry( utmParam, literal );
+        assertNotSame( prepared, transformed );
+        assertEquals( utm32.getAlias(), transformed.getGeometry().getCoordinateSystem().getAlias() );
+        assertSame( transformed.getGeometry(), op.getCompatibleGeometry( utmParam, literal ) );
+        assertSame( transformed, op.getPreparedGeometry( readUtm( "POINT(400000 5595000)" ), literal ) );
+
+        // preparing the transformed literal does not replace the one for the original crs
+        assertSame( prepared, op.getPreparedGeometry( params.get( 0 ), literal ) );
+    }
+
+    @Test
+    public void preparedLiteralIsTransformed()
+                            throws Exception {
+        Geometry literal = read( "POLYGON((9 50,10 50,10 51,9 51,9 50))" );
+        Geometry inside = readUtm( "POINT(535000 5595000)" );
+        Geometry outside = readUtm( "POINT(400000 5595000)" );
+        Intersects intersects = new Intersects( GEOM, literal );
+        Within within = new Within( GEOM, literal );
+        Disjoint disjoint = new Disjoint( GEOM, literal );
+
+        // the transformed literal must not depend on the first evaluated geometry
+        assertFalse( intersects.evaluate( outside, EVALUATOR ) );
+        assertTrue( intersects.evaluate( inside, EVALUATOR ) );
+        assertTrue( within.evaluate( inside, EVALUATOR ) );
+        assertFalse( within.evaluate( outside, EVALUATOR ) );
+        assertTrue( disjoint.evaluate( outside, EVALUATOR ) );
+        assertFalse( disjoint.evaluate( inside, EVALUATOR ) );
+
+        // evaluation in the original crs still uses the untransformed literal
+        assertTrue( intersects.evaluate( read( "POINT(9.5 50.5)" ), EVALUATOR ) );
+        assertFalse( intersects.evaluate( read( "POINT(7.6 50.5)" ), EVALUATOR ) );
+    }
+
+    private boolean evaluateUnprepared( SpatialOperator op, Geometry param, Geometry literal ) {
+        switch ( op.getSubType() ) {
+        case INTERSECTS:
+        case BBOX:
+            return param.intersects( literal );
+        case DISJOINT:
+            return param.isDisjoint( literal );
+        case WITHIN:
+            return param.isWithin( literal );
+        case CONTAINS:
+            return param.contains( literal );
+        case TOUCHES:
+            return param.touches( literal );
+        case OVERLAPS:
+            return param.overlaps( literal );
+        case CROSSES:
+            return param.crosses( literal );
+        case EQUALS:
+            return param.equals( literal );
+        case DWITHIN:
+            return param.isWithinDistance( literal, DISTANCE );
+        case BEYOND:
+            return param.isBeyond( literal, DISTANCE );
+        default:
+            throw new IllegalArgumentException( "Unexpected operator " + op.getSubType() );
+        }
+    }
+
+    private Geometry read( String wkt )
+                            throws Exception {
+        return new WKTReader( wgs84 ).read( wkt );
+    }
+
+    private Geometry readUtm( String wkt )
+                            throws Exception {
+        return new WKTReader( utm32 ).read( wkt );
+    }
+
+}
@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.wkbadapter;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
 
 import java.io.InputStream;
@@ -48,8 +49,12 @@ import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.Geometry.GeometryType;
+import org.deegree.geometry.Geometry;
 import org.deegree.geometry.io.WKBReader;
+import org.deegree.geometry.io.WKBWriter;
+import org.deegree.geometry.io.WKTReader;
 import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
 import org.deegree.gml.GMLOutputFactory;
 import org.deegree.gml.GMLStreamWriter;
 import org.deegree.gml.GMLVersion;
@@ -91,4 +96,32 @@ public class WKBReaderTest {
         String s = "<gml:posList>5.148530 59.951879 5.134692 59.736522 5.561175 59.728897 5.577771 59.944188 5.148530 59.951879</gml:posList>";
         assertTrue( sw.toString().contains( s ) );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testWKBRoundTripMatchesJTS()
+                            throws Exception {
+        String[] wkts = new String[] { "POINT(5.1 59.9)", "LINESTRING(1 2,3 4,5 6)",
+                                      "POLYGON((0 0,10 0,10 10,0 10,0 0),(2 2,2 4,4 4,4 2,2 2))",
+                                      "MULTIPOINT(1 1,2 2)", "MULTILINESTRING((1 1,2 2),(3 3,4 4,5 5))",
+                                      "MULTIPOLYGON(((0 0,1 0,1 1,0 0)),((5 5,6 5,6 6,5 5)))",
+                                      "GEOMETRYCOLLECTION(POINT(1 1),LINESTRING(1 1,2 2))",
+                                      "LINESTRING(1 2 3,4 5 6)" };
+        com.vividsolutions.jts.io.WKTReader jtsReader = new com.vividsolutions.jts.io.WKTReader();
+        for ( String wkt : wkts ) {
+            Geometry geom = new WKTReader( null ).read( wkt );
+            com.vividsolutions.jts.geom.Geometry expected = jtsReader.read( wkt );
+            byte[] wkb = WKBWriter.write( geom );
+            com.vividsolutions.jts.geom.Geometry actual = new com.vividsolutions.jts.io.WKBReader().read( wkb );
+            assertTrue( wkt, expected.equalsExact( actual ) );
+            Geometry reread = WKBReader.read( wkb, null );
+            assertTrue( wkt, expected.equalsExact( ( (AbstractDefaultGeometry) reread ).getJTSGeometry() ) );
+        }
+
+        Geometry geom = new WKTReader( null ).read( "POLYGON((0 0,10 0,10 10,0 10,0 0))" );
+        byte[] ewkb = WKBWriter.write( geom, 4326 );
+        assertEquals( WKBWriter.write( geom ).length + 4, ewkb.length );
+        com.vividsolutions.jts.geom.Geometry expected = ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+        Geometry reread = WKBReader.read( ewkb, null );
+        assertTrue( expected.equalsExact( ( (AbstractDefaultGeometry) reread ).getJTSGeometry() ) );
+    }
+}
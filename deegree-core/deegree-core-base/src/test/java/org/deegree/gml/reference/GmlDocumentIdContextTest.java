@@ -0,0 +1,170 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.reference;
+
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.GMLReference;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.junit.Test;
+
+/**
+ * Tests for clearing the {@link GmlDocumentIdContext} while streaming a document with cross-feature references.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GmlDocumentIdContextTest {
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private static final QName FRIEND = new QName( APP_NS, "friend" );
+
+    @Test
+    public void testStreamingWithoutClearing()
+                            throws Exception {
+        GMLStreamReader gmlReader = createReader();
+        StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
+        while ( fc.read() != null ) {
+            // just read
+        }
+        assertTrue( gmlReader.getIdContext().getUnresolvedLocalRefs().isEmpty() );
+        gmlReader.getIdContext().resolveLocalRefs();
+        gmlReader.close();
+    }
+
+    @Test
+    public void testClearBindsForwardReferences()
+                            throws Exception {
+        GMLStreamReader gmlReader = createReader();
+        GmlDocumentIdContext idContext = gmlReader.getIdContext();
+        StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
+        Map<String, Feature> features = new HashMap<String, Feature>();
+        Feature feature = null;
+        while ( ( feature = fc.read() ) != null ) {
+            features.put( feature.getId(), feature );
+            idContext.clear();
+        }
+        List<GMLReference<?>> unresolved = idContext.getUnresolvedLocalRefs();
+        gmlReader.close();
+
+        // PHILOSOPHER_1 -> PHILOSOPHER_2 (forward reference to next feature)
+        FeatureReference friend = (FeatureReference) getFriend( features.get( "PHILOSOPHER_1" ), 0 );
+        assertTrue( friend.isResolved() );
+        assertSame( features.get( "PHILOSOPHER_2" ), friend.getReferencedObject() );
+
+        // references between PHILOSOPHER_5 and its inlined friends PHILOSOPHER_6 and PHILOSOPHER_7
+        Feature philosopher5 = features.get( "PHILOSOPHER_5" );
+        Feature philosopher6 = getFriend( philosopher5, 0 );
+        FeatureReference philosopher6Friend = (FeatureReference) getFriend( philosopher6, 0 );
+        assertTrue( philosopher6Friend.isResolved() );
+        assertSame( philosopher5, philosopher6Friend.getReferencedObject() );
+        Feature philosopher7 = getFriend( philosopher6, 1 );
+        assertEquals( "PHILOSOPHER_7", philosopher7.getId() );
+        FeatureReference philosopher7Friend = (FeatureReference) getFriend( philosopher7, 0 );
+        assertTrue( philosopher7Friend.isResolved() );
+        assertSame( philosopher6, philosopher7Friend.getReferencedObject() );
+
+        // backward references to features that have been read before clearing
+        Set<String> unresolvedUris = new HashSet<String>();
+        for ( GMLReference<?> ref : unresolved ) {
+            assertFalse( ref.isResolved() );
+            unresolvedUris.add( ref.getURI() );
+        }
+        assertTrue( unresolvedUris.contains( "#PHILOSOPHER_1" ) );
+        assertTrue( unresolvedUris.contains( "#PLACE_1" ) );
+        assertTrue( unresolvedUris.contains( "#COUNTRY_2" ) );
+        assertTrue( unresolvedUris.contains( "#PLACE_6" ) );
+        assertTrue( unresolvedUris.contains( "#COUNTRY_4" ) );
+        assertFalse( unresolvedUris.contains( "#PHILOSOPHER_2" ) );
+        assertFalse( unresolvedUris.contains( "#PHILOSOPHER_5" ) );
+    }
+
+    @Test
+    public void testClearKeepsUnresolvedReferences()
+                            throws Exception {
+        GMLStreamReader gmlReader = createReader();
+        GmlDocumentIdContext idContext = gmlReader.getIdContext();
+        StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
+        Feature philosopher1 = fc.read();
+        assertEquals( "PHILOSOPHER_1", philosopher1.getId() );
+
+        // PHILOSOPHER_2 has not been read yet
+        idContext.clear();
+        assertTrue( idContext.getObjects().isEmpty() );
+        FeatureReference friend = (FeatureReference) getFriend( philosopher1, 0 );
+        assertFalse( friend.isResolved() );
+        assertTrue( idContext.getReferences().contains( friend ) );
+
+        Feature philosopher2 = fc.read();
+        assertEquals( "PHILOSOPHER_2", philosopher2.getId() );
+        assertFalse( idContext.getUnresolvedLocalRefs().contains( friend ) );
+        assertSame( philosopher2, friend.getReferencedObject() );
+        gmlReader.close();
+    }
+
+    private static GMLStreamReader createReader()
+                            throws Exception {
+        URL docURL = GmlDocumentIdContextTest.class.getResource( "../misc/feature/Philosopher_FeatureCollection.xml" );
+        return GMLInputFactory.createGMLStreamReader( GML_31, docURL );
+    }
+
+    private static Feature getFriend( Feature feature, int i ) {
+        assertNotNull( feature );
+        List<Property> props = feature.getProperties( FRIEND );
+        return (Feature) props.get( i ).getValue();
+    }
+}
@@ -0,0 +1,135 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.commons.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer of primitive <code>long</code> values for collecting the results of spatial index queries.
+ * <p>
+ * A buffer is meant to be reused for many queries (e.g. one per rendering thread), so the backing array only grows to
+ * the size of the largest result and no objects are allocated per query or per hit. Instances are not thread-safe.
+ * </p>
+ * 
+ * @see PackedRTree#query(float[], LongResultBuffer)
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class LongResultBuffer implements LongIndexVisitor {
+
+    private long[] values;
+
+    private int size;
+
+    /**
+     * Creates a new {@link LongResultBuffer} with a default initial capacity.
+     */
+    public LongResultBuffer() {
+        this( 256 );
+    }
+
+    /**
+     * Creates a new {@link LongResultBuffer} with the given initial capacity.
+     * 
+     * @param capacity
+     *            initial capacity, must be positive
+     */
+    public LongResultBuffer( int capacity ) {
+        values = new long[capacity];
+    }
+
+    /**
+     * Appends the given value.
+     * 
+     * @param value
+     *            value to append
+     */
+    public void add( long value ) {
+        if ( size == values.length ) {
+            values = Arrays.copyOf( values, values.length * 2 );
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public boolean visit( long value ) {
+        add( value );
+        return true;
+    }
+
+    /**
+     * Returns the value at the given position.
+     * 
+     * @param i
+     *            position, between 0 and {@link #size()} - 1
+     * @return value at the position
+     */
+    public long get( int i ) {
+        if ( i >= size ) {
+            throw new IndexOutOfBoundsException( "Index: " + i + ", size: " + size );
+        }
+        return values[i];
+    }
+
+    /**
+     * Returns the number of values in the buffer.
+     * 
+     * @return number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values (keeps the capacity).
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the values.
+     * 
+     * @return values, never <code>null</code>
+     */
+    public long[] toArray() {
+        return Arrays.copyOf( values, size );
+    }
+}
@@ -0,0 +1,676 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.commons.index;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.utils.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only, packed R-tree with primitive <code>long</code> values that can be queried directly from a memory-mapped
+ * file.
+ * <p>
+ * The tree is built in a single pass from a list of (envelope, value) pairs (see {@link #build(List, int, boolean)}):
+ * the entries are sorted by the Hilbert value of their centers, grouped into
+ * leaf nodes of fixed size and the upper levels are built the same way until a single root node remains. All nodes are
+ * stored in two flat arrays (<code>float</code> envelopes and <code>long</code> payloads, which are the values for
+ * entries and the index of the first child for inner nodes), level by level, starting with the entries. Trees can be
+ * kept in memory (plain arrays) or written to a file (see {@link #write(File)}) that is queried in place after
+ * {@link #open(File)}, so no node objects are created and the heap usage does not depend on the size of the tree.
+ * </p>
+ * <p>
+ * Besides the {@link SpatialIndex} methods, the tree offers queries that don't allocate anything per hit (
+ * {@link #query(float[], LongIndexVisitor)}, {@link #query(float[], LongResultBuffer)}) and k-nearest-neighbour search
+ * ({@link #nearest(float, float, int, float, LongResultBuffer)}). Instances are immutable and can be queried by any
+ * number of threads concurrently.
+ * </p>
+ * <p>
+ * File layout (little endian): magic, format version, number of entries, node size, extra flag, number of levels,
+ * level bounds (int each), padding to an 8 byte boundary, payloads (long each), envelopes (4 floats each). As the file
+ * is mapped as a whole, it is limited to 2 GB (about 89 million entries).
+ * </p>
+ * 
+ * @see RTree
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedRTree extends SpatialIndex<Long> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( PackedRTree.class );
+
+    /** Default number of children per node. */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    // 'DPRT'
+    private static final int MAGIC = 0x44505254;
+
+    private static final int FORMAT_VERSION = 1;
+
+    // resolution of the Hilbert curve: 2^16 x 2^16 cells
+    private static final int HILBERT_MAX = ( 1 << 16 ) - 1;
+
+    private final int numEntries;
+
+    private final int nodeSize;
+
+    private final boolean extraFlag;
+
+    private final int[] levelBounds;
+
+    private final LongBuffer payloads;
+
+    private final FloatBuffer envelopes;
+
+    private PackedRTree( int numEntries, int nodeSize, boolean extraFlag, int[] levelBounds, LongBuffer payloads,
+                         FloatBuffer envelopes ) {
+        this.numEntries = numEntries;
+        this.nodeSize = nodeSize;
+        this.extraFlag = extraFlag;
+        this.levelBounds = levelBounds;
+        this.payloads = payloads;
+        this.envelopes = envelopes;
+    }
+
+    private static PackedRTree read( ByteBuffer buffer )
+                            throws IOException {
+        buffer.order( LITTLE_ENDIAN );
+        if ( buffer.getInt( 0 ) != MAGIC ) {
+            throw new IOException( "Not a packed r-tree file." );
+        }
+        int version = buffer.getInt( 4 );
+        if ( version != FORMAT_VERSION ) {
+            throw new IOException( "Unsupported packed r-tree format version: " + version );
+        }
+        int numEntries = buffer.getInt( 8 );
+        int nodeSize = buffer.getInt( 12 );
+        boolean extraFlag = buffer.getInt( 16 ) != 0;
+        int[] levelBounds = new int[buffer.getInt( 20 )];
+        for ( int i = 0; i < levelBounds.length; i++ ) {
+            levelBounds[i] = buffer.getInt( 24 + i * 4 );
+        }
+        int numNodes = getNumNodes( levelBounds );
+        int payloadsOffset = getPayloadsOffset( levelBounds.length );
+        int envelopesOffset = payloadsOffset + numNodes * 8;
+        if ( buffer.capacity() < envelopesOffset + numNodes * 16 ) {
+            throw new IOException( "Packed r-tree file is truncated." );
+        }
+        buffer.position( payloadsOffset );
+        LongBuffer payloads = buffer.slice().order( LITTLE_ENDIAN ).asLongBuffer();
+        buffer.position( envelopesOffset );
+        FloatBuffer envelopes = buffer.slice().order( LITTLE_ENDIAN ).asFloatBuffer();
+        return new PackedRTree( numEntries, nodeSize, extraFlag, levelBounds, payloads, envelopes );
+    }
+
+    /**
+     * Opens the given packed r-tree file (memory-mapped).
+     * 
+     * @param file
+     *            packed r-tree file, must not be <code>null</code>
+     * @return packed r-tree, never <code>null</code>
+     * @throws IOException
+     *             if the file cannot be read or is not a packed r-tree file
+     */
+    public static PackedRTree open( File file )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map( READ_ONLY, 0, channel.size() );
+            // the mapping stays valid after closing the channel
+            return read( buffer );
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens a packed r-tree from the given buffer, e.g. a file that has been memory-mapped by the caller.
+     * <p>
+     * The tree keeps using the buffer, so its contents must not be modified afterwards.
+     * </p>
+     * 
+     * @param buffer
+     *            contents of a packed r-tree file, must not be <code>null</code> (position and byte order are not
+     *            changed)
+     * @return packed r-tree, never <code>null</code>
+     * @throws IOException
+     *             if the buffer does not contain a packed r-tree
+     */
+    public static PackedRTree open( ByteBuffer buffer )
+                            throws IOException {
+        return read( buffer.duplicate() );
+    }
+
+    /**
+     * Builds a packed r-tree from the given entries and writes it to the given file.
+     * 
+     * @param file
+     *            file to write to, must not be <code>null</code>
+     * @param entries
+     *            entries (envelope as min x, min y, max x, max y plus value), must not be <code>null</code>
+     * @param nodeSize
+     *            number of children per node, must be greater than one
+     * @param extraFlag
+     *            flag to be stored with the tree (see {@link #getExtraFlag()})
+     * @throws IOException
+     */
+    public static void write( File file, List<Pair<float[], Long>> entries, int nodeSize, boolean extraFlag )
+                            throws IOException {
+        build( entries, nodeSize, extraFlag ).write( file );
+    }
+
+    /**
+     * Builds an (in-memory) packed r-tree from the given entries.
+     * 
+     * @param entries
+     *            entries (envelope as min x, min y, max x, max y plus value), must not be <code>null</code>
+     * @param nodeSize
+     *            number of children per node, must be greater than one
+     * @param extraFlag
+     *            flag to be stored with the tree (see {@link #getExtraFlag()})
+     * @return packed r-tree, never <code>null</code>
+     */
+    public static PackedRTree build( List<Pair<float[], Long>> entries, int nodeSize, boolean extraFlag ) {
+        if ( nodeSize < 2 ) {
+            throw new IllegalArgumentException( "Node size must be greater than one." );
+        }
+        long begin = System.currentTimeMillis();
+        int n = entries.size();
+
+        // level bounds (end index of each level)
+        List<Integer> bounds = new ArrayList<Integer>();
+        int numNodes = n;
+        bounds.add( numNodes );
+        int levelSize = n;
+        while ( levelSize > 1 ) {
+            levelSize = ( levelSize + nodeSize - 1 ) / nodeSize;
+            numNodes += levelSize;
+            bounds.add( numNodes );
+        }
+        if ( n == 0 ) {
+            bounds.clear();
+            numNodes = 0;
+        }
+
+        float[] boxes = new float[numNodes * 4];
+        long[] values = new long[numNodes];
+        sortEntries( entries, boxes, values );
+
+        // build the inner levels bottom-up
+        int pos = n;
+        for ( int level = 0; level < bounds.size() - 1; level++ ) {
+            int end = bounds.get( level );
+            int start = level == 0 ? 0 : bounds.get( level - 1 );
+            for ( int first = start; first < end; first += nodeSize ) {
+                float minx = Float.POSITIVE_INFINITY;
+                float miny = Float.POSITIVE_INFINITY;
+                float maxx = Float.NEGATIVE_INFINITY;
+                float maxy = Float.NEGATIVE_INFINITY;
+                for ( int i = first; i < Math.min( first + nodeSize, end ); i++ ) {
+                    minx = Math.min( minx, boxes[i * 4] );
+                    miny = Math.min( miny, boxes[i * 4 + 1] );
+                    maxx = Math.max( maxx, boxes[i * 4 + 2] );
+                    maxy = Math.max( maxy, boxes[i * 4 + 3] );
+                }
+                boxes[pos * 4] = minx;
+                boxes[pos * 4 + 1] = miny;
+                boxes[pos * 4 + 2] = maxx;
+                boxes[pos * 4 + 3] = maxy;
+                values[pos] = first;
+                pos++;
+            }
+        }
+
+        int[] levelBounds = new int[bounds.size()];
+        for ( int i = 0; i < levelBounds.length; i++ ) {
+            levelBounds[i] = bounds.get( i );
+        }
+        long elapsed = System.currentTimeMillis() - begin;
+        LOG.debug( "Building packed r-tree with {} entries took {} [ms]", n, elapsed );
+        return new PackedRTree( n, nodeSize, extraFlag, levelBounds, LongBuffer.wrap( values ),
+                                FloatBuffer.wrap( boxes ) );
+    }
+
+    /**
+     * Writes this tree to the given file (which can be opened using {@link #open(File)} afterwards).
+     * 
+     * @param file
+     *            file to write to, must not be <code>null</code>
+     * @throws IOException
+     */
+    public void write( File file )
+                            throws IOException {
+        int numNodes = getNumNodes( levelBounds );
+        int payloadsOffset = getPayloadsOffset( levelBounds.length );
+        ByteBuffer buffer = ByteBuffer.allocate( payloadsOffset + numNodes * 24 ).order( LITTLE_ENDIAN );
+        buffer.putInt( MAGIC );
+        buffer.putInt( FORMAT_VERSION );
+        buffer.putInt( numEntries );
+        buffer.putInt( nodeSize );
+        buffer.putInt( extraFlag ? 1 : 0 );
+        buffer.putInt( levelBounds.length );
+        for ( int bound : levelBounds ) {
+            buffer.putInt( bound );
+        }
+        LongBuffer payloadsCopy = payloads.duplicate();
+        payloadsCopy.rewind();
+        buffer.position( payloadsOffset );
+        buffer.asLongBuffer().put( payloadsCopy );
+        FloatBuffer envelopesCopy = envelopes.duplicate();
+        envelopesCopy.rewind();
+        buffer.position( payloadsOffset + numNodes * 8 );
+        buffer.asFloatBuffer().put( envelopesCopy );
+        buffer.rewind();
+
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try {
+            raf.setLength( 0 );
+            FileChannel channel = raf.getChannel();
+            while ( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Converts an r-tree file that has been written by {@link RTree#writeTreeToDisk(String)} to a packed r-tree file.
+     * <p>
+     * The r-tree file is read sequentially, without creating the tree nodes.
+     * </p>
+     * 
+     * @param rtreeFile
+     *            r-tree file, must not be <code>null</code>
+     * @param packedFile
+     *            packed r-tree file to write, must not be <code>null</code>
+     * @param nodeSize
+     *            number of children per node, must be greater than one
+     * @throws IOException
+     */
+    public static void convert( File rtreeFile, File packedFile, int nodeSize )
+                            throws IOException {
+        List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( rtreeFile ) ) );
+        try {
+            // root envelope and number of children per node
+            readEnvelope( in );
+            in.readInt();
+            readRTreeNode( in, entries );
+        } finally {
+            in.close();
+        }
+        // RTree does not persist its extra flag
+        write( packedFile, entries, nodeSize, false );
+    }
+
+    private static void readRTreeNode( DataInputStream in, List<Pair<float[], Long>> entries )
+                            throws IOException {
+        int n = in.readInt();
+        for ( int i = 0; i < n; i++ ) {
+            float[] env = readEnvelope( in );
+            long value = in.readLong();
+            if ( value == Long.MIN_VALUE ) {
+                readRTreeNode( in, entries );
+            } else {
+                entries.add( new Pair<float[], Long>( env, value ) );
+            }
+        }
+    }
+
+    private static float[] readEnvelope( DataInputStream in )
+                            throws IOException {
+        return new float[] { in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat() };
+    }
+
+    private static int getNumNodes( int[] levelBounds ) {
+        return levelBounds.length == 0 ? 0 : levelBounds[levelBounds.length - 1];
+    }
+
+    private static int getPayloadsOffset( int numLevels ) {
+        int headerSize = 24 + numLevels * 4;
+        return ( headerSize + 7 ) & ~7;
+    }
+
+    private static void sortEntries( List<Pair<float[], Long>> entries, float[] boxes, long[] values ) {
+        int n = entries.size();
+        float minx = Float.POSITIVE_INFINITY;
+        float miny = Float.POSITIVE_INFINITY;
+        float maxx = Float.NEGATIVE_INFINITY;
+        float maxy = Float.NEGATIVE_INFINITY;
+        for ( Pair<float[], Long> entry : entries ) {
+            minx = Math.min( minx, entry.first[0] );
+            miny = Math.min( miny, entry.first[1] );
+            maxx = Math.max( maxx, entry.first[2] );
+            maxy = Math.max( maxy, entry.first[3] );
+        }
+        double width = maxx - minx;
+        double height = maxy - miny;
+
+        // sort keys: Hilbert value (upper 32 bits) plus index of the entry (lower 31 bits)
+        long[] keys = new long[n];
+        for ( int i = 0; i < n; i++ ) {
+            float[] env = entries.get( i ).first;
+            int x = width > 0 ? (int) ( HILBERT_MAX * ( ( env[0] + env[2] ) / 2 - minx ) / width ) : 0;
+            int y = height > 0 ? (int) ( HILBERT_MAX * ( ( env[1] + env[3] ) / 2 - miny ) / height ) : 0;
+            keys[i] = ( hilbert( x, y ) << 31 ) | i;
+        }
+        Arrays.sort( keys );
+        for ( int i = 0; i < n; i++ ) {
+            Pair<float[], Long> entry = entries.get( (int) ( keys[i] & Integer.MAX_VALUE ) );
+            System.arraycopy( entry.first, 0, boxes, i * 4, 4 );
+            values[i] = entry.second;
+        }
+    }
+
+    /**
+     * Returns the position of the given cell on the Hilbert curve.
+     * 
+     * @param x
+     *            column, between 0 and {@link #HILBERT_MAX}
+     * @param y
+     *            row, between 0 and {@link #HILBERT_MAX}
+     * @return position on the curve (unsigned, between 0 and 2^32 - 1)
+     */
+    static long hilbert( int x, int y ) {
+        long d = 0;
+        for ( int s = ( HILBERT_MAX + 1 ) / 2; s > 0; s /= 2 ) {
+            int rx = ( x & s ) > 0 ? 1 : 0;
+            int ry = ( y & s ) > 0 ? 1 : 0;
+            d += (long) s * s * ( ( 3 * rx ) ^ ry );
+            // rotate quadrant
+            if ( ry == 0 ) {
+                if ( rx == 1 ) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Returns the flag that has been stored with the tree.
+     * 
+     * @return extra flag (used for hacking around buggy shp files, see {@link RTree#getExtraFlag()})
+     */
+    public boolean getExtraFlag() {
+        return extraFlag;
+    }
+
+    /**
+     * Returns the number of entries in the tree.
+     * 
+     * @return number of entries
+     */
+    public int size() {
+        return numEntries;
+    }
+
+    @Override
+    public List<Long> query( float[] env ) {
+        final List<Long> result = new ArrayList<Long>();
+        query( env, new LongIndexVisitor() {
+            @Override
+            public boolean visit( long value ) {
+                result.add( value );
+                return true;
+            }
+        } );
+        return result;
+    }
+
+    /**
+     * Passes the values of all entries that intersect the given envelope to the given visitor.
+     * 
+     * @param env
+     *            query envelope (min x, min y, max x, max y), must not be <code>null</code>
+     * @param visitor
+     *            to be called for every intersecting entry, must not be <code>null</code>
+     * @return false, if the visitor stopped the query, true otherwise
+     */
+    public boolean query( float[] env, LongIndexVisitor visitor ) {
+        if ( levelBounds.length == 0 ) {
+            return true;
+        }
+        int root = levelBounds.length - 1;
+        return query( env, levelBounds[root] - 1, root, visitor );
+    }
+
+    /**
+     * Collects the values of all entries that intersect the given envelope.
+     * 
+     * @param env
+     *            query envelope (min x, min y, max x, max y), must not be <code>null</code>
+     * @param result
+     *            buffer to store the values in (previous contents are discarded), must not be <code>null</code>
+     * @return number of values
+     */
+    public int query( float[] env, LongResultBuffer result ) {
+        result.clear();
+        query( env, (LongIndexVisitor) result );
+        return result.size();
+    }
+
+    private boolean query( float[] env, int first, int level, LongIndexVisitor visitor ) {
+        int end = Math.min( first + nodeSize, levelBounds[level] );
+        for ( int pos = first; pos < end; pos++ ) {
+            if ( !intersects( env, pos ) ) {
+                continue;
+            }
+            long payload = payloads.get( pos );
+            if ( level == 0 ) {
+                if ( !visitor.visit( payload ) ) {
+                    return false;
+                }
+            } else if ( !query( env, (int) payload, level - 1, visitor ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the values of the entries that are nearest to the given point, ordered by increasing distance.
+     * <p>
+     * The distance of an entry is the distance between the point and its envelope (zero if the point lies inside the
+     * envelope), so the result is exact for point entries and a candidate list for others (e.g. for hit-testing, where
+     * the actual geometries are checked afterwards).
+     * </p>
+     * 
+     * @param x
+     *            x coordinate of the point
+     * @param y
+     *            y coordinate of the point
+     * @param k
+     *            maximum number of values to return, must be positive
+     * @param maxDistance
+     *            maximum distance of the entries, use {@link Float#POSITIVE_INFINITY} for no limit
+     * @param result
+     *            buffer to store the values in (previous contents are discarded), must not be <code>null</code>
+     * @return number of values
+     */
+    public int nearest( float x, float y, int k, float maxDistance, LongResultBuffer result ) {
+        result.clear();
+        if ( levelBounds.length == 0 || k <= 0 ) {
+            return 0;
+        }
+        double maxDistanceSq = (double) maxDistance * maxDistance;
+        int root = levelBounds.length - 1;
+        NodeQueue queue = new NodeQueue();
+        queue.add( distanceSq( x, y, levelBounds[root] - 1 ), levelBounds[root] - 1, root );
+        while ( queue.size > 0 && result.size() < k ) {
+            int pos = queue.positions[0];
+            int level = queue.levels[0];
+            queue.removeFirst();
+            long payload = payloads.get( pos );
+            if ( level == 0 ) {
+                result.add( payload );
+                continue;
+            }
+            int first = (int) payload;
+            int end = Math.min( first + nodeSize, levelBounds[level - 1] );
+            for ( int child = first; child < end; child++ ) {
+                double dist = distanceSq( x, y, child );
+                if ( dist <= maxDistanceSq ) {
+                    queue.add( dist, child, level - 1 );
+                }
+            }
+        }
+        return result.size();
+    }
+
+    private double distanceSq( float x, float y, int pos ) {
+        int offset = pos * 4;
+        double dx = Math.max( 0, Math.max( envelopes.get( offset ) - x, x - envelopes.get( offset + 2 ) ) );
+        double dy = Math.max( 0, Math.max( envelopes.get( offset + 1 ) - y, y - envelopes.get( offset + 3 ) ) );
+        return dx * dx + dy * dy;
+    }
+
+    private boolean intersects( float[] env, int pos ) {
+        int offset = pos * 4;
+        return env[0] <= envelopes.get( offset + 2 ) && env[2] >= envelopes.get( offset )
+               && env[1] <= envelopes.get( offset + 3 ) && env[3] >= envelopes.get( offset + 1 );
+    }
+
+    @Override
+    public void insertBulk( List<Pair<float[], Long>> listOfObjects ) {
+        throw new UnsupportedOperationException( "Packed r-trees are read-only." );
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException( "Packed r-trees are read-only." );
+    }
+
+    @Override
+    public boolean insert( float[] envelope, Long object ) {
+        throw new UnsupportedOperationException( "Packed r-trees are read-only." );
+    }
+
+    @Override
+    public boolean remove( Long object ) {
+        throw new UnsupportedOperationException( "Packed r-trees are read-only." );
+    }
+
+    /**
+     * Binary min-heap of tree positions (plus their levels) ordered by distance, used for nearest neighbour search.
+     */
+    private static class NodeQueue {
+
+        private double[] distances = new double[64];
+
+        private int[] positions = new int[64];
+
+        private int[] levels = new int[64];
+
+        private int size;
+
+        private void add( double distance, int position, int level ) {
+            if ( size == distances.length ) {
+                distances = Arrays.copyOf( distances, size * 2 );
+                positions = Arrays.copyOf( positions, size * 2 );
+                levels = Arrays.copyOf( levels, size * 2 );
+            }
+            int i = size++;
+            while ( i > 0 ) {
+                int parent = ( i - 1 ) / 2;
+                if ( distances[parent] <= distance ) {
+                    break;
+                }
+                set( i, parent );
+                i = parent;
+            }
+            distances[i] = distance;
+            positions[i] = position;
+            levels[i] = level;
+        }
+
+        private void removeFirst() {
+            size--;
+            double distance = distances[size];
+            int i = 0;
+            while ( true ) {
+                int child = 2 * i + 1;
+                if ( child >= size ) {
+                    break;
+                }
+                if ( child + 1 < size && distances[child + 1] < distances[child] ) {
+                    child++;
+                }
+                if ( distance <= distances[child] ) {
+                    break;
+                }
+                set( i, child );
+                i = child;
+            }
+            distances[i] = distance;
+            positions[i] = positions[size];
+            levels[i] = levels[size];
+        }
+
+        private void set( int i, int j ) {
+            distances[i] = distances[j];
+            positions[i] = positions[j];
+            levels[i] = levels[j];
+        }
+    }
+}
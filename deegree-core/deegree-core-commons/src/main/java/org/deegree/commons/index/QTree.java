@@ -668,6 +668,46 @@ public class QTree<T> extends SpatialIndex<T> implements Serializable {
         }
     }
 
+    /**
+     * Calls the given visitor for the objects intersecting the given envelope, without collecting them first. In
+     * contrast to {@link #query(float[], IndexVisitor)}, an object that is stored in more than one node may be visited
+     * more than once, so this is meant for lookups that stop at the first match.
+     * 
+     * @param envelope
+     *            to get the objects for
+     * @param visitor
+     *            to be called for the intersecting objects, must not be <code>null</code>
+     * @return false, if the visitor stopped the traversal, true otherwise
+     */
+    protected final boolean visitIntersecting( float[] envelope, IndexVisitor<T> visitor ) {
+        if ( !intersects( this.envelope, envelope, maxOffset ) ) {
+            return true;
+        }
+        if ( hasCoveringObjects() ) {
+            for ( Entry<T> e : objectsCoveringEnv ) {
+                if ( !visitor.visit( e.entryValue ) ) {
+                    return false;
+                }
+            }
+        }
+        if ( isLeaf() ) {
+            if ( leafObjects != null ) {
+                for ( Entry<T> e : leafObjects ) {
+                    if ( intersects( envelope, e.entryEnv, maxOffset ) && !visitor.visit( e.entryValue ) ) {
+                        return false;
+                    }
+                }
+            }
+        } else {
+            for ( QTree<T> n : children ) {
+                if ( n != null && !n.visitIntersecting( envelope, visitor ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * @return true if this node has objects fitting the total region of space.
      */
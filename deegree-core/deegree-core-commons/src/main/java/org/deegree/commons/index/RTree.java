@@ -236,6 +236,29 @@ public class RTree<T> extends SpatialIndex<T> {
         return list;
     }
 
+    @Override
+    public boolean query( float[] env, IndexVisitor<T> visitor ) {
+        if ( root != null && intersects( env, this.rootbbox, 2 ) ) {
+            return query( env, root, visitor );
+        }
+        return true;
+    }
+
+    private boolean query( float[] bbox, NodeEntry<T>[] node, IndexVisitor<T> visitor ) {
+        for ( NodeEntry<T> e : node ) {
+            if ( e != null && intersects( bbox, e.bbox, 2 ) ) {
+                if ( e.next == null ) {
+                    if ( !visitor.visit( e.entryValue ) ) {
+                        return false;
+                    }
+                } else if ( !query( bbox, e.next, visitor ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * @param env
      * @return a list of objects intersecting the given boundingbox.
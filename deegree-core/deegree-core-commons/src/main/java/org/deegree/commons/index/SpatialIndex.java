@@ -65,6 +65,29 @@ public abstract class SpatialIndex<T> {
      */
     public abstract Collection<T> query( float[] envelope );
 
+    /**
+     * Query the spatial index with the given envelope and pass all objects which intersect with the given boundingbox
+     * to the given visitor.
+     * <p>
+     * This default implementation collects the objects using {@link #query(float[])}, implementations should override
+     * it to avoid the creation of the result collection.
+     * </p>
+     * 
+     * @param envelope
+     *            to intersect
+     * @param visitor
+     *            to be called for every intersecting object, must not be <code>null</code>
+     * @return false, if the visitor stopped the query, true otherwise
+     */
+    public boolean query( float[] envelope, IndexVisitor<T> visitor ) {
+        for ( T object : query( envelope ) ) {
+            if ( !visitor.visit( object ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Create the spatial index from the given list of envelope, objects tuples.
      * 
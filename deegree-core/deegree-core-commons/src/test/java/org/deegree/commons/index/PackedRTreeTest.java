@@ -0,0 +1,180 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.deegree.commons.utils.Pair;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackedRTree}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedRTreeTest {
+
+    private List<Pair<float[], Long>> createEntries( int n ) {
+        Random random = new Random( 42 );
+        List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+        for ( int i = 0; i < n; i++ ) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            float[] env = new float[] { x, y, x + random.nextFloat() * 10, y + random.nextFloat() * 10 };
+            entries.add( new Pair<float[], Long>( env, (long) i * 100 ) );
+        }
+        return entries;
+    }
+
+    private Set<Long> bruteForce( List<Pair<float[], Long>> entries, float[] env ) {
+        Set<Long> result = new HashSet<Long>();
+        for ( Pair<float[], Long> entry : entries ) {
+            float[] b = entry.first;
+            if ( env[0] <= b[2] && env[2] >= b[0] && env[1] <= b[3] && env[3] >= b[1] ) {
+                result.add( entry.second );
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testQuery()
+                            throws IOException {
+        List<Pair<float[], Long>> entries = createEntries( 10000 );
+        File file = File.createTempFile( "packed", ".rtx" );
+        file.deleteOnExit();
+        PackedRTree.write( file, entries, PackedRTree.DEFAULT_NODE_SIZE, true );
+
+        PackedRTree tree = PackedRTree.open( file );
+        assertEquals( 10000, tree.size() );
+        assertTrue( tree.getExtraFlag() );
+        Random random = new Random( 4711 );
+        for ( int i = 0; i < 100; i++ ) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            float[] env = new float[] { x, y, x + 50, y + 50 };
+            List<Long> result = tree.query( env );
+            assertEquals( bruteForce( entries, env ), new HashSet<Long>( result ) );
+            assertEquals( new HashSet<Long>( result ).size(), result.size() );
+        }
+    }
+
+    @Test
+    public void testQueryEmpty()
+                            throws IOException {
+        File file = File.createTempFile( "packed", ".rtx" );
+        file.deleteOnExit();
+        PackedRTree.write( file, new ArrayList<Pair<float[], Long>>(), PackedRTree.DEFAULT_NODE_SIZE, false );
+        assertTrue( PackedRTree.open( file ).query( new float[] { 0, 0, 1, 1 } ).isEmpty() );
+    }
+
+    @Test
+    public void testConvert()
+                            throws IOException {
+        List<Pair<float[], Long>> entries = createEntries( 500 );
+        RTree<Long> rtree = new RTree<Long>( new float[] { 0, 0, 1010, 1010 }, 16 );
+        rtree.insertBulk( entries );
+        File rtiFile = File.createTempFile( "rtree", ".rti" );
+        rtiFile.deleteOnExit();
+        rtree.writeTreeToDisk( rtiFile.getPath() );
+
+        File packedFile = File.createTempFile( "packed", ".rtx" );
+        packedFile.deleteOnExit();
+        PackedRTree.convert( rtiFile, packedFile, PackedRTree.DEFAULT_NODE_SIZE );
+        PackedRTree tree = PackedRTree.open( packedFile );
+        assertEquals( 500, tree.size() );
+        float[] env = new float[] { 100, 100, 400, 300 };
+        assertEquals( new HashSet<Long>( rtree.query( env ) ), new HashSet<Long>( tree.query( env ) ) );
+    }
+
+    @Test
+    public void testQueryBuffer() {
+        List<Pair<float[], Long>> entries = createEntries( 2000 );
+        PackedRTree tree = PackedRTree.build( entries, PackedRTree.DEFAULT_NODE_SIZE, false );
+        LongResultBuffer buffer = new LongResultBuffer( 4 );
+        float[] env = new float[] { 200, 200, 500, 400 };
+        int size = tree.query( env, buffer );
+        Set<Long> result = new HashSet<Long>();
+        for ( int i = 0; i < size; i++ ) {
+            result.add( buffer.get( i ) );
+        }
+        assertEquals( bruteForce( entries, env ), result );
+        assertEquals( size, result.size() );
+    }
+
+    @Test
+    public void testNearest() {
+        List<Pair<float[], Long>> entries = createEntries( 2000 );
+        PackedRTree tree = PackedRTree.build( entries, PackedRTree.DEFAULT_NODE_SIZE, false );
+        final float x = 333;
+        final float y = 666;
+        List<Pair<float[], Long>> sorted = new ArrayList<Pair<float[], Long>>( entries );
+        Collections.sort( sorted, new Comparator<Pair<float[], Long>>() {
+            @Override
+            public int compare( Pair<float[], Long> o1, Pair<float[], Long> o2 ) {
+                return Double.compare( distance( o1.first, x, y ), distance( o2.first, x, y ) );
+            }
+        } );
+
+        LongResultBuffer buffer = new LongResultBuffer();
+        assertEquals( 10, tree.nearest( x, y, 10, Float.POSITIVE_INFINITY, buffer ) );
+        for ( int i = 0; i < 10; i++ ) {
+            float[] env = entries.get( (int) ( buffer.get( i ) / 100 ) ).first;
+            assertEquals( distance( sorted.get( i ).first, x, y ), distance( env, x, y ), 1E-6 );
+        }
+        assertEquals( 0, tree.nearest( -100, -100, 10, 10, buffer ) );
+    }
+
+    private double distance( float[] env, float x, float y ) {
+        double dx = Math.max( 0, Math.max( env[0] - x, x - env[2] ) );
+        double dy = Math.max( 0, Math.max( env[1] - y, y - env[3] ) );
+        return Math.sqrt( dx * dx + dy * dy );
+    }
+}
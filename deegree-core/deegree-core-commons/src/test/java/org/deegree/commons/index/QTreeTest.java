@@ -0,0 +1,109 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the traversal of a {@link QTree} using {@link QTree#visitIntersecting(float[], IndexVisitor)}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class QTreeTest {
+
+    private final QTree<Integer> tree = new QTree<Integer>( new float[] { 0, 0, 100, 100 }, 4 );
+
+    @Before
+    public void fillTree() {
+        // 10x10 grid of boxes with a size of 5
+        for ( int i = 0; i < 100; i++ ) {
+            float x = ( i % 10 ) * 10;
+            float y = ( i / 10 ) * 10;
+            assertTrue( tree.insert( new float[] { x, y, x + 5, y + 5 }, i ) );
+        }
+    }
+
+    @Test
+    public void testVisitMatchesQuery() {
+        float[] env = new float[] { 12, 12, 48, 28 };
+        final Set<Integer> visited = new HashSet<Integer>();
+        assertTrue( tree.visitIntersecting( env, new IndexVisitor<Integer>() {
+            @Override
+            public boolean visit( Integer object ) {
+                visited.add( object );
+                return true;
+            }
+        } ) );
+        assertEquals( new HashSet<Integer>( tree.query( env ) ), visited );
+        assertEquals( 8, visited.size() );
+    }
+
+    @Test
+    public void testVisitStops() {
+        final List<Integer> visited = new ArrayList<Integer>();
+        assertFalse( tree.visitIntersecting( new float[] { 0, 0, 100, 100 }, new IndexVisitor<Integer>() {
+            @Override
+            public boolean visit( Integer object ) {
+                visited.add( object );
+                return false;
+            }
+        } ) );
+        assertEquals( 1, visited.size() );
+    }
+
+    @Test
+    public void testVisitOutsideOfTree() {
+        assertTrue( tree.visitIntersecting( new float[] { 200, 200, 300, 300 }, new IndexVisitor<Integer>() {
+            @Override
+            public boolean visit( Integer object ) {
+                throw new AssertionError( "No object intersects." );
+            }
+        } ) );
+    }
+}
@@ -36,6 +36,7 @@
 package org.deegree.geometry;
 
 import static org.deegree.commons.utils.StringUtils.isSet;
+import static org.deegree.geometry.utils.GeometryUtils.copyCoordinates;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.ArrayList;
@@ -110,6 +111,8 @@ import org.deegree.geometry.primitive.segments.LineStringSegment;
 import org.deegree.geometry.primitive.segments.OffsetCurve;
 import org.deegree.geometry.primitive.segments.CurveSegment.CurveSegmentType;
 import org.deegree.geometry.standard.curvesegments.AffinePlacement;
+import org.deegree.geometry.standard.points.JTSPoints;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.slf4j.Logger;
 
@@ -815,6 +818,37 @@ public class GeometryTransformer extends Transformer {
      */
     private Points transform( Points points, Transformation trans )
                             throws TransformationException {
+        int dim = points.getDimension();
+        if ( !( points instanceof PackedPoints || points instanceof JTSPoints ) || dim < 2 || dim > 3 ) {
+            // points may have ids or mixed dimensions
+            return transformPointByPoint( points, trans );
+        }
+
+        // transform all coordinates with a single call, result is packed again
+        double[] coords = new double[points.size() * dim];
+        copyCoordinates( points, coords );
+        List<Point3d> coordList = new ArrayList<Point3d>( points.size() );
+        for ( int i = 0; i < coords.length; i += dim ) {
+            coordList.add( new Point3d( coords[i], coords[i + 1], dim == 3 ? coords[i + 2] : Double.NaN ) );
+        }
+        List<Point3d> result = trans.doTransform( coordList );
+
+        // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
+        boolean passZ = trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2;
+        int i = 0;
+        for ( Point3d coord : result ) {
+            coords[i] = coord.x;
+            coords[i + 1] = coord.y;
+            if ( dim == 3 && !passZ ) {
+                coords[i + 2] = coord.z;
+            }
+            i += dim;
+        }
+        return geomFactory.createPoints( getTargetCRS(), coords, dim );
+    }
+
+    private Points transformPointByPoint( Points points, Transformation trans )
+                            throws TransformationException {
 
         List<Point> result = new ArrayList<Point>( points.size() );
         for ( Point point : points ) {
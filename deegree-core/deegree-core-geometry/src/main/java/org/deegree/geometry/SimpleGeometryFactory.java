@@ -58,6 +58,7 @@ import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
 import org.deegree.geometry.standard.multi.DefaultMultiLineString;
 import org.deegree.geometry.standard.multi.DefaultMultiPoint;
 import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.deegree.geometry.standard.primitive.DefaultLineString;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
@@ -168,13 +169,62 @@ public class SimpleGeometryFactory {
 
     /**
      * Creates a {@link Points} object from the given list of {@link Point} instances.
+     * <p>
+     * If the points are anonymous (no id, no properties), share the same CRS and coordinate dimension, the coordinates
+     * are copied into a packed coordinate array, otherwise the point objects are kept.
+     * </p>
      * 
      * @param points
      *            list of points, must not be <code>null</code>
      * @return created {@link Points}
      */
     public Points createPoints( List<Point> points ) {
-        return inspect( new PointsList( points ) );
+        if ( !isPackable( points ) ) {
+            return inspect( new PointsList( points ) );
+        }
+        int dim = points.get( 0 ).getCoordinateDimension();
+        double[] coordinates = new double[points.size() * dim];
+        int i = 0;
+        for ( Point point : points ) {
+            for ( int d = 0; d < dim; d++ ) {
+                coordinates[i++] = point.get( d );
+            }
+        }
+        return inspect( new PackedPoints( points.get( 0 ).getCoordinateSystem(), coordinates, dim ) );
+    }
+
+    /**
+     * Creates a {@link Points} object from the given coordinate array.
+     * 
+     * @param crs
+     *            coordinate reference system, may be null
+     * @param coordinates
+     *            coordinates of the points, point by point, must not be <code>null</code>
+     * @param dimension
+     *            coordinate dimension, i.e. number of coordinate values per point
+     * @return created {@link Points}
+     */
+    public Points createPoints( ICRS crs, double[] coordinates, int dimension ) {
+        return inspect( new PackedPoints( crs, coordinates, dimension ) );
+    }
+
+    private boolean isPackable( List<Point> points ) {
+        if ( points.isEmpty() ) {
+            return false;
+        }
+        Point first = points.get( 0 );
+        ICRS crs = first.getCoordinateSystem();
+        int dim = first.getCoordinateDimension();
+        if ( dim < 2 ) {
+            return false;
+        }
+        for ( Point point : points ) {
+            if ( point.getId() != null || !point.getProperties().isEmpty() || point.getCoordinateSystem() != crs
+                 || point.getCoordinateDimension() != dim ) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
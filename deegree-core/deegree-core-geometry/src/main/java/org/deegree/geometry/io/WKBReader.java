@@ -35,21 +35,48 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.geometry.Geometry;
-import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPoint;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
 
-import com.vividsolutions.jts.io.InputStreamInStream;
 import com.vividsolutions.jts.io.ParseException;
 
 /**
  * Reads {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Decodes the binary representation directly into deegree geometries (with {@link PackedPoints} for the control
+ * points), i.e. without building an intermediate JTS geometry. Besides OGC WKB, the ISO variants (type codes 1000,
+ * 2000 and 3000 for Z, M and ZM) and PostGIS EWKB (type flags for Z, M and SRID) are understood. M values are skipped,
+ * an embedded SRID is ignored (the geometries are created in the given CRS). Empty geometries are returned as
+ * <code>null</code>, empty members of collections are dropped.
+ * </p>
+ * <p>
+ * Unlike {@link WKBWriter}, the reader does not fall back to JTS: encodings of other geometry types (e.g. circular
+ * strings or curve polygons) are rejected with a {@link ParseException}.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,20 +85,251 @@ import com.vividsolutions.jts.io.ParseException;
  */
 public class WKBReader {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    static final int WKB_POINT = 1;
 
+    static final int WKB_LINESTRING = 2;
+
+    static final int WKB_POLYGON = 3;
+
+    static final int WKB_MULTIPOINT = 4;
+
+    static final int WKB_MULTILINESTRING = 5;
+
+    static final int WKB_MULTIPOLYGON = 6;
+
+    static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    static final int EWKB_Z_FLAG = 0x80000000;
+
+    static final int EWKB_M_FLAG = 0x40000000;
+
+    static final int EWKB_SRID_FLAG = 0x20000000;
+
+    private static final int MAX_NESTING = 64;
+
+    /**
+     * Decodes the given WKB (or EWKB) encoded geometry.
+     * 
+     * @param wkb
+     *            encoded geometry, must not be <code>null</code>
+     * @param crs
+     *            CRS of the geometry, can be <code>null</code>
+     * @return decoded geometry, or <code>null</code> if the encoded geometry is empty
+     * @throws ParseException
+     *             if the encoding is invalid or uses an unsupported geometry type
+     */
     public static Geometry read( byte[] wkb, ICRS crs )
                             throws ParseException {
-        // com.vividsolutions.jts.io.WKBReader() is not thread safe        
-        return defaultGeom.createFromJTS( new com.vividsolutions.jts.io.WKBReader().read( wkb ), crs );
+        return read( ByteBuffer.wrap( wkb ), crs );
+    }
+
+    /**
+     * Decodes a WKB (or EWKB) encoded geometry from the given buffer, starting at its current position.
+     * <p>
+     * After successful decoding, the position of the buffer is located behind the geometry. The byte order of the
+     * buffer is modified.
+     * </p>
+     * 
+     * @param buffer
+     *            buffer that contains the encoded geometry, must not be <code>null</code>
+     * @param crs
+     *            CRS of the geometry, can be <code>null</code>
+     * @return decoded geometry, or <code>null</code> if the encoded geometry is empty
+     * @throws ParseException
+     *             if the encoding is invalid or uses an unsupported geometry type
+     */
+    public static Geometry read( ByteBuffer buffer, ICRS crs )
+                            throws ParseException {
+        try {
+            return readGeometry( buffer, crs, 0 );
+        } catch ( BufferUnderflowException e ) {
+            throw new ParseException( "Unexpected end of WKB data." );
+        }
     }
 
+    /**
+     * Decodes a WKB encoded geometry from the given stream.
+     * <p>
+     * The stream is read completely (but not closed) and decoded like {@link #read(byte[], ICRS)}, i.e. OGC WKB, the
+     * ISO type codes for Z, M and ZM and PostGIS EWKB are accepted. M values are skipped and an embedded EWKB SRID is
+     * ignored in favour of the given CRS.
+     * </p>
+     * 
+     * @param is
+     *            stream that provides the encoded geometry, must not be <code>null</code>
+     * @param crs
+     *            CRS of the geometry, can be <code>null</code>
+     * @return decoded geometry, or <code>null</code> if the encoded geometry is empty
+     * @throws IOException
+     *             if reading from the stream fails
+     * @throws ParseException
+     *             if the encoding is invalid or uses an unsupported geometry type
+     */
     public static Geometry read( InputStream is, ICRS crs )
                             throws IOException, ParseException {
-        // com.vividsolutions.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS(
-                                          new com.vividsolutions.jts.io.WKBReader().read( new InputStreamInStream( is ) ),
-                                          crs );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read = 0;
+        while ( ( read = is.read( buf ) ) != -1 ) {
+            bos.write( buf, 0, read );
+        }
+        return read( bos.toByteArray(), crs );
+    }
+
+    private static Geometry readGeometry( ByteBuffer buffer, ICRS crs, int depth )
+                            throws ParseException {
+        if ( depth > MAX_NESTING ) {
+            throw new ParseException( "WKB geometry collections are nested too deeply." );
+        }
+        byte byteOrder = buffer.get();
+        if ( byteOrder == 0 ) {
+            buffer.order( ByteOrder.BIG_ENDIAN );
+        } else if ( byteOrder == 1 ) {
+            buffer.order( ByteOrder.LITTLE_ENDIAN );
+        } else {
+            throw new ParseException( "Invalid WKB byte order marker: " + byteOrder );
+        }
+
+        int typeValue = buffer.getInt();
+        boolean hasZ = ( typeValue & EWKB_Z_FLAG ) != 0;
+        boolean hasM = ( typeValue & EWKB_M_FLAG ) != 0;
+        if ( ( typeValue & EWKB_SRID_FLAG ) != 0 ) {
+            // SRID, geometries are created in the given CRS
+            buffer.getInt();
+        }
+        int type = typeValue & 0x0fffffff;
+        if ( type > 1000 ) {
+            int isoDim = type / 1000;
+            hasZ |= isoDim == 1 || isoDim == 3;
+            hasM |= isoDim == 2 || isoDim == 3;
+            type = type % 1000;
+        }
+        int dim = hasZ ? 3 : 2;
+        int skip = hasM ? 1 : 0;
+
+        switch ( type ) {
+        case WKB_POINT: {
+            double[] coords = readCoordinates( buffer, 1, dim, skip );
+            if ( Double.isNaN( coords[0] ) && Double.isNaN( coords[1] ) ) {
+                // empty point
+                return null;
+            }
+            return new DefaultPoint( null, crs, null, coords );
+        }
+        case WKB_LINESTRING: {
+            int numPoints = readCount( buffer, 8 * ( dim + skip ) );
+            if ( numPoints == 0 ) {
+                return null;
+            }
+            double[] coords = readCoordinates( buffer, numPoints, dim, skip );
+            return new DefaultLineString( null, crs, null, new PackedPoints( crs, coords, dim ) );
+        }
+        case WKB_POLYGON: {
+            return readPolygon( buffer, crs, dim, skip );
+        }
+        case WKB_MULTIPOINT: {
+            int numMembers = readCount( buffer, 9 );
+            List<Point> members = new ArrayList<Point>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                Geometry member = readGeometry( buffer, crs, depth + 1 );
+                if ( member != null ) {
+                    members.add( checkMember( member, Point.class ) );
+                }
+            }
+            return members.isEmpty() ? null : new DefaultMultiPoint( null, crs, null, members );
+        }
+        case WKB_MULTILINESTRING: {
+            int numMembers = readCount( buffer, 9 );
+            List<LineString> members = new ArrayList<LineString>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                Geometry member = readGeometry( buffer, crs, depth + 1 );
+                if ( member != null ) {
+                    members.add( checkMember( member, LineString.class ) );
+                }
+            }
+            return members.isEmpty() ? null : new DefaultMultiLineString( null, crs, null, members );
+        }
+        case WKB_MULTIPOLYGON: {
+            int numMembers = readCount( buffer, 9 );
+            List<Polygon> members = new ArrayList<Polygon>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                Geometry member = readGeometry( buffer, crs, depth + 1 );
+                if ( member != null ) {
+                    members.add( checkMember( member, Polygon.class ) );
+                }
+            }
+            return members.isEmpty() ? null : new DefaultMultiPolygon( null, crs, null, members );
+        }
+        case WKB_GEOMETRYCOLLECTION: {
+            int numMembers = readCount( buffer, 9 );
+            List<Geometry> members = new ArrayList<Geometry>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                Geometry member = readGeometry( buffer, crs, depth + 1 );
+                if ( member != null ) {
+                    members.add( member );
+                }
+            }
+            return members.isEmpty() ? null : new DefaultMultiGeometry<Geometry>( null, crs, null, members );
+        }
+        default:
+            throw new ParseException( "Unsupported WKB geometry type: " + typeValue );
+        }
+    }
+
+    private static Polygon readPolygon( ByteBuffer buffer, ICRS crs, int dim, int skip )
+                            throws ParseException {
+        int numRings = readCount( buffer, 4 );
+        if ( numRings == 0 ) {
+            return null;
+        }
+        Ring exteriorRing = readRing( buffer, crs, dim, skip );
+        List<Ring> interiorRings = new ArrayList<Ring>( numRings - 1 );
+        for ( int i = 1; i < numRings; i++ ) {
+            interiorRings.add( readRing( buffer, crs, dim, skip ) );
+        }
+        return new DefaultPolygon( null, crs, null, exteriorRing, interiorRings );
+    }
+
+    private static Ring readRing( ByteBuffer buffer, ICRS crs, int dim, int skip )
+                            throws ParseException {
+        int numPoints = readCount( buffer, 8 * ( dim + skip ) );
+        double[] coords = readCoordinates( buffer, numPoints, dim, skip );
+        return new DefaultLinearRing( null, crs, null, new PackedPoints( crs, coords, dim ) );
+    }
+
+    private static double[] readCoordinates( ByteBuffer buffer, int numPoints, int dim, int skip ) {
+        double[] coords = new double[numPoints * dim];
+        int idx = 0;
+        for ( int i = 0; i < numPoints; i++ ) {
+            for ( int d = 0; d < dim; d++ ) {
+                coords[idx++] = buffer.getDouble();
+            }
+            for ( int s = 0; s < skip; s++ ) {
+                buffer.getDouble();
+            }
+        }
+        return coords;
+    }
+
+    /**
+     * Reads an element count and checks it against the remaining bytes, so corrupt data cannot trigger huge
+     * allocations.
+     */
+    private static int readCount( ByteBuffer buffer, int minBytesPerElement )
+                            throws ParseException {
+        int count = buffer.getInt();
+        if ( count < 0 || (long) count * minBytesPerElement > buffer.remaining() ) {
+            throw new ParseException( "Invalid WKB element count: " + count );
+        }
+        return count;
+    }
+
+    private static <T> T checkMember( Geometry member, Class<T> memberClass )
+                            throws ParseException {
+        if ( !memberClass.isInstance( member ) ) {
+            throw new ParseException( "Invalid WKB member geometry type: expected " + memberClass.getSimpleName()
+                                      + ", but found " + member.getClass().getSimpleName() );
+        }
+        return memberClass.cast( member );
     }
-}
\ No newline at end of file
+}
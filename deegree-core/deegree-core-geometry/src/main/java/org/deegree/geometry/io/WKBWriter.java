@@ -35,21 +35,49 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import static org.deegree.geometry.io.WKBReader.EWKB_SRID_FLAG;
+import static org.deegree.geometry.io.WKBReader.WKB_GEOMETRYCOLLECTION;
+import static org.deegree.geometry.io.WKBReader.WKB_LINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTILINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOINT;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOLYGON;
+import static org.deegree.geometry.io.WKBReader.WKB_POINT;
+import static org.deegree.geometry.io.WKBReader.WKB_POLYGON;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
 
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiCurve;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.multi.MultiSurface;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
 import org.deegree.geometry.refs.GeometryReference;
 import org.deegree.geometry.standard.AbstractDefaultGeometry;
-import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.points.PackedPoints;
 
-import com.vividsolutions.jts.io.OutputStreamOutStream;
 import com.vividsolutions.jts.io.ParseException;
 
 /**
  * Writes {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Points, line strings, polygons with linear rings, their multi variants and collections of these are encoded
+ * directly from the control points, without building an intermediate JTS geometry. All other geometries are encoded
+ * using their JTS representation. The output is two-dimensional and big endian (XDR), like the output of the JTS
+ * writer.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,22 +86,206 @@ import com.vividsolutions.jts.io.ParseException;
  */
 public class WKBWriter {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    // byte order (1 byte) + type (4 bytes)
+    private static final int HEADER_SIZE = 5;
+
+    private static final int SRID_SIZE = 4;
+
+    private static final int COUNT_SIZE = 4;
+
+    private static final int POINT_SIZE = 16;
 
     public static byte[] write( Geometry geom )
                             throws ParseException {
-        if ( geom instanceof GeometryReference ) {
-            geom = ( (GeometryReference<Geometry>) geom ).getReferencedObject();
+        return write( geom, 0 );
+    }
+
+    /**
+     * Returns the EWKB (PostGIS extended WKB) encoding of the given geometry, i.e. the WKB encoding plus the spatial
+     * reference identifier.
+     * 
+     * @param geom
+     *            geometry to be encoded, must not be <code>null</code>
+     * @param srid
+     *            spatial reference identifier, if it is not positive, plain WKB is written
+     * @return EWKB encoding, never <code>null</code>
+     * @throws ParseException
+     *             if the geometry cannot be encoded
+     */
+    public static byte[] write( Geometry geom, int srid )
+                            throws ParseException {
+        geom = dereference( geom );
+        int size = getSize( geom );
+        if ( size < 0 ) {
+            return writeJTS( geom, srid );
         }
-        // com.vividsolutions.jts.io.WKBWriter is not thread safe
-        return new com.vividsolutions.jts.io.WKBWriter().write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
+        if ( srid > 0 ) {
+            size += SRID_SIZE;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate( size ).order( ByteOrder.BIG_ENDIAN );
+        writeGeometry( geom, srid, buffer );
+        return buffer.array();
     }
 
     public static void write( Geometry geom, OutputStream os )
                             throws IOException, ParseException {
+        os.write( write( geom ) );
+    }
+
+    private static Geometry dereference( Geometry geom ) {
+        if ( geom instanceof GeometryReference ) {
+            return ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        return geom;
+    }
+
+    /**
+     * Returns the number of bytes of the (plain) WKB encoding of the given geometry.
+     * 
+     * @return number of bytes, or -1 if the geometry cannot be encoded directly
+     */
+    private static int getSize( Geometry geom ) {
+        if ( geom instanceof Point ) {
+            return HEADER_SIZE + POINT_SIZE;
+        }
+        if ( geom instanceof LineString || geom instanceof LinearRing ) {
+            Points points = ( (Curve) geom ).getControlPoints();
+            return HEADER_SIZE + COUNT_SIZE + points.size() * POINT_SIZE;
+        }
+        if ( geom instanceof Polygon ) {
+            Polygon polygon = (Polygon) geom;
+            int size = getSize( polygon.getExteriorRing() );
+            if ( size < 0 ) {
+                return -1;
+            }
+            size += HEADER_SIZE + COUNT_SIZE;
+            List<Ring> interiorRings = polygon.getInteriorRings();
+            if ( interiorRings != null ) {
+                for ( Ring ring : interiorRings ) {
+                    int ringSize = getSize( ring );
+                    if ( ringSize < 0 ) {
+                        return -1;
+                    }
+                    size += ringSize;
+                }
+            }
+            return size;
+        }
+        if ( geom instanceof MultiGeometry ) {
+            int size = HEADER_SIZE + COUNT_SIZE;
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                int memberSize = getSize( dereference( member ) );
+                if ( memberSize < 0 ) {
+                    return -1;
+                }
+                size += memberSize;
+            }
+            return size;
+        }
+        return -1;
+    }
+
+    private static int getSize( Ring ring ) {
+        Ring r = (Ring) dereference( ring );
+        if ( !( r instanceof LinearRing ) ) {
+            return -1;
+        }
+        // rings are encoded without header
+        return COUNT_SIZE + ( (LinearRing) r ).getControlPoints().size() * POINT_SIZE;
+    }
+
+    private static void writeGeometry( Geometry geom, int srid, ByteBuffer buffer ) {
+        buffer.put( (byte) 0 );
+        int type = getType( geom );
+        if ( srid > 0 ) {
+            buffer.putInt( type | EWKB_SRID_FLAG );
+            buffer.putInt( srid );
+        } else {
+            buffer.putInt( type );
+        }
+        switch ( type ) {
+        case WKB_POINT:
+            Point point = (Point) geom;
+            buffer.putDouble( point.get0() );
+            buffer.putDouble( point.get1() );
+            break;
+        case WKB_LINESTRING:
+            writePoints( ( (Curve) geom ).getControlPoints(), buffer );
+            break;
+        case WKB_POLYGON:
+            Polygon polygon = (Polygon) geom;
+            List<Ring> interiorRings = polygon.getInteriorRings();
+            buffer.putInt( 1 + ( interiorRings == null ? 0 : interiorRings.size() ) );
+            writePoints( ( (LinearRing) dereference( polygon.getExteriorRing() ) ).getControlPoints(), buffer );
+            if ( interiorRings != null ) {
+                for ( Ring ring : interiorRings ) {
+                    writePoints( ( (LinearRing) dereference( ring ) ).getControlPoints(), buffer );
+                }
+            }
+            break;
+        default:
+            MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+            buffer.putInt( multi.size() );
+            for ( Geometry member : multi ) {
+                writeGeometry( dereference( member ), 0, buffer );
+            }
+        }
+    }
+
+    private static int getType( Geometry geom ) {
+        if ( geom instanceof Point ) {
+            return WKB_POINT;
+        }
+        if ( geom instanceof LineString || geom instanceof LinearRing ) {
+            return WKB_LINESTRING;
+        }
+        if ( geom instanceof Polygon ) {
+            return WKB_POLYGON;
+        }
+        if ( geom instanceof MultiPoint ) {
+            return WKB_MULTIPOINT;
+        }
+        if ( geom instanceof MultiCurve ) {
+            return WKB_MULTILINESTRING;
+        }
+        if ( geom instanceof MultiSurface ) {
+            return WKB_MULTIPOLYGON;
+        }
+        return WKB_GEOMETRYCOLLECTION;
+    }
+
+    private static void writePoints( Points points, ByteBuffer buffer ) {
+        buffer.putInt( points.size() );
+        if ( points instanceof PackedPoints ) {
+            double[] coords = points.getAsArray();
+            int dim = points.getDimension();
+            for ( int i = 0; i < coords.length; i += dim ) {
+                buffer.putDouble( coords[i] );
+                buffer.putDouble( coords[i + 1] );
+            }
+            return;
+        }
+        for ( Point point : points ) {
+            buffer.putDouble( point.get0() );
+            buffer.putDouble( point.get1() );
+        }
+    }
+
+    private static byte[] writeJTS( Geometry geom, int srid ) {
         // com.vividsolutions.jts.io.WKBWriter is not thread safe
-        new com.vividsolutions.jts.io.WKBWriter().write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry(),
-                                                         new OutputStreamOutStream( os ) );
+        com.vividsolutions.jts.io.WKBWriter writer = new com.vividsolutions.jts.io.WKBWriter();
+        byte[] wkb = writer.write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
+        if ( srid <= 0 ) {
+            return wkb;
+        }
+        // byte order (1 byte), type (4 bytes), SRID (4 bytes), rest of the WKB
+        ByteOrder order = wkb[0] == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        int typeValue = ByteBuffer.wrap( wkb ).order( order ).getInt( 1 ) | EWKB_SRID_FLAG;
+        ByteBuffer ewkb = ByteBuffer.allocate( wkb.length + SRID_SIZE ).order( order );
+        ewkb.put( wkb[0] );
+        ewkb.putInt( typeValue );
+        ewkb.putInt( srid );
+        ewkb.put( wkb, HEADER_SIZE, wkb.length - HEADER_SIZE );
+        return ewkb.array();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,222 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard;
+
+import org.deegree.geometry.Geometry;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * A {@link Geometry} that is prepared for being tested against many other geometries, e.g. the literal of a spatial
+ * filter operator.
+ * <p>
+ * The JTS representation of the geometry is prepared (indexed) once, and every predicate first checks the envelopes,
+ * so geometries that are far away from the prepared one are rejected without computing the exact predicate. All
+ * predicates are evaluated with the prepared geometry as first argument (e.g. {@link #contains(Geometry)} is true if
+ * the prepared geometry contains the given one). Instances are thread-safe.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PreparedGeometry {
+
+    private final Geometry geometry;
+
+    private final com.vividsolutions.jts.geom.Geometry jtsGeometry;
+
+    private final com.vividsolutions.jts.geom.prep.PreparedGeometry prepared;
+
+    private final Envelope envelope;
+
+    private final boolean isEnvelope;
+
+    /**
+     * Creates a new {@link PreparedGeometry} instance.
+     * 
+     * @param geometry
+     *            geometry to be prepared, must not be <code>null</code>
+     * @throws IllegalArgumentException
+     *             if the geometry has no JTS representation
+     */
+    public PreparedGeometry( Geometry geometry ) throws IllegalArgumentException {
+        this.geometry = geometry;
+        try {
+            jtsGeometry = AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry();
+        } catch ( RuntimeException e ) {
+            throw new IllegalArgumentException( "Cannot prepare geometry: " + e.getMessage(), e );
+        }
+        prepared = PreparedGeometryFactory.prepare( jtsGeometry );
+        envelope = jtsGeometry.getEnvelopeInternal();
+        isEnvelope = geometry instanceof org.deegree.geometry.Envelope;
+    }
+
+    /**
+     * Returns the prepared geometry.
+     * 
+     * @return the prepared geometry, never <code>null</code>
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns whether the prepared geometry intersects the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean intersects( Geometry geometry ) {
+        Envelope otherEnvelope = getEnvelope( geometry );
+        if ( !envelope.intersects( otherEnvelope ) ) {
+            return false;
+        }
+        if ( isEnvelope && geometry instanceof org.deegree.geometry.Envelope ) {
+            return true;
+        }
+        return prepared.intersects( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the prepared geometry is disjoint from the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean isDisjoint( Geometry geometry ) {
+        return !intersects( geometry );
+    }
+
+    /**
+     * Returns whether the prepared geometry contains the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean contains( Geometry geometry ) {
+        return envelope.covers( getEnvelope( geometry ) ) && prepared.contains( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the prepared geometry is within the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean isWithin( Geometry geometry ) {
+        return getEnvelope( geometry ).covers( envelope ) && prepared.within( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the prepared geometry overlaps the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean overlaps( Geometry geometry ) {
+        return envelope.intersects( getEnvelope( geometry ) ) && prepared.overlaps( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the prepared geometry touches the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean touches( Geometry geometry ) {
+        return envelope.intersects( getEnvelope( geometry ) ) && prepared.touches( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the prepared geometry crosses the given one.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return true, if the predicate holds
+     */
+    public boolean crosses( Geometry geometry ) {
+        return envelope.intersects( getEnvelope( geometry ) ) && prepared.crosses( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the prepared geometry is topologically equal to the given one.
+     * 
+     * @param geometry
+     *            geometry to compare with, must not be <code>null</code>
+     * @return true, if the geometries are topologically equal
+     */
+    public boolean isEqual( Geometry geometry ) {
+        return envelope.equals( getEnvelope( geometry ) ) && jtsGeometry.equals( getJTSGeometry( geometry ) );
+    }
+
+    /**
+     * Returns whether the distance between the prepared geometry and the given one is less than or equal to the given
+     * distance.
+     * 
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @param distance
+     *            distance (in units of the coordinate system)
+     * @return true, if the geometry is within the given distance
+     */
+    public boolean isWithinDistance( Geometry geometry, double distance ) {
+        return envelope.distance( getEnvelope( geometry ) ) <= distance
+               && jtsGeometry.isWithinDistance( getJTSGeometry( geometry ), distance );
+    }
+
+    private static Envelope getEnvelope( Geometry geometry ) {
+        // the envelope is usually known already (e.g. from the spatial index), so the JTS geometry is only built for
+        // geometries that pass the envelope test
+        org.deegree.geometry.Envelope env = geometry.getEnvelope();
+        if ( env == null ) {
+            return getJTSGeometry( geometry ).getEnvelopeInternal();
+        }
+        return new Envelope( env.getMin().get0(), env.getMax().get0(), env.getMin().get1(), env.getMax().get1() );
+    }
+
+    private static com.vividsolutions.jts.geom.Geometry getJTSGeometry( Geometry geometry ) {
+        return AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry();
+    }
+}
@@ -138,6 +138,27 @@ public class JTSPoints implements Points {
         };
     }
 
+    /**
+     * Copies the coordinates into the given array without creating {@link Point} objects.
+     * 
+     * @param dst
+     *            array to copy the coordinates into, must have room for at least <code>size() * getDimension()</code>
+     *            values
+     * @return number of copied values, i.e. <code>size() * getDimension()</code>
+     * @see org.deegree.geometry.utils.GeometryUtils#copyCoordinates(Points, double[])
+     */
+    public int getCoordinates( double[] dst ) {
+        int dim = getDimension();
+        int numPoints = seq.size();
+        int i = 0;
+        for ( int j = 0; j < numPoints; j++ ) {
+            for ( int d = 0; d < dim; d++ ) {
+                dst[i++] = seq.getOrdinate( j, d );
+            }
+        }
+        return i;
+    }
+
     @Override
     public double[] getAsArray() {
         double[] coords = new double[getDimension() * size()];
@@ -36,6 +36,8 @@
 
 package org.deegree.geometry.standard.points;
 
+import static org.deegree.geometry.utils.GeometryUtils.copyCoordinates;
+
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -81,16 +83,8 @@ public class PointsSubsequence implements Points {
 
     @Override
     public double[] getAsArray() {
-        double[] coords = new double[getDimension() * ( size() - startIdx )];
-        int i = 0;
-        int j = 0;
-        for ( Point p : this ) {
-            if ( i++ >= startIdx ) {
-                for ( double coord : p.getAsArray() ) {
-                    coords[j++] = coord;
-                }
-            }
-        }
+        double[] coords = new double[getDimension() * size()];
+        copyCoordinates( this, coords );
         return coords;
     }
 
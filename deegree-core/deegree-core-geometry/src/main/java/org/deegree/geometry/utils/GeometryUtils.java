@@ -67,6 +67,8 @@ import org.deegree.geometry.primitive.Ring;
 import org.deegree.geometry.primitive.Surface;
 import org.deegree.geometry.primitive.patches.PolygonPatch;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
+import org.deegree.geometry.standard.points.JTSPoints;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsArray;
 import org.deegree.geometry.standard.points.PointsList;
 
@@ -370,4 +372,41 @@ public class GeometryUtils {
         throw new IllegalArgumentException( "The envelope must be 2 or 3 dimensional." );
     }
 
+    /**
+     * Copies the coordinates of the given {@link Points} into an array, {@link Points#getDimension()} values per point.
+     * <p>
+     * In contrast to {@link Points#getAsArray()}, this allows to reuse a buffer. Packed and JTS based points are copied
+     * in bulk, other implementations are copied point by point.
+     * </p>
+     * 
+     * @param points
+     *            points to copy the coordinates from, must not be <code>null</code>
+     * @param dst
+     *            array to copy the coordinates into, must have room for at least
+     *            <code>points.size() * points.getDimension()</code> values
+     * @return number of copied values, i.e. <code>points.size() * points.getDimension()</code>
+     */
+    public static int copyCoordinates( Points points, double[] dst ) {
+        if ( points instanceof PackedPoints ) {
+            return ( (PackedPoints) points ).getCoordinates( dst );
+        }
+        if ( points instanceof JTSPoints ) {
+            return ( (JTSPoints) points ).getCoordinates( dst );
+        }
+        int dim = points.getDimension();
+        int i = 0;
+        for ( Point p : points ) {
+            dst[i++] = p.get0();
+            if ( dim > 1 ) {
+                dst[i++] = p.get1();
+            }
+            if ( dim > 2 ) {
+                dst[i++] = p.get2();
+            }
+            for ( int d = 3; d < dim; d++ ) {
+                dst[i++] = p.get( d );
+            }
+        }
+        return i;
+    }
 }
@@ -0,0 +1,158 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry;
+
+import static org.deegree.cs.persistence.CRSManager.lookup;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.segments.LineStringSegment;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.points.PointsList;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the bulk transformation of packed {@link Points} by the {@link GeometryTransformer} yields the same
+ * coordinates as the transformation point by point.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeometryTransformerTest {
+
+    private static final double DELTA = 1E-6;
+
+    private final GeometryFactory geomFactory = new GeometryFactory();
+
+    private ICRS sourceCrs;
+
+    private GeometryTransformer transformer;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        sourceCrs = lookup( "EPSG:4326" );
+        transformer = new GeometryTransformer( lookup( "EPSG:25832" ) );
+    }
+
+    @Test
+    public void testPackedLineStringMatchesPointByPoint()
+                            throws Exception {
+        double[] coords = new double[] { 7.0, 50.0, 7.5, 50.5, 8.0, 51.0, 9.25, 52.75 };
+
+        Points bulk = transform( createPackedLine( coords, 2 ) );
+        Points single = transform( createIdentifiedLine( coords, 2 ) );
+
+        assertTrue( bulk instanceof PackedPoints );
+        assertFalse( single instanceof PackedPoints );
+        assertSameCoordinates( single, bulk );
+        // the source coordinates are not modified
+        assertEquals( 7.0, coords[0], 0.0 );
+    }
+
+    @Test
+    public void testPackedLineStringPassesZ()
+                            throws Exception {
+        double[] coords = new double[] { 7.0, 50.0, 100.0, 7.5, 50.5, 200.0, 8.0, 51.0, 300.0 };
+
+        Points bulk = transform( createPackedLine( coords, 3 ) );
+        Points single = transform( createIdentifiedLine( coords, 3 ) );
+
+        assertEquals( 3, bulk.getDimension() );
+        assertSameCoordinates( single, bulk );
+        for ( int i = 0; i < bulk.size(); i++ ) {
+            assertEquals( coords[i * 3 + 2], bulk.get( i ).get2(), 0.0 );
+        }
+    }
+
+    @Test
+    public void testPackedLineStringHasTargetCrs()
+                            throws Exception {
+        LineString line = createPackedLine( new double[] { 7.0, 50.0, 8.0, 51.0 }, 2 );
+        LineString transformed = transformer.transform( line );
+        ICRS targetCrs = transformer.getTargetCRS();
+        assertEquals( targetCrs, transformed.getCoordinateSystem() );
+        assertEquals( targetCrs, getControlPoints( transformed ).get( 0 ).getCoordinateSystem() );
+    }
+
+    private Points transform( LineString line )
+                            throws Exception {
+        return getControlPoints( transformer.transform( line ) );
+    }
+
+    private LineString createPackedLine( double[] coords, int dim ) {
+        Points points = geomFactory.createPoints( sourceCrs, coords.clone(), dim );
+        return geomFactory.createLineString( null, sourceCrs, points );
+    }
+
+    /**
+     * Identified points are not packed, so the transformer falls back to transforming every point on its own.
+     */
+    private LineString createIdentifiedLine( double[] coords, int dim ) {
+        List<Point> points = new ArrayList<Point>();
+        for ( int i = 0; i < coords.length; i += dim ) {
+            double[] pointCoords = new double[dim];
+            System.arraycopy( coords, i, pointCoords, 0, dim );
+            points.add( geomFactory.createPoint( "p" + i, pointCoords, sourceCrs ) );
+        }
+        return geomFactory.createLineString( null, sourceCrs, new PointsList( points ) );
+    }
+
+    private static Points getControlPoints( LineString line ) {
+        return ( (LineStringSegment) line.getCurveSegments().get( 0 ) ).getControlPoints();
+    }
+
+    private static void assertSameCoordinates( Points expected, Points actual ) {
+        assertEquals( expected.size(), actual.size() );
+        assertEquals( expected.getDimension(), actual.getDimension() );
+        double[] expectedCoords = expected.getAsArray();
+        double[] actualCoords = actual.getAsArray();
+        for ( int i = 0; i < expectedCoords.length; i++ ) {
+            assertEquals( expectedCoords[i], actualCoords[i], DELTA );
+        }
+    }
+}
@@ -0,0 +1,248 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry;
+
+import static org.deegree.geometry.utils.GeometryUtils.copyCoordinates;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.points.PointsList;
+import org.junit.Test;
+
+/**
+ * Tests the creation of {@link Points} by the {@link SimpleGeometryFactory}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SimpleGeometryFactoryTest {
+
+    private static final ICRS CRS = CRSManager.getCRSRef( "EPSG:4326" );
+
+    private final GeometryFactory geomFactory = new GeometryFactory();
+
+    @Test
+    public void testCreatePointsPacksAnonymousPoints() {
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFactory.createPoint( null, 1.0, 2.0, CRS ) );
+        points.add( geomFactory.createPoint( null, 3.0, 4.0, CRS ) );
+        points.add( geomFactory.createPoint( null, 5.0, 6.0, CRS ) );
+
+        Points packed = geomFactory.createPoints( points );
+        assertTrue( packed instanceof PackedPoints );
+        assertEquals( 3, packed.size() );
+        assertEquals( 2, packed.getDimension() );
+        assertSame( CRS, packed.get( 0 ).getCoordinateSystem() );
+        assertArrayEquals( new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0 }, packed.getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testCreatePointsPacks3DPoints() {
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFactory.createPoint( null, 1.0, 2.0, 3.0, CRS ) );
+        points.add( geomFactory.createPoint( null, 4.0, 5.0, 6.0, CRS ) );
+
+        Points packed = geomFactory.createPoints( points );
+        assertTrue( packed instanceof PackedPoints );
+        assertEquals( 3, packed.getDimension() );
+        assertArrayEquals( new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0 }, packed.getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testCreatePointsKeepsPointWithId() {
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFactory.createPoint( null, 1.0, 2.0, CRS ) );
+        Point identified = geomFactory.createPoint( "p2", 3.0, 4.0, CRS );
+        points.add( identified );
+
+        Points result = geomFactory.createPoints( points );
+        assertFalse( result instanceof PackedPoints );
+        assertSame( identified, result.get( 1 ) );
+        assertEquals( "p2", result.get( 1 ).getId() );
+    }
+
+    @Test
+    public void testCreatePointsKeepsPointWithProperties() {
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFactory.createPoint( null, 1.0, 2.0, CRS ) );
+        Point withProps = geomFactory.createPoint( null, 3.0, 4.0, CRS );
+        withProps.setProperties( Collections.<Property> singletonList( new StubProperty() ) );
+        points.add( withProps );
+
+        Points result = geomFactory.createPoints( points );
+        assertFalse( result instanceof PackedPoints );
+        assertSame( withProps, result.get( 1 ) );
+        assertEquals( 1, result.get( 1 ).getProperties().size() );
+    }
+
+    @Test
+    public void testCreatePointsKeepsMixedCrs() {
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFactory.createPoint( null, 1.0, 2.0, CRS ) );
+        points.add( geomFactory.createPoint( null, 3.0, 4.0, CRSManager.getCRSRef( "EPSG:31466" ) ) );
+
+        assertFalse( geomFactory.createPoints( points ) instanceof PackedPoints );
+    }
+
+    @Test
+    public void testCreatePointsKeepsMixedDimensions() {
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFactory.createPoint( null, 1.0, 2.0, CRS ) );
+        points.add( geomFactory.createPoint( null, 3.0, 4.0, 5.0, CRS ) );
+
+        assertFalse( geomFactory.createPoints( points ) instanceof PackedPoints );
+    }
+
+    @Test
+    public void testCreatePointsFromEmptyList() {
+        Points result = geomFactory.createPoints( new ArrayList<Point>() );
+        assertEquals( 0, result.size() );
+    }
+
+    @Test
+    public void testCreatePointsFromArray() {
+        double[] coords = new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0 };
+        Points points = geomFactory.createPoints( CRS, coords, 3 );
+        assertTrue( points instanceof PackedPoints );
+        assertEquals( 2, points.size() );
+        assertEquals( 3, points.getDimension() );
+        assertSame( CRS, points.getStartPoint().getCoordinateSystem() );
+        assertArrayEquals( new double[] { 4.0, 5.0, 6.0 }, points.getEndPoint().getAsArray(), 0.0 );
+    }
+
+    /**
+     * Packing and unpacking must not change the coordinates, and the packed copy must not be affected by the
+     * iteration of its source.
+     */
+    @Test
+    public void testRoundTrip() {
+        double[] coords = new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0 };
+        Points packed = geomFactory.createPoints( CRS, coords.clone(), 2 );
+
+        // the iterator of packed points reuses one point instance, so it has to be copied before collecting
+        List<Point> copies = new ArrayList<Point>();
+        for ( Point p : packed ) {
+            copies.add( geomFactory.createPoint( null, p.get0(), p.get1(), p.getCoordinateSystem() ) );
+        }
+        Points repacked = geomFactory.createPoints( copies );
+        assertTrue( repacked instanceof PackedPoints );
+        assertArrayEquals( coords, repacked.getAsArray(), 0.0 );
+
+        Points unpacked = new PointsList( copies );
+        double[] dst = new double[coords.length];
+        copyCoordinates( unpacked, dst );
+        assertArrayEquals( coords, dst, 0.0 );
+    }
+
+    @Test
+    public void testCollectingIteratedPackedPointsAliases() {
+        Points packed = geomFactory.createPoints( CRS, new double[] { 1.0, 2.0, 3.0, 4.0 }, 2 );
+        List<Point> collected = new ArrayList<Point>();
+        for ( Point p : packed ) {
+            collected.add( p );
+        }
+        // all entries refer to the last visited position
+        assertSame( collected.get( 0 ), collected.get( 1 ) );
+        assertEquals( 3.0, collected.get( 0 ).get0(), 0.0 );
+    }
+
+    private static class StubProperty implements Property {
+
+        private static final QName NAME = new QName( "http://www.deegree.org/test", "stub" );
+
+        @Override
+        public QName getName() {
+            return NAME;
+        }
+
+        @Override
+        public PropertyType getType() {
+            return null;
+        }
+
+        @Override
+        public TypedObjectNode getValue() {
+            return null;
+        }
+
+        @Override
+        public void setValue( TypedObjectNode value ) {
+            // nothing to do
+        }
+
+        @Override
+        public void setChildren( List<TypedObjectNode> children ) {
+            // nothing to do
+        }
+
+        @Override
+        public Map<QName, PrimitiveValue> getAttributes() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public List<TypedObjectNode> getChildren() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public XSElementDeclaration getXSType() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard.points;
+
+import static org.deegree.geometry.utils.GeometryUtils.copyCoordinates;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.impl.CoordinateArraySequence;
+
+/**
+ * Tests the bulk coordinate access and the iteration of the {@link Points} implementations.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PointsTest {
+
+    private static final double[] COORDS_2D = new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0 };
+
+    private static final double[] COORDS_3D = new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0 };
+
+    @Test
+    public void testPackedPointsGetCoordinates() {
+        assertCoordinates( COORDS_2D, 2, new PackedPoints( null, COORDS_2D.clone(), 2 ) );
+        assertCoordinates( COORDS_3D, 3, new PackedPoints( null, COORDS_3D.clone(), 3 ) );
+    }
+
+    @Test
+    public void testJTSPointsGetCoordinates() {
+        assertCoordinates( COORDS_2D, 2, createJTSPoints( COORDS_2D, 2 ) );
+        assertCoordinates( COORDS_3D, 3, createJTSPoints( COORDS_3D, 3 ) );
+    }
+
+    @Test
+    public void testPointsListGetCoordinates() {
+        assertCoordinates( COORDS_2D, 2, new PointsList( createPoints( COORDS_2D, 2 ) ) );
+        assertCoordinates( COORDS_3D, 3, new PointsList( createPoints( COORDS_3D, 3 ) ) );
+    }
+
+    @Test
+    public void testPointsArrayGetCoordinates() {
+        List<Point> points = createPoints( COORDS_2D, 2 );
+        assertCoordinates( COORDS_2D, 2, new PointsArray( points.toArray( new Point[points.size()] ) ) );
+    }
+
+    @Test
+    public void testPointsSubsequenceGetCoordinates() {
+        double[] expected = new double[] { 5.0, 6.0, 7.0, 8.0 };
+        assertCoordinates( expected, 2, new PointsSubsequence( new PackedPoints( null, COORDS_2D.clone(), 2 ), 2 ) );
+        assertCoordinates( expected, 2, new PointsSubsequence( createJTSPoints( COORDS_2D, 2 ), 2 ) );
+        assertCoordinates( expected, 2, new PointsSubsequence( new PointsList( createPoints( COORDS_2D, 2 ) ), 2 ) );
+    }
+
+    @Test
+    public void testPointsSubsequenceGetAsArray() {
+        Points points = new PointsSubsequence( new PackedPoints( null, COORDS_3D.clone(), 3 ), 1 );
+        assertEquals( 2, points.size() );
+        assertArrayEquals( new double[] { 4.0, 5.0, 6.0, 7.0, 8.0, 9.0 }, points.getAsArray(), 0.0 );
+
+        Points empty = new PointsSubsequence( new PackedPoints( null, COORDS_3D.clone(), 3 ), 3 );
+        assertEquals( 0, empty.size() );
+        assertEquals( 0, empty.getAsArray().length );
+    }
+
+    @Test
+    public void testGetCoordinatesIntoLargerBuffer() {
+        double[] dst = new double[COORDS_2D.length + 2];
+        dst[dst.length - 1] = -1.0;
+        int copied = new PackedPoints( null, COORDS_2D.clone(), 2 ).getCoordinates( dst );
+        assertEquals( COORDS_2D.length, copied );
+        assertEquals( -1.0, dst[dst.length - 1], 0.0 );
+    }
+
+    @Test
+    public void testPackedPointsIteratorReusesPoint() {
+        assertIteratorReusesPoint( new PackedPoints( null, COORDS_2D.clone(), 2 ) );
+    }
+
+    @Test
+    public void testJTSPointsIteratorReusesPoint() {
+        assertIteratorReusesPoint( createJTSPoints( COORDS_2D, 2 ) );
+    }
+
+    @Test
+    public void testIndexedAccessReturnsIndependentPoints() {
+        Points points = new PackedPoints( null, COORDS_2D.clone(), 2 );
+        Point first = points.get( 0 );
+        Point second = points.get( 1 );
+        assertNotSame( first, second );
+        assertEquals( 1.0, first.get0(), 0.0 );
+        assertEquals( 3.0, second.get0(), 0.0 );
+    }
+
+    private static void assertCoordinates( double[] expected, int dim, Points points ) {
+        assertEquals( dim, points.getDimension() );
+        assertEquals( expected.length / dim, points.size() );
+
+        double[] dst = new double[points.size() * points.getDimension()];
+        assertEquals( expected.length, copyCoordinates( points, dst ) );
+        assertArrayEquals( expected, dst, 0.0 );
+        assertArrayEquals( expected, points.getAsArray(), 0.0 );
+    }
+
+    /**
+     * The iterator hands out the same {@link Point} instance for every position, so callers that keep references must
+     * copy the coordinates.
+     */
+    private static void assertIteratorReusesPoint( Points points ) {
+        Iterator<Point> iter = points.iterator();
+        Point first = iter.next();
+        double[] firstCopy = first.getAsArray().clone();
+        Point second = iter.next();
+
+        assertSame( first, second );
+        assertEquals( 3.0, first.get0(), 0.0 );
+        assertArrayEquals( new double[] { 1.0, 2.0 }, firstCopy, 0.0 );
+
+        List<double[]> copies = new ArrayList<double[]>();
+        for ( Point p : points ) {
+            copies.add( new double[] { p.get0(), p.get1() } );
+        }
+        for ( int i = 0; i < copies.size(); i++ ) {
+            assertArrayEquals( new double[] { COORDS_2D[2 * i], COORDS_2D[2 * i + 1] }, copies.get( i ), 0.0 );
+        }
+    }
+
+    private static List<Point> createPoints( double[] coords, int dim ) {
+        List<Point> points = new ArrayList<Point>();
+        for ( int i = 0; i < coords.length; i += dim ) {
+            double[] pointCoords = new double[dim];
+            System.arraycopy( coords, i, pointCoords, 0, dim );
+            points.add( new DefaultPoint( null, null, null, pointCoords ) );
+        }
+        return points;
+    }
+
+    private static Points createJTSPoints( double[] coords, int dim ) {
+        Coordinate[] jtsCoords = new Coordinate[coords.length / dim];
+        for ( int i = 0; i < jtsCoords.length; i++ ) {
+            int idx = i * dim;
+            double z = dim > 2 ? coords[idx + 2] : Double.NaN;
+            jtsCoords[i] = new Coordinate( coords[idx], coords[idx + 1], z );
+        }
+        return new JTSPoints( null, new CoordinateArraySequence( jtsCoords ) );
+    }
+}
@@ -42,11 +42,11 @@
 package org.deegree.rendering.r2d;
 
 import static org.deegree.commons.utils.math.MathUtils.isZero;
+import static org.deegree.geometry.utils.GeometryUtils.copyCoordinates;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D.Double;
-import java.util.Iterator;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
@@ -58,7 +58,6 @@ import org.deegree.geometry.linearization.GeometryLinearizer;
 import org.deegree.geometry.linearization.NumPointsCriterion;
 import org.deegree.geometry.points.Points;
 import org.deegree.geometry.primitive.Curve;
-import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Surface;
 import org.slf4j.Logger;
 
@@ -93,31 +92,36 @@ class GeometryHelper {
     }
 
     Double fromCurve( Curve curve, boolean close ) {
-        Double line = new Double();
-
         // TODO use error criterion
         ICRS crs = curve.getCoordinateSystem();
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
-        Iterator<Point> iter = points.iterator();
-        Point p = iter.next();
-        double x = p.get0(), y = p.get1();
-        line.moveTo( x, y );
-        while ( iter.hasNext() ) {
-            p = iter.next();
-            if ( iter.hasNext() ) {
-                line.lineTo( p.get0(), p.get1() );
-            } else {
-                if ( close && isZero( x - p.get0() ) && isZero( y - p.get1() ) ) {
-                    line.closePath();
-                } else {
-                    line.lineTo( p.get0(), p.get1() );
-                }
+        int numPoints = points.size();
+        int dim = points.getDimension();
+        double[] coords = new double[numPoints * Math.max( dim, 2 )];
+        copyCoordinates( points, coords );
+        if ( dim > 2 ) {
+            // keep x and y only
+            for ( int i = 0; i < numPoints; i++ ) {
+                coords[2 * i] = coords[dim * i];
+                coords[2 * i + 1] = coords[dim * i + 1];
             }
         }
-
-        line.transform( worldToScreen );
+        int last = 2 * ( numPoints - 1 );
+        boolean closePath = close && numPoints > 1 && isZero( coords[0] - coords[last] )
+                            && isZero( coords[1] - coords[last + 1] );
+        worldToScreen.transform( coords, 0, coords, 0, numPoints );
+
+        Double line = new Double( Double.WIND_NON_ZERO, numPoints + 1 );
+        line.moveTo( coords[0], coords[1] );
+        int end = closePath ? last : last + 2;
+        for ( int i = 2; i < end; i += 2 ) {
+            line.lineTo( coords[i], coords[i + 1] );
+        }
+        if ( closePath ) {
+            line.closePath();
+        }
 
         return line;
     }
@@ -42,8 +42,12 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
 import java.awt.geom.Path2D.Double;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
 import java.util.Collection;
+import java.util.List;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.commons.utils.DoublePair;
@@ -59,6 +63,9 @@ import org.deegree.style.styling.LineStyling;
 import org.deegree.style.styling.PointStyling;
 import org.deegree.style.styling.PolygonStyling;
 import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.components.Stroke;
+import org.deegree.style.styling.components.UOM;
+import org.deegree.style.utils.UomCalculator;
 import org.slf4j.Logger;
 
 /**
@@ -84,6 +91,8 @@ public class Java2DRenderer implements Renderer {
 
     private int width;
 
+    private int height;
+
     RendererContext rendererContext;
 
     /**
@@ -109,6 +118,7 @@ public class Java2DRenderer implements Renderer {
     public Java2DRenderer( Graphics2D graphics, int width, int height, Envelope bbox ) {
         this.graphics = graphics;
         this.width = width;
+        this.height = height;
 
         if ( bbox != null ) {
             Pair<Envelope, DoublePair> p = RenderHelper.getWorldToScreenTransform( worldToScreen, bbox, width, height );
@@ -261,4 +271,111 @@ public class Java2DRenderer implements Renderer {
         }
     }
 
+    /**
+     * Returns the transformation from world coordinates (CRS of the bbox) to screen coordinates.
+     * 
+     * @return a copy of the transformation, never <code>null</code>
+     */
+    public AffineTransform getWorldToScreen() {
+        return new AffineTransform( worldToScreen );
+    }
+
+    /**
+     * Renders a point that is already given in screen coordinates (see {@link #getWorldToScreen()}).
+     * 
+     * @param styling
+     *            styling, must not be <code>null</code>
+     * @param x
+     *            screen x coordinate
+     * @param y
+     *            screen y coordinate
+     */
+    public void renderScreenPoint( Styling styling, double x, double y ) {
+        if ( styling instanceof PointStyling ) {
+            rendererContext.pointRenderer.renderScreen( (PointStyling) styling, x, y );
+        } else {
+            LOG.debug( "Trying to render point with {}.", styling.getClass().getSimpleName() );
+        }
+    }
+
+    /**
+     * Renders a line string or polygon that is already given in screen coordinates (see {@link #getWorldToScreen()}).
+     * <p>
+     * This bypasses the geometry model completely, e.g. for data sources that decode their geometries directly into
+     * screen coordinates. The line strings/rings are clipped to the screen (enlarged by the stroke margin) and stroked
+     * separately. Polygons are filled using the even-odd rule, so the rings can simply be appended to the path.
+     * </p>
+     * 
+     * @param styling
+     *            styling, must not be <code>null</code>
+     * @param path
+     *            line strings or polygon rings in screen coordinates, must not be <code>null</code>
+     * @param polygon
+     *            true, if the path consists of (closed) polygon rings
+     */
+    public void renderScreenPath( Styling styling, Double path, boolean polygon ) {
+        if ( styling instanceof PolygonStyling ) {
+            if ( !polygon ) {
+                LOG.debug( "Trying to render line with polygon styling." );
+                return;
+            }
+            PolygonStyling polygonStyling = (PolygonStyling) styling;
+            Rectangle2D clip = getScreenClip( polygonStyling.stroke, polygonStyling.uom,
+                                              polygonStyling.perpendicularOffset );
+            List<Double> rings = ScreenPathClipper.clip( path, clip, true );
+            if ( rings.isEmpty() ) {
+                return;
+            }
+            Double polygonPath = new Double( Path2D.WIND_EVEN_ODD );
+            for ( Double ring : rings ) {
+                polygonPath.append( ring, false );
+            }
+            rendererContext.fillRenderer.applyFill( polygonStyling.fill, polygonStyling.uom );
+            graphics.fill( polygonPath );
+            for ( Double ring : rings ) {
+                rendererContext.strokeRenderer.applyStroke( polygonStyling.stroke, polygonStyling.uom, ring,
+                                                            polygonStyling.perpendicularOffset,
+                                                            polygonStyling.perpendicularOffsetType );
+            }
+        } else if ( styling instanceof LineStyling ) {
+            LineStyling lineStyling = (LineStyling) styling;
+            Rectangle2D clip = getScreenClip( lineStyling.stroke, lineStyling.uom, lineStyling.perpendicularOffset );
+            for ( Double line : ScreenPathClipper.clip( path, clip, false ) ) {
+                rendererContext.strokeRenderer.applyStroke( lineStyling.stroke, lineStyling.uom, line,
+                                                            lineStyling.perpendicularOffset,
+                                                            lineStyling.perpendicularOffsetType );
+            }
+        } else if ( styling instanceof PointStyling ) {
+            double[] coords = new double[6];
+            for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+                int segment = iter.currentSegment( coords );
+                if ( segment == PathIterator.SEG_MOVETO || segment == PathIterator.SEG_LINETO ) {
+                    rendererContext.pointRenderer.renderScreen( (PointStyling) styling, coords[0], coords[1] );
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the screen rectangle enlarged by the space that a stroke can occupy beyond the stroked path, so clipping
+     * against it does not change the rendered image.
+     * 
+     * @return clipping rectangle in screen coordinates, <code>null</code> if the screen size is unknown
+     */
+    private Rectangle2D getScreenClip( Stroke stroke, UOM uom, double perpendicularOffset ) {
+        if ( width <= 0 || height <= 0 ) {
+            return null;
+        }
+        UomCalculator uomCalculator = rendererContext.uomCalculator;
+        double margin = 1 + Math.abs( uomCalculator.considerUOM( perpendicularOffset, uom ) );
+        if ( stroke != null ) {
+            // mitre joins extend up to half the miter limit (10) times the stroke width
+            margin += 5 * uomCalculator.considerUOM( stroke.width, uom );
+            if ( stroke.stroke != null ) {
+                margin += stroke.stroke.size <= 0 ? 6 : uomCalculator.considerUOM( stroke.stroke.size, uom );
+            }
+        }
+        return new Rectangle2D.Double( -margin, -margin, width + 2 * margin, height + 2 * margin );
+    }
+
 }
@@ -75,9 +75,10 @@ class PointRenderer {
 
     void render( PointStyling styling, double x, double y ) {
         Point2D.Double p = (Point2D.Double) worldToScreen.transform( new Point2D.Double( x, y ), null );
-        x = p.x;
-        y = p.y;
+        renderScreen( styling, p.x, p.y );
+    }
 
+    void renderScreen( PointStyling styling, double x, double y ) {
         Graphic g = styling.graphic;
         Rectangle2D.Double rect = rendererContext.fillRenderer.getGraphicBounds( g, x, y, styling.uom );
 
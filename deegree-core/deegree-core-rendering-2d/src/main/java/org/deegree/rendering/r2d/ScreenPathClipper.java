@@ -0,0 +1,245 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits paths in screen coordinates into their line strings/rings and clips them to a (enlarged) viewport.
+ * <p>
+ * Rings are clipped using the Sutherland-Hodgman algorithm, so the clipped rings contain edges along the clipping
+ * rectangle. If the clipping rectangle is enlarged by the stroke margin, these edges are not visible. Line strings are
+ * clipped segment-wise (Liang-Barsky), parts that leave and re-enter the clipping rectangle become separate line
+ * strings.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ScreenPathClipper {
+
+    private ScreenPathClipper() {
+        // avoid instantiation
+    }
+
+    /**
+     * Splits the given path into its subpaths and clips them.
+     * 
+     * @param path
+     *            path in screen coordinates (moveTo, lineTo and close segments only), must not be <code>null</code>
+     * @param clip
+     *            clipping rectangle, can be <code>null</code> (no clipping)
+     * @param rings
+     *            true, if the subpaths are (closed) polygon rings, false for line strings
+     * @return the (clipped) subpaths, one path per ring/line string, may be empty, but never <code>null</code>
+     */
+    static List<Path2D.Double> clip( Path2D.Double path, Rectangle2D clip, boolean rings ) {
+        List<Path2D.Double> result = new ArrayList<Path2D.Double>();
+        double[] coords = new double[6];
+        double[] points = new double[64];
+        int numPoints = 0;
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            int segment = iter.currentSegment( coords );
+            if ( segment == PathIterator.SEG_MOVETO ) {
+                addPart( result, points, numPoints, clip, rings );
+                numPoints = 0;
+            }
+            if ( segment == PathIterator.SEG_MOVETO || segment == PathIterator.SEG_LINETO ) {
+                if ( 2 * numPoints + 2 > points.length ) {
+                    points = Arrays.copyOf( points, points.length * 2 );
+                }
+                points[2 * numPoints] = coords[0];
+                points[2 * numPoints + 1] = coords[1];
+                numPoints++;
+            }
+        }
+        addPart( result, points, numPoints, clip, rings );
+        return result;
+    }
+
+    private static void addPart( List<Path2D.Double> result, double[] points, int numPoints, Rectangle2D clip,
+                                 boolean ring ) {
+        if ( numPoints < ( ring ? 3 : 2 ) ) {
+            return;
+        }
+        if ( clip != null ) {
+            double minX = points[0], minY = points[1], maxX = minX, maxY = minY;
+            for ( int i = 1; i < numPoints; i++ ) {
+                minX = Math.min( minX, points[2 * i] );
+                minY = Math.min( minY, points[2 * i + 1] );
+                maxX = Math.max( maxX, points[2 * i] );
+                maxY = Math.max( maxY, points[2 * i + 1] );
+            }
+            if ( maxX < clip.getMinX() || minX > clip.getMaxX() || maxY < clip.getMinY() || minY > clip.getMaxY() ) {
+                return;
+            }
+            if ( minX < clip.getMinX() || maxX > clip.getMaxX() || minY < clip.getMinY() || maxY > clip.getMaxY() ) {
+                if ( ring ) {
+                    addClippedRing( result, points, numPoints, clip );
+                } else {
+                    addClippedLine( result, points, numPoints, clip );
+                }
+                return;
+            }
+        }
+        result.add( toPath( points, numPoints, ring ) );
+    }
+
+    private static void addClippedRing( List<Path2D.Double> result, double[] points, int numPoints, Rectangle2D clip ) {
+        double[] ring = points;
+        int n = numPoints;
+        // left, right, top, bottom
+        for ( int edge = 0; edge < 4 && n > 0; edge++ ) {
+            double[] clipped = new double[4 * n + 4];
+            int m = 0;
+            for ( int i = 0; i < n; i++ ) {
+                int j = ( i + 1 ) % n;
+                double x0 = ring[2 * i], y0 = ring[2 * i + 1];
+                double x1 = ring[2 * j], y1 = ring[2 * j + 1];
+                boolean in0 = isInside( x0, y0, edge, clip );
+                boolean in1 = isInside( x1, y1, edge, clip );
+                if ( in0 != in1 ) {
+                    double t = getIntersection( x0, y0, x1, y1, edge, clip );
+                    clipped[2 * m] = x0 + t * ( x1 - x0 );
+                    clipped[2 * m + 1] = y0 + t * ( y1 - y0 );
+                    m++;
+                }
+                if ( in1 ) {
+                    clipped[2 * m] = x1;
+                    clipped[2 * m + 1] = y1;
+                    m++;
+                }
+            }
+            ring = clipped;
+            n = m;
+        }
+        if ( n >= 3 ) {
+            result.add( toPath( ring, n, true ) );
+        }
+    }
+
+    private static boolean isInside( double x, double y, int edge, Rectangle2D clip ) {
+        switch ( edge ) {
+        case 0:
+            return x >= clip.getMinX();
+        case 1:
+            return x <= clip.getMaxX();
+        case 2:
+            return y >= clip.getMinY();
+        default:
+            return y <= clip.getMaxY();
+        }
+    }
+
+    private static double getIntersection( double x0, double y0, double x1, double y1, int edge, Rectangle2D clip ) {
+        switch ( edge ) {
+        case 0:
+            return ( clip.getMinX() - x0 ) / ( x1 - x0 );
+        case 1:
+            return ( clip.getMaxX() - x0 ) / ( x1 - x0 );
+        case 2:
+            return ( clip.getMinY() - y0 ) / ( y1 - y0 );
+        default:
+            return ( clip.getMaxY() - y0 ) / ( y1 - y0 );
+        }
+    }
+
+    private static void addClippedLine( List<Path2D.Double> result, double[] points, int numPoints, Rectangle2D clip ) {
+        Path2D.Double part = null;
+        boolean connected = false;
+        for ( int i = 0; i + 1 < numPoints; i++ ) {
+            double x0 = points[2 * i], y0 = points[2 * i + 1];
+            double dx = points[2 * i + 2] - x0, dy = points[2 * i + 3] - y0;
+            // Liang-Barsky: parameter range of the segment inside the clipping rectangle
+            double[] t = { 0, 1 };
+            if ( clipT( -dx, x0 - clip.getMinX(), t ) && clipT( dx, clip.getMaxX() - x0, t )
+                 && clipT( -dy, y0 - clip.getMinY(), t ) && clipT( dy, clip.getMaxY() - y0, t ) ) {
+                if ( !connected || t[0] > 0 ) {
+                    if ( part != null ) {
+                        result.add( part );
+                    }
+                    part = new Path2D.Double();
+                    part.moveTo( x0 + t[0] * dx, y0 + t[0] * dy );
+                }
+                part.lineTo( x0 + t[1] * dx, y0 + t[1] * dy );
+                connected = t[1] == 1;
+            } else {
+                connected = false;
+            }
+        }
+        if ( part != null ) {
+            result.add( part );
+        }
+    }
+
+    private static boolean clipT( double p, double q, double[] t ) {
+        if ( p == 0 ) {
+            return q >= 0;
+        }
+        double r = q / p;
+        if ( p < 0 ) {
+            if ( r > t[1] ) {
+                return false;
+            }
+            t[0] = Math.max( t[0], r );
+        } else {
+            if ( r < t[0] ) {
+                return false;
+            }
+            t[1] = Math.min( t[1], r );
+        }
+        return true;
+    }
+
+    private static Path2D.Double toPath( double[] points, int numPoints, boolean ring ) {
+        Path2D.Double path = new Path2D.Double( Path2D.WIND_EVEN_ODD, numPoints + 1 );
+        path.moveTo( points[0], points[1] );
+        for ( int i = 1; i < numPoints; i++ ) {
+            path.lineTo( points[2 * i], points[2 * i + 1] );
+        }
+        if ( ring ) {
+            path.closePath();
+        }
+        return path;
+    }
+}
@@ -0,0 +1,199 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.PolygonStyling;
+import org.deegree.style.styling.components.Fill;
+import org.deegree.style.styling.components.Stroke;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Java2DRenderer#renderScreenPath(org.deegree.style.styling.Styling, Path2D.Double, boolean)}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class Java2DRendererScreenPathTest {
+
+    private static final int SIZE = 100;
+
+    private BufferedImage image;
+
+    private Java2DRenderer renderer;
+
+    @Before
+    public void setup() {
+        image = new BufferedImage( SIZE, SIZE, TYPE_INT_ARGB );
+        Graphics2D g = image.createGraphics();
+        Envelope bbox = new GeometryFactory().createEnvelope( 0, 0, SIZE, SIZE, null );
+        renderer = new Java2DRenderer( g, SIZE, SIZE, bbox );
+    }
+
+    @Test
+    public void testPolygonWithHole() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, -1e9, -1e9, 1e9, 1e9 );
+        addRing( path, 40, 40, 60, 60 );
+        renderer.renderScreenPath( createPolygonStyling(), path, true );
+
+        assertColor( Color.RED, 10, 10 );
+        // hole is not filled
+        assertEquals( 0, image.getRGB( 50, 50 ) );
+        // every ring is stroked
+        assertColor( Color.BLUE, 40, 50 );
+        assertColor( Color.BLUE, 60, 50 );
+        // the edges that result from clipping the exterior are not visible
+        assertColor( Color.RED, 0, 50 );
+        assertColor( Color.RED, SIZE - 1, 50 );
+        assertColor( Color.RED, 50, 0 );
+        assertColor( Color.RED, 50, SIZE - 1 );
+    }
+
+    @Test
+    public void testPolygonPartlyOutside() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, 50, 20, 500, 80 );
+        renderer.renderScreenPath( createPolygonStyling(), path, true );
+
+        assertColor( Color.BLUE, 50, 50 );
+        assertColor( Color.RED, 75, 50 );
+        assertColor( Color.RED, SIZE - 1, 50 );
+        assertEquals( 0, image.getRGB( 25, 50 ) );
+    }
+
+    @Test
+    public void testPolygonOutside() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, 200, 200, 300, 300 );
+        renderer.renderScreenPath( createPolygonStyling(), path, true );
+        assertBlank();
+    }
+
+    @Test
+    public void testPolygonStylingIgnoresLines() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( 0, 50 );
+        path.lineTo( SIZE, 50 );
+        renderer.renderScreenPath( createPolygonStyling(), path, false );
+        assertBlank();
+    }
+
+    @Test
+    public void testLineCrossingScreen() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( -1e9, 50 );
+        path.lineTo( 1e9, 50 );
+        // second line string leaves and re-enters the screen
+        path.moveTo( 20, 10 );
+        path.lineTo( 20, -1e6 );
+        path.lineTo( 80, -1e6 );
+        path.lineTo( 80, 10 );
+        renderer.renderScreenPath( createLineStyling(), path, false );
+
+        assertColor( Color.BLUE, 0, 50 );
+        assertColor( Color.BLUE, 50, 50 );
+        assertColor( Color.BLUE, SIZE - 1, 50 );
+        assertColor( Color.BLUE, 20, 5 );
+        assertColor( Color.BLUE, 80, 5 );
+        assertEquals( 0, image.getRGB( 50, 5 ) );
+    }
+
+    @Test
+    public void testWithoutScreenSize() {
+        BufferedImage img = new BufferedImage( SIZE, SIZE, TYPE_INT_ARGB );
+        Java2DRenderer r = new Java2DRenderer( img.createGraphics() );
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, 10, 10, 30, 30 );
+        r.renderScreenPath( createPolygonStyling(), path, true );
+        assertEquals( Color.RED.getRGB(), img.getRGB( 20, 20 ) );
+        assertEquals( Color.BLUE.getRGB(), img.getRGB( 10, 20 ) );
+    }
+
+    private static PolygonStyling createPolygonStyling() {
+        PolygonStyling styling = new PolygonStyling();
+        styling.fill = new Fill();
+        styling.fill.color = Color.RED;
+        styling.stroke = createStroke();
+        return styling;
+    }
+
+    private static LineStyling createLineStyling() {
+        LineStyling styling = new LineStyling();
+        styling.stroke = createStroke();
+        return styling;
+    }
+
+    private static Stroke createStroke() {
+        Stroke stroke = new Stroke();
+        stroke.color = Color.BLUE;
+        stroke.width = 2;
+        return stroke;
+    }
+
+    private static void addRing( Path2D.Double path, double minX, double minY, double maxX, double maxY ) {
+        path.moveTo( minX, minY );
+        path.lineTo( maxX, minY );
+        path.lineTo( maxX, maxY );
+        path.lineTo( minX, maxY );
+        path.closePath();
+    }
+
+    private void assertColor( Color expected, int x, int y ) {
+        assertEquals( "(" + x + "," + y + ")", expected.getRGB(), image.getRGB( x, y ) );
+    }
+
+    private void assertBlank() {
+        for ( int x = 0; x < SIZE; x++ ) {
+            for ( int y = 0; y < SIZE; y++ ) {
+                assertEquals( 0, image.getRGB( x, y ) );
+            }
+        }
+    }
+}
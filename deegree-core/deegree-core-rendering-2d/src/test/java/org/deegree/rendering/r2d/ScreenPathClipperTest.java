@@ -0,0 +1,217 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ScreenPathClipper}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ScreenPathClipperTest {
+
+    private static final Rectangle2D CLIP = new Rectangle2D.Double( 0, 0, 100, 100 );
+
+    @Test
+    public void testRingsAreSplit() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, 10, 10, 90, 90 );
+        addRing( path, 20, 20, 30, 30 );
+        List<Path2D.Double> rings = ScreenPathClipper.clip( path, CLIP, true );
+        assertEquals( 2, rings.size() );
+        assertEquals( new Rectangle2D.Double( 10, 10, 80, 80 ), rings.get( 0 ).getBounds2D() );
+        assertEquals( new Rectangle2D.Double( 20, 20, 10, 10 ), rings.get( 1 ).getBounds2D() );
+        assertTrue( isClosed( rings.get( 0 ) ) );
+        assertTrue( isClosed( rings.get( 1 ) ) );
+    }
+
+    @Test
+    public void testRingOutsideIsDropped() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, 200, 200, 300, 300 );
+        addRing( path, -50, 10, -10, 20 );
+        assertTrue( ScreenPathClipper.clip( path, CLIP, true ).isEmpty() );
+    }
+
+    @Test
+    public void testRingIsClipped() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, -1e9, 50, 1e9, 60 );
+        List<Path2D.Double> rings = ScreenPathClipper.clip( path, CLIP, true );
+        assertEquals( 1, rings.size() );
+        assertEquals( new Rectangle2D.Double( 0, 50, 100, 10 ), rings.get( 0 ).getBounds2D() );
+        assertTrue( isClosed( rings.get( 0 ) ) );
+    }
+
+    @Test
+    public void testRingEnclosingClip() {
+        Path2D.Double path = new Path2D.Double();
+        addRing( path, -1000, -1000, 1000, 1000 );
+        // hole inside the clip stays unchanged
+        addRing( path, 40, 40, 60, 60 );
+        List<Path2D.Double> rings = ScreenPathClipper.clip( path, CLIP, true );
+        assertEquals( 2, rings.size() );
+        assertEquals( CLIP, rings.get( 0 ).getBounds2D() );
+        assertEquals( new Rectangle2D.Double( 40, 40, 20, 20 ), rings.get( 1 ).getBounds2D() );
+    }
+
+    @Test
+    public void testClippedRingCoversSameArea() {
+        // triangle with one vertex outside the clip
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( 50, 50 );
+        path.lineTo( 150, 50 );
+        path.lineTo( 50, 90 );
+        path.closePath();
+        List<Path2D.Double> rings = ScreenPathClipper.clip( path, CLIP, true );
+        assertEquals( 1, rings.size() );
+        Path2D.Double ring = rings.get( 0 );
+        for ( int x = 1; x < 100; x += 3 ) {
+            for ( int y = 1; y < 100; y += 3 ) {
+                assertEquals( "(" + x + "," + y + ")", path.contains( x, y ), ring.contains( x, y ) );
+            }
+        }
+        assertEquals( 100, ring.getBounds2D().getMaxX(), 1e-9 );
+    }
+
+    @Test
+    public void testLineLeavingAndReentering() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( 10, 10 );
+        path.lineTo( 50, 10 );
+        path.lineTo( 50, -50 );
+        path.lineTo( 70, -50 );
+        path.lineTo( 70, 10 );
+        path.lineTo( 90, 10 );
+        List<Path2D.Double> lines = ScreenPathClipper.clip( path, CLIP, false );
+        assertEquals( 2, lines.size() );
+        assertLine( 10, 10, 50, 10, 50, 0, lines.get( 0 ) );
+        assertLine( 70, 0, 70, 10, 90, 10, lines.get( 1 ) );
+    }
+
+    @Test
+    public void testLineCrossingClip() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( -1e9, 50 );
+        path.lineTo( 1e9, 50 );
+        List<Path2D.Double> lines = ScreenPathClipper.clip( path, CLIP, false );
+        assertEquals( 1, lines.size() );
+        assertLine( 0, 50, 100, 50, lines.get( 0 ) );
+    }
+
+    @Test
+    public void testLinesOutsideAreDropped() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( -10, -10 );
+        path.lineTo( -10, 200 );
+        path.moveTo( 10, 10 );
+        path.lineTo( 20, 20 );
+        path.moveTo( 150, -10 );
+        // diagonal outside the clip, but with an intersecting bbox
+        path.lineTo( 250, 90 );
+        List<Path2D.Double> lines = ScreenPathClipper.clip( path, CLIP, false );
+        assertEquals( 1, lines.size() );
+        assertLine( 10, 10, 20, 20, lines.get( 0 ) );
+    }
+
+    @Test
+    public void testWithoutClip() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo( -10, -10 );
+        path.lineTo( 1000, 1000 );
+        path.moveTo( 5, 5 );
+        // single points are not a line string
+        path.moveTo( 1, 1 );
+        path.lineTo( 2, 2 );
+        List<Path2D.Double> lines = ScreenPathClipper.clip( path, null, false );
+        assertEquals( 2, lines.size() );
+        assertLine( -10, -10, 1000, 1000, lines.get( 0 ) );
+        assertLine( 1, 1, 2, 2, lines.get( 1 ) );
+    }
+
+    private static void addRing( Path2D.Double path, double minX, double minY, double maxX, double maxY ) {
+        path.moveTo( minX, minY );
+        path.lineTo( maxX, minY );
+        path.lineTo( maxX, maxY );
+        path.lineTo( minX, maxY );
+        path.lineTo( minX, minY );
+        path.closePath();
+    }
+
+    private static boolean isClosed( Path2D.Double path ) {
+        int last = -1;
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            last = iter.currentSegment( new double[6] );
+        }
+        return last == PathIterator.SEG_CLOSE;
+    }
+
+    private static void assertLine( double x0, double y0, double x1, double y1, Path2D.Double path ) {
+        assertCoords( new double[] { x0, y0, x1, y1 }, path );
+    }
+
+    private static void assertLine( double x0, double y0, double x1, double y1, double x2, double y2,
+                                    Path2D.Double path ) {
+        assertCoords( new double[] { x0, y0, x1, y1, x2, y2 }, path );
+    }
+
+    private static void assertCoords( double[] expected, Path2D.Double path ) {
+        List<java.lang.Double> coords = new ArrayList<java.lang.Double>();
+        double[] segment = new double[6];
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            iter.currentSegment( segment );
+            coords.add( segment[0] );
+            coords.add( segment[1] );
+        }
+        assertEquals( expected.length, coords.size() );
+        for ( int i = 0; i < expected.length; i++ ) {
+            assertEquals( expected[i], coords.get( i ), 1e-6 );
+        }
+    }
+}
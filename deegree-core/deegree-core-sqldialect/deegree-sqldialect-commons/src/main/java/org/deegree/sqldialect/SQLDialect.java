@@ -212,4 +212,38 @@ public interface SQLDialect {
      */
     String getSelectSequenceNextVal( String sequence );
 
+    /**
+     * Returns a <code>SELECT</code> statement for retrieving the next values in the specified DB sequence (one row per
+     * value).
+     * 
+     * @param sequence
+     *            name of the database sequence, must not be <code>null</code>
+     * @param num
+     *            number of values to retrieve, must be positive
+     * @return SQL <code>SELECT</code> statement, never <code>null</code>
+     */
+    String getSelectSequenceNextVals( String sequence, int num );
+
+    /**
+     * Returns a version of the given <code>SELECT</code> statement that only returns the specified range of rows
+     * (e.g. by appending <code>LIMIT</code>/<code>OFFSET</code>).
+     * <p>
+     * The positions of the selected columns and the statement arguments stay the same. Implementations may append
+     * additional columns at the end of the select list.
+     * </p>
+     * 
+     * @param sql
+     *            complete <code>SELECT</code> statement (including the <code>ORDER BY</code> clause, if any), must not
+     *            be <code>null</code>
+     * @param hasOrderBy
+     *            <code>true</code>, if the statement contains an <code>ORDER BY</code> clause, <code>false</code>
+     *            otherwise
+     * @param offset
+     *            number of rows to skip, must not be negative
+     * @param limit
+     *            maximum number of rows to return, -1 for no limit
+     * @return SQL <code>SELECT</code> statement, never <code>null</code>
+     */
+    String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit );
+
 }
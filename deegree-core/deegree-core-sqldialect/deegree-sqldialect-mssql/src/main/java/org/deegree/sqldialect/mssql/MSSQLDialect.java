@@ -197,4 +197,30 @@ public class MSSQLDialect implements SQLDialect {
                                                  "Using DB sequences for FIDs is currently not supported on Microsoft SQL Server." );
     }
 
+    @Override
+    public String getSelectSequenceNextVals( String sequence, int num ) {
+        return getSelectSequenceNextVal( sequence );
+    }
+
+    /**
+     * Uses <code>OFFSET</code>/<code>FETCH</code>, which requires SQL Server 2012 or later.
+     */
+    @Override
+    public String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit ) {
+        StringBuilder paged = new StringBuilder( sql );
+        if ( !hasOrderBy ) {
+            // OFFSET/FETCH is only allowed after an ORDER BY clause
+            paged.append( " ORDER BY (SELECT NULL)" );
+        }
+        paged.append( " OFFSET " );
+        paged.append( offset );
+        paged.append( " ROWS" );
+        if ( limit >= 0 ) {
+            paged.append( " FETCH NEXT " );
+            paged.append( limit );
+            paged.append( " ROWS ONLY" );
+        }
+        return paged.toString();
+    }
+
 }
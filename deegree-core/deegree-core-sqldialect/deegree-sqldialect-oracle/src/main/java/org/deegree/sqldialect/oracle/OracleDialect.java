@@ -267,4 +267,43 @@ public class OracleDialect implements SQLDialect {
         return "SELECT " + sequence + ".NEXTVAL from DUAL";
     }
 
+    @Override
+    public String getSelectSequenceNextVals( String sequence, int num ) {
+        return "SELECT " + sequence + ".NEXTVAL from DUAL CONNECT BY LEVEL <= " + num;
+    }
+
+    /**
+     * Uses <code>OFFSET</code>/<code>FETCH</code> for Oracle 12c and later, and a <code>ROWNUM</code> based subquery
+     * for older versions (which appends the row number column <code>rnum</code> to the select list).
+     */
+    @Override
+    public String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit ) {
+        StringBuilder paged = new StringBuilder();
+        if ( versionMajor >= 12 ) {
+            paged.append( sql );
+            paged.append( " OFFSET " );
+            paged.append( offset );
+            paged.append( " ROWS" );
+            if ( limit >= 0 ) {
+                paged.append( " FETCH NEXT " );
+                paged.append( limit );
+                paged.append( " ROWS ONLY" );
+            }
+        } else {
+            paged.append( "SELECT * FROM (SELECT paged.*,ROWNUM rnum FROM (" );
+            paged.append( sql );
+            paged.append( ") paged" );
+            if ( limit >= 0 ) {
+                paged.append( " WHERE ROWNUM<=" );
+                paged.append( (long) offset + limit );
+            }
+            paged.append( ")" );
+            if ( offset > 0 ) {
+                paged.append( " WHERE rnum>" );
+                paged.append( offset );
+            }
+        }
+        return paged.toString();
+    }
+
 }
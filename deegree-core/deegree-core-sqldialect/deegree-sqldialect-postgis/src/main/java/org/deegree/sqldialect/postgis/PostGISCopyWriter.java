@@ -0,0 +1,587 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.apache.commons.dbcp.DelegatingConnection;
+import org.deegree.commons.utils.JDBCUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers table rows in the binary format of the PostgreSQL <code>COPY</code> command and transfers them using
+ * <code>COPY ... FROM STDIN (FORMAT binary)</code>.
+ * <p>
+ * Compared to (batched) INSERT statements, this avoids the parsing and planning of statements as well as the text
+ * encoding of the values. Supported column types are the integer and floating point types, <code>numeric</code>,
+ * <code>bool</code>, the character types, <code>bytea</code>, <code>date</code>, <code>time</code>,
+ * <code>timestamp</code>, <code>timestamptz</code>, <code>uuid</code> and <code>geometry</code>/
+ * <code>geography</code>. Values for geometry columns must be given as (E)WKB (see
+ * {@link PostGISGeometryConverter#toEWKB(org.deegree.geometry.Geometry)}).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISCopyWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger( PostGISCopyWriter.class );
+
+    private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+    // 2000-01-01 00:00:00 UTC (PostgreSQL epoch) in milliseconds since 1970-01-01 00:00:00 UTC
+    private static final long PG_EPOCH_MILLIS = 946684800000L;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final int NUMERIC_POS = 0x0000;
+
+    private static final int NUMERIC_NEG = 0x4000;
+
+    private enum ColumnType {
+        INT2, INT4, INT8, FLOAT4, FLOAT8, NUMERIC, BOOL, TEXT, BYTES, DATE, TIME, TIMESTAMP, TIMESTAMPTZ, UUID
+    }
+
+    private final String table;
+
+    private final List<String> columns;
+
+    private final ColumnType[] types;
+
+    private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream( bos );
+
+    private final ByteArrayOutputStream rowBos = new ByteArrayOutputStream();
+
+    private final DataOutputStream rowOut = new DataOutputStream( rowBos );
+
+    private int numRows;
+
+    /**
+     * Creates a new {@link PostGISCopyWriter} instance.
+     * 
+     * @param table
+     *            (possibly qualified) name of the target table, must not be <code>null</code>
+     * @param columns
+     *            names of the target columns, must not be <code>null</code>
+     * @param columnTypes
+     *            PostgreSQL type names of the target columns (same order as columns), must not be <code>null</code>
+     * @throws SQLException
+     *             if a column type is not supported
+     * @see #getColumnTypes(Connection, String, List)
+     */
+    public PostGISCopyWriter( String table, List<String> columns, String[] columnTypes ) throws SQLException {
+        this.table = table;
+        this.columns = new ArrayList<String>( columns );
+        this.types = new ColumnType[columnTypes.length];
+        for ( int i = 0; i < columnTypes.length; i++ ) {
+            types[i] = getColumnType( columnTypes[i] );
+            if ( types[i] == null ) {
+                throw new SQLException( "Column '" + columns.get( i ) + "' of table '" + table + "' has type '"
+                                        + columnTypes[i] + "', which is not supported for binary COPY." );
+            }
+        }
+        writeHeader();
+    }
+
+    /**
+     * Determines the PostgreSQL type names of the specified columns.
+     * 
+     * @param conn
+     *            connection to use, must not be <code>null</code>
+     * @param table
+     *            (possibly qualified) name of the table, must not be <code>null</code>
+     * @param columns
+     *            names of the columns, must not be <code>null</code>
+     * @return type names (same order as columns), never <code>null</code>
+     * @throws SQLException
+     */
+    public static String[] getColumnTypes( Connection conn, String table, List<String> columns )
+                            throws SQLException {
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        appendColumnList( sql, columns );
+        sql.append( " FROM " ).append( table ).append( " WHERE 1=0" );
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery( sql.toString() );
+            ResultSetMetaData md = rs.getMetaData();
+            String[] typeNames = new String[columns.size()];
+            for ( int i = 0; i < typeNames.length; i++ ) {
+                typeNames[i] = md.getColumnTypeName( i + 1 );
+            }
+            return typeNames;
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+    }
+
+    /**
+     * Returns whether columns of the given type can be used with binary COPY.
+     * 
+     * @param typeName
+     *            PostgreSQL type name, must not be <code>null</code>
+     * @return <code>true</code>, if the type is supported, <code>false</code> otherwise
+     */
+    public static boolean isSupported( String typeName ) {
+        return getColumnType( typeName ) != null;
+    }
+
+    /**
+     * Adds a row with the given values.
+     * <p>
+     * If a value cannot be converted to the type of the column, an {@link IllegalArgumentException} is thrown and the
+     * row is not added.
+     * </p>
+     * 
+     * @param values
+     *            column values (same order as columns), <code>null</code> entries denote NULL values
+     * @throws IllegalArgumentException
+     *             if a value cannot be converted to the type of the column
+     */
+    public void addRow( Object[] values ) {
+        if ( values.length != types.length ) {
+            throw new IllegalArgumentException( "Expected " + types.length + " values, but got " + values.length
+                                                + "." );
+        }
+        rowBos.reset();
+        try {
+            rowOut.writeShort( values.length );
+            for ( int i = 0; i < values.length; i++ ) {
+                try {
+                    writeValue( rowOut, types[i], values[i] );
+                } catch ( RuntimeException e ) {
+                    String msg = "Unable to encode value '" + values[i] + "' for column '" + columns.get( i )
+                                 + "' (" + types[i] + "): " + e.getMessage();
+                    throw new IllegalArgumentException( msg, e );
+                }
+            }
+            rowOut.flush();
+            rowBos.writeTo( out );
+        } catch ( IOException e ) {
+            // does not occur (in-memory streams)
+            throw new RuntimeException( e.getMessage(), e );
+        }
+        numRows++;
+    }
+
+    /**
+     * Returns the number of rows that have been added since the last {@link #copy(Connection)}.
+     * 
+     * @return number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of bytes of the currently buffered rows.
+     * 
+     * @return number of bytes
+     */
+    public int getBufferSize() {
+        return bos.size();
+    }
+
+    /**
+     * Returns the currently buffered data (header and rows, without trailer).
+     *
+     * @return buffered data, never <code>null</code>
+     */
+    byte[] getBufferedData() {
+        return bos.toByteArray();
+    }
+
+    /**
+     * Transfers all buffered rows to the database and resets the buffer.
+     * 
+     * @param conn
+     *            connection to use, must not be <code>null</code> and must be (or wrap) a {@link PGConnection}
+     * @return number of copied rows
+     * @throws SQLException
+     *             if the COPY fails
+     */
+    public long copy( Connection conn )
+                            throws SQLException {
+        if ( numRows == 0 ) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder( "COPY " );
+        sql.append( table ).append( " (" );
+        appendColumnList( sql, columns );
+        sql.append( ") FROM STDIN (FORMAT binary)" );
+        try {
+            out.writeShort( -1 );
+            out.flush();
+            CopyManager copyManager = getPGConnection( conn ).getCopyAPI();
+            long begin = System.currentTimeMillis();
+            long copied = copyManager.copyIn( sql.toString(), new ByteArrayInputStream( bos.toByteArray() ) );
+            LOG.debug( "Copying " + copied + " rows (" + bos.size() + " bytes) took "
+                       + ( System.currentTimeMillis() - begin ) + " [ms]: " + sql );
+            return copied;
+        } catch ( IOException e ) {
+            throw new SQLException( e.getMessage(), e );
+        } finally {
+            bos.reset();
+            numRows = 0;
+            writeHeader();
+        }
+    }
+
+    private void writeHeader() {
+        try {
+            out.write( SIGNATURE );
+            // flags
+            out.writeInt( 0 );
+            // header extension length
+            out.writeInt( 0 );
+        } catch ( IOException e ) {
+            // does not occur (in-memory stream)
+            throw new RuntimeException( e.getMessage(), e );
+        }
+    }
+
+    private static void appendColumnList( StringBuilder sql, List<String> columns ) {
+        boolean first = true;
+        for ( String column : columns ) {
+            if ( !first ) {
+                sql.append( ',' );
+            }
+            sql.append( column );
+            first = false;
+        }
+    }
+
+    private static PGConnection getPGConnection( Connection conn )
+                            throws SQLException {
+        if ( conn instanceof PGConnection ) {
+            return (PGConnection) conn;
+        }
+        if ( conn instanceof DelegatingConnection ) {
+            Connection delegate = ( (DelegatingConnection) conn ).getInnermostDelegate();
+            if ( delegate instanceof PGConnection ) {
+                return (PGConnection) delegate;
+            }
+        }
+        return conn.unwrap( PGConnection.class );
+    }
+
+    private static ColumnType getColumnType( String typeName ) {
+        String name = typeName.toLowerCase();
+        // strip schema and quotes, e.g. "public"."geometry"
+        name = name.substring( name.lastIndexOf( '.' ) + 1 ).replace( "\"", "" );
+        if ( "int2".equals( name ) || "smallint".equals( name ) ) {
+            return ColumnType.INT2;
+        }
+        if ( "int4".equals( name ) || "integer".equals( name ) || "serial".equals( name ) ) {
+            return ColumnType.INT4;
+        }
+        if ( "int8".equals( name ) || "bigint".equals( name ) || "bigserial".equals( name ) ) {
+            return ColumnType.INT8;
+        }
+        if ( "float4".equals( name ) ) {
+            return ColumnType.FLOAT4;
+        }
+        if ( "float8".equals( name ) ) {
+            return ColumnType.FLOAT8;
+        }
+        if ( "numeric".equals( name ) ) {
+            return ColumnType.NUMERIC;
+        }
+        if ( "bool".equals( name ) ) {
+            return ColumnType.BOOL;
+        }
+        if ( "text".equals( name ) || "varchar".equals( name ) || "bpchar".equals( name ) || "name".equals( name )
+             || "xml".equals( name ) || "json".equals( name ) ) {
+            return ColumnType.TEXT;
+        }
+        if ( "bytea".equals( name ) || "geometry".equals( name ) || "geography".equals( name ) ) {
+            return ColumnType.BYTES;
+        }
+        if ( "date".equals( name ) ) {
+            return ColumnType.DATE;
+        }
+        if ( "time".equals( name ) ) {
+            return ColumnType.TIME;
+        }
+        if ( "timestamp".equals( name ) ) {
+            return ColumnType.TIMESTAMP;
+        }
+        if ( "timestamptz".equals( name ) ) {
+            return ColumnType.TIMESTAMPTZ;
+        }
+        if ( "uuid".equals( name ) ) {
+            return ColumnType.UUID;
+        }
+        return null;
+    }
+
+    private static void writeValue( DataOutputStream out, ColumnType type, Object value )
+                            throws IOException {
+        if ( value == null ) {
+            out.writeInt( -1 );
+            return;
+        }
+        switch ( type ) {
+        case INT2:
+            out.writeInt( 2 );
+            out.writeShort( toInt( value, Short.MIN_VALUE, Short.MAX_VALUE ) );
+            break;
+        case INT4:
+            out.writeInt( 4 );
+            out.writeInt( toInt( value, Integer.MIN_VALUE, Integer.MAX_VALUE ) );
+            break;
+        case INT8:
+            out.writeInt( 8 );
+            out.writeLong( toLong( value ) );
+            break;
+        case FLOAT4:
+            out.writeInt( 4 );
+            out.writeFloat( (float) toDouble( value ) );
+            break;
+        case FLOAT8:
+            out.writeInt( 8 );
+            out.writeDouble( toDouble( value ) );
+            break;
+        case NUMERIC:
+            writeNumeric( out, toBigDecimal( value ) );
+            break;
+        case BOOL:
+            out.writeInt( 1 );
+            out.writeByte( toBoolean( value ) ? 1 : 0 );
+            break;
+        case TEXT: {
+            byte[] bytes = value.toString().getBytes( UTF8 );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+            break;
+        }
+        case BYTES: {
+            if ( !( value instanceof byte[] ) ) {
+                throw new IllegalArgumentException( "Expected byte array, but got " + value.getClass() + "." );
+            }
+            byte[] bytes = (byte[]) value;
+            out.writeInt( bytes.length );
+            out.write( bytes );
+            break;
+        }
+        case DATE: {
+            long localMillis = toLocalMillis( toDate( value ) );
+            out.writeInt( 4 );
+            out.writeInt( (int) floorDiv( localMillis - PG_EPOCH_MILLIS, MILLIS_PER_DAY ) );
+            break;
+        }
+        case TIME: {
+            Date date = toDate( value );
+            long localMillis = toLocalMillis( date );
+            long millisOfDay = localMillis - floorDiv( localMillis, MILLIS_PER_DAY ) * MILLIS_PER_DAY;
+            out.writeInt( 8 );
+            out.writeLong( millisOfDay * 1000 + getSubMillisMicros( date ) );
+            break;
+        }
+        case TIMESTAMP: {
+            Date date = toDate( value );
+            out.writeInt( 8 );
+            out.writeLong( ( toLocalMillis( date ) - PG_EPOCH_MILLIS ) * 1000 + getSubMillisMicros( date ) );
+            break;
+        }
+        case TIMESTAMPTZ: {
+            Date date = toDate( value );
+            out.writeInt( 8 );
+            out.writeLong( ( date.getTime() - PG_EPOCH_MILLIS ) * 1000 + getSubMillisMicros( date ) );
+            break;
+        }
+        case UUID: {
+            UUID uuid = value instanceof UUID ? (UUID) value : UUID.fromString( value.toString() );
+            out.writeInt( 16 );
+            out.writeLong( uuid.getMostSignificantBits() );
+            out.writeLong( uuid.getLeastSignificantBits() );
+            break;
+        }
+        }
+    }
+
+    private static void writeNumeric( DataOutputStream out, BigDecimal value )
+                            throws IOException {
+        int sign = value.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS;
+        BigDecimal abs = value.abs();
+        int dscale = Math.max( abs.scale(), 0 );
+        String plain = abs.toPlainString();
+        int dot = plain.indexOf( '.' );
+        String intPart = dot < 0 ? plain : plain.substring( 0, dot );
+        String fracPart = dot < 0 ? "" : plain.substring( dot + 1 );
+
+        // split into base 10000 digits (groups of four decimal digits, aligned at the decimal point)
+        StringBuilder digits = new StringBuilder();
+        for ( int i = 0; i < ( 4 - intPart.length() % 4 ) % 4; i++ ) {
+            digits.append( '0' );
+        }
+        digits.append( intPart );
+        int intGroups = digits.length() / 4;
+        digits.append( fracPart );
+        while ( digits.length() % 4 != 0 ) {
+            digits.append( '0' );
+        }
+        List<Integer> groups = new ArrayList<Integer>();
+        for ( int i = 0; i < digits.length(); i += 4 ) {
+            groups.add( Integer.parseInt( digits.substring( i, i + 4 ) ) );
+        }
+
+        int weight = intGroups - 1;
+        while ( !groups.isEmpty() && groups.get( 0 ) == 0 ) {
+            groups.remove( 0 );
+            weight--;
+        }
+        while ( !groups.isEmpty() && groups.get( groups.size() - 1 ) == 0 ) {
+            groups.remove( groups.size() - 1 );
+        }
+        if ( groups.isEmpty() ) {
+            weight = 0;
+            sign = NUMERIC_POS;
+        }
+
+        out.writeInt( 8 + 2 * groups.size() );
+        out.writeShort( groups.size() );
+        out.writeShort( weight );
+        out.writeShort( sign );
+        out.writeShort( dscale );
+        for ( int group : groups ) {
+            out.writeShort( group );
+        }
+    }
+
+    private static int toInt( Object value, int min, int max ) {
+        long l = toLong( value );
+        if ( l < min || l > max ) {
+            throw new IllegalArgumentException( "Value is out of range [" + min + "," + max + "]." );
+        }
+        return (int) l;
+    }
+
+    private static long toLong( Object value ) {
+        if ( value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+            return ( (Number) value ).longValue();
+        }
+        if ( value instanceof Boolean ) {
+            return ( (Boolean) value ) ? 1 : 0;
+        }
+        // fails for fractional values and values outside of the long range (instead of truncating them)
+        return toBigDecimal( value ).longValueExact();
+    }
+
+    private static double toDouble( Object value ) {
+        if ( value instanceof Number ) {
+            return ( (Number) value ).doubleValue();
+        }
+        return Double.parseDouble( value.toString().trim() );
+    }
+
+    private static BigDecimal toBigDecimal( Object value ) {
+        if ( value instanceof BigDecimal ) {
+            return (BigDecimal) value;
+        }
+        if ( value instanceof Double || value instanceof Float ) {
+            return BigDecimal.valueOf( ( (Number) value ).doubleValue() );
+        }
+        return new BigDecimal( value.toString().trim() );
+    }
+
+    private static boolean toBoolean( Object value ) {
+        if ( value instanceof Boolean ) {
+            return (Boolean) value;
+        }
+        String s = value.toString().trim();
+        if ( "1".equals( s ) || "t".equalsIgnoreCase( s ) || "true".equalsIgnoreCase( s ) ) {
+            return true;
+        }
+        if ( "0".equals( s ) || "f".equalsIgnoreCase( s ) || "false".equalsIgnoreCase( s ) ) {
+            return false;
+        }
+        throw new IllegalArgumentException( "Not a boolean value." );
+    }
+
+    private static Date toDate( Object value ) {
+        if ( value instanceof Date ) {
+            return (Date) value;
+        }
+        throw new IllegalArgumentException( "Expected date, but got " + value.getClass() + "." );
+    }
+
+    private static long toLocalMillis( Date date ) {
+        long millis = date.getTime();
+        return millis + TimeZone.getDefault().getOffset( millis );
+    }
+
+    private static long getSubMillisMicros( Date date ) {
+        if ( date instanceof Timestamp ) {
+            return ( ( (Timestamp) date ).getNanos() % 1000000 ) / 1000;
+        }
+        return 0;
+    }
+
+    private static long floorDiv( long x, long y ) {
+        long q = x / y;
+        if ( ( x % y != 0 ) && ( ( x < 0 ) != ( y < 0 ) ) ) {
+            q--;
+        }
+        return q;
+    }
+}
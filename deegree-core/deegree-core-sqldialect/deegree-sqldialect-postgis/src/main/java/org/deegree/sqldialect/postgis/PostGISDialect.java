@@ -284,4 +284,23 @@ public class PostGISDialect implements SQLDialect {
         return "SELECT nextval('" + sequence + "')";
     }
 
+    @Override
+    public String getSelectSequenceNextVals( String sequence, int num ) {
+        return "SELECT nextval('" + sequence + "') FROM generate_series(1," + num + ")";
+    }
+
+    @Override
+    public String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit ) {
+        StringBuilder paged = new StringBuilder( sql );
+        if ( limit >= 0 ) {
+            paged.append( " LIMIT " );
+            paged.append( limit );
+        }
+        if ( offset > 0 ) {
+            paged.append( " OFFSET " );
+            paged.append( offset );
+        }
+        return paged.toString();
+    }
+
 }
@@ -97,6 +97,28 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         return asewkb + "(" + column + ")";
     }
 
+    /**
+     * Returns the snippet for selecting generalized geometries, e.g. for rendering maps at a certain resolution.
+     * <p>
+     * The vertices are snapped to a grid with the given tolerance as cell size and the geometries are simplified using
+     * the same tolerance (topology preserving).
+     * </p>
+     *
+     * @param tableAlias
+     *            alias of the table that contains the column, can be <code>null</code>
+     * @param tolerance
+     *            distance tolerance (in units of the CRS of the stored geometries), must be positive
+     * @return select snippet, never <code>null</code>
+     */
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        String qualifiedColumn = tableAlias != null ? tableAlias + "." + column : column;
+        if ( useLegacyPredicates ) {
+            return "AsEWKB(SnapToGrid(" + qualifiedColumn + "," + tolerance + "))";
+        }
+        return "ST_AsEWKB(ST_SimplifyPreserveTopology(ST_SnapToGrid(" + qualifiedColumn + "," + tolerance + "),"
+               + tolerance + "))";
+    }
+
     @Override
     public Geometry toParticle( ResultSet rs, int colIndex )
                             throws SQLException {
@@ -139,6 +161,42 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         stmt.setBytes( paramIndex, wkb );
     }
 
+    /**
+     * Returns the EWKB encoding of the given geometry, i.e. the WKB encoding plus the PostGIS spatial reference
+     * identifier.
+     * <p>
+     * This is the representation that PostGIS expects for binary transfers of geometry values (e.g.
+     * <code>COPY ... FROM STDIN (FORMAT binary)</code>). If the geometry uses a different CRS, it is transformed to the
+     * storage CRS first.
+     * </p>
+     * 
+     * @param particle
+     *            geometry to be encoded, can be <code>null</code>
+     * @return EWKB encoding, or <code>null</code> if the geometry is <code>null</code>
+     * @throws SQLException
+     *             if the geometry cannot be transformed to the storage CRS
+     */
+    public byte[] toEWKB( Geometry particle )
+                            throws SQLException {
+        if ( particle == null ) {
+            return null;
+        }
+        Geometry compatible = getCompatibleGeometry( particle );
+        int sridValue = -1;
+        if ( srid != null ) {
+            try {
+                sridValue = Integer.parseInt( srid.trim() );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Invalid PostGIS SRID '" + srid + "'. Encoding geometry without SRID." );
+            }
+        }
+        try {
+            return WKBWriter.write( compatible, sridValue );
+        } catch ( Throwable t ) {
+            throw new IllegalArgumentException( t.getMessage(), t );
+        }
+    }
+
     private Geometry getCompatibleGeometry( Geometry literal )
                             throws SQLException {
         if ( crs == null ) {
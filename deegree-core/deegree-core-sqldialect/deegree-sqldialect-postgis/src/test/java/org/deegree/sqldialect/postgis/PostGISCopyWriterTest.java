@@ -0,0 +1,333 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKBReader;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+
+/**
+ * Tests for the binary encoding of {@link PostGISCopyWriter}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISCopyWriterTest {
+
+    // signature (11 bytes), flags (4 bytes), header extension length (4 bytes)
+    private static final int HEADER_LENGTH = 19;
+
+    // 2000-01-01 00:00:00 UTC
+    private static final long PG_EPOCH_MILLIS = 946684800000L;
+
+    @Test
+    public void testHeader()
+                            throws SQLException {
+        PostGISCopyWriter writer = createWriter( "int4" );
+        byte[] data = writer.getBufferedData();
+        assertEquals( HEADER_LENGTH, data.length );
+        byte[] signature = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+        assertArrayEquals( signature, Arrays.copyOf( data, signature.length ) );
+        assertEquals( 0, writer.getNumRows() );
+    }
+
+    @Test
+    public void testIntegers()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "int2", "int4", "int8" );
+        writer.addRow( new Object[] { (short) -42, Integer.MAX_VALUE, Long.MIN_VALUE } );
+        writer.addRow( new Object[] { 7, new BigDecimal( "-7" ), "123456789012" } );
+        assertEquals( 2, writer.getNumRows() );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 3, in.readShort() );
+        assertEquals( 2, in.readInt() );
+        assertEquals( -42, in.readShort() );
+        assertEquals( 4, in.readInt() );
+        assertEquals( Integer.MAX_VALUE, in.readInt() );
+        assertEquals( 8, in.readInt() );
+        assertEquals( Long.MIN_VALUE, in.readLong() );
+
+        assertEquals( 3, in.readShort() );
+        assertEquals( 2, in.readInt() );
+        assertEquals( 7, in.readShort() );
+        assertEquals( 4, in.readInt() );
+        assertEquals( -7, in.readInt() );
+        assertEquals( 8, in.readInt() );
+        assertEquals( 123456789012L, in.readLong() );
+        assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testInt2OutOfRange()
+                            throws SQLException {
+        assertRejected( createWriter( "int2" ), 40000 );
+        assertRejected( createWriter( "int2" ), Short.MIN_VALUE - 1 );
+    }
+
+    @Test
+    public void testInt4OutOfRange()
+                            throws SQLException {
+        assertRejected( createWriter( "int4" ), 1L << 32 );
+        assertRejected( createWriter( "int4" ), "-2147483649" );
+    }
+
+    @Test
+    public void testIntegerFraction()
+                            throws SQLException {
+        assertRejected( createWriter( "int4" ), 1.5 );
+        assertRejected( createWriter( "int8" ), new BigDecimal( "0.1" ) );
+    }
+
+    @Test
+    public void testRejectedValueDoesNotCorruptBuffer()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "text", "int2" );
+        writer.addRow( new Object[] { "a", 1 } );
+        assertRejected( writer, "b", 100000 );
+        writer.addRow( new Object[] { "c", 3 } );
+        assertEquals( 2, writer.getNumRows() );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 2, in.readShort() );
+        assertEquals( "a", readText( in ) );
+        assertEquals( 2, in.readInt() );
+        assertEquals( 1, in.readShort() );
+        assertEquals( 2, in.readShort() );
+        assertEquals( "c", readText( in ) );
+        assertEquals( 2, in.readInt() );
+        assertEquals( 3, in.readShort() );
+        assertEquals( -1, in.read() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfValues()
+                            throws SQLException {
+        createWriter( "int4", "int4" ).addRow( new Object[] { 1 } );
+    }
+
+    @Test
+    public void testNulls()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "int4", "text", "geometry", "timestamp", "numeric" );
+        writer.addRow( new Object[5] );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 5, in.readShort() );
+        for ( int i = 0; i < 5; i++ ) {
+            assertEquals( -1, in.readInt() );
+        }
+        assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testFloatsAndBooleans()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "float4", "float8", "bool", "bool" );
+        writer.addRow( new Object[] { 1.5f, "-2.25", Boolean.TRUE, "f" } );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 4, in.readShort() );
+        assertEquals( 4, in.readInt() );
+        assertEquals( 1.5f, in.readFloat(), 0.0 );
+        assertEquals( 8, in.readInt() );
+        assertEquals( -2.25, in.readDouble(), 0.0 );
+        assertEquals( 1, in.readInt() );
+        assertEquals( 1, in.readByte() );
+        assertEquals( 1, in.readInt() );
+        assertEquals( 0, in.readByte() );
+        assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testNumeric()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "numeric", "numeric", "numeric" );
+        writer.addRow( new Object[] { new BigDecimal( "12345.678" ), new BigDecimal( "-0.5" ), BigDecimal.ZERO } );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 3, in.readShort() );
+        // 1 2345 . 6780
+        assertNumeric( in, 1, 0x0000, 3, 1, 2345, 6780 );
+        // 0 . 5000
+        assertNumeric( in, -1, 0x4000, 1, 5000 );
+        assertNumeric( in, 0, 0x0000, 0 );
+        assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testText()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "varchar", "\"pg_catalog\".\"text\"" );
+        writer.addRow( new Object[] { "Münster", 42 } );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 2, in.readShort() );
+        assertEquals( 8, in.readInt() );
+        byte[] bytes = new byte[8];
+        in.readFully( bytes );
+        assertEquals( "Münster", new String( bytes, "UTF-8" ) );
+        assertEquals( "42", readText( in ) );
+        assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testTimestampTzAndUuid()
+                            throws Exception {
+        PostGISCopyWriter writer = createWriter( "timestamptz", "uuid" );
+        Timestamp timestamp = new Timestamp( PG_EPOCH_MILLIS + 1500 );
+        timestamp.setNanos( 500123000 );
+        UUID uuid = UUID.randomUUID();
+        writer.addRow( new Object[] { timestamp, uuid.toString() } );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 2, in.readShort() );
+        assertEquals( 8, in.readInt() );
+        assertEquals( 1500123L, in.readLong() );
+        assertEquals( 16, in.readInt() );
+        assertEquals( uuid, new UUID( in.readLong(), in.readLong() ) );
+        assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testGeometry()
+                            throws Exception {
+        Point point = new GeometryFactory().createPoint( null, 7.5, 51.25, null );
+        byte[] ewkb = new PostGISGeometryConverter( "geom", null, "4326", false ).toEWKB( point );
+        PostGISCopyWriter writer = createWriter( "int4", "public.geometry" );
+        writer.addRow( new Object[] { 1, ewkb } );
+
+        DataInputStream in = openRows( writer );
+        assertEquals( 2, in.readShort() );
+        assertEquals( 4, in.readInt() );
+        assertEquals( 1, in.readInt() );
+        assertEquals( ewkb.length, in.readInt() );
+        byte[] bytes = new byte[ewkb.length];
+        in.readFully( bytes );
+        assertArrayEquals( ewkb, bytes );
+        assertEquals( -1, in.read() );
+
+        Geometry decoded = WKBReader.read( bytes, null );
+        assertTrue( decoded instanceof Point );
+        assertEquals( 7.5, ( (Point) decoded ).get0(), 0.0 );
+        assertEquals( 51.25, ( (Point) decoded ).get1(), 0.0 );
+    }
+
+    @Test
+    public void testGeometryRequiresBytes()
+                            throws SQLException {
+        assertRejected( createWriter( "geometry" ), "POINT(1 2)" );
+    }
+
+    @Test
+    public void testUnsupportedType() {
+        assertFalse( PostGISCopyWriter.isSupported( "tsvector" ) );
+        assertTrue( PostGISCopyWriter.isSupported( "GEOGRAPHY" ) );
+        try {
+            createWriter( "int4", "tsvector" );
+            fail( "Expected SQLException." );
+        } catch ( SQLException e ) {
+            // expected
+        }
+    }
+
+    private static PostGISCopyWriter createWriter( String... types )
+                            throws SQLException {
+        String[] columns = new String[types.length];
+        for ( int i = 0; i < types.length; i++ ) {
+            columns[i] = "col" + i;
+        }
+        return new PostGISCopyWriter( "test", Arrays.asList( columns ), types );
+    }
+
+    private static DataInputStream openRows( PostGISCopyWriter writer )
+                            throws IOException {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( writer.getBufferedData() ) );
+        in.skipBytes( HEADER_LENGTH );
+        return in;
+    }
+
+    private static String readText( DataInputStream in )
+                            throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, "UTF-8" );
+    }
+
+    private static void assertNumeric( DataInputStream in, int weight, int sign, int dscale, int... digits )
+                            throws IOException {
+        assertEquals( 8 + 2 * digits.length, in.readInt() );
+        assertEquals( digits.length, in.readShort() );
+        assertEquals( weight, in.readShort() );
+        assertEquals( sign, in.readShort() );
+        assertEquals( dscale, in.readShort() );
+        for ( int digit : digits ) {
+            assertEquals( digit, in.readShort() );
+        }
+    }
+
+    private static void assertRejected( PostGISCopyWriter writer, Object... values ) {
+        int numRows = writer.getNumRows();
+        int bufferSize = writer.getBufferSize();
+        try {
+            writer.addRow( values );
+            fail( "Expected IllegalArgumentException for " + Arrays.toString( values ) + "." );
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+        assertEquals( numRows, writer.getNumRows() );
+        assertEquals( bufferSize, writer.getBufferSize() );
+    }
+}
@@ -60,6 +60,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -74,6 +75,7 @@ import org.apache.commons.codec.binary.Base64;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.Triple;
 import org.deegree.feature.Feature;
+import org.deegree.filter.Expression;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.style.se.unevaluated.Continuation;
 import org.deegree.style.se.unevaluated.Continuation.Updater;
@@ -124,6 +126,11 @@ class GraphicSymbologyParser {
                             public void updateStep( Graphic base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.mark, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return pair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -138,6 +145,11 @@ class GraphicSymbologyParser {
                                 p.third.evaluate( list, f, evaluator );
                                 base.image = list.poll();
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return p.third.collectExpressions( exprs );
+                            }
                         };
                     } else {
                         base.image = p.first;
@@ -312,6 +324,11 @@ class GraphicSymbologyParser {
                             public void updateStep( Mark base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fill.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return fill.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 } else if ( in.getLocalName().equals( "Stroke" ) ) {
@@ -323,6 +340,11 @@ class GraphicSymbologyParser {
                             public void updateStep( Mark base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 stroke.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return stroke.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 } else if ( in.isStartElement() ) {
@@ -410,6 +432,11 @@ class GraphicSymbologyParser {
                                 e.printStackTrace();
                             }
                         }
+
+                        @Override
+                        protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                            return sbcontn.collectExpressions( exprs );
+                        }
                     };
                 }
             }
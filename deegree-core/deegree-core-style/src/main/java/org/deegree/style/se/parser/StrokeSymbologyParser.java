@@ -51,6 +51,7 @@ import static org.deegree.style.styling.components.Stroke.LineJoin.ROUND;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.Color;
+import java.util.Collection;
 
 import javax.xml.stream.Location;
 import javax.xml.stream.XMLStreamException;
@@ -58,6 +59,7 @@ import javax.xml.stream.XMLStreamReader;
 
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
+import org.deegree.filter.Expression;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.style.se.unevaluated.Continuation;
 import org.deegree.style.se.unevaluated.Continuation.Updater;
@@ -209,6 +211,11 @@ class StrokeSymbologyParser {
                     public void updateStep( Stroke base, Feature f, XPathEvaluator<Feature> evaluator ) {
                         pair.second.evaluate( base.fill, f, evaluator );
                     }
+
+                    @Override
+                    protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                        return pair.second.collectExpressions( exprs );
+                    }
                 };
             }
         }
@@ -234,6 +241,11 @@ class StrokeSymbologyParser {
                             public void updateStep( Stroke base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return pair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
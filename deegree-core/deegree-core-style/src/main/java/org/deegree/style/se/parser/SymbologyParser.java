@@ -47,6 +47,7 @@ import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.stax.XMLStreamUtils.getElementTextAsBoolean;
 import static org.deegree.commons.xml.stax.XMLStreamUtils.getElementTextAsRelaxedQName;
 import static org.deegree.commons.xml.stax.XMLStreamUtils.skipElement;
+import static org.deegree.filter.Filters.getPropertyNames;
 import static org.deegree.filter.xml.Filter110XMLDecoder.parseExpression;
 import static org.deegree.style.se.parser.SymbologyParsingHelper.parseCommon;
 import static org.deegree.style.styling.components.UOM.Foot;
@@ -60,6 +61,7 @@ import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -83,6 +85,7 @@ import org.deegree.filter.Expression;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.compiled.FilterCompiler;
 import org.deegree.filter.expression.custom.se.Categorize;
 import org.deegree.filter.expression.custom.se.Interpolate;
 import org.deegree.filter.xml.Filter110XMLDecoder;
@@ -230,6 +233,11 @@ public class SymbologyParser {
                         public void updateStep( PointStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                             pair.second.evaluate( base.graphic, f, evaluator );
                         }
+
+                        @Override
+                        protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                            return pair.second.collectExpressions( exprs );
+                        }
                     }, common.geometry, null, common.loc, common.line, common.col );
                 }
             } else if ( in.isStartElement() ) {
@@ -518,6 +526,11 @@ public class SymbologyParser {
                             public void updateStep( LineStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return pair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -578,6 +591,11 @@ public class SymbologyParser {
                             public void updateStep( PolygonStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return pair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -593,6 +611,11 @@ public class SymbologyParser {
                             public void updateStep( PolygonStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fillPair.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return fillPair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -732,6 +755,16 @@ public class SymbologyParser {
 
                         updater.update( base, tmp.toString() );
                     }
+
+                    @Override
+                    protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                        for ( Pair<String, Pair<Expression, String>> p : text ) {
+                            if ( p.second != null ) {
+                                exprs.add( p.second.first );
+                            }
+                        }
+                        return true;
+                    }
                 };
             }
         }
@@ -863,6 +896,11 @@ public class SymbologyParser {
                                                             XPathEvaluator<Feature> evaluator ) {
                                         pair.second.evaluate( base.linePlacement, f, evaluator );
                                     }
+
+                                    @Override
+                                    protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                        return pair.second.collectExpressions( exprs );
+                                    }
                                 };
                             }
                         }
@@ -879,6 +917,11 @@ public class SymbologyParser {
                             public void updateStep( TextStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 haloPair.second.evaluate( base.halo, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return haloPair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -893,6 +936,11 @@ public class SymbologyParser {
                             public void updateStep( TextStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fontPair.second.evaluate( base.font, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return fontPair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -907,6 +955,11 @@ public class SymbologyParser {
                             public void updateStep( TextStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fillPair.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return fillPair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -1015,6 +1068,11 @@ public class SymbologyParser {
                             public void updateStep( Halo base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fillPair.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+                                return fillPair.second.collectExpressions( exprs );
+                            }
                         };
                     }
                 }
@@ -1333,7 +1391,7 @@ public class SymbologyParser {
         public Common common;
 
         public FilterContinuation( Filter filter, LinkedList<Symbolizer<?>> syms, Common common ) {
-            this.filter = filter;
+            this.filter = FilterCompiler.compile( filter );
             this.syms = syms;
             this.common = common;
         }
@@ -1352,6 +1410,19 @@ public class SymbologyParser {
             }
         }
 
+        @Override
+        protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+            if ( filter != null && filter != ELSEFILTER ) {
+                exprs.addAll( Arrays.asList( getPropertyNames( filter ) ) );
+            }
+            for ( Symbolizer<?> sym : syms ) {
+                if ( !sym.collectExpressions( exprs ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         /**
          * @return the symbolizers
          */
@@ -36,7 +36,10 @@
 
 package org.deegree.style.se.unevaluated;
 
+import java.util.Collection;
+
 import org.deegree.feature.Feature;
+import org.deegree.filter.Expression;
 import org.deegree.filter.XPathEvaluator;
 
 /**
@@ -83,6 +86,32 @@ public abstract class Continuation<T> {
         }
     }
 
+    /**
+     * Collects the expressions that are evaluated by this continuation (including all following steps).
+     * 
+     * @param exprs
+     *            collection to add the expressions to, must not be <code>null</code>
+     * @return true, if all evaluated expressions could be determined, false otherwise
+     */
+    public boolean collectExpressions( Collection<Expression> exprs ) {
+        if ( !collectStepExpressions( exprs ) ) {
+            return false;
+        }
+        return next == null || next.collectExpressions( exprs );
+    }
+
+    /**
+     * Collects the expressions that are evaluated by {@link #updateStep(Object, Feature, XPathEvaluator)}. The default
+     * implementation returns false, as the expressions of arbitrary steps are unknown.
+     * 
+     * @param exprs
+     *            collection to add the expressions to, must not be <code>null</code>
+     * @return true, if all evaluated expressions could be determined, false otherwise
+     */
+    protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+        return false;
+    }
+
     /**
      * <code>Updater</code>
      * 
@@ -59,7 +59,10 @@ import org.deegree.commons.utils.DoublePair;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.Triple;
 import org.deegree.feature.Feature;
+import org.deegree.filter.Expression;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.expression.custom.AbstractCustomExpression;
 import org.deegree.filter.function.geometry.IsCurve;
 import org.deegree.filter.function.geometry.IsPoint;
 import org.deegree.filter.function.geometry.IsSurface;
@@ -281,6 +284,55 @@ public class Style implements Copyable<Style> {
         return (LinkedList) res;
     }
 
+    /**
+     * Determines the properties that are accessed when this style is applied to features. Symbolizers without a
+     * geometry expression (and the default style) use the geometry properties of the feature, these are not included.
+     * 
+     * @return property names accessed by the rule filters, symbolizers and labels, may be empty, <code>null</code> if
+     *         the properties cannot be determined
+     */
+    public List<ValueReference> getPropertyNames() {
+        List<ValueReference> propNames = new ArrayList<ValueReference>();
+        if ( useDefault ) {
+            return propNames;
+        }
+        List<Expression> exprs = new ArrayList<Expression>();
+        for ( Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair> rule : rules ) {
+            if ( !rule.first.collectExpressions( exprs ) ) {
+                return null;
+            }
+        }
+        for ( Continuation<StringBuffer> label : labels.values() ) {
+            if ( label != null && !label.collectExpressions( exprs ) ) {
+                return null;
+            }
+        }
+        for ( Expression expr : exprs ) {
+            if ( !addPropertyNames( expr, propNames ) ) {
+                return null;
+            }
+        }
+        return propNames;
+    }
+
+    private static boolean addPropertyNames( Expression expr, List<ValueReference> propNames ) {
+        if ( expr instanceof ValueReference ) {
+            propNames.add( (ValueReference) expr );
+            return true;
+        }
+        if ( expr instanceof AbstractCustomExpression ) {
+            // custom expressions (e.g. SE Categorize) don't expose their arguments
+            LOG.debug( "Cannot determine the properties accessed by custom expression '{}'.", expr );
+            return false;
+        }
+        for ( Expression param : expr.getParams() ) {
+            if ( !addPropertyNames( param, propNames ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return the live list of rules
      */
@@ -449,6 +501,14 @@ public class Style implements Copyable<Style> {
         public void updateStep( T base, Feature f, XPathEvaluator<Feature> evaluator ) {
             base.add( value );
         }
+
+        @Override
+        protected boolean collectStepExpressions( Collection<Expression> exprs ) {
+            if ( value instanceof Symbolizer<?> ) {
+                return ( (Symbolizer<?>) value ).collectExpressions( exprs );
+            }
+            return false;
+        }
     }
 
     @Override
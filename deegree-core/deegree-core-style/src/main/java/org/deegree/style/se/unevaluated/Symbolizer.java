@@ -38,6 +38,7 @@ package org.deegree.style.se.unevaluated;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -269,4 +270,22 @@ public class Symbolizer<T extends Styling<T>> {
         return geometry;
     }
 
+    /**
+     * Collects the expressions that are evaluated by {@link #evaluate(Feature, XPathEvaluator)}. If there's no
+     * geometry expression, the geometry properties of the feature are used, but nothing is added for them.
+     * 
+     * @param exprs
+     *            collection to add the expressions to, must not be <code>null</code>
+     * @return true, if all evaluated expressions could be determined, false otherwise
+     */
+    public boolean collectExpressions( Collection<Expression> exprs ) {
+        if ( geometry != null ) {
+            exprs.add( geometry );
+        }
+        if ( evaluated != null || next == null ) {
+            return true;
+        }
+        return next.collectExpressions( exprs );
+    }
+
 }
\ No newline at end of file
@@ -66,6 +66,9 @@ public class BBoxTracker {
 
     private final Map<QName, Envelope> increaseBBoxes = new HashMap<QName, Envelope>();
 
+    // all feature types affected by an event
+    private final Set<QName> modifiedFts = new HashSet<QName>();
+
     /**
      * An insert event for the specified feature instance.
      * 
@@ -75,6 +78,7 @@ public class BBoxTracker {
      *            srs of stored envelope, must not be <code>null</code>
      */
     public void insert( Feature f, ICRS storageSrs ) {
+        modifiedFts.add( f.getName() );
         if ( !recalcFts.contains( f.getName() ) ) {
             Envelope bbox = f.getEnvelope();
             if ( bbox != null ) {
@@ -97,6 +101,17 @@ public class BBoxTracker {
         }
     }
 
+    /**
+     * An insert event for a feature of the specified feature type that has no envelope information (e.g. a feature type
+     * without geometry properties).
+     * 
+     * @param ft
+     *            feature type of the inserted feature, must not be <code>null</code>
+     */
+    public void insert( QName ft ) {
+        modifiedFts.add( ft );
+    }
+
     /**
      * An update event for the specified feature type.
      * 
@@ -104,6 +119,7 @@ public class BBoxTracker {
      *            feature type to be updated, must not be <code>null</code>
      */
     public void update( QName ft ) {
+        modifiedFts.add( ft );
         LOG.debug( "Update on feature type '" + ft + "'. Full bbox recalculation required on commit." );
         recalcFts.add( ft );
     }
@@ -115,6 +131,7 @@ public class BBoxTracker {
      *            feature type to be deleted, must not be <code>null</code>
      */
     public void delete( QName ft ) {
+        modifiedFts.add( ft );
         LOG.debug( "Delete on feature type '" + ft + "'. Full bbox recalculation required on commit." );
         recalcFts.add( ft );
     }
@@ -136,4 +153,13 @@ public class BBoxTracker {
     public Set<QName> getRecalcFeatureTypes() {
         return recalcFts;
     }
+
+    /**
+     * Returns the names of all feature types that are affected by an insert, update or delete event.
+     * 
+     * @return names of feature types, never <code>null</code>
+     */
+    public Set<QName> getModifiedFeatureTypes() {
+        return modifiedFts;
+    }
 }
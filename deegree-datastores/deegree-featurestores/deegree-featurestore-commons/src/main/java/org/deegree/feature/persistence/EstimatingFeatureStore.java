@@ -0,0 +1,62 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import org.deegree.feature.persistence.query.Query;
+
+/**
+ * {@link FeatureStore} that may determine the number of hits of a {@link Query} approximately (e.g. by using database
+ * statistics or by stopping to count at a certain limit).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface EstimatingFeatureStore extends FeatureStore {
+
+    /**
+     * Returns whether the given number of hits (as returned by {@link #queryHits(Query)}) is the exact number of
+     * features that are matched by the query.
+     * 
+     * @param query
+     *            query that has been performed, must not be <code>null</code>
+     * @param hits
+     *            number of hits returned for the query
+     * @return <code>true</code>, if the number is exact, <code>false</code> if it is an estimate or a lower bound
+     */
+    boolean isExactHits( Query query, int hits );
+}
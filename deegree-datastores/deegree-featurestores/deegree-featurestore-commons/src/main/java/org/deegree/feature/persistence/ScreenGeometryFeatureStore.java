@@ -0,0 +1,72 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import java.awt.geom.AffineTransform;
+
+import org.deegree.feature.persistence.query.Query;
+
+/**
+ * {@link FeatureStore} that can decode the geometries of the features matched by a {@link Query} directly into screen
+ * coordinates, without creating features or geometry objects (render-only read path for map rendering).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface ScreenGeometryFeatureStore extends FeatureStore {
+
+    /**
+     * Passes the geometries of the features that match the given query to the given visitor (in screen coordinates).
+     * <p>
+     * Only queries that can be answered without accessing the feature properties are supported (i.e. no filters
+     * except for a bbox constraint and no sorting). If the query is not supported, nothing is passed to the visitor
+     * and <code>false</code> is returned, so the caller can fall back to {@link #query(Query)}.
+     * </p>
+     * 
+     * @param query
+     *            query to be performed, must not be <code>null</code>
+     * @param worldToScreen
+     *            transformation from the CRS of the query bbox to screen coordinates, must not be <code>null</code>
+     * @param visitor
+     *            receives the geometries, must not be <code>null</code>
+     * @return true, if the query has been performed, false if it is not supported
+     * @throws FeatureStoreException
+     */
+    boolean queryScreenGeometries( Query query, AffineTransform worldToScreen, ScreenGeometryVisitor visitor )
+                            throws FeatureStoreException;
+}
@@ -0,0 +1,85 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import java.awt.geom.Path2D;
+
+/**
+ * Receives the geometries of features in screen coordinates (see {@link ScreenGeometryFeatureStore}).
+ * <p>
+ * Every method is called once per feature. The path objects may be reused for the next feature, so they must not be
+ * kept after the call.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface ScreenGeometryVisitor {
+
+    /** Path type for (multi) points, the path consists of moveTo segments only. */
+    int POINTS = 0;
+
+    /** Path type for (multi) line strings. */
+    int LINES = 1;
+
+    /** Path type for (multi) polygons, the path consists of closed rings. */
+    int POLYGONS = 2;
+
+    /**
+     * Called for a feature with a point geometry.
+     * 
+     * @param x
+     *            screen x coordinate
+     * @param y
+     *            screen y coordinate
+     * @return true, if more features should be passed, false to stop
+     */
+    boolean visitPoint( double x, double y );
+
+    /**
+     * Called for a feature with a (multi) point, (multi) line string or (multi) polygon geometry.
+     * 
+     * @param path
+     *            the points (moveTo only), line strings or polygon rings (closed) in screen coordinates, never
+     *            <code>null</code>
+     * @param type
+     *            type of the path, one of {@link #POINTS}, {@link #LINES} or {@link #POLYGONS}
+     * @return true, if more features should be passed, false to stop
+     */
+    boolean visitPath( Path2D.Double path, int type );
+}
@@ -0,0 +1,532 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.uom.Measure;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.BBoxTracker;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.comparison.PropertyIsNil;
+import org.deegree.filter.expression.Add;
+import org.deegree.filter.expression.Div;
+import org.deegree.filter.expression.Function;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.Mul;
+import org.deegree.filter.expression.Sub;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.LogicalOperator;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.spatial.SpatialOperator;
+import org.deegree.filter.temporal.TemporalOperator;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTWriter;
+import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the results of {@link Query}s to a {@link FeatureStore}.
+ * <p>
+ * Only queries for a single feature type with an optional {@link OperatorFilter} are cached. The cache key is derived
+ * from the feature type, the filter (including the query bounding box), the sort criteria, paging, required properties
+ * and resolution hint. Results with more than a maximum number of features are not cached. Entries are invalidated
+ * using the changes recorded by the {@link BBoxTracker} of a committed transaction: an insert only invalidates the
+ * entries whose query bounding box intersects the envelope of the inserted features, updates and deletes invalidate
+ * all entries of the affected feature types.
+ * </p>
+ * <p>
+ * NOTE: Changes that are not performed through the feature store (e.g. directly in the database) are not noticed.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class QueryResultCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger( QueryResultCache.class );
+
+    private final Map<String, Entry> keyToEntry;
+
+    private final int maxFeatures;
+
+    private final long timeToLive;
+
+    // incremented on every invalidation, results of queries that overlap an invalidation are not stored
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new {@link QueryResultCache} instance.
+     * 
+     * @param maxEntries
+     *            maximum number of cached query results, must be positive
+     * @param maxFeatures
+     *            maximum number of features of a cached query result, must be positive
+     * @param timeToLive
+     *            number of milliseconds after which cached results expire, <code>0</code> or negative for no expiry
+     */
+    public QueryResultCache( final int maxEntries, int maxFeatures, long timeToLive ) {
+        this.maxFeatures = maxFeatures;
+        this.timeToLive = timeToLive;
+        this.keyToEntry = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = -4521305853342451298L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache key for the given query.
+     * 
+     * @param query
+     *            query, must not be <code>null</code>
+     * @return cache key, or <code>null</code> if the query is not cacheable
+     */
+    public String getKey( Query query ) {
+        TypeName[] typeNames = query.getTypeNames();
+        if ( typeNames == null || typeNames.length != 1 ) {
+            return null;
+        }
+        Filter filter = query.getFilter();
+        if ( filter != null && !( filter instanceof OperatorFilter ) ) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append( typeNames[0].getFeatureTypeName() );
+        sb.append( '|' );
+        if ( filter != null && !appendOperator( sb, ( (OperatorFilter) filter ).getOperator() ) ) {
+            return null;
+        }
+        sb.append( '|' );
+        for ( SortProperty sortProp : query.getSortProperties() ) {
+            sb.append( sortProp.getSortProperty().getAsText() );
+            sb.append( sortProp.getSortOrder() ? " ASC," : " DESC," );
+        }
+        sb.append( '|' );
+        sb.append( query.getStartIndex() );
+        sb.append( ',' );
+        sb.append( query.getMaxFeatures() );
+        sb.append( '|' );
+        if ( query.getRequiredProperties() != null ) {
+            TreeSet<String> names = new TreeSet<String>();
+            for ( QName name : query.getRequiredProperties() ) {
+                names.add( name.toString() );
+            }
+            sb.append( names );
+        }
+        sb.append( '|' );
+        sb.append( query.getHint( HINT_RESOLUTION ) );
+        return sb.toString();
+    }
+
+    /**
+     * Returns the cached result for the given key.
+     * 
+     * @param key
+     *            cache key, must not be <code>null</code>
+     * @return cached result, or <code>null</code> if there is no (valid) entry for the key
+     */
+    public FeatureInputStream get( String key ) {
+        Entry entry = null;
+        synchronized ( keyToEntry ) {
+            entry = keyToEntry.get( key );
+            if ( entry != null && entry.expires > 0 && entry.expires < System.currentTimeMillis() ) {
+                keyToEntry.remove( key );
+                entry = null;
+            }
+        }
+        if ( entry == null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        FeatureCollection fc = new GenericFeatureCollection( null, Arrays.asList( entry.features ) );
+        return new MemoryFeatureInputStream( fc );
+    }
+
+    /**
+     * Returns the current generation of the cache.
+     * <p>
+     * Must be called before the query is performed on the backend, the result is passed to
+     * {@link #cache(String, Query, FeatureInputStream, long)}. If the cache is invalidated meanwhile, the result is not
+     * stored.
+     * </p>
+     * 
+     * @return current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns a {@link FeatureInputStream} that stores the features of the given result in the cache once it has been
+     * read completely.
+     * 
+     * @param key
+     *            cache key (as returned by {@link #getKey(Query)}), must not be <code>null</code>
+     * @param query
+     *            query that produced the result, must not be <code>null</code>
+     * @param rs
+     *            query result, must not be <code>null</code>
+     * @param startGeneration
+     *            generation of the cache before the query has been performed (as returned by
+     *            {@link #getGeneration()})
+     * @return stream that provides the same features as the given result, never <code>null</code>
+     */
+    public FeatureInputStream cache( String key, Query query, FeatureInputStream rs, long startGeneration ) {
+        QName ftName = query.getTypeNames()[0].getFeatureTypeName();
+        return new CachingFeatureInputStream( key, ftName, query.getPrefilterBBoxEnvelope(), rs, startGeneration );
+    }
+
+    /**
+     * Invalidates the cached results that may be affected by the changes recorded by the given tracker.
+     * 
+     * @param tracker
+     *            tracker of a committed transaction, must not be <code>null</code>
+     */
+    public void invalidate( BBoxTracker tracker ) {
+        if ( tracker.getModifiedFeatureTypes().isEmpty() ) {
+            return;
+        }
+        generation.incrementAndGet();
+        int removed = 0;
+        synchronized ( keyToEntry ) {
+            Iterator<Entry> iter = keyToEntry.values().iterator();
+            while ( iter.hasNext() ) {
+                Entry entry = iter.next();
+                if ( isAffected( entry, tracker ) ) {
+                    iter.remove();
+                    removed++;
+                }
+            }
+        }
+        LOG.debug( "Invalidated " + removed + " cached query results." );
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized ( keyToEntry ) {
+            keyToEntry.clear();
+        }
+    }
+
+    /**
+     * Returns the number of queries that have been answered from the cache.
+     * 
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of cacheable queries that could not be answered from the cache.
+     * 
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private boolean isAffected( Entry entry, BBoxTracker tracker ) {
+        if ( !tracker.getModifiedFeatureTypes().contains( entry.ftName ) ) {
+            return false;
+        }
+        if ( entry.bbox == null || tracker.getRecalcFeatureTypes().contains( entry.ftName ) ) {
+            return true;
+        }
+        // features without geometry never match a query with a bounding box
+        Envelope increase = tracker.getIncreaseBBoxes().get( entry.ftName );
+        if ( increase == null ) {
+            return false;
+        }
+        ICRS entryCrs = entry.bbox.getCoordinateSystem();
+        ICRS increaseCrs = increase.getCoordinateSystem();
+        if ( entryCrs != null && increaseCrs != null && !entryCrs.equals( increaseCrs ) ) {
+            // different CRS, be conservative
+            return true;
+        }
+        return entry.bbox.intersects( increase );
+    }
+
+    private void store( String key, QName ftName, Envelope bbox, List<Feature> features, long startGeneration ) {
+        long expires = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+        Entry entry = new Entry( ftName, bbox, features.toArray( new Feature[features.size()] ), expires );
+        synchronized ( keyToEntry ) {
+            // the result may be stale if the store has been modified meanwhile
+            if ( generation.get() == startGeneration ) {
+                keyToEntry.put( key, entry );
+            }
+        }
+    }
+
+    private boolean appendOperator( StringBuilder sb, Operator op ) {
+        sb.append( op.getClass().getSimpleName() );
+        sb.append( '(' );
+        boolean cacheable = true;
+        if ( op instanceof LogicalOperator ) {
+            for ( Operator param : ( (LogicalOperator) op ).getParams() ) {
+                cacheable = cacheable && appendOperator( sb, param );
+            }
+        } else if ( op instanceof ComparisonOperator ) {
+            ComparisonOperator comp = (ComparisonOperator) op;
+            sb.append( comp.isMatchCase() ).append( ',' ).append( comp.getMatchAction() ).append( ',' );
+            if ( op instanceof PropertyIsLike ) {
+                PropertyIsLike like = (PropertyIsLike) op;
+                sb.append( like.getWildCard() ).append( like.getSingleChar() ).append( like.getEscapeChar() );
+                sb.append( ',' );
+            } else if ( op instanceof PropertyIsNil ) {
+                sb.append( ( (PropertyIsNil) op ).getNilReason() ).append( ',' );
+            }
+            for ( Expression param : comp.getParams() ) {
+                cacheable = cacheable && appendExpression( sb, param );
+            }
+        } else if ( op instanceof SpatialOperator ) {
+            for ( Object param : ( (SpatialOperator) op ).getParams() ) {
+                if ( param instanceof Expression ) {
+                    cacheable = cacheable && appendExpression( sb, (Expression) param );
+                } else if ( param instanceof Envelope ) {
+                    appendEnvelope( sb, (Envelope) param );
+                } else if ( param instanceof Geometry ) {
+                    Geometry geom = (Geometry) param;
+                    sb.append( geom.getCoordinateSystem() != null ? geom.getCoordinateSystem().getAlias() : null );
+                    sb.append( WKTWriter.write( geom ) );
+                } else if ( param instanceof Measure ) {
+                    Measure measure = (Measure) param;
+                    sb.append( measure.getValue() ).append( measure.getUomUri() );
+                } else if ( param != null ) {
+                    return false;
+                }
+                sb.append( ',' );
+            }
+        } else if ( op instanceof TemporalOperator ) {
+            TemporalOperator temporal = (TemporalOperator) op;
+            cacheable = appendExpression( sb, temporal.getParameter1() )
+                        && appendExpression( sb, temporal.getParameter2() );
+        } else {
+            return false;
+        }
+        sb.append( ')' );
+        return cacheable;
+    }
+
+    private boolean appendExpression( StringBuilder sb, Expression expr ) {
+        if ( expr == null ) {
+            sb.append( "null," );
+            return true;
+        }
+        if ( expr instanceof ValueReference ) {
+            sb.append( "{" ).append( ( (ValueReference) expr ).getAsText() ).append( "}," );
+            return true;
+        }
+        if ( expr instanceof Literal<?> ) {
+            TypedObjectNode value = ( (Literal<?>) expr ).getValue();
+            if ( value != null && !( value instanceof PrimitiveValue ) ) {
+                return false;
+            }
+            sb.append( "'" ).append( value == null ? null : ( (PrimitiveValue) value ).getAsText() ).append( "'," );
+            return true;
+        }
+        if ( expr instanceof Function ) {
+            sb.append( ( (Function) expr ).getName() );
+        } else if ( expr instanceof Add || expr instanceof Sub || expr instanceof Mul || expr instanceof Div ) {
+            sb.append( expr.getClass().getSimpleName() );
+        } else {
+            // custom expressions may have parameters that are not exposed
+            return false;
+        }
+        sb.append( '(' );
+        for ( Expression param : expr.getParams() ) {
+            if ( !appendExpression( sb, param ) ) {
+                return false;
+            }
+        }
+        sb.append( ")," );
+        return true;
+    }
+
+    private void appendEnvelope( StringBuilder sb, Envelope env ) {
+        sb.append( env.getCoordinateSystem() != null ? env.getCoordinateSystem().getAlias() : null );
+        sb.append( Arrays.toString( env.getMin().getAsArray() ) );
+        sb.append( Arrays.toString( env.getMax().getAsArray() ) );
+    }
+
+    private static class Entry {
+
+        private final QName ftName;
+
+        private final Envelope bbox;
+
+        private final Feature[] features;
+
+        private final long expires;
+
+        private Entry( QName ftName, Envelope bbox, Feature[] features, long expires ) {
+            this.ftName = ftName;
+            this.bbox = bbox;
+            this.features = features;
+            this.expires = expires;
+        }
+    }
+
+    private class CachingFeatureInputStream implements FeatureInputStream {
+
+        private final String key;
+
+        private final QName ftName;
+
+        private final Envelope bbox;
+
+        private final FeatureInputStream rs;
+
+        private final long startGeneration;
+
+        private List<Feature> features = new ArrayList<Feature>();
+
+        private CachingFeatureInputStream( String key, QName ftName, Envelope bbox, FeatureInputStream rs,
+                                           long startGeneration ) {
+            this.key = key;
+            this.ftName = ftName;
+            this.bbox = bbox;
+            this.rs = rs;
+            this.startGeneration = startGeneration;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = rs.iterator();
+            return new Iterator<Feature>() {
+
+                @Override
+                public boolean hasNext() {
+                    boolean hasNext = iter.hasNext();
+                    if ( !hasNext && features != null ) {
+                        store( key, ftName, bbox, features, startGeneration );
+                        features = null;
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public Feature next() {
+                    if ( !hasNext() ) {
+                        throw new NoSuchElementException();
+                    }
+                    Feature f = iter.next();
+                    if ( features != null ) {
+                        if ( features.size() < maxFeatures ) {
+                            features.add( f );
+                        } else {
+                            LOG.debug( "Query result too large for caching." );
+                            features = null;
+                        }
+                    }
+                    return f;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            // an incompletely read result is not cached
+            features = null;
+            rs.close();
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            int i = 0;
+            for ( @SuppressWarnings("unused")
+            Feature f : this ) {
+                i++;
+            }
+            close();
+            return i;
+        }
+    }
+}
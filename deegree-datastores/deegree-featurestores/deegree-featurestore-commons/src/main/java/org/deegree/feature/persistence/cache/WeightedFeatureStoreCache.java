@@ -0,0 +1,338 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.patches.PolygonPatch;
+import org.deegree.geometry.primitive.patches.SurfacePatch;
+import org.deegree.geometry.primitive.segments.ArcString;
+import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.primitive.segments.LineStringSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FeatureStoreCache} that limits the (estimated) memory consumption of the cached objects.
+ * <p>
+ * The cache is split into segments with separate locks, so concurrent requests for different objects usually don't
+ * block each other. Each segment keeps its objects in least-recently-used order and evicts the eldest ones when its
+ * share of the maximum weight is exceeded. The weight of an object is estimated from the number of properties and the
+ * number of geometry coordinates. Optionally, objects expire after a fixed time to live.
+ * </p>
+ * 
+ * @see FeatureStore
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class WeightedFeatureStoreCache implements FeatureStoreCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger( WeightedFeatureStoreCache.class );
+
+    private static final int NUM_SEGMENTS = 16;
+
+    // estimated sizes in bytes
+    private static final long OBJECT_WEIGHT = 128;
+
+    private static final long PROPERTY_WEIGHT = 64;
+
+    private static final long COORDINATE_WEIGHT = 32;
+
+    // used for geometries that are not analyzed in detail (e.g. solids)
+    private static final long DEFAULT_COORDINATES = 64;
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+
+    private final long timeToLive;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new {@link WeightedFeatureStoreCache} instance.
+     * 
+     * @param maxWeight
+     *            maximum (estimated) size of all cached objects in bytes, must be positive
+     * @param timeToLive
+     *            number of milliseconds after which cached objects expire, <code>0</code> or negative for no expiry
+     */
+    public WeightedFeatureStoreCache( long maxWeight, long timeToLive ) {
+        this.timeToLive = timeToLive;
+        for ( int i = 0; i < NUM_SEGMENTS; i++ ) {
+            segments[i] = new Segment( Math.max( 1, maxWeight / NUM_SEGMENTS ) );
+        }
+    }
+
+    @Override
+    public GMLObject get( String id ) {
+        Segment segment = getSegment( id );
+        GMLObject obj = null;
+        synchronized ( segment ) {
+            Entry entry = segment.map.get( id );
+            if ( entry != null ) {
+                if ( entry.expires > 0 && entry.expires < System.currentTimeMillis() ) {
+                    segment.remove( id );
+                    evictions.incrementAndGet();
+                } else {
+                    obj = entry.obj;
+                }
+            }
+        }
+        if ( obj != null ) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return obj;
+    }
+
+    @Override
+    public void add( GMLObject obj ) {
+        long weight = getWeight( obj );
+        long expires = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+        Segment segment = getSegment( obj.getId() );
+        if ( weight > segment.maxWeight ) {
+            LOG.debug( "Not caching object '" + obj.getId() + "': estimated size (" + weight + " bytes) too large." );
+            return;
+        }
+        synchronized ( segment ) {
+            segment.remove( obj.getId() );
+            segment.map.put( obj.getId(), new Entry( obj, weight, expires ) );
+            segment.weight += weight;
+            evictions.addAndGet( segment.evict() );
+        }
+    }
+
+    @Override
+    public void remove( String id ) {
+        Segment segment = getSegment( id );
+        synchronized ( segment ) {
+            segment.remove( id );
+        }
+    }
+
+    @Override
+    public void clear() {
+        for ( Segment segment : segments ) {
+            synchronized ( segment ) {
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+        LOG.debug( "Cleared cache. Hits: " + getHits() + ", misses: " + getMisses() + ", evictions: "
+                   + getEvictions() );
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * 
+     * @return number of successful lookups
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups for objects that were not (or no longer) cached.
+     * 
+     * @return number of unsuccessful lookups
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of objects that have been evicted because of the size limit or because they expired.
+     * 
+     * @return number of evicted objects
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the estimated size of all cached objects.
+     * 
+     * @return estimated size in bytes
+     */
+    public long getWeight() {
+        long weight = 0;
+        for ( Segment segment : segments ) {
+            synchronized ( segment ) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    private Segment getSegment( String id ) {
+        int h = id.hashCode();
+        h ^= ( h >>> 16 );
+        return segments[h & ( NUM_SEGMENTS - 1 )];
+    }
+
+    private static long getWeight( GMLObject obj ) {
+        long weight = OBJECT_WEIGHT;
+        if ( obj instanceof Geometry ) {
+            return weight + getCoordinates( (Geometry) obj ) * COORDINATE_WEIGHT;
+        }
+        List<Property> props = obj.getProperties();
+        if ( props != null ) {
+            for ( Property prop : props ) {
+                weight += PROPERTY_WEIGHT;
+                TypedObjectNode value = prop.getValue();
+                if ( value instanceof Geometry ) {
+                    weight += getCoordinates( (Geometry) value ) * COORDINATE_WEIGHT;
+                } else if ( value instanceof PrimitiveValue ) {
+                    weight += 2 * ( (PrimitiveValue) value ).getAsText().length();
+                }
+            }
+        }
+        return weight;
+    }
+
+    private static long getCoordinates( Geometry geom ) {
+        if ( geom instanceof Point ) {
+            return 1;
+        }
+        if ( geom instanceof Curve ) {
+            long coords = 0;
+            for ( CurveSegment segment : ( (Curve) geom ).getCurveSegments() ) {
+                if ( segment instanceof LineStringSegment ) {
+                    coords += ( (LineStringSegment) segment ).getControlPoints().size();
+                } else if ( segment instanceof ArcString ) {
+                    coords += ( (ArcString) segment ).getControlPoints().size();
+                } else {
+                    coords += DEFAULT_COORDINATES;
+                }
+            }
+            return coords;
+        }
+        if ( geom instanceof Surface ) {
+            long coords = 0;
+            for ( SurfacePatch patch : ( (Surface) geom ).getPatches() ) {
+                if ( patch instanceof PolygonPatch ) {
+                    PolygonPatch polygon = (PolygonPatch) patch;
+                    if ( polygon.getExteriorRing() != null ) {
+                        coords += getCoordinates( polygon.getExteriorRing() );
+                    }
+                    for ( Ring interior : polygon.getInteriorRings() ) {
+                        coords += getCoordinates( interior );
+                    }
+                } else {
+                    coords += DEFAULT_COORDINATES;
+                }
+            }
+            return coords;
+        }
+        if ( geom instanceof MultiGeometry<?> ) {
+            long coords = 0;
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                coords += getCoordinates( member );
+            }
+            return coords;
+        }
+        return DEFAULT_COORDINATES;
+    }
+
+    private static class Entry {
+
+        private final GMLObject obj;
+
+        private final long weight;
+
+        private final long expires;
+
+        private Entry( GMLObject obj, long weight, long expires ) {
+            this.obj = obj;
+            this.weight = weight;
+            this.expires = expires;
+        }
+    }
+
+    private static class Segment {
+
+        // access ordered, eldest entry first
+        private final Map<String, Entry> map = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+        private final long maxWeight;
+
+        private long weight;
+
+        private Segment( long maxWeight ) {
+            this.maxWeight = maxWeight;
+        }
+
+        private void remove( String id ) {
+            Entry entry = map.remove( id );
+            if ( entry != null ) {
+                weight -= entry.weight;
+            }
+        }
+
+        private int evict() {
+            int evicted = 0;
+            Iterator<Entry> iter = map.values().iterator();
+            while ( weight > maxWeight && iter.hasNext() ) {
+                weight -= iter.next().weight;
+                iter.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+}
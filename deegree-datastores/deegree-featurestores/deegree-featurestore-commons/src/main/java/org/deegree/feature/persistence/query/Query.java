@@ -43,6 +43,7 @@ import static org.deegree.filter.Filters.extractPrefilterBBoxConstraint;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -79,7 +80,10 @@ public class Query {
     public enum QueryHint {
         /** If present, the store can use a different LOD for the scale. */
         HINT_SCALE,
-        /** If present, the store can simplify geometries according to the resolution. */
+        /**
+         * If present, the store can simplify geometries according to the resolution (size of a pixel in units of the
+         * CRS of the query BBOX).
+         */
         HINT_RESOLUTION
     }
 
@@ -97,8 +101,12 @@ public class Query {
 
     private int maxFeatures = -1;
 
+    private int startIndex = 0;
+
     private final List<ProjectionClause> projections;
 
+    private Set<QName> requiredProperties;
+
     /**
      * Creates a new {@link Query} instance.
      * 
@@ -190,6 +198,49 @@ public class Query {
         this.projections = emptyList();
     }
 
+    /**
+     * Creates a new {@link Query} instance that is a copy of the given query, but with the specified paging
+     * parameters.
+     * 
+     * @param query
+     *            query to be copied, must not be <code>null</code>
+     * @param startIndex
+     *            index of the first feature to be returned (zero-based), must not be negative
+     * @param maxFeatures
+     *            may be -1 if no limit needs to be exercised
+     */
+    public Query( Query query, int startIndex, int maxFeatures ) {
+        this.typeNames = query.typeNames;
+        this.filter = query.filter;
+        this.sortBy = query.sortBy;
+        this.hints.putAll( query.hints );
+        this.projections = query.projections;
+        this.requiredProperties = query.requiredProperties;
+        this.startIndex = startIndex;
+        this.maxFeatures = maxFeatures;
+    }
+
+    /**
+     * Creates a new {@link Query} instance that is a copy of the given query, but restricted to the specified
+     * properties.
+     * 
+     * @param query
+     *            query to be copied, must not be <code>null</code>
+     * @param requiredProperties
+     *            names of the properties that the returned features must contain, can be <code>null</code> (all
+     *            properties)
+     */
+    public Query( Query query, Set<QName> requiredProperties ) {
+        this.typeNames = query.typeNames;
+        this.filter = query.filter;
+        this.sortBy = query.sortBy;
+        this.hints.putAll( query.hints );
+        this.projections = query.projections;
+        this.requiredProperties = requiredProperties;
+        this.startIndex = query.startIndex;
+        this.maxFeatures = query.maxFeatures;
+    }
+
     public Object getHint( QueryHint code ) {
         return hints.get( code );
     }
@@ -271,10 +322,37 @@ public class Query {
         return projections;
     }
 
+    /**
+     * Returns the names of the properties that the returned features must contain.
+     * <p>
+     * Feature stores may use this to avoid fetching and building properties that are not needed by the client (e.g.
+     * by narrowing the SQL <code>SELECT</code> list). Properties referenced by the filter or the sort criteria do not
+     * have to be included. Feature stores that don't support this are free to return complete features.
+     * </p>
+     * 
+     * @return names of the required properties, <code>null</code> if all properties are required
+     */
+    public Set<QName> getRequiredProperties() {
+        return requiredProperties;
+    }
+
     /**
      * @return -1, if no limit has been set
      */
     public int getMaxFeatures() {
         return maxFeatures;
     }
+
+    /**
+     * Returns the index of the first feature to be returned.
+     * <p>
+     * Feature stores must skip the preceding features, either by letting the backend perform the paging (e.g. SQL
+     * <code>OFFSET</code>) or by skipping them in memory.
+     * </p>
+     * 
+     * @return index of the first feature (zero-based), 0 if no features are to be skipped
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
 }
\ No newline at end of file
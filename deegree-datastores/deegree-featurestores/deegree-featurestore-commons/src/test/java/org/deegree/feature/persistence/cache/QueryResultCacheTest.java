@@ -0,0 +1,248 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.BBoxTracker;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.SimpleGeometryFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link QueryResultCache}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class QueryResultCacheTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final FeatureType ROADS = new GenericFeatureType( new QName( NS, "Road" ),
+                                                                     new ArrayList<PropertyType>(), false );
+
+    private static final FeatureType RIVERS = new GenericFeatureType( new QName( NS, "River" ),
+                                                                      new ArrayList<PropertyType>(), false );
+
+    private static final SimpleGeometryFactory GEOM_FAC = new SimpleGeometryFactory();
+
+    private QueryResultCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new QueryResultCache( 10, 100, 0 );
+    }
+
+    @Test
+    public void testCacheHit() {
+        Query query = createQuery( ROADS, null );
+        String key = cache.getKey( query );
+        assertNotNull( key );
+        assertNull( cache.get( key ) );
+
+        readFully( cache.cache( key, query, createResult( ROADS, 3 ), cache.getGeneration() ) );
+
+        FeatureInputStream cached = cache.get( key );
+        assertNotNull( cached );
+        assertEquals( 3, cached.count() );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+    }
+
+    @Test
+    public void testIncompleteResultIsNotCached() {
+        Query query = createQuery( ROADS, null );
+        String key = cache.getKey( query );
+        FeatureInputStream rs = cache.cache( key, query, createResult( ROADS, 3 ), cache.getGeneration() );
+        rs.iterator().next();
+        rs.close();
+        assertNull( cache.get( key ) );
+    }
+
+    @Test
+    public void testTooLargeResultIsNotCached() {
+        cache = new QueryResultCache( 10, 2, 0 );
+        Query query = createQuery( ROADS, null );
+        String key = cache.getKey( query );
+        readFully( cache.cache( key, query, createResult( ROADS, 3 ), cache.getGeneration() ) );
+        assertNull( cache.get( key ) );
+    }
+
+    @Test
+    public void testInsertInvalidatesIntersectingEntries() {
+        String inside = store( createQuery( ROADS, createEnvelope( 0, 0, 10, 10 ) ) );
+        String outside = store( createQuery( ROADS, createEnvelope( 100, 100, 110, 110 ) ) );
+        String unrestricted = store( createQuery( ROADS, null ) );
+        String otherType = store( createQuery( RIVERS, null ) );
+
+        BBoxTracker tracker = new BBoxTracker();
+        Feature inserted = createFeature( ROADS, "ROAD_NEW" );
+        inserted.setEnvelope( createEnvelope( 1, 1, 2, 2 ) );
+        tracker.insert( inserted, null );
+        cache.invalidate( tracker );
+
+        assertNull( cache.get( inside ) );
+        assertNotNull( cache.get( outside ) );
+        assertNull( cache.get( unrestricted ) );
+        assertNotNull( cache.get( otherType ) );
+    }
+
+    @Test
+    public void testInsertWithoutGeometryInvalidatesUnrestrictedEntries() {
+        String bbox = store( createQuery( ROADS, createEnvelope( 0, 0, 10, 10 ) ) );
+        String unrestricted = store( createQuery( ROADS, null ) );
+
+        BBoxTracker tracker = new BBoxTracker();
+        tracker.insert( ROADS.getName() );
+        cache.invalidate( tracker );
+
+        // a feature without geometry never matches a query with a bounding box
+        assertNotNull( cache.get( bbox ) );
+        assertNull( cache.get( unrestricted ) );
+    }
+
+    @Test
+    public void testUpdateInvalidatesAllEntriesOfType() {
+        String inside = store( createQuery( ROADS, createEnvelope( 0, 0, 10, 10 ) ) );
+        String outside = store( createQuery( ROADS, createEnvelope( 100, 100, 110, 110 ) ) );
+        String otherType = store( createQuery( RIVERS, null ) );
+
+        BBoxTracker tracker = new BBoxTracker();
+        tracker.update( ROADS.getName() );
+        cache.invalidate( tracker );
+
+        assertNull( cache.get( inside ) );
+        assertNull( cache.get( outside ) );
+        assertNotNull( cache.get( otherType ) );
+    }
+
+    @Test
+    public void testDeleteInvalidatesAllEntriesOfType() {
+        String inside = store( createQuery( ROADS, createEnvelope( 0, 0, 10, 10 ) ) );
+        String outside = store( createQuery( ROADS, createEnvelope( 100, 100, 110, 110 ) ) );
+        String otherType = store( createQuery( RIVERS, null ) );
+
+        BBoxTracker tracker = new BBoxTracker();
+        tracker.delete( ROADS.getName() );
+        cache.invalidate( tracker );
+
+        assertNull( cache.get( inside ) );
+        assertNull( cache.get( outside ) );
+        assertNotNull( cache.get( otherType ) );
+    }
+
+    @Test
+    public void testConcurrentCommitPreventsCaching() {
+        Query query = createQuery( ROADS, null );
+        String key = cache.getKey( query );
+        // snapshot taken before the backend query is performed
+        long generation = cache.getGeneration();
+
+        // a transaction commits while the query is running
+        BBoxTracker tracker = new BBoxTracker();
+        tracker.delete( ROADS.getName() );
+        cache.invalidate( tracker );
+
+        readFully( cache.cache( key, query, createResult( ROADS, 3 ), generation ) );
+        assertNull( cache.get( key ) );
+
+        // the next query is cached again
+        readFully( cache.cache( key, query, createResult( ROADS, 3 ), cache.getGeneration() ) );
+        assertNotNull( cache.get( key ) );
+    }
+
+    private String store( Query query ) {
+        String key = cache.getKey( query );
+        FeatureType ft = query.getTypeNames()[0].getFeatureTypeName().equals( ROADS.getName() ) ? ROADS : RIVERS;
+        readFully( cache.cache( key, query, createResult( ft, 2 ), cache.getGeneration() ) );
+        return key;
+    }
+
+    private static void readFully( FeatureInputStream rs ) {
+        try {
+            for ( @SuppressWarnings("unused")
+            Feature f : rs ) {
+                // just read
+            }
+        } finally {
+            rs.close();
+        }
+    }
+
+    private static Query createQuery( FeatureType ft, Envelope bbox ) {
+        OperatorFilter filter = bbox != null ? new OperatorFilter( new BBOX( bbox ) ) : null;
+        return new Query( ft.getName(), filter, -1, -1, -1 );
+    }
+
+    private static FeatureInputStream createResult( FeatureType ft, int numFeatures ) {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( int i = 0; i < numFeatures; i++ ) {
+            features.add( createFeature( ft, ft.getName().getLocalPart().toUpperCase() + "_" + i ) );
+        }
+        return new MemoryFeatureInputStream( new GenericFeatureCollection( null, features ) );
+    }
+
+    private static Feature createFeature( FeatureType ft, String fid ) {
+        return new GenericFeature( ft, fid, new ArrayList<Property>(), null );
+    }
+
+    private static Envelope createEnvelope( double minX, double minY, double maxX, double maxY ) {
+        return GEOM_FAC.createEnvelope( minX, minY, maxX, maxY, null );
+    }
+}
@@ -0,0 +1,272 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link WeightedFeatureStoreCache}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class WeightedFeatureStoreCacheTest {
+
+    private static final FeatureType FT = new GenericFeatureType( new QName( "http://www.deegree.org/app", "Road" ),
+                                                                  new ArrayList<PropertyType>(), false );
+
+    // number of segments of the cache
+    private static final int SEGMENTS = 16;
+
+    // estimated size of a feature without properties
+    private static final long FEATURE_WEIGHT = 128;
+
+    // estimated size of a point
+    private static final long POINT_WEIGHT = 160;
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    @Test
+    public void testGetAfterAdd() {
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( 1024 * 1024, 0 );
+        GMLObject feature = feature( "ROAD_1" );
+        cache.add( feature );
+        assertSame( feature, cache.get( "ROAD_1" ) );
+        assertNull( cache.get( "ROAD_2" ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 0, cache.getEvictions() );
+        assertEquals( FEATURE_WEIGHT, cache.getWeight() );
+    }
+
+    @Test
+    public void testWeightOfGeometry() {
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( 1024 * 1024, 0 );
+        cache.add( geomFac.createPoint( "P_1", 1, 2, null ) );
+        assertEquals( POINT_WEIGHT, cache.getWeight() );
+        cache.add( feature( "ROAD_1" ) );
+        assertEquals( POINT_WEIGHT + FEATURE_WEIGHT, cache.getWeight() );
+    }
+
+    @Test
+    public void testReplaceDoesNotCountTwice() {
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( 1024 * 1024, 0 );
+        cache.add( feature( "ROAD_1" ) );
+        GMLObject replacement = feature( "ROAD_1" );
+        cache.add( replacement );
+        assertSame( replacement, cache.get( "ROAD_1" ) );
+        assertEquals( FEATURE_WEIGHT, cache.getWeight() );
+        assertEquals( 0, cache.getEvictions() );
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( 1024 * 1024, 0 );
+        cache.add( feature( "ROAD_1" ) );
+        cache.add( feature( "ROAD_2" ) );
+        cache.remove( "ROAD_1" );
+        assertNull( cache.get( "ROAD_1" ) );
+        assertNotNull( cache.get( "ROAD_2" ) );
+        assertEquals( FEATURE_WEIGHT, cache.getWeight() );
+        cache.clear();
+        assertNull( cache.get( "ROAD_2" ) );
+        assertEquals( 0, cache.getWeight() );
+        // removal is not an eviction
+        assertEquals( 0, cache.getEvictions() );
+    }
+
+    @Test
+    public void testObjectsLargerThanSegmentAreNotCached() {
+        // each segment holds exactly one feature, a point is too large
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( SEGMENTS * FEATURE_WEIGHT, 0 );
+        cache.add( geomFac.createPoint( "P_1", 1, 2, null ) );
+        assertNull( cache.get( "P_1" ) );
+        assertEquals( 0, cache.getWeight() );
+        cache.add( feature( "ROAD_1" ) );
+        assertNotNull( cache.get( "ROAD_1" ) );
+    }
+
+    @Test
+    public void testEvictionOfLeastRecentlyUsed() {
+        List<String> ids = getIdsInSameSegment( 3 );
+        // each segment holds two features
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( SEGMENTS * 2 * FEATURE_WEIGHT, 0 );
+        cache.add( feature( ids.get( 0 ) ) );
+        cache.add( feature( ids.get( 1 ) ) );
+        // first one is used more recently now
+        assertNotNull( cache.get( ids.get( 0 ) ) );
+        cache.add( feature( ids.get( 2 ) ) );
+
+        assertEquals( 1, cache.getEvictions() );
+        assertEquals( 2 * FEATURE_WEIGHT, cache.getWeight() );
+        assertNotNull( cache.get( ids.get( 0 ) ) );
+        assertNull( cache.get( ids.get( 1 ) ) );
+        assertNotNull( cache.get( ids.get( 2 ) ) );
+    }
+
+    @Test
+    public void testWeightNeverExceedsMaximum() {
+        long maxWeight = SEGMENTS * 4 * FEATURE_WEIGHT;
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( maxWeight, 0 );
+        for ( int i = 0; i < 1000; i++ ) {
+            cache.add( feature( "ROAD_" + i ) );
+            assertTrue( cache.getWeight() <= maxWeight );
+        }
+        assertEquals( 1000 - cache.getWeight() / FEATURE_WEIGHT, cache.getEvictions() );
+    }
+
+    @Test
+    public void testExpiry()
+                            throws InterruptedException {
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( 1024 * 1024, 50 );
+        cache.add( feature( "ROAD_1" ) );
+        assertNotNull( cache.get( "ROAD_1" ) );
+        Thread.sleep( 100 );
+        assertNull( cache.get( "ROAD_1" ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, cache.getEvictions() );
+        assertEquals( 0, cache.getWeight() );
+    }
+
+    @Test
+    public void testNoExpiry()
+                            throws InterruptedException {
+        WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( 1024 * 1024, 0 );
+        cache.add( feature( "ROAD_1" ) );
+        Thread.sleep( 50 );
+        assertNotNull( cache.get( "ROAD_1" ) );
+        assertEquals( 0, cache.getEvictions() );
+    }
+
+    @Test
+    public void testConcurrentAccess()
+                            throws Exception {
+        final long maxWeight = SEGMENTS * 8 * FEATURE_WEIGHT;
+        final WeightedFeatureStoreCache cache = new WeightedFeatureStoreCache( maxWeight, 0 );
+        final int numThreads = 8;
+        final int numOps = 5000;
+        final AtomicLong gets = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for ( int t = 0; t < numThreads; t++ ) {
+                final int thread = t;
+                results.add( executor.submit( new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for ( int i = 0; i < numOps; i++ ) {
+                            String id = "ROAD_" + ( ( i * 31 + thread ) % 500 );
+                            if ( cache.get( id ) == null ) {
+                                cache.add( feature( id ) );
+                            } else if ( i % 7 == 0 ) {
+                                cache.remove( id );
+                            }
+                            gets.incrementAndGet();
+                            if ( cache.getWeight() > maxWeight ) {
+                                throw new IllegalStateException( "Maximum weight exceeded." );
+                            }
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> result : results ) {
+                // rethrows failures of the worker threads
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals( gets.get(), cache.getHits() + cache.getMisses() );
+        assertTrue( cache.getEvictions() > 0 );
+
+        // weight must be consistent with the objects that are left
+        long weight = 0;
+        for ( int i = 0; i < 500; i++ ) {
+            if ( cache.get( "ROAD_" + i ) != null ) {
+                weight += FEATURE_WEIGHT;
+            }
+        }
+        assertEquals( weight, cache.getWeight() );
+    }
+
+    /**
+     * Determines ids that are stored in the same segment, using a cache with room for one object per segment.
+     */
+    private List<String> getIdsInSameSegment( int num ) {
+        List<String> ids = new ArrayList<String>();
+        ids.add( "ROAD_0" );
+        for ( int i = 1; ids.size() < num; i++ ) {
+            WeightedFeatureStoreCache probe = new WeightedFeatureStoreCache( SEGMENTS * FEATURE_WEIGHT, 0 );
+            probe.add( feature( ids.get( 0 ) ) );
+            probe.add( feature( "ROAD_" + i ) );
+            if ( probe.get( ids.get( 0 ) ) == null ) {
+                ids.add( "ROAD_" + i );
+            }
+        }
+        return ids;
+    }
+
+    private static GMLObject feature( String fid ) {
+        return new GenericFeature( FT, fid, new ArrayList<Property>(), null );
+    }
+}
@@ -0,0 +1,265 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.filter.MatchAction;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index on the values of a simple property of stored features, used to determine candidate features for comparison
+ * operators without scanning all features of a type.
+ * <p>
+ * Indexed values must either be all numeric (compared as {@link BigDecimal}s) or all strings. If other values are
+ * encountered, the index is disabled and cannot be used for lookups. Lookups always return a superset of the matching
+ * features, so the operator still has to be evaluated on the returned features.
+ * </p>
+ * 
+ * @see AttributeIndexPlanner
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+abstract class AttributeIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AttributeIndex.class );
+
+    private final QName propName;
+
+    private final boolean textOnly;
+
+    // null (no values yet), true (numeric values), false (string values)
+    private Boolean numeric;
+
+    private boolean disabled;
+
+    /**
+     * Creates a new {@link AttributeIndex} instance.
+     * 
+     * @param propName
+     *            name of the indexed property, must not be <code>null</code>
+     * @param textOnly
+     *            if true, only string values are accepted
+     */
+    protected AttributeIndex( QName propName, boolean textOnly ) {
+        this.propName = propName;
+        this.textOnly = textOnly;
+    }
+
+    /**
+     * Builds an {@link AttributeIndex} for the given features.
+     * 
+     * @param propName
+     *            name of the property to be indexed, must not be <code>null</code>
+     * @param type
+     *            type of the index, must not be <code>null</code>
+     * @param features
+     *            features to be indexed, must not be <code>null</code>
+     * @return index, never <code>null</code>
+     */
+    static AttributeIndex build( QName propName, AttributeIndexType type, Collection<Feature> features ) {
+        AttributeIndex index = null;
+        switch ( type ) {
+        case HASH:
+            index = new HashAttributeIndex( propName );
+            break;
+        case SORTED:
+            index = new SortedAttributeIndex( propName, false );
+            break;
+        case PREFIX:
+            index = new SortedAttributeIndex( propName, true );
+            break;
+        }
+        for ( Feature feature : features ) {
+            for ( Property prop : feature.getProperties( propName ) ) {
+                Object key = index.getKey( prop.getValue() );
+                if ( index.disabled ) {
+                    LOG.warn( "Disabling index on property '" + propName + "': unsupported value '" + prop.getValue()
+                              + "' in feature '" + feature.getId() + "'." );
+                    return index;
+                }
+                if ( key != null ) {
+                    index.add( key, feature );
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the candidate features for the given operator.
+     * 
+     * @param op
+     *            comparison operator, must not be <code>null</code>
+     * @return candidate features (superset of the features that match the operator), or <code>null</code> if the index
+     *         cannot be used for the operator
+     */
+    Collection<Feature> lookup( ComparisonOperator op ) {
+        if ( disabled || Boolean.FALSE.equals( op.isMatchCase() ) ) {
+            return null;
+        }
+        if ( op.getMatchAction() != null && op.getMatchAction() != MatchAction.ANY ) {
+            return null;
+        }
+        return lookupValues( op );
+    }
+
+    /**
+     * Adds the given feature for the given (normalized) key.
+     * 
+     * @param key
+     *            normalized key, never <code>null</code>
+     * @param feature
+     *            feature, never <code>null</code>
+     */
+    protected abstract void add( Object key, Feature feature );
+
+    /**
+     * Returns the candidate features for the given operator (index is enabled and operator uses default match
+     * semantics).
+     * 
+     * @param op
+     *            comparison operator, never <code>null</code>
+     * @return candidate features, or <code>null</code> if the index cannot be used for the operator
+     */
+    protected abstract Collection<Feature> lookupValues( ComparisonOperator op );
+
+    /**
+     * Returns whether the indexed values are strings.
+     * 
+     * @return true, if the indexed values are strings (or the index is empty)
+     */
+    protected boolean isText() {
+        return numeric == null || !numeric;
+    }
+
+    /**
+     * Returns whether the given expression refers to the indexed property.
+     * 
+     * @param expr
+     *            expression, can be <code>null</code>
+     * @return true, if the expression is a {@link ValueReference} to the indexed property
+     */
+    protected boolean isIndexedProperty( Object expr ) {
+        if ( !( expr instanceof ValueReference ) ) {
+            return false;
+        }
+        QName name = ( (ValueReference) expr ).getAsQName();
+        if ( name == null ) {
+            return false;
+        }
+        if ( name.getNamespaceURI().isEmpty() ) {
+            return name.getLocalPart().equals( propName.getLocalPart() );
+        }
+        return name.equals( propName );
+    }
+
+    /**
+     * Returns the normalized key for the given literal expression, i.e. the value it is compared with after conversion
+     * to the type of the indexed values.
+     * 
+     * @param expr
+     *            expression, can be <code>null</code>
+     * @return normalized key, or <code>null</code> if the expression is not a literal or not comparable to the indexed
+     *         values
+     */
+    protected Object getLiteralKey( Object expr ) {
+        if ( !( expr instanceof Literal<?> ) ) {
+            return null;
+        }
+        Object value = ( (Literal<?>) expr ).getValue();
+        if ( value instanceof PrimitiveValue ) {
+            value = ( (PrimitiveValue) value ).getValue();
+        }
+        if ( value == null ) {
+            return null;
+        }
+        if ( isText() ) {
+            // numeric literals enforce numeric comparison
+            return value instanceof String ? value : null;
+        }
+        try {
+            return normalize( new BigDecimal( value.toString().trim() ) );
+        } catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    private Object getKey( TypedObjectNode value ) {
+        if ( value == null ) {
+            return null;
+        }
+        if ( !( value instanceof PrimitiveValue ) ) {
+            disabled = true;
+            return null;
+        }
+        Object o = ( (PrimitiveValue) value ).getValue();
+        boolean isNumber = o instanceof Number;
+        if ( !( isNumber || o instanceof String ) || ( isNumber && textOnly ) ) {
+            disabled = true;
+            return null;
+        }
+        if ( numeric == null ) {
+            numeric = isNumber;
+        } else if ( numeric != isNumber ) {
+            disabled = true;
+            return null;
+        }
+        return isNumber ? normalize( new BigDecimal( o.toString() ) ) : o;
+    }
+
+    private BigDecimal normalize( BigDecimal value ) {
+        // keys must be equal for numerically equal values (e.g. 155.00 and 155)
+        if ( value.signum() == 0 ) {
+            return BigDecimal.ZERO;
+        }
+        return value.stripTrailingZeros();
+    }
+}
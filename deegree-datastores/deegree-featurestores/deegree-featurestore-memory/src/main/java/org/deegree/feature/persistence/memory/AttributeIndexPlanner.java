@@ -0,0 +1,153 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.deegree.feature.Feature;
+import org.deegree.filter.Operator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.Or;
+
+/**
+ * Determines candidate features for filter {@link Operator}s using {@link AttributeIndex}es.
+ * <p>
+ * Conjunctions are answered by intersecting the candidates of all indexable operands (starting with the smallest),
+ * disjunctions by the union of the candidates of their operands (if all of them are indexable). The result is always a
+ * superset of the matching features, so the operator still has to be evaluated on the candidates (residual filter).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class AttributeIndexPlanner {
+
+    private static final Comparator<Collection<Feature>> BY_SIZE = new Comparator<Collection<Feature>>() {
+        @Override
+        public int compare( Collection<Feature> c1, Collection<Feature> c2 ) {
+            return c1.size() < c2.size() ? -1 : ( c1.size() == c2.size() ? 0 : 1 );
+        }
+    };
+
+    private final List<AttributeIndex> indexes;
+
+    /**
+     * Creates a new {@link AttributeIndexPlanner} instance.
+     * 
+     * @param indexes
+     *            indexes to use, must not be <code>null</code>
+     */
+    AttributeIndexPlanner( List<AttributeIndex> indexes ) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Returns the candidate features for the given operator.
+     * 
+     * @param op
+     *            operator, must not be <code>null</code>
+     * @return candidate features (superset of the matching features), or <code>null</code> if the indexes cannot be
+     *         used for the operator
+     */
+    Collection<Feature> getCandidates( Operator op ) {
+        if ( op instanceof And ) {
+            return getCandidates( (And) op );
+        }
+        if ( op instanceof Or ) {
+            return getCandidates( (Or) op );
+        }
+        if ( op instanceof ComparisonOperator ) {
+            return getCandidates( (ComparisonOperator) op );
+        }
+        return null;
+    }
+
+    private Collection<Feature> getCandidates( And and ) {
+        List<Collection<Feature>> operandCandidates = new ArrayList<Collection<Feature>>();
+        for ( Operator operand : and.getParams() ) {
+            Collection<Feature> candidates = getCandidates( operand );
+            if ( candidates != null ) {
+                if ( candidates.isEmpty() ) {
+                    return candidates;
+                }
+                operandCandidates.add( candidates );
+            }
+        }
+        if ( operandCandidates.isEmpty() ) {
+            return null;
+        }
+        Collections.sort( operandCandidates, BY_SIZE );
+        Set<Feature> intersection = new LinkedHashSet<Feature>( operandCandidates.get( 0 ) );
+        for ( int i = 1; i < operandCandidates.size() && !intersection.isEmpty(); i++ ) {
+            Collection<Feature> candidates = operandCandidates.get( i );
+            intersection.retainAll( candidates instanceof Set<?> ? candidates : new HashSet<Feature>( candidates ) );
+        }
+        return intersection;
+    }
+
+    private Collection<Feature> getCandidates( Or or ) {
+        Set<Feature> union = new LinkedHashSet<Feature>();
+        for ( Operator operand : or.getParams() ) {
+            Collection<Feature> candidates = getCandidates( operand );
+            if ( candidates == null ) {
+                return null;
+            }
+            union.addAll( candidates );
+        }
+        return union;
+    }
+
+    private Collection<Feature> getCandidates( ComparisonOperator op ) {
+        Collection<Feature> best = null;
+        for ( AttributeIndex index : indexes ) {
+            Collection<Feature> candidates = index.lookup( op );
+            if ( candidates != null && ( best == null || candidates.size() < best.size() ) ) {
+                best = candidates;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,60 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+/**
+ * Type of an {@link AttributeIndex} on a property of the stored features.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public enum AttributeIndexType {
+
+    /** Hash index, speeds up <code>PropertyIsEqualTo</code> (and disjunctions of these). */
+    HASH,
+    /**
+     * Sorted index, speeds up <code>PropertyIsEqualTo</code>, <code>PropertyIsLessThan</code>,
+     * <code>PropertyIsGreaterThan</code> (and the variants for equality) as well as <code>PropertyIsBetween</code>.
+     */
+    SORTED,
+    /**
+     * Sorted index on the text values, speeds up <code>PropertyIsLike</code> with a literal prefix as well as
+     * <code>PropertyIsEqualTo</code> for text properties.
+     */
+    PREFIX
+}
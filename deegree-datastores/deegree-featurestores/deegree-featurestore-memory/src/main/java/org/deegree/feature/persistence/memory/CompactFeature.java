@@ -0,0 +1,135 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.AbstractFeature;
+import org.deegree.feature.Feature;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.geometry.Envelope;
+
+/**
+ * Read-only {@link Feature} view on a row of a {@link CompactFeatureTable}.
+ * <p>
+ * The properties are materialized on every access and not kept by the view. Modifications are not supported: updates
+ * of stored features are performed on copies anyway (see {@link StoredFeatures}).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CompactFeature extends AbstractFeature {
+
+    private final CompactFeatureTable table;
+
+    private final int row;
+
+    /**
+     * Creates a new {@link CompactFeature} instance.
+     * 
+     * @param table
+     *            table that stores the feature, must not be <code>null</code>
+     * @param row
+     *            row of the feature in the table
+     */
+    CompactFeature( CompactFeatureTable table, int row ) {
+        super( table.getId( row ), table.getFeatureType(), null );
+        this.table = table;
+        this.row = row;
+    }
+
+    /**
+     * Returns the table that stores the feature.
+     * 
+     * @return table, never <code>null</code>
+     */
+    CompactFeatureTable getTable() {
+        return table;
+    }
+
+    @Override
+    public List<Property> getProperties() {
+        return table.getProperties( row );
+    }
+
+    @Override
+    public List<Property> getProperties( QName propName ) {
+        return table.getProperties( row, propName );
+    }
+
+    @Override
+    public List<Property> getGeometryProperties() {
+        return table.getGeometryProperties( row );
+    }
+
+    @Override
+    public Envelope getEnvelope() {
+        return table.getEnvelope( row );
+    }
+
+    @Override
+    public Envelope calcEnvelope() {
+        return table.getEnvelope( row );
+    }
+
+    @Override
+    public void setId( String fid ) {
+        throw new UnsupportedOperationException( "Compactly stored features cannot be modified." );
+    }
+
+    @Override
+    public void setEnvelope( Envelope env ) {
+        throw new UnsupportedOperationException( "Compactly stored features cannot be modified." );
+    }
+
+    @Override
+    public void setPropertyValue( QName propName, int occurence, TypedObjectNode value ) {
+        throw new UnsupportedOperationException( "Compactly stored features cannot be modified." );
+    }
+
+    @Override
+    public void setProperties( List<Property> props )
+                            throws IllegalArgumentException {
+        throw new UnsupportedOperationException( "Compactly stored features cannot be modified." );
+    }
+}
@@ -0,0 +1,1055 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static java.lang.Double.NaN;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.multi.MultiCurve;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.multi.MultiLineString;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.multi.MultiSurface;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.primitive.segments.LineStringSegment;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the features of a single {@link FeatureType} in columnar form.
+ * <p>
+ * Every property is kept in a column of primitive arrays: geometries as packed <code>double</code> coordinates with
+ * offsets into an <code>int</code> structure array, integer and double values as <code>long</code> /
+ * <code>double</code> arrays and all other values as dictionary-encoded strings. The features are accessed via
+ * read-only {@link CompactFeature} views that materialize their properties on demand (and don't keep them).
+ * </p>
+ * <p>
+ * Only feature types with simple and geometry properties (that occur at most once) can be stored. Supported geometries
+ * are points, line strings, curves with a single line string segment, polygons with linear rings as well as
+ * aggregates of these. Only the ids of the top-level geometries are kept.
+ * </p>
+ * <p>
+ * Tables can be written to / read from binary streams (see {@link #write(DataOutputStream)} and
+ * {@link #read(DataInputStream, FeatureType)}). The binary form only contains the data, the structure of the columns is
+ * derived from the feature type.
+ * </p>
+ * 
+ * @see CompactFeature
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CompactFeatureTable {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CompactFeatureTable.class );
+
+    private static final GeometryFactory GEOM_FAC = new GeometryFactory();
+
+    // number of array elements that are converted at once during binary I/O
+    private static final int IO_CHUNK_SIZE = 8192;
+
+    private final FeatureType ft;
+
+    private final PropertyType[] pts;
+
+    private final Column[] columns;
+
+    private final String[] ids;
+
+    // minx, miny, maxx, maxy for every feature (NaN if feature has no envelope)
+    private final double[] envelopes;
+
+    private ICRS envelopeCrs;
+
+    private int size;
+
+    private CompactFeatureTable( FeatureType ft, PropertyType[] pts, Column[] columns, String[] ids,
+                                 double[] envelopes ) {
+        this.ft = ft;
+        this.pts = pts;
+        this.columns = columns;
+        this.ids = ids;
+        this.envelopes = envelopes;
+    }
+
+    /**
+     * Encodes the given features into a new {@link CompactFeatureTable}.
+     * 
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param features
+     *            features of the type, must not be <code>null</code>
+     * @return table, or <code>null</code> if the feature type or any of the features cannot be stored in columnar form
+     */
+    static CompactFeatureTable encode( FeatureType ft, Collection<Feature> features ) {
+        PropertyType[] pts = getPropertyTypes( ft );
+        Column[] columns = createColumns( ft, pts, features.size() );
+        if ( columns == null ) {
+            return null;
+        }
+        CompactFeatureTable table = new CompactFeatureTable( ft, pts, columns, new String[features.size()],
+                                                             new double[features.size() * 4] );
+        for ( Feature feature : features ) {
+            if ( !table.add( feature ) ) {
+                LOG.debug( "Feature type '{}' cannot be stored compactly: feature '{}' is not supported.",
+                           ft.getName(), feature.getId() );
+                return null;
+            }
+        }
+        for ( Column column : columns ) {
+            column.finish();
+        }
+        return table;
+    }
+
+    /**
+     * Reads a table that has been written using {@link #write(DataOutputStream)}.
+     * 
+     * @param in
+     *            stream to read from, must not be <code>null</code>
+     * @param ft
+     *            feature type of the table (must have the same structure as when the table was written), must not be
+     *            <code>null</code>
+     * @return table, never <code>null</code>
+     * @throws IOException
+     *             if reading fails or the feature type cannot be stored in columnar form
+     */
+    static CompactFeatureTable read( DataInputStream in, FeatureType ft )
+                            throws IOException {
+        PropertyType[] pts = getPropertyTypes( ft );
+        Column[] columns = createColumns( ft, pts, 0 );
+        if ( columns == null ) {
+            throw new IOException( "Feature type '" + ft.getName() + "' cannot be stored in columnar form." );
+        }
+        int size = in.readInt();
+        String[] ids = new String[size];
+        for ( int i = 0; i < size; i++ ) {
+            ids[i] = readString( in );
+        }
+        String crsName = readString( in );
+        double[] envelopes = readDoubles( in );
+        CompactFeatureTable table = new CompactFeatureTable( ft, pts, columns, ids, envelopes );
+        table.envelopeCrs = crsName != null ? CRSManager.getCRSRef( crsName ) : null;
+        table.size = size;
+        for ( Column column : columns ) {
+            column.read( in );
+        }
+        return table;
+    }
+
+    /**
+     * Writes the data of this table to the given stream.
+     * 
+     * @param out
+     *            stream to write to, must not be <code>null</code>
+     * @throws IOException
+     */
+    void write( DataOutputStream out )
+                            throws IOException {
+        out.writeInt( size );
+        for ( int i = 0; i < size; i++ ) {
+            writeString( out, ids[i] );
+        }
+        writeString( out, envelopeCrs != null ? envelopeCrs.getAlias() : null );
+        writeDoubles( out, envelopes, size * 4 );
+        for ( Column column : columns ) {
+            column.write( out );
+        }
+    }
+
+    private static PropertyType[] getPropertyTypes( FeatureType ft ) {
+        List<PropertyType> decls = ft.getPropertyDeclarations();
+        return decls.toArray( new PropertyType[decls.size()] );
+    }
+
+    private static Column[] createColumns( FeatureType ft, PropertyType[] pts, int capacity ) {
+        Column[] columns = new Column[pts.length];
+        for ( int i = 0; i < pts.length; i++ ) {
+            PropertyType pt = pts[i];
+            if ( pt.getMaxOccurs() != 1 ) {
+                LOG.debug( "Feature type '{}' cannot be stored compactly: property '{}' is multi-valued.",
+                           ft.getName(), pt.getName() );
+                return null;
+            }
+            if ( pt instanceof SimplePropertyType ) {
+                columns[i] = createColumn( ( (SimplePropertyType) pt ).getPrimitiveType(), capacity );
+            } else if ( pt instanceof GeometryPropertyType ) {
+                columns[i] = new GeometryColumn( capacity );
+            } else {
+                LOG.debug( "Feature type '{}' cannot be stored compactly: property '{}' is not simple or geometric.",
+                           ft.getName(), pt.getName() );
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    private static Column createColumn( PrimitiveType type, int capacity ) {
+        switch ( type.getBaseType() ) {
+        case INTEGER:
+            return new LongColumn( type, capacity );
+        case DOUBLE:
+            return new DoubleColumn( type, capacity );
+        default:
+            return new TextColumn( type, capacity );
+        }
+    }
+
+    private boolean add( Feature feature ) {
+        if ( feature.getExtraProperties() != null ) {
+            return false;
+        }
+        int row = size;
+        boolean[] present = new boolean[pts.length];
+        for ( Property prop : feature.getProperties() ) {
+            int col = getColumn( prop.getName() );
+            if ( col < 0 || present[col] || prop.getValue() == null ) {
+                return false;
+            }
+            if ( prop.getAttributes() != null && !prop.getAttributes().isEmpty() ) {
+                return false;
+            }
+            if ( !columns[col].add( row, prop.getValue() ) ) {
+                return false;
+            }
+            present[col] = true;
+        }
+        for ( int col = 0; col < pts.length; col++ ) {
+            if ( !present[col] ) {
+                columns[col].addAbsent( row );
+            }
+        }
+        Envelope env = feature.getEnvelope();
+        if ( env != null ) {
+            if ( envelopeCrs == null ) {
+                envelopeCrs = env.getCoordinateSystem();
+            } else if ( !envelopeCrs.equals( env.getCoordinateSystem() ) ) {
+                return false;
+            }
+            envelopes[row * 4] = env.getMin().get0();
+            envelopes[row * 4 + 1] = env.getMin().get1();
+            envelopes[row * 4 + 2] = env.getMax().get0();
+            envelopes[row * 4 + 3] = env.getMax().get1();
+        } else {
+            Arrays.fill( envelopes, row * 4, row * 4 + 4, NaN );
+        }
+        ids[row] = feature.getId();
+        size++;
+        return true;
+    }
+
+    private int getColumn( QName propName ) {
+        for ( int i = 0; i < pts.length; i++ ) {
+            if ( pts[i].getName().equals( propName ) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the views for all features of the table.
+     * 
+     * @return views, never <code>null</code>
+     */
+    List<Feature> getFeatures() {
+        List<Feature> features = new ArrayList<Feature>( size );
+        for ( int row = 0; row < size; row++ ) {
+            features.add( new CompactFeature( this, row ) );
+        }
+        return features;
+    }
+
+    FeatureType getFeatureType() {
+        return ft;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String getId( int row ) {
+        return ids[row];
+    }
+
+    /**
+     * Materializes the properties of the specified feature.
+     * 
+     * @param row
+     *            row of the feature
+     * @return properties, never <code>null</code>
+     */
+    List<Property> getProperties( int row ) {
+        List<Property> props = new ArrayList<Property>( pts.length );
+        for ( int col = 0; col < pts.length; col++ ) {
+            TypedObjectNode value = columns[col].get( row );
+            if ( value != null ) {
+                props.add( new GenericProperty( pts[col], value ) );
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Materializes the specified property of the specified feature.
+     * 
+     * @param row
+     *            row of the feature
+     * @param propName
+     *            name of the property, must not be <code>null</code>
+     * @return properties with the given name, never <code>null</code>
+     */
+    List<Property> getProperties( int row, QName propName ) {
+        int col = getColumn( propName );
+        TypedObjectNode value = col < 0 ? null : columns[col].get( row );
+        if ( value == null ) {
+            return new ArrayList<Property>( 0 );
+        }
+        List<Property> props = new ArrayList<Property>( 1 );
+        props.add( new GenericProperty( pts[col], value ) );
+        return props;
+    }
+
+    /**
+     * Materializes the geometry properties of the specified feature.
+     * 
+     * @param row
+     *            row of the feature
+     * @return geometry properties, never <code>null</code>
+     */
+    List<Property> getGeometryProperties( int row ) {
+        List<Property> props = new ArrayList<Property>();
+        for ( int col = 0; col < pts.length; col++ ) {
+            if ( columns[col] instanceof GeometryColumn ) {
+                TypedObjectNode value = columns[col].get( row );
+                if ( value != null ) {
+                    props.add( new GenericProperty( pts[col], value ) );
+                }
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Returns the envelope of the specified feature.
+     * 
+     * @param row
+     *            row of the feature
+     * @return envelope, can be <code>null</code> (no geometries)
+     */
+    Envelope getEnvelope( int row ) {
+        if ( Double.isNaN( envelopes[row * 4] ) ) {
+            return null;
+        }
+        return GEOM_FAC.createEnvelope( envelopes[row * 4], envelopes[row * 4 + 1], envelopes[row * 4 + 2],
+                                        envelopes[row * 4 + 3], envelopeCrs );
+    }
+
+    /**
+     * Column of values of a single property.
+     */
+    private static abstract class Column {
+
+        /**
+         * Stores the value for the given row.
+         * 
+         * @return false, if the value is not supported by the column
+         */
+        abstract boolean add( int row, TypedObjectNode value );
+
+        abstract void addAbsent( int row );
+
+        /**
+         * Materializes the value of the given row.
+         * 
+         * @return value, or <code>null</code> if absent
+         */
+        abstract TypedObjectNode get( int row );
+
+        /**
+         * Called after all values have been added.
+         */
+        void finish() {
+            // nothing to do by default
+        }
+
+        abstract void write( DataOutputStream out )
+                                throws IOException;
+
+        abstract void read( DataInputStream in )
+                                throws IOException;
+
+        static Object getValue( TypedObjectNode value, BaseType baseType ) {
+            if ( !( value instanceof PrimitiveValue ) ) {
+                return null;
+            }
+            PrimitiveValue primitive = (PrimitiveValue) value;
+            if ( primitive.getType() == null || primitive.getType().getBaseType() != baseType ) {
+                return null;
+            }
+            return primitive.getValue();
+        }
+    }
+
+    /**
+     * Column of dictionary-encoded text values.
+     */
+    private static class TextColumn extends Column {
+
+        private final PrimitiveType type;
+
+        private int[] codes;
+
+        private Map<String, Integer> textToCode = new HashMap<String, Integer>();
+
+        private List<String> dictionaryList = new ArrayList<String>();
+
+        private String[] dictionary;
+
+        TextColumn( PrimitiveType type, int capacity ) {
+            this.type = type;
+            this.codes = new int[capacity];
+        }
+
+        @Override
+        boolean add( int row, TypedObjectNode value ) {
+            if ( getValue( value, type.getBaseType() ) == null ) {
+                return false;
+            }
+            String text = ( (PrimitiveValue) value ).getAsText();
+            Integer code = textToCode.get( text );
+            if ( code == null ) {
+                code = dictionaryList.size();
+                dictionaryList.add( text );
+                textToCode.put( text, code );
+            }
+            codes[row] = code;
+            return true;
+        }
+
+        @Override
+        void addAbsent( int row ) {
+            codes[row] = -1;
+        }
+
+        @Override
+        void finish() {
+            dictionary = dictionaryList.toArray( new String[dictionaryList.size()] );
+            dictionaryList = null;
+            textToCode = null;
+        }
+
+        @Override
+        TypedObjectNode get( int row ) {
+            int code = codes[row];
+            return code < 0 ? null : new PrimitiveValue( dictionary[code], type );
+        }
+
+        @Override
+        void write( DataOutputStream out )
+                                throws IOException {
+            out.writeInt( dictionary.length );
+            for ( String text : dictionary ) {
+                writeString( out, text );
+            }
+            writeInts( out, codes, codes.length );
+        }
+
+        @Override
+        void read( DataInputStream in )
+                                throws IOException {
+            dictionary = new String[in.readInt()];
+            for ( int i = 0; i < dictionary.length; i++ ) {
+                dictionary[i] = readString( in );
+            }
+            codes = readInts( in );
+            dictionaryList = null;
+            textToCode = null;
+        }
+    }
+
+    /**
+     * Column of integer values (that fit into a <code>long</code>).
+     */
+    private static class LongColumn extends Column {
+
+        private final PrimitiveType type;
+
+        private long[] values;
+
+        private BitSet present;
+
+        LongColumn( PrimitiveType type, int capacity ) {
+            this.type = type;
+            this.values = new long[capacity];
+            this.present = new BitSet( capacity );
+        }
+
+        @Override
+        boolean add( int row, TypedObjectNode value ) {
+            Object o = getValue( value, BaseType.INTEGER );
+            if ( !( o instanceof BigInteger ) || ( (BigInteger) o ).bitLength() > 63 ) {
+                return false;
+            }
+            values[row] = ( (BigInteger) o ).longValue();
+            present.set( row );
+            return true;
+        }
+
+        @Override
+        void addAbsent( int row ) {
+            // nothing to do
+        }
+
+        @Override
+        TypedObjectNode get( int row ) {
+            return present.get( row ) ? new PrimitiveValue( BigInteger.valueOf( values[row] ), type ) : null;
+        }
+
+        @Override
+        void write( DataOutputStream out )
+                                throws IOException {
+            writeBits( out, present, values.length );
+            writeLongs( out, values );
+        }
+
+        @Override
+        void read( DataInputStream in )
+                                throws IOException {
+            present = readBits( in );
+            values = readLongs( in );
+        }
+    }
+
+    /**
+     * Column of double values.
+     */
+    private static class DoubleColumn extends Column {
+
+        private final PrimitiveType type;
+
+        private double[] values;
+
+        private BitSet present;
+
+        DoubleColumn( PrimitiveType type, int capacity ) {
+            this.type = type;
+            this.values = new double[capacity];
+            this.present = new BitSet( capacity );
+        }
+
+        @Override
+        boolean add( int row, TypedObjectNode value ) {
+            Object o = getValue( value, BaseType.DOUBLE );
+            if ( !( o instanceof Double ) ) {
+                return false;
+            }
+            values[row] = (Double) o;
+            present.set( row );
+            return true;
+        }
+
+        @Override
+        void addAbsent( int row ) {
+            // nothing to do
+        }
+
+        @Override
+        TypedObjectNode get( int row ) {
+            return present.get( row ) ? new PrimitiveValue( values[row], type ) : null;
+        }
+
+        @Override
+        void write( DataOutputStream out )
+                                throws IOException {
+            writeBits( out, present, values.length );
+            writeDoubles( out, values, values.length );
+        }
+
+        @Override
+        void read( DataInputStream in )
+                                throws IOException {
+            present = readBits( in );
+            values = readDoubles( in );
+        }
+    }
+
+    /**
+     * Column of geometries, stored as packed coordinates plus a structure description.
+     * <p>
+     * Encoding of a geometry in the structure array: <code>[POINT, ordinateIdx]</code>,
+     * <code>[LINE_STRING|CURVE, ordinateIdx, numPoints]</code>,
+     * <code>[POLYGON, numRings, (ordinateIdx, numPoints)*]</code> or <code>[MULTI_*, numMembers, member*]</code>.
+     * </p>
+     */
+    private static class GeometryColumn extends Column {
+
+        private static final int POINT = 0;
+
+        private static final int LINE_STRING = 1;
+
+        private static final int CURVE = 2;
+
+        private static final int POLYGON = 3;
+
+        private static final int MULTI_POINT = 4;
+
+        private static final int MULTI_LINE_STRING = 5;
+
+        private static final int MULTI_CURVE = 6;
+
+        private static final int MULTI_POLYGON = 7;
+
+        private static final int MULTI_SURFACE = 8;
+
+        // offset into structure array for every row, -1 if absent
+        private int[] offsets;
+
+        // ids of the geometries, allocated on demand
+        private String[] ids;
+
+        private int[] structure = new int[1024];
+
+        private int structureSize;
+
+        private double[] ordinates = new double[4096];
+
+        private int ordinatesSize;
+
+        private ICRS crs;
+
+        private int dim = -1;
+
+        GeometryColumn( int capacity ) {
+            this.offsets = new int[capacity];
+        }
+
+        @Override
+        boolean add( int row, TypedObjectNode value ) {
+            if ( !( value instanceof Geometry ) ) {
+                return false;
+            }
+            Geometry geom = (Geometry) value;
+            if ( dim == -1 ) {
+                dim = geom.getCoordinateDimension();
+                crs = geom.getCoordinateSystem();
+            } else if ( dim != geom.getCoordinateDimension() || !isColumnCrs( geom.getCoordinateSystem() ) ) {
+                return false;
+            }
+            if ( dim != 2 && dim != 3 ) {
+                return false;
+            }
+            offsets[row] = structureSize;
+            if ( !encode( geom ) ) {
+                return false;
+            }
+            if ( geom.getId() != null ) {
+                if ( ids == null ) {
+                    ids = new String[offsets.length];
+                }
+                ids[row] = geom.getId();
+            }
+            return true;
+        }
+
+        private boolean isColumnCrs( ICRS geomCrs ) {
+            return crs == null ? geomCrs == null : crs.equals( geomCrs );
+        }
+
+        @Override
+        void addAbsent( int row ) {
+            offsets[row] = -1;
+        }
+
+        @Override
+        void finish() {
+            structure = Arrays.copyOf( structure, structureSize );
+            ordinates = Arrays.copyOf( ordinates, ordinatesSize );
+        }
+
+        @Override
+        void write( DataOutputStream out )
+                                throws IOException {
+            writeString( out, crs != null ? crs.getAlias() : null );
+            out.writeInt( dim );
+            writeInts( out, offsets, offsets.length );
+            out.writeBoolean( ids != null );
+            if ( ids != null ) {
+                for ( String id : ids ) {
+                    writeString( out, id );
+                }
+            }
+            writeInts( out, structure, structure.length );
+            writeDoubles( out, ordinates, ordinates.length );
+        }
+
+        @Override
+        void read( DataInputStream in )
+                                throws IOException {
+            String crsName = readString( in );
+            crs = crsName != null ? CRSManager.getCRSRef( crsName ) : null;
+            dim = in.readInt();
+            offsets = readInts( in );
+            if ( in.readBoolean() ) {
+                ids = new String[offsets.length];
+                for ( int i = 0; i < ids.length; i++ ) {
+                    ids[i] = readString( in );
+                }
+            }
+            structure = readInts( in );
+            structureSize = structure.length;
+            ordinates = readDoubles( in );
+            ordinatesSize = ordinates.length;
+        }
+
+        private boolean encode( Geometry geom ) {
+            if ( geom instanceof Point ) {
+                push( POINT );
+                push( ordinatesSize );
+                addPoint( (Point) geom );
+                return true;
+            }
+            if ( geom instanceof LineString ) {
+                push( LINE_STRING );
+                addPoints( ( (LineString) geom ).getControlPoints() );
+                return true;
+            }
+            if ( geom instanceof Ring ) {
+                return false;
+            }
+            if ( geom instanceof Curve ) {
+                List<CurveSegment> segments = ( (Curve) geom ).getCurveSegments();
+                if ( segments.size() != 1 || !( segments.get( 0 ) instanceof LineStringSegment ) ) {
+                    return false;
+                }
+                push( CURVE );
+                addPoints( ( (LineStringSegment) segments.get( 0 ) ).getControlPoints() );
+                return true;
+            }
+            if ( geom instanceof Polygon ) {
+                Polygon polygon = (Polygon) geom;
+                List<Ring> interiors = polygon.getInteriorRings();
+                if ( !( polygon.getExteriorRing() instanceof LinearRing ) ) {
+                    return false;
+                }
+                push( POLYGON );
+                push( 1 + ( interiors != null ? interiors.size() : 0 ) );
+                addPoints( polygon.getExteriorRing().getControlPoints() );
+                if ( interiors != null ) {
+                    for ( Ring interior : interiors ) {
+                        if ( !( interior instanceof LinearRing ) ) {
+                            return false;
+                        }
+                        addPoints( interior.getControlPoints() );
+                    }
+                }
+                return true;
+            }
+            if ( geom instanceof MultiPoint ) {
+                return encodeMembers( MULTI_POINT, (MultiPoint) geom, Point.class );
+            }
+            if ( geom instanceof MultiLineString ) {
+                return encodeMembers( MULTI_LINE_STRING, (MultiLineString) geom, LineString.class );
+            }
+            if ( geom instanceof MultiCurve<?> ) {
+                return encodeMembers( MULTI_CURVE, (MultiCurve<?>) geom, Curve.class );
+            }
+            if ( geom instanceof MultiPolygon ) {
+                return encodeMembers( MULTI_POLYGON, (MultiPolygon) geom, Polygon.class );
+            }
+            if ( geom instanceof MultiSurface<?> ) {
+                return encodeMembers( MULTI_SURFACE, (MultiSurface<?>) geom, Polygon.class );
+            }
+            return false;
+        }
+
+        private boolean encodeMembers( int type, MultiGeometry<?> multi, Class<?> memberClass ) {
+            push( type );
+            push( multi.size() );
+            for ( Geometry member : multi ) {
+                if ( !memberClass.isInstance( member ) || !encode( member ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addPoints( Points points ) {
+            push( ordinatesSize );
+            push( points.size() );
+            for ( Point p : points ) {
+                addPoint( p );
+            }
+        }
+
+        private void addPoint( Point p ) {
+            if ( ordinatesSize + dim > ordinates.length ) {
+                ordinates = Arrays.copyOf( ordinates, Math.max( ordinates.length * 2, ordinatesSize + dim ) );
+            }
+            ordinates[ordinatesSize++] = p.get0();
+            ordinates[ordinatesSize++] = p.get1();
+            if ( dim == 3 ) {
+                ordinates[ordinatesSize++] = p.get2();
+            }
+        }
+
+        private void push( int value ) {
+            if ( structureSize == structure.length ) {
+                structure = Arrays.copyOf( structure, structure.length * 2 );
+            }
+            structure[structureSize++] = value;
+        }
+
+        @Override
+        TypedObjectNode get( int row ) {
+            int offset = offsets[row];
+            if ( offset < 0 ) {
+                return null;
+            }
+            return decode( new int[] { offset }, ids != null ? ids[row] : null );
+        }
+
+        @SuppressWarnings("unchecked")
+        private Geometry decode( int[] pos, String id ) {
+            int type = structure[pos[0]++];
+            switch ( type ) {
+            case POINT:
+                int start = structure[pos[0]++];
+                return GEOM_FAC.createPoint( id, Arrays.copyOfRange( ordinates, start, start + dim ), crs );
+            case LINE_STRING:
+                return GEOM_FAC.createLineString( id, crs, decodePoints( pos ) );
+            case CURVE:
+                return GEOM_FAC.createCurve( id, crs, GEOM_FAC.createLineStringSegment( decodePoints( pos ) ) );
+            case POLYGON:
+                int numRings = structure[pos[0]++];
+                Ring exterior = GEOM_FAC.createLinearRing( null, crs, decodePoints( pos ) );
+                List<Ring> interiors = new ArrayList<Ring>( numRings - 1 );
+                for ( int i = 1; i < numRings; i++ ) {
+                    interiors.add( GEOM_FAC.createLinearRing( null, crs, decodePoints( pos ) ) );
+                }
+                return GEOM_FAC.createPolygon( id, crs, exterior, interiors );
+            case MULTI_POINT:
+                return GEOM_FAC.createMultiPoint( id, crs, (List<Point>) decodeMembers( pos ) );
+            case MULTI_LINE_STRING:
+                return GEOM_FAC.createMultiLineString( id, crs, (List<LineString>) decodeMembers( pos ) );
+            case MULTI_CURVE:
+                return GEOM_FAC.createMultiCurve( id, crs, (List<Curve>) decodeMembers( pos ) );
+            case MULTI_POLYGON:
+                return GEOM_FAC.createMultiPolygon( id, crs, (List<Polygon>) decodeMembers( pos ) );
+            case MULTI_SURFACE:
+                return GEOM_FAC.createMultiSurface( id, crs, (List<Surface>) decodeMembers( pos ) );
+            default:
+                throw new IllegalStateException( "Unknown geometry type code: " + type );
+            }
+        }
+
+        @SuppressWarnings("rawtypes")
+        private List decodeMembers( int[] pos ) {
+            int numMembers = structure[pos[0]++];
+            List<Geometry> members = new ArrayList<Geometry>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                members.add( decode( pos, null ) );
+            }
+            return members;
+        }
+
+        private Points decodePoints( int[] pos ) {
+            int start = structure[pos[0]++];
+            int numPoints = structure[pos[0]++];
+            return new PackedPoints( crs, Arrays.copyOfRange( ordinates, start, start + numPoints * dim ), dim );
+        }
+    }
+
+    static void writeString( DataOutputStream out, String s )
+                            throws IOException {
+        if ( s == null ) {
+            out.writeInt( -1 );
+            return;
+        }
+        byte[] bytes = s.getBytes( "UTF-8" );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    static String readString( DataInputStream in )
+                            throws IOException {
+        int length = in.readInt();
+        if ( length < 0 ) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return new String( bytes, "UTF-8" );
+    }
+
+    private static void writeBits( DataOutputStream out, BitSet bits, int length )
+                            throws IOException {
+        long[] words = new long[( length + 63 ) / 64];
+        for ( int i = bits.nextSetBit( 0 ); i >= 0 && i < length; i = bits.nextSetBit( i + 1 ) ) {
+            words[i / 64] |= 1L << ( i % 64 );
+        }
+        writeLongs( out, words );
+    }
+
+    private static BitSet readBits( DataInputStream in )
+                            throws IOException {
+        long[] words = readLongs( in );
+        BitSet bits = new BitSet( words.length * 64 );
+        for ( int i = 0; i < words.length; i++ ) {
+            long word = words[i];
+            while ( word != 0 ) {
+                int bit = Long.numberOfTrailingZeros( word );
+                bits.set( i * 64 + bit );
+                word &= word - 1;
+            }
+        }
+        return bits;
+    }
+
+    private static void writeInts( DataOutputStream out, int[] values, int length )
+                            throws IOException {
+        out.writeInt( length );
+        ByteBuffer buffer = ByteBuffer.allocate( IO_CHUNK_SIZE * 4 );
+        for ( int offset = 0; offset < length; offset += IO_CHUNK_SIZE ) {
+            int n = Math.min( IO_CHUNK_SIZE, length - offset );
+            buffer.clear();
+            buffer.asIntBuffer().put( values, offset, n );
+            out.write( buffer.array(), 0, n * 4 );
+        }
+    }
+
+    private static int[] readInts( DataInputStream in )
+                            throws IOException {
+        int[] values = new int[in.readInt()];
+        byte[] bytes = new byte[IO_CHUNK_SIZE * 4];
+        for ( int offset = 0; offset < values.length; offset += IO_CHUNK_SIZE ) {
+            int n = Math.min( IO_CHUNK_SIZE, values.length - offset );
+            in.readFully( bytes, 0, n * 4 );
+            ByteBuffer.wrap( bytes ).asIntBuffer().get( values, offset, n );
+        }
+        return values;
+    }
+
+    private static void writeLongs( DataOutputStream out, long[] values )
+                            throws IOException {
+        out.writeInt( values.length );
+        ByteBuffer buffer = ByteBuffer.allocate( IO_CHUNK_SIZE * 8 );
+        for ( int offset = 0; offset < values.length; offset += IO_CHUNK_SIZE ) {
+            int n = Math.min( IO_CHUNK_SIZE, values.length - offset );
+            buffer.clear();
+            buffer.asLongBuffer().put( values, offset, n );
+            out.write( buffer.array(), 0, n * 8 );
+        }
+    }
+
+    private static long[] readLongs( DataInputStream in )
+                            throws IOException {
+        long[] values = new long[in.readInt()];
+        byte[] bytes = new byte[IO_CHUNK_SIZE * 8];
+        for ( int offset = 0; offset < values.length; offset += IO_CHUNK_SIZE ) {
+            int n = Math.min( IO_CHUNK_SIZE, values.length - offset );
+            in.readFully( bytes, 0, n * 8 );
+            ByteBuffer.wrap( bytes ).asLongBuffer().get( values, offset, n );
+        }
+        return values;
+    }
+
+    private static void writeDoubles( DataOutputStream out, double[] values, int length )
+                            throws IOException {
+        out.writeInt( length );
+        ByteBuffer buffer = ByteBuffer.allocate( IO_CHUNK_SIZE * 8 );
+        for ( int offset = 0; offset < length; offset += IO_CHUNK_SIZE ) {
+            int n = Math.min( IO_CHUNK_SIZE, length - offset );
+            buffer.clear();
+            buffer.asDoubleBuffer().put( values, offset, n );
+            out.write( buffer.array(), 0, n * 8 );
+        }
+    }
+
+    private static double[] readDoubles( DataInputStream in )
+                            throws IOException {
+        double[] values = new double[in.readInt()];
+        byte[] bytes = new byte[IO_CHUNK_SIZE * 8];
+        for ( int offset = 0; offset < values.length; offset += IO_CHUNK_SIZE ) {
+            int n = Math.min( IO_CHUNK_SIZE, values.length - offset );
+            in.readFully( bytes, 0, n * 8 );
+            ByteBuffer.wrap( bytes ).asDoubleBuffer().get( values, offset, n );
+        }
+        return values;
+    }
+}
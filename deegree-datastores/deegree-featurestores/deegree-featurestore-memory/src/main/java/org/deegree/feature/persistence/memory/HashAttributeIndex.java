@@ -0,0 +1,109 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.deegree.filter.comparison.ComparisonOperator.SubType.PROPERTY_IS_EQUAL_TO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.Feature;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+
+/**
+ * {@link AttributeIndex} based on a hash table, supports <code>PropertyIsEqualTo</code>.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class HashAttributeIndex extends AttributeIndex {
+
+    private final Map<Object, List<Feature>> keyToFeatures = new HashMap<Object, List<Feature>>();
+
+    /**
+     * Creates a new {@link HashAttributeIndex} instance.
+     * 
+     * @param propName
+     *            name of the indexed property, must not be <code>null</code>
+     */
+    HashAttributeIndex( QName propName ) {
+        super( propName, false );
+    }
+
+    @Override
+    protected void add( Object key, Feature feature ) {
+        List<Feature> features = keyToFeatures.get( key );
+        if ( features == null ) {
+            features = new ArrayList<Feature>( 1 );
+            keyToFeatures.put( key, features );
+        }
+        // multiple equal values of the same feature are added consecutively
+        if ( features.isEmpty() || features.get( features.size() - 1 ) != feature ) {
+            features.add( feature );
+        }
+    }
+
+    @Override
+    protected Collection<Feature> lookupValues( ComparisonOperator op ) {
+        if ( op.getSubType() != PROPERTY_IS_EQUAL_TO ) {
+            return null;
+        }
+        BinaryComparisonOperator equalTo = (BinaryComparisonOperator) op;
+        Object key = null;
+        if ( isIndexedProperty( equalTo.getParameter1() ) ) {
+            key = getLiteralKey( equalTo.getParameter2() );
+        } else if ( isIndexedProperty( equalTo.getParameter2() ) ) {
+            key = getLiteralKey( equalTo.getParameter1() );
+        }
+        if ( key == null ) {
+            return null;
+        }
+        List<Feature> features = keyToFeatures.get( key );
+        if ( features == null ) {
+            return Collections.emptyList();
+        }
+        return features;
+    }
+}
@@ -35,15 +35,19 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.memory;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import javax.xml.namespace.QName;
 
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.db.ConnectionProvider;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -62,6 +66,10 @@ import org.deegree.workspace.ResourceMetadata;
 
 /**
  * {@link FeatureStore} implementation that keeps the feature instances in memory.
+ * <p>
+ * Queries are performed on the current (published) version of the {@link StoredFeatures} and don't block each other
+ * or the active transaction. A transaction works on a new version that is published atomically on commit.
+ * </p>
  * 
  * @see FeatureStore
  * @see StoredFeatures
@@ -77,13 +85,17 @@ public class MemoryFeatureStore implements FeatureStore {
 
     private final ICRS storageCRS;
 
+    private final Map<FeatureType, Map<QName, AttributeIndexType>> attributeIndexTypes;
+
+    private final boolean compactStorage;
+
     private MemoryFeatureStoreTransaction activeTransaction;
 
     private Thread transactionHolder;
 
     private DefaultLockManager lockManager;
 
-    private StoredFeatures storedFeatures;
+    private volatile StoredFeatures storedFeatures;
 
     private MemoryFeatureStoreMetadata metadata;
 
@@ -99,10 +111,37 @@ public class MemoryFeatureStore implements FeatureStore {
      */
     MemoryFeatureStore( AppSchema schema, ICRS storageCRS, MemoryFeatureStoreMetadata metadata,
                         ConnectionProvider lockConnection ) throws FeatureStoreException {
+        this( schema, storageCRS, metadata, lockConnection,
+              Collections.<FeatureType, Map<QName, AttributeIndexType>> emptyMap(), false );
+    }
+
+    /**
+     * Creates a new {@link MemoryFeatureStore} instance for the given {@link AppSchema} that maintains the given
+     * attribute indexes and optionally stores the features in compact (columnar) form.
+     * 
+     * @param schema
+     *            application schema, must not be <code>null</code>
+     * @param storageCRS
+     *            crs used for stored geometries, may be <code>null</code> (no transformation on inserts)
+     * @param metadata
+     * @param attributeIndexTypes
+     *            attribute indexes (feature type to indexed property names and index types), must not be
+     *            <code>null</code>
+     * @param compactStorage
+     *            true, if feature types should be stored in compact (columnar) form where possible (see
+     *            {@link CompactFeatureTable})
+     * @throws FeatureStoreException
+     */
+    MemoryFeatureStore( AppSchema schema, ICRS storageCRS, MemoryFeatureStoreMetadata metadata,
+                        ConnectionProvider lockConnection,
+                        Map<FeatureType, Map<QName, AttributeIndexType>> attributeIndexTypes, boolean compactStorage )
+                            throws FeatureStoreException {
         this.schema = schema;
         this.storageCRS = storageCRS;
         this.metadata = metadata;
-        this.storedFeatures = new StoredFeatures( schema, storageCRS, null );
+        this.attributeIndexTypes = attributeIndexTypes;
+        this.compactStorage = compactStorage;
+        this.storedFeatures = new StoredFeatures( schema, storageCRS, attributeIndexTypes, compactStorage, null );
         // TODO
         lockManager = new DefaultLockManager( this, lockConnection );
     }
@@ -207,7 +246,8 @@ public class MemoryFeatureStore implements FeatureStore {
             }
         }
 
-        StoredFeatures workingCopy = new StoredFeatures( schema, storageCRS, storedFeatures );
+        StoredFeatures workingCopy = new StoredFeatures( schema, storageCRS, attributeIndexTypes, compactStorage,
+                                                          storedFeatures );
         this.activeTransaction = new MemoryFeatureStoreTransaction( this, workingCopy, lockManager );
         this.transactionHolder = Thread.currentThread();
         return this.activeTransaction;
@@ -223,9 +263,10 @@ public class MemoryFeatureStore implements FeatureStore {
      * @param ta
      *            the transaction to be released, must not be <code>null</code>
      * @param newFeatures
+     *            published version of the stored features, can be <code>null</code> (rollback)
      * @throws FeatureStoreException
      */
-    void releaseTransaction( MemoryFeatureStoreTransaction ta, StoredFeatures newFeatures )
+    synchronized void releaseTransaction( MemoryFeatureStoreTransaction ta, StoredFeatures newFeatures )
                             throws FeatureStoreException {
         if ( ta.getStore() != this ) {
             String msg = Messages.getMessage( "TA_NOT_OWNER" );
@@ -240,7 +281,39 @@ public class MemoryFeatureStore implements FeatureStore {
         }
         this.activeTransaction = null;
         this.transactionHolder = null;
-        // notifyAll();
+        notifyAll();
+    }
+
+    /**
+     * Replaces the stored features with the features from the given tables (e.g. read from a snapshot).
+     * 
+     * @param tables
+     *            tables with the features to store, must not be <code>null</code>
+     * @throws FeatureStoreException
+     *             if a transaction is active or the stored features cannot be replaced
+     */
+    synchronized void restore( Collection<CompactFeatureTable> tables )
+                            throws FeatureStoreException {
+        if ( activeTransaction != null ) {
+            throw new FeatureStoreException( "Cannot restore stored features: a transaction is active." );
+        }
+        StoredFeatures restored = new StoredFeatures( schema, storageCRS, attributeIndexTypes, compactStorage,
+                                                      storedFeatures );
+        try {
+            restored.restore( tables );
+        } catch ( UnknownCRSException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
+        }
+        storedFeatures = restored;
+    }
+
+    /**
+     * Returns the tables of the stored features, if all stored features are stored in compact form.
+     * 
+     * @return tables of the non-empty feature types, or <code>null</code> if not all features are stored compactly
+     */
+    List<CompactFeatureTable> getCompactTables() {
+        return storedFeatures.getCompactTables();
     }
 
     @Override
@@ -257,15 +330,7 @@ public class MemoryFeatureStore implements FeatureStore {
 
     @Override
     public Envelope calcEnvelope( QName ftName ) {
-        Envelope ftEnv = null;
-        FeatureType ft = schema.getFeatureType( ftName );
-        if ( ft != null ) {
-            FeatureCollection fc = storedFeatures.getFeatures( ft );
-            if ( fc != null ) {
-                ftEnv = fc.getEnvelope();
-            }
-        }
-        return ftEnv;
+        return storedFeatures.getEnvelope( ftName );
     }
 
     @Override
@@ -282,6 +347,15 @@ public class MemoryFeatureStore implements FeatureStore {
         return storageCRS;
     }
 
+    /**
+     * Returns whether the features are stored in compact (columnar) form where possible.
+     * 
+     * @return true, if the storage mode is compact, false otherwise
+     */
+    boolean isCompactStorage() {
+        return compactStorage;
+    }
+
     @Override
     public ResourceMetadata<? extends Resource> getMetadata() {
         return metadata;
@@ -44,11 +44,15 @@ package org.deegree.feature.persistence.memory;
 import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.namespace.QName;
+
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.db.ConnectionProvider;
@@ -63,7 +67,9 @@ import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GMLFeatureCollection;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GMLSchema;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.NamespaceHint;
+import org.deegree.feature.persistence.memory.jaxb.StorageModeType;
 import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
@@ -133,38 +139,101 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
             throw new ResourceInitException( msg, e );
         }
 
+        boolean compactStorage = config.getStorageMode() == StorageModeType.COMPACT;
         try {
             ConnectionProvider lockProvider = workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
-            fs = new MemoryFeatureStore( schema, storageCRS, metadata, lockProvider );
+            fs = new MemoryFeatureStore( schema, storageCRS, metadata, lockProvider, getAttributeIndexTypes( schema ),
+                                         compactStorage );
         } catch ( FeatureStoreException ex ) {
             throw new ResourceInitException( ex.getLocalizedMessage(), ex );
         }
+        List<File> datasetFiles = new ArrayList<File>();
+        List<GMLVersion> datasetVersions = new ArrayList<GMLVersion>();
         for ( GMLFeatureCollection datasetFile : config.getGMLFeatureCollection() ) {
             if ( datasetFile != null ) {
-                try {
-                    GMLVersion version = GMLVersion.valueOf( datasetFile.getVersion().name() );
-                    URL docURL = metadata.getLocation().resolveToFile( datasetFile.getValue().trim() ).toURI().toURL();
-                    GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader( version, docURL );
-                    gmlStream.setApplicationSchema( schema );
-                    LOG.info( "Populating feature store with features from file '" + docURL + "'..." );
-                    FeatureCollection fc = (FeatureCollection) gmlStream.readFeature();
-                    gmlStream.getIdContext().resolveLocalRefs();
-
-                    FeatureStoreTransaction ta = fs.acquireTransaction();
-                    int fids = ta.performInsert( fc, USE_EXISTING ).size();
-                    LOG.info( "Inserted " + fids + " features." );
-                    ta.commit();
-                } catch ( Exception e ) {
-                    String msg = Messages.getMessage( "STORE_MANAGER_STORE_SETUP_ERROR", e.getMessage() );
-                    LOG.error( msg );
-                    LOG.trace( "Stack trace:", e );
-                    throw new ResourceInitException( msg, e );
+                datasetFiles.add( metadata.getLocation().resolveToFile( datasetFile.getValue().trim() ) );
+                datasetVersions.add( GMLVersion.valueOf( datasetFile.getVersion().name() ) );
+            }
+        }
+
+        MemoryFeatureStoreSnapshot snapshot = getSnapshot( compactStorage );
+        if ( snapshot != null && snapshot.isUpToDate( datasetFiles ) ) {
+            try {
+                if ( snapshot.restore( fs, datasetFiles ) ) {
+                    return fs;
                 }
+            } catch ( Exception e ) {
+                LOG.warn( "Could not restore features from snapshot: " + e.getMessage() + ". Loading datasets." );
+                LOG.trace( "Stack trace:", e );
+            }
+        }
+
+        for ( int i = 0; i < datasetFiles.size(); i++ ) {
+            try {
+                URL docURL = datasetFiles.get( i ).toURI().toURL();
+                GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader( datasetVersions.get( i ), docURL );
+                gmlStream.setApplicationSchema( schema );
+                LOG.info( "Populating feature store with features from file '" + docURL + "'..." );
+                FeatureCollection fc = (FeatureCollection) gmlStream.readFeature();
+                gmlStream.getIdContext().resolveLocalRefs();
+
+                FeatureStoreTransaction ta = fs.acquireTransaction();
+                int fids = ta.performInsert( fc, USE_EXISTING ).size();
+                LOG.info( "Inserted " + fids + " features." );
+                ta.commit();
+            } catch ( Exception e ) {
+                String msg = Messages.getMessage( "STORE_MANAGER_STORE_SETUP_ERROR", e.getMessage() );
+                LOG.error( msg );
+                LOG.trace( "Stack trace:", e );
+                throw new ResourceInitException( msg, e );
+            }
+        }
+
+        if ( snapshot != null ) {
+            try {
+                snapshot.write( fs, datasetFiles );
+            } catch ( IOException e ) {
+                LOG.warn( "Could not write snapshot: " + e.getMessage() );
+                LOG.trace( "Stack trace:", e );
             }
         }
         return fs;
     }
 
+    private MemoryFeatureStoreSnapshot getSnapshot( boolean compactStorage ) {
+        if ( config.getSnapshot() == null ) {
+            return null;
+        }
+        if ( !compactStorage ) {
+            LOG.warn( "Ignoring snapshot configuration: snapshots require storage mode COMPACT." );
+            return null;
+        }
+        return new MemoryFeatureStoreSnapshot( metadata.getLocation().resolveToFile( config.getSnapshot().trim() ) );
+    }
+
+    private Map<FeatureType, Map<QName, AttributeIndexType>> getAttributeIndexTypes( AppSchema schema ) {
+        Map<FeatureType, Map<QName, AttributeIndexType>> ftToIndexTypes = new HashMap<FeatureType, Map<QName, AttributeIndexType>>();
+        for ( MemoryFeatureStoreConfig.AttributeIndex index : config.getAttributeIndex() ) {
+            FeatureType ft = schema.getFeatureType( index.getFeatureType() );
+            if ( ft == null ) {
+                throw new ResourceInitException( "Cannot create attribute index: feature type '"
+                                                 + index.getFeatureType() + "' is not defined." );
+            }
+            if ( ft.getPropertyDeclaration( index.getProperty() ) == null ) {
+                throw new ResourceInitException( "Cannot create attribute index: feature type '"
+                                                 + index.getFeatureType() + "' has no property '"
+                                                 + index.getProperty() + "'." );
+            }
+            Map<QName, AttributeIndexType> propToIndexType = ftToIndexTypes.get( ft );
+            if ( propToIndexType == null ) {
+                propToIndexType = new HashMap<QName, AttributeIndexType>();
+                ftToIndexTypes.put( ft, propToIndexType );
+            }
+            propToIndexType.put( index.getProperty(), AttributeIndexType.valueOf( index.getType().name() ) );
+        }
+        return ftToIndexTypes;
+    }
+
     private static Map<String, String> getHintMap( List<NamespaceHint> hints ) {
         Map<String, String> prefixToNs = new HashMap<String, String>();
         for ( NamespaceHint namespaceHint : hints ) {
@@ -0,0 +1,281 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.deegree.feature.persistence.memory.CompactFeatureTable.readString;
+import static org.deegree.feature.persistence.memory.CompactFeatureTable.writeString;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary snapshot of the features of a {@link MemoryFeatureStore} that allows to skip GML parsing on startup.
+ * <p>
+ * A snapshot contains the {@link CompactFeatureTable}s of all stored feature types, so it can only be written if the
+ * store uses compact storage and all loaded feature types could be stored compactly. Besides the format version, the
+ * header contains a fingerprint of the application schema, the storage CRS and storage mode of the store and the list
+ * of the source datasets. A snapshot is only used
+ * if it is newer than all source datasets and its header matches the current configuration, otherwise the datasets are
+ * parsed as usual and the snapshot is rewritten. The id lookup table and the spatial indexes are rebuilt from the
+ * stored ids and feature envelopes when the snapshot is read (without materializing any geometry).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class MemoryFeatureStoreSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger( MemoryFeatureStoreSnapshot.class );
+
+    // 'DGMS'
+    private static final int MAGIC = 0x44474d53;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final File file;
+
+    /**
+     * Creates a new {@link MemoryFeatureStoreSnapshot} instance.
+     * 
+     * @param file
+     *            snapshot file, must not be <code>null</code>
+     */
+    MemoryFeatureStoreSnapshot( File file ) {
+        this.file = file;
+    }
+
+    /**
+     * Returns whether the snapshot file exists and is newer than all given source files.
+     * 
+     * @param sources
+     *            source datasets, must not be <code>null</code>
+     * @return true, if the snapshot exists and is up-to-date, false otherwise
+     */
+    boolean isUpToDate( List<File> sources ) {
+        if ( !file.isFile() ) {
+            return false;
+        }
+        long snapshotModified = file.lastModified();
+        for ( File source : sources ) {
+            if ( !source.exists() || source.lastModified() >= snapshotModified ) {
+                LOG.info( "Snapshot '{}' is older than dataset '{}'.", file, source );
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores the features of the given store from the snapshot.
+     * 
+     * @param fs
+     *            store to restore, must not be <code>null</code>
+     * @param sources
+     *            source datasets, must not be <code>null</code>
+     * @return true, if the features have been restored, false if the snapshot does not match the schema, storage
+     *         configuration or sources
+     * @throws IOException
+     *             if reading the snapshot fails
+     * @throws FeatureStoreException
+     *             if the features cannot be stored
+     */
+    boolean restore( MemoryFeatureStore fs, List<File> sources )
+                            throws IOException, FeatureStoreException {
+        long begin = System.currentTimeMillis();
+        AppSchema schema = fs.getSchema();
+        List<CompactFeatureTable> tables = new ArrayList<CompactFeatureTable>();
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ) );
+        try {
+            if ( in.readInt() != MAGIC ) {
+                throw new IOException( "File '" + file + "' is not a memory feature store snapshot." );
+            }
+            int version = in.readInt();
+            if ( version != FORMAT_VERSION ) {
+                LOG.info( "Snapshot '{}' has format version {}, expected {}.", new Object[] { file, version,
+                                                                                             FORMAT_VERSION } );
+                return false;
+            }
+            if ( !getFingerprint( schema ).equals( readString( in ) ) ) {
+                LOG.info( "Snapshot '{}' has been created for a different application schema.", file );
+                return false;
+            }
+            String storage = readString( in );
+            if ( !getStorage( fs ).equals( storage ) ) {
+                LOG.info( "Snapshot '{}' has been created for a different storage configuration ({}).", file, storage );
+                return false;
+            }
+            if ( !getSourceList( sources ).equals( readString( in ) ) ) {
+                LOG.info( "Snapshot '{}' has been created from different datasets.", file );
+                return false;
+            }
+            int numTables = in.readInt();
+            for ( int i = 0; i < numTables; i++ ) {
+                QName ftName = QName.valueOf( readString( in ) );
+                FeatureType ft = schema.getFeatureType( ftName );
+                if ( ft == null ) {
+                    throw new IOException( "Feature type '" + ftName + "' from snapshot is not defined." );
+                }
+                tables.add( CompactFeatureTable.read( in, ft ) );
+            }
+        } finally {
+            in.close();
+        }
+        fs.restore( tables );
+        long elapsed = System.currentTimeMillis() - begin;
+        LOG.info( "Restored features from snapshot '{}' in {} [ms].", file, elapsed );
+        return true;
+    }
+
+    /**
+     * Writes the stored features of the given store to the snapshot file.
+     * <p>
+     * The snapshot is written to a temporary file first, which replaces the snapshot file afterwards.
+     * </p>
+     * 
+     * @param fs
+     *            store to take the snapshot of, must not be <code>null</code>
+     * @param sources
+     *            source datasets of the stored features, must not be <code>null</code>
+     * @return true, if the snapshot has been written, false if the features are not (all) stored compactly
+     * @throws IOException
+     *             if writing the snapshot fails
+     */
+    boolean write( MemoryFeatureStore fs, List<File> sources )
+                            throws IOException {
+        List<CompactFeatureTable> tables = fs.getCompactTables();
+        if ( tables == null ) {
+            LOG.warn( "Not writing snapshot '{}': not all features could be stored in compact form.", file );
+            return false;
+        }
+        long begin = System.currentTimeMillis();
+        File tmpFile = new File( file.getPath() + ".tmp" );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ),
+                                                                               BUFFER_SIZE ) );
+        boolean written = false;
+        try {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT_VERSION );
+            writeString( out, getFingerprint( fs.getSchema() ) );
+            writeString( out, getStorage( fs ) );
+            writeString( out, getSourceList( sources ) );
+            out.writeInt( tables.size() );
+            for ( CompactFeatureTable table : tables ) {
+                writeString( out, table.getFeatureType().getName().toString() );
+                table.write( out );
+            }
+            out.close();
+            written = true;
+        } finally {
+            if ( !written ) {
+                out.close();
+                tmpFile.delete();
+            }
+        }
+        if ( ( file.exists() && !file.delete() ) || !tmpFile.renameTo( file ) ) {
+            tmpFile.delete();
+            throw new IOException( "Cannot replace snapshot file '" + file + "'." );
+        }
+        long elapsed = System.currentTimeMillis() - begin;
+        LOG.info( "Wrote snapshot '{}' in {} [ms].", file, elapsed );
+        return true;
+    }
+
+    private static String getSourceList( List<File> sources ) {
+        StringBuilder sb = new StringBuilder();
+        for ( File source : sources ) {
+            sb.append( source.getAbsolutePath() ).append( '\n' );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the storage CRS and storage mode of the given store. Geometries are stored in the storage CRS, so a
+     * snapshot cannot be used after it has been changed.
+     */
+    private static String getStorage( MemoryFeatureStore fs ) {
+        ICRS storageCRS = fs.getStorageCRS();
+        String crs = storageCRS != null ? storageCRS.getAlias() : "none";
+        return "crs=" + crs + ";mode=" + ( fs.isCompactStorage() ? "COMPACT" : "OBJECTS" );
+    }
+
+    private static String getFingerprint( AppSchema schema ) {
+        FeatureType[] fts = schema.getFeatureTypes().clone();
+        Arrays.sort( fts, new Comparator<FeatureType>() {
+            @Override
+            public int compare( FeatureType ft1, FeatureType ft2 ) {
+                return ft1.getName().toString().compareTo( ft2.getName().toString() );
+            }
+        } );
+        StringBuilder sb = new StringBuilder();
+        for ( FeatureType ft : fts ) {
+            sb.append( ft.getName() ).append( '[' );
+            for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+                sb.append( pt.getName() ).append( ':' ).append( pt.getClass().getSimpleName() );
+                if ( pt instanceof SimplePropertyType ) {
+                    sb.append( ':' ).append( ( (SimplePropertyType) pt ).getPrimitiveType().getBaseType() );
+                }
+                sb.append( ':' ).append( pt.getMinOccurs() ).append( ':' ).append( pt.getMaxOccurs() ).append( ';' );
+            }
+            sb.append( ']' );
+        }
+        return sb.toString();
+    }
+}
@@ -112,7 +112,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
      * @param fs
      *            invoking feature store instance, must not be <code>null</code>
      * @param sf
-     *            copy of features to work on, must not be <code>null</code>
+     *            new version of the stored features to work on, must not be <code>null</code>
      * @param lockManager
      *            lock manager, must not be <code>null</code>
      */
@@ -126,7 +126,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
     public void commit()
                             throws FeatureStoreException {
         try {
-            sf.rebuildIndexes();
+            sf.publish();
         } catch ( UnknownCRSException e ) {
             throw new FeatureStoreException( e.getMessage() );
         }
@@ -0,0 +1,226 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.Feature;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+
+/**
+ * {@link AttributeIndex} based on a sorted tree, supports <code>PropertyIsEqualTo</code>,
+ * <code>PropertyIsLessThan</code>, <code>PropertyIsLessThanOrEqualTo</code>, <code>PropertyIsGreaterThan</code>,
+ * <code>PropertyIsGreaterThanOrEqualTo</code>, <code>PropertyIsBetween</code> and (for string values)
+ * <code>PropertyIsLike</code> with a literal prefix.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class SortedAttributeIndex extends AttributeIndex {
+
+    private final TreeMap<Object, List<Feature>> keyToFeatures = new TreeMap<Object, List<Feature>>();
+
+    /**
+     * Creates a new {@link SortedAttributeIndex} instance.
+     * 
+     * @param propName
+     *            name of the indexed property, must not be <code>null</code>
+     * @param textOnly
+     *            if true, only string values are accepted
+     */
+    SortedAttributeIndex( QName propName, boolean textOnly ) {
+        super( propName, textOnly );
+    }
+
+    @Override
+    protected void add( Object key, Feature feature ) {
+        List<Feature> features = keyToFeatures.get( key );
+        if ( features == null ) {
+            features = new ArrayList<Feature>( 1 );
+            keyToFeatures.put( key, features );
+        }
+        // multiple equal values of the same feature are added consecutively
+        if ( features.isEmpty() || features.get( features.size() - 1 ) != feature ) {
+            features.add( feature );
+        }
+    }
+
+    @Override
+    protected Collection<Feature> lookupValues( ComparisonOperator op ) {
+        switch ( op.getSubType() ) {
+        case PROPERTY_IS_BETWEEN:
+            return lookupBetween( (PropertyIsBetween) op );
+        case PROPERTY_IS_LIKE:
+            return lookupLike( (PropertyIsLike) op );
+        case PROPERTY_IS_EQUAL_TO:
+        case PROPERTY_IS_LESS_THAN:
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+        case PROPERTY_IS_GREATER_THAN:
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+            return lookupBinary( (BinaryComparisonOperator) op );
+        default:
+            return null;
+        }
+    }
+
+    private Collection<Feature> lookupBinary( BinaryComparisonOperator op ) {
+        Object key = null;
+        boolean swapped = false;
+        if ( isIndexedProperty( op.getParameter1() ) ) {
+            key = getLiteralKey( op.getParameter2() );
+        } else if ( isIndexedProperty( op.getParameter2() ) ) {
+            key = getLiteralKey( op.getParameter1() );
+            swapped = true;
+        }
+        if ( key == null ) {
+            return null;
+        }
+        switch ( op.getSubType() ) {
+        case PROPERTY_IS_EQUAL_TO:
+            List<Feature> features = keyToFeatures.get( key );
+            return features != null ? features : Collections.<Feature> emptyList();
+        case PROPERTY_IS_LESS_THAN:
+            return collect( swapped ? keyToFeatures.tailMap( key, false ) : keyToFeatures.headMap( key, false ) );
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+            return collect( swapped ? keyToFeatures.tailMap( key, true ) : keyToFeatures.headMap( key, true ) );
+        case PROPERTY_IS_GREATER_THAN:
+            return collect( swapped ? keyToFeatures.headMap( key, false ) : keyToFeatures.tailMap( key, false ) );
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+            return collect( swapped ? keyToFeatures.headMap( key, true ) : keyToFeatures.tailMap( key, true ) );
+        default:
+            return null;
+        }
+    }
+
+    private Collection<Feature> lookupBetween( PropertyIsBetween op ) {
+        if ( !isIndexedProperty( op.getExpression() ) ) {
+            return null;
+        }
+        Object lower = getLiteralKey( op.getLowerBoundary() );
+        Object upper = getLiteralKey( op.getUpperBoundary() );
+        if ( lower == null || upper == null ) {
+            return null;
+        }
+        if ( compare( lower, upper ) > 0 ) {
+            return Collections.emptyList();
+        }
+        return collect( keyToFeatures.subMap( lower, true, upper, true ) );
+    }
+
+    private Collection<Feature> lookupLike( PropertyIsLike op ) {
+        if ( !isText() || !isIndexedProperty( op.getExpression() ) || !( op.getPattern() instanceof Literal<?> ) ) {
+            return null;
+        }
+        String wildCard = op.getWildCard();
+        String singleChar = op.getSingleChar();
+        String escapeChar = op.getEscapeChar();
+        if ( wildCard.length() != 1 || singleChar.length() != 1 || escapeChar.length() != 1 ) {
+            return null;
+        }
+        Object value = ( (Literal<?>) op.getPattern() ).getValue();
+        if ( value == null ) {
+            return null;
+        }
+
+        // determine prefix (ends at the first unescaped wildcard / singlechar character)
+        String pattern = value.toString();
+        StringBuilder prefix = new StringBuilder();
+        boolean escapeMode = false;
+        boolean exact = true;
+        for ( int i = 0; i < pattern.length(); i++ ) {
+            char c = pattern.charAt( i );
+            if ( escapeMode ) {
+                if ( c != escapeChar.charAt( 0 ) ) {
+                    prefix.append( c );
+                }
+                escapeMode = false;
+            } else if ( c == escapeChar.charAt( 0 ) ) {
+                escapeMode = true;
+            } else if ( c == wildCard.charAt( 0 ) || c == singleChar.charAt( 0 ) ) {
+                exact = false;
+                break;
+            } else {
+                prefix.append( c );
+            }
+        }
+        if ( !exact && prefix.length() == 0 ) {
+            return null;
+        }
+
+        String prefixString = prefix.toString();
+        if ( exact ) {
+            List<Feature> features = keyToFeatures.get( prefixString );
+            return features != null ? features : Collections.<Feature> emptyList();
+        }
+        Set<Feature> features = new LinkedHashSet<Feature>();
+        for ( Entry<Object, List<Feature>> entry : keyToFeatures.tailMap( prefixString, true ).entrySet() ) {
+            if ( !( (String) entry.getKey() ).startsWith( prefixString ) ) {
+                break;
+            }
+            features.addAll( entry.getValue() );
+        }
+        return features;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private int compare( Object key1, Object key2 ) {
+        return ( (Comparable) key1 ).compareTo( key2 );
+    }
+
+    private Collection<Feature> collect( NavigableMap<Object, List<Feature>> keysToFeatures ) {
+        Set<Feature> features = new LinkedHashSet<Feature>();
+        for ( List<Feature> keyFeatures : keysToFeatures.values() ) {
+            features.addAll( keyFeatures );
+        }
+        return features;
+    }
+}
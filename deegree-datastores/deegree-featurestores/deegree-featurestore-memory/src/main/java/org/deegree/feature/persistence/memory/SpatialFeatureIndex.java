@@ -0,0 +1,113 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.deegree.commons.index.PackedRTree.DEFAULT_NODE_SIZE;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.deegree.commons.index.LongIndexVisitor;
+import org.deegree.commons.index.PackedRTree;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+
+/**
+ * Spatial index on the stored features of a feature type.
+ * <p>
+ * The features are kept in an array and indexed by a {@link PackedRTree} that stores the array positions, so queries
+ * don't create any objects per hit. The index is immutable and can be shared between versions of the stored features.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class SpatialFeatureIndex {
+
+    private final Feature[] features;
+
+    private final PackedRTree tree;
+
+    private SpatialFeatureIndex( Feature[] features, PackedRTree tree ) {
+        this.features = features;
+        this.tree = tree;
+    }
+
+    /**
+     * Builds an index for the given features.
+     * 
+     * @param fBboxes
+     *            features and their envelopes (min x, min y, max x, max y), must not be <code>null</code>
+     * @return index, never <code>null</code>
+     */
+    static SpatialFeatureIndex build( List<Pair<float[], Feature>> fBboxes ) {
+        Feature[] features = new Feature[fBboxes.size()];
+        List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>( fBboxes.size() );
+        for ( int i = 0; i < features.length; i++ ) {
+            Pair<float[], Feature> fBbox = fBboxes.get( i );
+            features[i] = fBbox.second;
+            entries.add( new Pair<float[], Long>( fBbox.first, (long) i ) );
+        }
+        return new SpatialFeatureIndex( features, PackedRTree.build( entries, DEFAULT_NODE_SIZE, false ) );
+    }
+
+    /**
+     * Adds all indexed features whose envelope intersects the given box to the given collection.
+     * 
+     * @param box
+     *            query box (min x, min y, max x, max y), must not be <code>null</code>
+     * @param excludedIds
+     *            ids of features that must be skipped, must not be <code>null</code>
+     * @param members
+     *            collection to add the features to, must not be <code>null</code>
+     */
+    void query( float[] box, final Set<String> excludedIds, final Collection<Feature> members ) {
+        tree.query( box, new LongIndexVisitor() {
+            @Override
+            public boolean visit( long value ) {
+                Feature f = features[(int) value];
+                if ( excludedIds.isEmpty() || !excludedIds.contains( f.getId() ) ) {
+                    members.add( f );
+                }
+                return true;
+            }
+        } );
+    }
+}
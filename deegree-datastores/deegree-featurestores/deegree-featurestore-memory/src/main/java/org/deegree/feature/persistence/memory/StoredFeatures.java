@@ -39,16 +39,19 @@ import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REMOVE;
 import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REPLACE;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
 
-import org.deegree.commons.index.RTree;
 import org.deegree.commons.tom.Reference;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
@@ -66,11 +69,15 @@ import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.ResourceId;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.geometry.Envelope;
@@ -85,7 +92,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Encapsulates stored feature instances plus index structures for id and spatial queries.
+ * Encapsulates a version of the stored feature instances plus index structures for id, spatial and attribute queries.
+ * <p>
+ * A version consists of an immutable base (feature collections, id lookup table and spatial indexes) and a delta
+ * (added and removed features) relative to this base. Versions that have been published via {@link #publish()} are
+ * never modified again, so they can be queried by any number of threads without locking (snapshot isolation). A
+ * transaction works on a copy of the delta that shares the base with the former version. Publishing only builds the
+ * index structures for the changed feature types of the delta, so the costs of a commit depend on the size of the
+ * delta and not on the number of stored features. If the delta becomes too large compared to the base, it is merged
+ * into a new base (compaction).
+ * </p>
+ * <p>
+ * In compact storage mode, compaction stores the base features of every eligible feature type in a
+ * {@link CompactFeatureTable}, so the base holds lightweight {@link CompactFeature} views instead of object trees.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -96,48 +116,114 @@ class StoredFeatures {
 
     private static final Logger LOG = LoggerFactory.getLogger( StoredFeatures.class );
 
+    // deltas with less changes never trigger a compaction
+    private static final int MIN_COMPACTION_DELTA = 1000;
+
+    // compaction is performed if the delta exceeds the number of base features divided by this value
+    private static final int COMPACTION_RATIO = 32;
+
     private final AppSchema schema;
 
     private final ICRS storageCRS;
 
+    private final Map<FeatureType, Map<QName, AttributeIndexType>> attributeIndexTypes;
+
+    private final boolean compactStorage;
+
     private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
 
-    private final Map<FeatureType, FeatureCollection> ftToFeatures = new HashMap<FeatureType, FeatureCollection>();
+    // base (shared between versions, never modified after creation)
+
+    private Map<FeatureType, FeatureCollection> ftToFeatures = new HashMap<FeatureType, FeatureCollection>();
+
+    private Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
+
+    private Map<FeatureType, SpatialFeatureIndex> ftToIndex = new HashMap<FeatureType, SpatialFeatureIndex>();
+
+    private Map<FeatureType, List<AttributeIndex>> ftToAttributeIndexes = new HashMap<FeatureType, List<AttributeIndex>>();
+
+    private int numBaseFeatures;
+
+    // delta (copied for every version)
+
+    private final Map<FeatureType, Set<Feature>> ftToAdded = new HashMap<FeatureType, Set<Feature>>();
 
-    private final Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
+    private final Map<String, GMLObject> addedIdToObject = new HashMap<String, GMLObject>();
 
-    private final Map<FeatureType, RTree<Feature>> ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
+    // ids of all removed base objects (features and geometries)
+    private final Set<String> removedIds = new HashSet<String>();
+
+    // ids of the removed base features, only contains feature types with removals
+    private final Map<FeatureType, Set<String>> ftToRemovedIds = new HashMap<FeatureType, Set<String>>();
+
+    // derived from base and delta, only rebuilt for feature types that have been changed in this version
+
+    private final Map<FeatureType, SpatialFeatureIndex> ftToAddedIndex = new HashMap<FeatureType, SpatialFeatureIndex>();
+
+    private final Map<FeatureType, List<AttributeIndex>> ftToAddedAttributeIndexes = new HashMap<FeatureType, List<AttributeIndex>>();
+
+    private final Map<FeatureType, Envelope> ftToEnvelope = new HashMap<FeatureType, Envelope>();
+
+    private final Set<FeatureType> changedFts = new HashSet<FeatureType>();
+
+    private volatile boolean published;
 
     /**
      * Creates a new {@link StoredFeatures} instance.
+     * <p>
+     * If a former version is given, the new instance shares the base with it and can be modified (using
+     * {@link #addFeature(Feature)}, {@link #removeFeature(Feature)} and {@link #updateFeature(Feature, List)}) without
+     * affecting the former version. It must be published using {@link #publish()} before it can be queried.
+     * </p>
      * 
      * @param schema
      *            application schema, must not be <code>null</code>
      * @param storageCRS
      *            target CRS for stored geometries, can be <code>null</code> (no CRS normalization)
+     * @param attributeIndexTypes
+     *            attribute indexes to maintain (feature type to indexed property names and index types), must not be
+     *            <code>null</code>
+     * @param compactStorage
+     *            true, if the base should store feature types in compact (columnar) form where possible
      * @param former
-     *            stored features to copy from, can be <code>null</code> (new instance will be empty)
+     *            published version of the stored features to start from, can be <code>null</code> (new instance will
+     *            be empty and published)
      * @throws FeatureStoreException
      */
-    StoredFeatures( AppSchema schema, ICRS storageCRS, StoredFeatures former ) throws FeatureStoreException {
+    StoredFeatures( AppSchema schema, ICRS storageCRS,
+                    Map<FeatureType, Map<QName, AttributeIndexType>> attributeIndexTypes, boolean compactStorage,
+                    StoredFeatures former ) throws FeatureStoreException {
         this.schema = schema;
         this.storageCRS = storageCRS;
-        initFtToFeaturesMap( schema, former );
-        try {
-            rebuildIndexes();
-        } catch ( UnknownCRSException e ) {
-            throw new FeatureStoreException( e.getMessage(), e );
-        }
-    }
-
-    private void initFtToFeaturesMap( AppSchema schema, StoredFeatures former ) {
-        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
-            FeatureCollection fc = new GenericFeatureCollection();
-            if ( former != null ) {
-                FeatureCollection oldFc = former.ftToFeatures.get( ft );
-                fc.addAll( oldFc );
+        this.attributeIndexTypes = attributeIndexTypes;
+        this.compactStorage = compactStorage;
+        if ( former != null ) {
+            ftToFeatures = former.ftToFeatures;
+            idToObject = former.idToObject;
+            ftToIndex = former.ftToIndex;
+            ftToAttributeIndexes = former.ftToAttributeIndexes;
+            numBaseFeatures = former.numBaseFeatures;
+            for ( Entry<FeatureType, Set<Feature>> added : former.ftToAdded.entrySet() ) {
+                ftToAdded.put( added.getKey(), new LinkedHashSet<Feature>( added.getValue() ) );
+            }
+            addedIdToObject.putAll( former.addedIdToObject );
+            removedIds.addAll( former.removedIds );
+            for ( Entry<FeatureType, Set<String>> removed : former.ftToRemovedIds.entrySet() ) {
+                ftToRemovedIds.put( removed.getKey(), new HashSet<String>( removed.getValue() ) );
+            }
+            ftToAddedIndex.putAll( former.ftToAddedIndex );
+            ftToAddedAttributeIndexes.putAll( former.ftToAddedAttributeIndexes );
+            ftToEnvelope.putAll( former.ftToEnvelope );
+        } else {
+            for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+                ftToFeatures.put( ft, new GenericFeatureCollection() );
+            }
+            try {
+                rebuildIndexes();
+                publish();
+            } catch ( UnknownCRSException e ) {
+                throw new FeatureStoreException( e.getMessage(), e );
             }
-            ftToFeatures.put( ft, fc );
         }
     }
 
@@ -149,7 +235,32 @@ class StoredFeatures {
      * @return stored features of the given type, never <code>null</code>
      */
     FeatureCollection getFeatures( FeatureType ft ) {
-        return ftToFeatures.get( ft );
+        FeatureCollection fc = ftToFeatures.get( ft );
+        Set<String> removed = ftToRemovedIds.get( ft );
+        if ( !ftToAdded.containsKey( ft ) && removed == null ) {
+            return fc != null ? fc : new GenericFeatureCollection();
+        }
+        List<Feature> members = new ArrayList<Feature>();
+        if ( fc != null ) {
+            addNotRemoved( fc, removed, members );
+        }
+        Set<Feature> added = ftToAdded.get( ft );
+        if ( added != null ) {
+            members.addAll( added );
+        }
+        return new GenericFeatureCollection( null, members );
+    }
+
+    private void addNotRemoved( Collection<Feature> baseFeatures, Set<String> removed, Collection<Feature> members ) {
+        if ( removed == null ) {
+            members.addAll( baseFeatures );
+            return;
+        }
+        for ( Feature f : baseFeatures ) {
+            if ( !removed.contains( f.getId() ) ) {
+                members.add( f );
+            }
+        }
     }
 
     /**
@@ -178,26 +289,38 @@ class StoredFeatures {
                 throw new FeatureStoreException( msg );
             }
 
-            // determine / filter features
-            fc = ftToFeatures.get( ft );
-
-            // perform index filtering
-            Envelope ftEnv = ftToFeatures.get( ft ).getEnvelope();
-            if ( query.getPrefilterBBoxEnvelope() != null && ftEnv != null && storageCRS != null ) {
-                Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
-                if ( prefilterBox.getCoordinateSystem() != null
-                     && !prefilterBox.getCoordinateSystem().equals( storageCRS ) ) {
-                    try {
-                        GeometryTransformer t = new GeometryTransformer( storageCRS );
-                        prefilterBox = t.transform( prefilterBox );
-                    } catch ( Exception e ) {
-                        throw new FeatureStoreException( e.getMessage(), e );
+            // determine / filter features using the indexes (only complete for published versions)
+            float[] prefilterBox = getPrefilterBox( query, ft );
+            Collection<Feature> candidates = null;
+            if ( query.getFilter() != null ) {
+                candidates = getIndexCandidates( ft, query.getFilter() );
+            }
+            if ( candidates != null ) {
+                if ( prefilterBox != null ) {
+                    List<Feature> members = new ArrayList<Feature>( candidates.size() );
+                    for ( Feature f : candidates ) {
+                        Envelope fEnv = f.getEnvelope();
+                        if ( fEnv != null && intersects( toFloats( fEnv ), prefilterBox ) ) {
+                            members.add( f );
+                        }
                     }
+                    candidates = members;
                 }
-
-                float[] floats = toFloats( prefilterBox );
-                RTree<Feature> index = ftToIndex.get( ft );
-                fc = new GenericFeatureCollection( null, index.query( floats ) );
+                fc = new GenericFeatureCollection( null, candidates );
+            } else if ( prefilterBox != null ) {
+                List<Feature> members = new ArrayList<Feature>();
+                SpatialFeatureIndex index = ftToIndex.get( ft );
+                if ( index != null ) {
+                    Set<String> removed = ftToRemovedIds.get( ft );
+                    index.query( prefilterBox, removed != null ? removed : Collections.<String> emptySet(), members );
+                }
+                SpatialFeatureIndex addedIndex = ftToAddedIndex.get( ft );
+                if ( addedIndex != null ) {
+                    addedIndex.query( prefilterBox, Collections.<String> emptySet(), members );
+                }
+                fc = new GenericFeatureCollection( null, members );
+            } else {
+                fc = getFeatures( ft );
             }
 
             if ( query.getFilter() != null ) {
@@ -211,7 +334,7 @@ class StoredFeatures {
             }
             Set<Feature> features = new HashSet<Feature>();
             for ( ResourceId id : ( (IdFilter) query.getFilter() ).getSelectedIds() ) {
-                GMLObject object = idToObject.get( id.getRid() );
+                GMLObject object = getObjectById( id.getRid() );
                 if ( object != null && object instanceof Feature ) {
                     features.add( (Feature) object );
                 }
@@ -225,81 +348,200 @@ class StoredFeatures {
             fc = Features.sortFc( fc, sortCrit );
         }
 
+        if ( query.getStartIndex() > 0 ) {
+            return new PagedFeatureInputStream( new MemoryFeatureInputStream( fc ), query.getStartIndex(), -1 );
+        }
         return new MemoryFeatureInputStream( fc );
     }
 
+    private float[] getPrefilterBox( Query query, FeatureType ft )
+                            throws FeatureStoreException {
+        Envelope ftEnv = ftToEnvelope.get( ft );
+        if ( query.getPrefilterBBoxEnvelope() == null || ftEnv == null || storageCRS == null || !published ) {
+            return null;
+        }
+        Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
+        if ( prefilterBox.getCoordinateSystem() != null && !prefilterBox.getCoordinateSystem().equals( storageCRS ) ) {
+            try {
+                GeometryTransformer t = new GeometryTransformer( storageCRS );
+                prefilterBox = t.transform( prefilterBox );
+            } catch ( Exception e ) {
+                throw new FeatureStoreException( e.getMessage(), e );
+            }
+        }
+        return toFloats( prefilterBox );
+    }
+
+    /**
+     * Determines the candidate features for the given filter using the id lookup table or the attribute indexes.
+     * 
+     * @param ft
+     *            queried feature type, must not be <code>null</code>
+     * @param filter
+     *            filter, must not be <code>null</code>
+     * @return candidate features (superset of the matching features), or <code>null</code> if no index is applicable
+     */
+    private Collection<Feature> getIndexCandidates( FeatureType ft, Filter filter ) {
+        if ( filter instanceof IdFilter ) {
+            Set<Feature> features = new LinkedHashSet<Feature>();
+            for ( ResourceId id : ( (IdFilter) filter ).getSelectedIds() ) {
+                GMLObject object = getObjectById( id.getRid() );
+                if ( object instanceof Feature && ft.equals( ( (Feature) object ).getType() ) ) {
+                    features.add( (Feature) object );
+                }
+            }
+            return features;
+        }
+
+        List<AttributeIndex> indexes = ftToAttributeIndexes.get( ft );
+        if ( indexes == null || !published || !( filter instanceof OperatorFilter ) ) {
+            return null;
+        }
+        Operator op = ( (OperatorFilter) filter ).getOperator();
+        Collection<Feature> baseCandidates = new AttributeIndexPlanner( indexes ).getCandidates( op );
+        if ( baseCandidates == null ) {
+            return null;
+        }
+        List<Feature> candidates = new ArrayList<Feature>( baseCandidates.size() );
+        addNotRemoved( baseCandidates, ftToRemovedIds.get( ft ), candidates );
+        Set<Feature> added = ftToAdded.get( ft );
+        if ( added != null ) {
+            Collection<Feature> addedCandidates = null;
+            List<AttributeIndex> addedIndexes = ftToAddedAttributeIndexes.get( ft );
+            if ( addedIndexes != null ) {
+                addedCandidates = new AttributeIndexPlanner( addedIndexes ).getCandidates( op );
+            }
+            candidates.addAll( addedCandidates != null ? addedCandidates : added );
+        }
+        return candidates;
+    }
+
     GMLObject getObjectById( String id ) {
-        return idToObject.get( id );
+        GMLObject object = addedIdToObject.get( id );
+        if ( object == null && !removedIds.contains( id ) ) {
+            object = idToObject.get( id );
+        }
+        return object;
     }
 
     /**
      * Returns the {@link Envelope} for the stored features of the specified type.
+     * <p>
+     * NOTE: Removed features are only considered after the next compaction, so the returned envelope may be larger
+     * than necessary.
+     * </p>
      * 
      * @param ftName
      *            feature type name, must not be <code>null</code>
      * @return envelope, can be <code>null</code>
      */
     Envelope getEnvelope( QName ftName ) {
-        return ftToFeatures.get( schema.getFeatureType( ftName ) ).getEnvelope();
+        FeatureType ft = schema.getFeatureType( ftName );
+        return ft != null ? ftToEnvelope.get( ft ) : null;
     }
 
     /**
-     * Adds the given {@link Feature} instance and updates the index structures.
+     * Adds the given {@link Feature} instance to the delta.
      * 
      * @param features
      *            feature to be added, must not be <code>null</code> and must have an id (as well as every geometry)
      */
     void addFeature( Feature feature ) {
         FeatureType ft = feature.getType();
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc == null ) {
-            fc = new GenericFeatureCollection();
-            ftToFeatures.put( ft, fc );
+        Set<Feature> added = ftToAdded.get( ft );
+        if ( added == null ) {
+            added = new LinkedHashSet<Feature>();
+            ftToAdded.put( ft, added );
         }
-        fc.add( feature );
-        idToObject.put( feature.getId(), feature );
-        if ( feature.getEnvelope() != null ) {
-            RTree<Feature> rTree = ftToIndex.get( ft );
-            float[] insertBox = toFloats( feature.getEnvelope() );
-            if ( rTree == null ) {
-                rTree = new RTree<Feature>( insertBox, 16 );
-            }
-            rTree.insert( insertBox, feature );
+        added.add( feature );
+        for ( GMLObject object : getObjects( feature ) ) {
+            addedIdToObject.put( object.getId(), object );
         }
+        changedFts.add( ft );
     }
 
     /**
-     * Removes the given {@link Feature} instance and updates the index structures.
+     * Removes the given {@link Feature} instance (and its geometries) by recording the removal in the delta.
      * 
      * @param feature
      *            feature to be removed, must not be <code>null</code>
      */
     void removeFeature( Feature feature ) {
-        idToObject.remove( feature.getId() );
         FeatureType ft = feature.getType();
-        RTree<Feature> rTree = ftToIndex.get( ft );
-        if ( rTree != null ) {
-            rTree.remove( feature );
+        Set<Feature> added = ftToAdded.get( ft );
+        if ( added != null && added.remove( feature ) && added.isEmpty() ) {
+            ftToAdded.remove( ft );
         }
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc != null ) {
-            fc.remove( feature );
+        for ( GMLObject object : getObjects( feature ) ) {
+            String id = object.getId();
+            if ( addedIdToObject.get( id ) == object ) {
+                addedIdToObject.remove( id );
+            }
+            if ( idToObject.containsKey( id ) ) {
+                removedIds.add( id );
+                if ( object == feature ) {
+                    Set<String> removed = ftToRemovedIds.get( ft );
+                    if ( removed == null ) {
+                        removed = new HashSet<String>();
+                        ftToRemovedIds.put( ft, removed );
+                    }
+                    removed.add( id );
+                }
+            }
         }
+        changedFts.add( ft );
     }
 
     /**
-     * Updates the given {@link Feature} instance and updates the index structures.
-     * 
-     * TODO Use a copy of the original feature to avoid modifications on rollback. Difficult part: Consider updating of references.
+     * Returns the given feature and its geometries (but not nested features, as these are stored separately).
+     */
+    private List<GMLObject> getObjects( final Feature feature ) {
+        final List<GMLObject> objects = new ArrayList<GMLObject>();
+        GMLObjectVisitor visitor = new GMLObjectVisitor() {
+            @Override
+            public boolean visitGeometry( Geometry geom ) {
+                if ( geom.getId() != null ) {
+                    objects.add( geom );
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visitFeature( Feature f ) {
+                if ( f != feature ) {
+                    return false;
+                }
+                objects.add( f );
+                return true;
+            }
+
+            @Override
+            public boolean visitReference( Reference<?> ref ) {
+                return false;
+            }
+        };
+        new GMLObjectWalker( visitor ).traverse( feature );
+        return objects;
+    }
+
+    /**
+     * Updates the given {@link Feature} instance.
+     * <p>
+     * The stored instance itself is not modified (it may be in use by readers of a published version), but replaced by
+     * an updated copy. References from other features to the original instance are not updated.
+     * </p>
      * 
-     * @param feature
+     * @param original
      *            feature to be updated, must not be <code>null</code>
      * @param replacementProps
      *            properties to be replaced, must not be <code>null</code>
      */
-    void updateFeature( Feature feature, List<ParsedPropertyReplacement> replacementProps )
+    void updateFeature( Feature original, List<ParsedPropertyReplacement> replacementProps )
                             throws FeatureStoreException {
-       
+
+        Feature feature = original.getType().newFeature( original.getId(),
+                                                         new ArrayList<Property>( original.getProperties() ),
+                                                         original.getExtraProperties() );
         for ( ParsedPropertyReplacement replacement : replacementProps ) {
             Property prop = replacement.getNewValue();
             UpdateAction updateAction = replacement.getUpdateAction();
@@ -369,6 +611,9 @@ class StoredFeatures {
             }
             validateProperties( feature, feature.getProperties() );
         }
+        feature.setEnvelope( feature.calcEnvelope() );
+        removeFeature( original );
+        addFeature( feature );
     }
 
     private void validateProperties( Feature feature, List<Property> props ) {
@@ -420,7 +665,170 @@ class StoredFeatures {
         }
     }
 
-    void rebuildIndexes()
+    /**
+     * Prepares this version for publishing, i.e. for being queried concurrently. After this, it must not be modified
+     * anymore.
+     * <p>
+     * Depending on the size of the delta, either the index structures for the changed feature types of the delta are
+     * rebuilt or the delta is merged into a new base (compaction).
+     * </p>
+     * 
+     * @throws UnknownCRSException
+     */
+    void publish()
+                            throws UnknownCRSException {
+        int deltaSize = getDeltaSize();
+        // in compact storage mode, the initial load is always compacted
+        boolean initialLoad = compactStorage && numBaseFeatures == 0 && deltaSize > 0;
+        if ( initialLoad || deltaSize > Math.max( MIN_COMPACTION_DELTA, numBaseFeatures / COMPACTION_RATIO ) ) {
+            LOG.debug( "Delta contains {} changes, compacting {} base features", deltaSize, numBaseFeatures );
+            compact();
+        } else {
+            long begin = System.currentTimeMillis();
+            rebuildDeltaIndexes();
+            long elapsed = System.currentTimeMillis() - begin;
+            LOG.debug( "Building indexes for delta ({} changes) took {} [ms]", deltaSize, elapsed );
+        }
+        changedFts.clear();
+        published = true;
+    }
+
+    /**
+     * Returns the number of changes (added features and removed object ids) relative to the base.
+     * 
+     * @return number of changes, zero after a compaction
+     */
+    int getDeltaSize() {
+        int deltaSize = removedIds.size();
+        for ( Set<Feature> added : ftToAdded.values() ) {
+            deltaSize += added.size();
+        }
+        return deltaSize;
+    }
+
+    private void compact()
+                            throws UnknownCRSException {
+        Map<FeatureType, FeatureCollection> newFtToFeatures = new HashMap<FeatureType, FeatureCollection>();
+        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+            FeatureCollection fc = new GenericFeatureCollection();
+            fc.addAll( getFeatures( ft ) );
+            if ( compactStorage && !fc.isEmpty() ) {
+                CompactFeatureTable table = CompactFeatureTable.encode( ft, fc );
+                if ( table != null ) {
+                    LOG.debug( "Storing {} features of type '{}' in compact form", fc.size(), ft.getName() );
+                    fc = new GenericFeatureCollection( null, table.getFeatures() );
+                } else {
+                    LOG.info( "Features of type '{}' cannot be stored in compact form", ft.getName() );
+                }
+            }
+            newFtToFeatures.put( ft, fc );
+        }
+        setBase( newFtToFeatures );
+    }
+
+    /**
+     * Replaces the stored features with the features from the given tables and publishes this version.
+     * <p>
+     * This is used to restore a version from a snapshot (see {@link MemoryFeatureStoreSnapshot}). Feature types without
+     * a table will be empty.
+     * </p>
+     * 
+     * @param tables
+     *            tables with the stored features, must not be <code>null</code>
+     * @throws UnknownCRSException
+     */
+    void restore( Collection<CompactFeatureTable> tables )
+                            throws UnknownCRSException {
+        Map<FeatureType, FeatureCollection> newFtToFeatures = new HashMap<FeatureType, FeatureCollection>();
+        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+            newFtToFeatures.put( ft, new GenericFeatureCollection() );
+        }
+        for ( CompactFeatureTable table : tables ) {
+            newFtToFeatures.put( table.getFeatureType(), new GenericFeatureCollection( null, table.getFeatures() ) );
+        }
+        setBase( newFtToFeatures );
+        changedFts.clear();
+        published = true;
+    }
+
+    /**
+     * Returns the tables of the compactly stored features, if all stored features are stored compactly.
+     * 
+     * @return tables of the non-empty feature types, or <code>null</code> if the delta is not empty or any feature type
+     *         is not stored compactly
+     */
+    List<CompactFeatureTable> getCompactTables() {
+        if ( !ftToAdded.isEmpty() || !removedIds.isEmpty() ) {
+            return null;
+        }
+        List<CompactFeatureTable> tables = new ArrayList<CompactFeatureTable>();
+        for ( FeatureCollection fc : ftToFeatures.values() ) {
+            if ( fc.isEmpty() ) {
+                continue;
+            }
+            Feature first = fc.iterator().next();
+            if ( !( first instanceof CompactFeature ) || ( (CompactFeature) first ).getTable().size() != fc.size() ) {
+                return null;
+            }
+            tables.add( ( (CompactFeature) first ).getTable() );
+        }
+        return tables;
+    }
+
+    private void setBase( Map<FeatureType, FeatureCollection> newFtToFeatures )
+                            throws UnknownCRSException {
+        numBaseFeatures = 0;
+        for ( FeatureCollection fc : newFtToFeatures.values() ) {
+            numBaseFeatures += fc.size();
+        }
+        ftToFeatures = newFtToFeatures;
+        idToObject = new HashMap<String, GMLObject>();
+        ftToIndex = new HashMap<FeatureType, SpatialFeatureIndex>();
+        ftToAttributeIndexes = new HashMap<FeatureType, List<AttributeIndex>>();
+        ftToAdded.clear();
+        addedIdToObject.clear();
+        removedIds.clear();
+        ftToRemovedIds.clear();
+        ftToAddedIndex.clear();
+        ftToAddedAttributeIndexes.clear();
+        rebuildIndexes();
+        ftToEnvelope.clear();
+        for ( Entry<FeatureType, FeatureCollection> ftAndFc : ftToFeatures.entrySet() ) {
+            ftToEnvelope.put( ftAndFc.getKey(), ftAndFc.getValue().getEnvelope() );
+        }
+    }
+
+    private void rebuildDeltaIndexes() {
+        for ( FeatureType ft : changedFts ) {
+            FeatureCollection fc = ftToFeatures.get( ft );
+            Envelope env = fc != null ? fc.getEnvelope() : null;
+            Set<Feature> added = ftToAdded.get( ft );
+            if ( added == null ) {
+                ftToAddedIndex.remove( ft );
+                ftToAddedAttributeIndexes.remove( ft );
+            } else {
+                if ( attributeIndexTypes.containsKey( ft ) ) {
+                    ftToAddedAttributeIndexes.put( ft, buildAttributeIndexes( ft, added ) );
+                }
+                List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( added.size() );
+                for ( Feature f : added ) {
+                    Envelope fEnv = f.getEnvelope();
+                    if ( fEnv != null ) {
+                        fBboxes.add( new Pair<float[], Feature>( toFloats( fEnv ), f ) );
+                        env = env == null ? fEnv : env.merge( fEnv );
+                    }
+                }
+                if ( fBboxes.isEmpty() ) {
+                    ftToAddedIndex.remove( ft );
+                } else {
+                    ftToAddedIndex.put( ft, SpatialFeatureIndex.build( fBboxes ) );
+                }
+            }
+            ftToEnvelope.put( ft, env );
+        }
+    }
+
+    private void rebuildIndexes()
                             throws UnknownCRSException {
 
         long begin = System.currentTimeMillis();
@@ -433,6 +841,11 @@ class StoredFeatures {
         elapsed = System.currentTimeMillis() - begin;
         LOG.debug( "Building spatial indexes took {} [ms]", elapsed );
 
+        begin = System.currentTimeMillis();
+        rebuildAttributeIndexes();
+        elapsed = System.currentTimeMillis() - begin;
+        LOG.debug( "Building attribute indexes took {} [ms]", elapsed );
+
         begin = System.currentTimeMillis();
         rebuildIdToObjectMap();
         elapsed = System.currentTimeMillis() - begin;
@@ -446,12 +859,10 @@ class StoredFeatures {
     }
 
     private void rebuildRtrees() {
-        ftToIndex.clear();
         for ( FeatureType ft : ftToFeatures.keySet() ) {
             FeatureCollection fc = ftToFeatures.get( ft );
             Envelope env = fc.getEnvelope();
             if ( env != null ) {
-                RTree<Feature> index = new RTree<Feature>( toFloats( env ), 16 );
                 List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( fc.size() );
                 for ( Feature f : fc ) {
                     Envelope fEnv = f.getEnvelope();
@@ -460,14 +871,29 @@ class StoredFeatures {
                         fBboxes.add( new Pair<float[], Feature>( floats, f ) );
                     }
                 }
-                index.insertBulk( fBboxes );
-                ftToIndex.put( ft, index );
+                ftToIndex.put( ft, SpatialFeatureIndex.build( fBboxes ) );
             }
         }
     }
 
+    private void rebuildAttributeIndexes() {
+        for ( FeatureType ft : attributeIndexTypes.keySet() ) {
+            FeatureCollection fc = ftToFeatures.get( ft );
+            if ( fc != null ) {
+                ftToAttributeIndexes.put( ft, buildAttributeIndexes( ft, fc ) );
+            }
+        }
+    }
+
+    private List<AttributeIndex> buildAttributeIndexes( FeatureType ft, Collection<Feature> features ) {
+        List<AttributeIndex> indexes = new ArrayList<AttributeIndex>();
+        for ( Entry<QName, AttributeIndexType> propAndType : attributeIndexTypes.get( ft ).entrySet() ) {
+            indexes.add( AttributeIndex.build( propAndType.getKey(), propAndType.getValue(), features ) );
+        }
+        return indexes;
+    }
+
     private void rebuildIdToObjectMap() {
-        idToObject.clear();
         GMLObjectVisitor visitor = new GMLObjectVisitor() {
             @Override
             public boolean visitGeometry( Geometry geom ) {
@@ -481,7 +907,8 @@ class StoredFeatures {
                     return false;
                 }
                 idToObject.put( feature.getId(), feature );
-                return true;
+                // don't materialize the geometries of compactly stored features
+                return !( feature instanceof CompactFeature );
             }
 
             @Override
@@ -497,6 +924,10 @@ class StoredFeatures {
         }
     }
 
+    private boolean intersects( float[] env1, float[] env2 ) {
+        return env1[0] <= env2[2] && env1[2] >= env2[0] && env1[1] <= env2[3] && env1[3] >= env2[1];
+    }
+
     private float[] toFloats( Envelope env ) {
         return new float[] { (float) env.getMin().get0(), (float) env.getMin().get1(), (float) env.getMax().get0(),
                             (float) env.getMax().get1() };
@@ -38,12 +38,24 @@ package org.deegree.feature.persistence.memory;
 import static org.deegree.gml.GMLVersion.GML_31;
 import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
@@ -53,20 +65,36 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
 import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.persistence.CRSManager;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsLessThan;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.primitive.Ring;
 import org.deegree.gml.GMLInputFactory;
@@ -94,6 +122,8 @@ public class MemoryFeatureStoreTest {
 
     private static final String BASE_DIR = "../../../gml/feature/testdata/features/";
 
+    private static final QName PHILOSOPHER = QName.valueOf( "{http://www.deegree.org/app}Philosopher" );
+
     private MemoryFeatureStore store;
 
     private DefaultWorkspace workspace;
@@ -107,13 +137,21 @@ public class MemoryFeatureStoreTest {
 
         workspace = new DefaultWorkspace( new File( "nix" ) );
         workspace.initAll();
+        store = createStore( false );
+    }
+
+    private MemoryFeatureStore createStore( boolean compactStorage )
+                            throws XMLParsingException, XMLStreamException, UnknownCRSException,
+                            FactoryConfigurationError, IOException, FeatureStoreException, ReferenceResolvingException,
+                            ClassCastException, ClassNotFoundException, InstantiationException, IllegalAccessException {
         String schemaURL = this.getClass().getResource( "/org/deegree/gml/feature/testdata/schema/Philosopher.xsd" ).toString();
         GMLAppSchemaReader adapter = new GMLAppSchemaReader( GML_31, null, schemaURL );
         AppSchema schema = adapter.extractAppSchema();
 
         URL docURL = getClass().getResource( BASE_DIR + "Philosopher_FeatureCollection.xml" );
         ConnectionProvider prov = workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
-        store = new MemoryFeatureStore( schema, null, null, prov );
+        MemoryFeatureStore store = new MemoryFeatureStore( schema, null, null, prov,
+                                                           createAttributeIndexTypes( schema ), compactStorage );
 
         GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader( GML_31, docURL );
         gmlStream.setApplicationSchema( schema );
@@ -123,6 +161,16 @@ public class MemoryFeatureStoreTest {
         FeatureStoreTransaction ta = store.acquireTransaction();
         ta.performInsert( fc, USE_EXISTING ).size();
         ta.commit();
+        return store;
+    }
+
+    private static Map<FeatureType, Map<QName, AttributeIndexType>> createAttributeIndexTypes( AppSchema schema ) {
+        Map<QName, AttributeIndexType> propToIndexType = new HashMap<QName, AttributeIndexType>();
+        propToIndexType.put( QName.valueOf( "{http://www.deegree.org/app}id" ), AttributeIndexType.SORTED );
+        propToIndexType.put( QName.valueOf( "{http://www.deegree.org/app}name" ), AttributeIndexType.PREFIX );
+        Map<FeatureType, Map<QName, AttributeIndexType>> attributeIndexTypes = new HashMap<FeatureType, Map<QName, AttributeIndexType>>();
+        attributeIndexTypes.put( schema.getFeatureType( PHILOSOPHER ), propToIndexType );
+        return attributeIndexTypes;
     }
 
     @After
@@ -164,6 +212,56 @@ public class MemoryFeatureStoreTest {
         Assert.assertEquals( 4, fc.size() );
     }
 
+    @Test
+    public void testQueryAllCountriesCompactStorage()
+                            throws Exception {
+        MemoryFeatureStore compactStore = createStore( true );
+        TypeName[] typeNames = new TypeName[] { new TypeName( QName.valueOf( "{http://www.deegree.org/app}Country" ),
+                                                              null ) };
+        Query query = new Query( typeNames, null, null, null, null );
+        FeatureCollection fc = compactStore.query( query ).toCollection();
+        Assert.assertEquals( 4, fc.size() );
+        FeatureCollection expected = store.query( query ).toCollection();
+        Iterator<Feature> expectedIter = expected.iterator();
+        for ( Feature feature : fc ) {
+            Feature expectedFeature = expectedIter.next();
+            Assert.assertTrue( feature instanceof CompactFeature );
+            Assert.assertEquals( expectedFeature.getId(), feature.getId() );
+            Assert.assertEquals( expectedFeature.getProperties().size(), feature.getProperties().size() );
+            Assert.assertEquals( expectedFeature.getEnvelope().getMin().get0(), feature.getEnvelope().getMin().get0(),
+                                 1E-9 );
+            Assert.assertEquals( expectedFeature.getEnvelope().getMax().get1(), feature.getEnvelope().getMax().get1(),
+                                 1E-9 );
+        }
+    }
+
+    @Test
+    public void testCompactFeatureTableWriteRead()
+                            throws Exception {
+        QName countryName = QName.valueOf( "{http://www.deegree.org/app}Country" );
+        Query query = new Query( new TypeName[] { new TypeName( countryName, null ) }, null, null, null, null );
+        FeatureCollection countries = store.query( query ).toCollection();
+        FeatureType ft = store.getSchema().getFeatureType( countryName );
+        CompactFeatureTable table = CompactFeatureTable.encode( ft, countries );
+        Assert.assertNotNull( table );
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bos );
+        table.write( out );
+        out.close();
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bos.toByteArray() ) );
+        CompactFeatureTable read = CompactFeatureTable.read( in, ft );
+
+        Assert.assertEquals( countries.size(), read.size() );
+        Iterator<Feature> expectedIter = countries.iterator();
+        for ( Feature feature : read.getFeatures() ) {
+            Feature expected = expectedIter.next();
+            Assert.assertEquals( expected.getId(), feature.getId() );
+            Assert.assertEquals( expected.getProperties().size(), feature.getProperties().size() );
+            Assert.assertEquals( expected.getEnvelope().getMin().get0(), feature.getEnvelope().getMin().get0(), 1E-9 );
+        }
+    }
+
     // @Test
     public void testQueryAllBooks()
                             throws FilterEvaluationException, FeatureStoreException {
@@ -187,6 +285,46 @@ public class MemoryFeatureStoreTest {
         Assert.assertEquals( 2, fc.size() );
     }
 
+    @Test
+    public void testQueryPhilosopherByIndexedId()
+                            throws FilterEvaluationException, FeatureStoreException {
+        ValueReference id = new ValueReference( QName.valueOf( "{http://www.deegree.org/app}id" ) );
+        Filter filter = new OperatorFilter( new PropertyIsEqualTo( id, new Literal<PrimitiveValue>( "3" ), true,
+                                                                   null ) );
+        FeatureCollection fc = queryPhilosophers( filter );
+        Assert.assertEquals( 1, fc.size() );
+        Assert.assertEquals( "PHILOSOPHER_3", fc.iterator().next().getId() );
+    }
+
+    @Test
+    public void testQueryPhilosophersByIndexedIdRange()
+                            throws FilterEvaluationException, FeatureStoreException {
+        ValueReference id = new ValueReference( QName.valueOf( "{http://www.deegree.org/app}id" ) );
+        Filter filter = new OperatorFilter( new PropertyIsBetween( id, new Literal<PrimitiveValue>( "2" ),
+                                                                   new Literal<PrimitiveValue>( "4" ), true, null ) );
+        Assert.assertEquals( 3, queryPhilosophers( filter ).size() );
+    }
+
+    @Test
+    public void testQueryPhilosophersByIndexedNamePrefix()
+                            throws FilterEvaluationException, FeatureStoreException {
+        ValueReference name = new ValueReference( QName.valueOf( "{http://www.deegree.org/app}name" ) );
+        ValueReference id = new ValueReference( QName.valueOf( "{http://www.deegree.org/app}id" ) );
+        Operator like = new PropertyIsLike( name, new Literal<PrimitiveValue>( "Friedrich*" ), "*", "?", "\\", true,
+                                            null );
+        Operator lessThan = new PropertyIsLessThan( id, new Literal<PrimitiveValue>( "5" ), true, null );
+        FeatureCollection fc = queryPhilosophers( new OperatorFilter( new And( like, lessThan ) ) );
+        Assert.assertEquals( 1, fc.size() );
+        Assert.assertEquals( "PHILOSOPHER_2", fc.iterator().next().getId() );
+    }
+
+    private FeatureCollection queryPhilosophers( Filter filter )
+                            throws FilterEvaluationException, FeatureStoreException {
+        TypeName[] typeNames = new TypeName[] { new TypeName( PHILOSOPHER, null ) };
+        Query query = new Query( typeNames, filter, null, null, null );
+        return store.query( query ).toCollection();
+    }
+
     @Test
     public void testGetObjectByIdFeature() {
         Object o = store.getObjectById( "PHILOSOPHER_7" );
@@ -216,4 +354,238 @@ public class MemoryFeatureStoreTest {
         GMLStreamWriter gmlStream = GMLOutputFactory.createGMLStreamWriter( GMLVersion.GML_31, writer );
         gmlStream.write( (Geometry) o );
     }
+
+    @Test
+    public void testUncommittedChangesAreNotVisible()
+                            throws Exception {
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null ) );
+        ta.performInsert( new GenericFeatureCollection( null, Collections.singletonList( copyPhilosopher( "P_NEW" ) ) ),
+                          USE_EXISTING );
+
+        Assert.assertEquals( 7, queryPhilosophers( null ).size() );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNull( store.getObjectById( "P_NEW" ) );
+
+        ta.commit();
+        FeatureCollection fc = queryPhilosophers( null );
+        Assert.assertEquals( 7, fc.size() );
+        Assert.assertNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNotNull( store.getObjectById( "P_NEW" ) );
+        Assert.assertEquals( 0, queryPhilosophers( new IdFilter( "PHILOSOPHER_1" ) ).size() );
+        Assert.assertEquals( 2, queryPhilosophers( byIdProperty( "4" ) ).size() );
+    }
+
+    @Test
+    public void testRollback()
+                            throws Exception {
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        ta.performDelete( new IdFilter( "PHILOSOPHER_1", "PHILOSOPHER_2" ), null );
+        ta.performInsert( new GenericFeatureCollection( null, Collections.singletonList( copyPhilosopher( "P_NEW" ) ) ),
+                          USE_EXISTING );
+        ta.rollback();
+
+        Assert.assertEquals( 7, queryPhilosophers( null ).size() );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_2" ) );
+        Assert.assertNull( store.getObjectById( "P_NEW" ) );
+        Assert.assertEquals( 1, queryPhilosophers( byIdProperty( "4" ) ).size() );
+
+        // the store accepts new transactions after a rollback
+        ta = store.acquireTransaction();
+        ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null );
+        ta.commit();
+        Assert.assertEquals( 6, queryPhilosophers( null ).size() );
+    }
+
+    @Test
+    public void testSnapshotIsolation()
+                            throws Exception {
+        TypeName[] typeNames = new TypeName[] { new TypeName( PHILOSOPHER, null ) };
+        // query is started before the commit, but consumed afterwards
+        FeatureInputStream before = store.query( new Query( typeNames, null, null, null, null ) );
+
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        ta.performDelete( new IdFilter( "PHILOSOPHER_1", "PHILOSOPHER_2", "PHILOSOPHER_3" ), null );
+        ta.commit();
+
+        Set<String> ids = new HashSet<String>();
+        for ( Feature f : before ) {
+            ids.add( f.getId() );
+        }
+        before.close();
+        Assert.assertEquals( 7, ids.size() );
+        Assert.assertTrue( ids.contains( "PHILOSOPHER_1" ) );
+        Assert.assertEquals( 4, queryPhilosophers( null ).size() );
+    }
+
+    @Test
+    public void testVersionsAreIsolated()
+                            throws Exception {
+        AppSchema schema = store.getSchema();
+        FeatureType ft = schema.getFeatureType( PHILOSOPHER );
+        Map<FeatureType, Map<QName, AttributeIndexType>> indexTypes = createAttributeIndexTypes( schema );
+        StoredFeatures empty = new StoredFeatures( schema, null, indexTypes, false, null );
+        StoredFeatures v1 = new StoredFeatures( schema, null, indexTypes, false, empty );
+        for ( Feature f : queryPhilosophers( null ) ) {
+            v1.addFeature( f );
+        }
+        v1.publish();
+
+        StoredFeatures v2 = new StoredFeatures( schema, null, indexTypes, false, v1 );
+        v2.removeFeature( (Feature) v1.getObjectById( "PHILOSOPHER_1" ) );
+        v2.addFeature( copyPhilosopher( "P_NEW" ) );
+        v2.publish();
+
+        Assert.assertEquals( 0, empty.getFeatures( ft ).size() );
+        Assert.assertEquals( 7, v1.getFeatures( ft ).size() );
+        Assert.assertNotNull( v1.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNull( v1.getObjectById( "P_NEW" ) );
+        Assert.assertEquals( 1, query( v1, byIdProperty( "4" ) ).size() );
+
+        Assert.assertEquals( 7, v2.getFeatures( ft ).size() );
+        Assert.assertNull( v2.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNotNull( v2.getObjectById( "P_NEW" ) );
+        Assert.assertEquals( 0, query( v2, byIdProperty( "1" ) ).size() );
+        Assert.assertEquals( 2, query( v2, byIdProperty( "4" ) ).size() );
+    }
+
+    @Test
+    public void testCompaction()
+                            throws Exception {
+        AppSchema schema = store.getSchema();
+        FeatureType ft = schema.getFeatureType( PHILOSOPHER );
+        Map<FeatureType, Map<QName, AttributeIndexType>> indexTypes = createAttributeIndexTypes( schema );
+        StoredFeatures v1 = new StoredFeatures( schema, null, indexTypes, false,
+                                                new StoredFeatures( schema, null, indexTypes, false, null ) );
+        for ( Feature f : queryPhilosophers( null ) ) {
+            v1.addFeature( f );
+        }
+        v1.publish();
+        // small deltas are not compacted
+        Assert.assertEquals( 7, v1.getDeltaSize() );
+
+        StoredFeatures v2 = new StoredFeatures( schema, null, indexTypes, false, v1 );
+        int numCopies = 1000;
+        for ( int i = 0; i < numCopies; i++ ) {
+            v2.addFeature( copyPhilosopher( "P_" + i ) );
+        }
+        v2.removeFeature( (Feature) v2.getObjectById( "PHILOSOPHER_3" ) );
+        v2.publish();
+        Assert.assertEquals( 0, v2.getDeltaSize() );
+        Assert.assertEquals( 6 + numCopies, v2.getFeatures( ft ).size() );
+        Assert.assertNull( v2.getObjectById( "PHILOSOPHER_3" ) );
+        Assert.assertNotNull( v2.getObjectById( "P_999" ) );
+        Assert.assertEquals( 0, query( v2, byIdProperty( "3" ) ).size() );
+        Assert.assertEquals( 1 + numCopies, query( v2, byIdProperty( "4" ) ).size() );
+        Assert.assertEquals( 1, query( v2, new IdFilter( "P_500" ) ).size() );
+
+        // the former version is not affected by the compaction
+        Assert.assertEquals( 7, v1.getDeltaSize() );
+        Assert.assertEquals( 7, v1.getFeatures( ft ).size() );
+        Assert.assertNotNull( v1.getObjectById( "PHILOSOPHER_3" ) );
+        Assert.assertNull( v1.getObjectById( "P_0" ) );
+        Assert.assertEquals( 1, query( v1, byIdProperty( "3" ) ).size() );
+
+        // changes after the compaction are recorded in a new delta
+        StoredFeatures v3 = new StoredFeatures( schema, null, indexTypes, false, v2 );
+        v3.removeFeature( (Feature) v3.getObjectById( "P_0" ) );
+        v3.publish();
+        Assert.assertEquals( 1, v3.getDeltaSize() );
+        Assert.assertEquals( 5 + numCopies, v3.getFeatures( ft ).size() );
+        Assert.assertEquals( numCopies, query( v3, byIdProperty( "4" ) ).size() );
+        Assert.assertEquals( 1 + numCopies, query( v2, byIdProperty( "4" ) ).size() );
+    }
+
+    @Test
+    public void testRemovalsOnlyAffectTheirFeatureType()
+                            throws Exception {
+        AppSchema schema = store.getSchema();
+        FeatureType philosopher = schema.getFeatureType( PHILOSOPHER );
+        FeatureType place = schema.getFeatureType( QName.valueOf( "{http://www.deegree.org/app}Place" ) );
+        Map<FeatureType, Map<QName, AttributeIndexType>> indexTypes = createAttributeIndexTypes( schema );
+        StoredFeatures v1 = new StoredFeatures( schema, null, indexTypes, false,
+                                                new StoredFeatures( schema, null, indexTypes, false, null ) );
+        for ( Feature f : queryPhilosophers( null ) ) {
+            v1.addFeature( f );
+        }
+        TypeName[] placeNames = new TypeName[] { new TypeName( place.getName(), null ) };
+        for ( Feature f : store.query( new Query( placeNames, null, null, null, null ) ) ) {
+            v1.addFeature( f );
+        }
+        // large enough to be compacted, so all features are base features
+        int numCopies = 1000;
+        for ( int i = 0; i < numCopies; i++ ) {
+            v1.addFeature( copyPhilosopher( "P_" + i ) );
+        }
+        v1.publish();
+        Assert.assertEquals( 0, v1.getDeltaSize() );
+
+        StoredFeatures v2 = new StoredFeatures( schema, null, indexTypes, false, v1 );
+        v2.removeFeature( (Feature) v2.getObjectById( "PHILOSOPHER_1" ) );
+        v2.publish();
+        Assert.assertEquals( 6 + numCopies, v2.getFeatures( philosopher ).size() );
+        // feature types without removals are not filtered
+        Assert.assertSame( v1.getFeatures( place ), v2.getFeatures( place ) );
+        Assert.assertEquals( 7, v2.getFeatures( place ).size() );
+        Assert.assertEquals( 0, query( v2, byIdProperty( "1" ) ).size() );
+    }
+
+    @Test
+    public void testSnapshotRequiresSameStorageConfiguration()
+                            throws Exception {
+        ICRS wgs84 = CRSManager.getCRSRef( "EPSG:4326" );
+        ICRS gk2 = CRSManager.getCRSRef( "EPSG:31466" );
+        List<File> sources = Collections.emptyList();
+        File file = File.createTempFile( "memory", ".snapshot" );
+        try {
+            MemoryFeatureStoreSnapshot snapshot = new MemoryFeatureStoreSnapshot( file );
+            Assert.assertTrue( snapshot.write( createEmptyStore( null, true ), sources ) );
+            Assert.assertTrue( snapshot.restore( createEmptyStore( null, true ), sources ) );
+            Assert.assertFalse( snapshot.restore( createEmptyStore( wgs84, true ), sources ) );
+            Assert.assertFalse( snapshot.restore( createEmptyStore( null, false ), sources ) );
+
+            // storage CRS has been changed
+            Assert.assertTrue( snapshot.write( createEmptyStore( wgs84, true ), sources ) );
+            Assert.assertTrue( snapshot.restore( createEmptyStore( wgs84, true ), sources ) );
+            Assert.assertFalse( snapshot.restore( createEmptyStore( gk2, true ), sources ) );
+            Assert.assertFalse( snapshot.restore( createEmptyStore( null, true ), sources ) );
+        } finally {
+            file.delete();
+        }
+    }
+
+    private MemoryFeatureStore createEmptyStore( ICRS storageCRS, boolean compactStorage )
+                            throws FeatureStoreException {
+        AppSchema schema = store.getSchema();
+        ConnectionProvider prov = workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
+        return new MemoryFeatureStore( schema, storageCRS, null, prov, createAttributeIndexTypes( schema ),
+                                       compactStorage );
+    }
+
+    private static Filter byIdProperty( String id ) {
+        ValueReference idProp = new ValueReference( QName.valueOf( "{http://www.deegree.org/app}id" ) );
+        return new OperatorFilter( new PropertyIsEqualTo( idProp, new Literal<PrimitiveValue>( id ), true, null ) );
+    }
+
+    private static FeatureCollection query( StoredFeatures sf, Filter filter )
+                            throws FilterEvaluationException, FeatureStoreException {
+        TypeName[] typeNames = new TypeName[] { new TypeName( PHILOSOPHER, null ) };
+        return sf.query( new Query( typeNames, filter, null, null, null ) ).toCollection();
+    }
+
+    /**
+     * Creates a new philosopher with the simple properties (id, name, sex) of PHILOSOPHER_4.
+     */
+    private Feature copyPhilosopher( String fid ) {
+        Feature template = (Feature) store.getObjectById( "PHILOSOPHER_4" );
+        List<Property> props = new ArrayList<Property>();
+        for ( Property prop : template.getProperties() ) {
+            String name = prop.getName().getLocalPart();
+            if ( "id".equals( name ) || "name".equals( name ) || "sex".equals( name ) ) {
+                props.add( prop );
+            }
+        }
+        return template.getType().newFeature( fid, props, null );
+    }
 }
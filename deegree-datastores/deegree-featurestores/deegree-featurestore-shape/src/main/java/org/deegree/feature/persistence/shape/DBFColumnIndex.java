@@ -0,0 +1,417 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.shape.DBFReader.Field;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+
+/**
+ * Sorted index on a single column of a dbf file.
+ * <p>
+ * The index only consists of the record numbers, sorted by the values of the column (records with empty numeric values
+ * are omitted). The values themselves are read from the memory-mapped dbf file when searching, so the index takes four
+ * bytes per record and can be memory-mapped as well (see {@link DBFIndex}). Text columns support
+ * <code>PropertyIsEqualTo</code>, <code>PropertyIsLike</code> with a literal prefix and range comparisons, numeric
+ * columns support <code>PropertyIsEqualTo</code> and range comparisons.
+ * </p>
+ * <p>
+ * Lookups return a superset of the matching records (range bounds are always treated as inclusive), so the operator
+ * still has to be evaluated on the returned records.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class DBFColumnIndex {
+
+    private final DBFReader dbf;
+
+    private final Field field;
+
+    private final boolean numeric;
+
+    private final IntBuffer recNums;
+
+    /**
+     * Creates a new {@link DBFColumnIndex} instance.
+     * 
+     * @param dbf
+     *            dbf file, must not be <code>null</code>
+     * @param field
+     *            indexed field, must be indexable (see {@link #isIndexable(Field)})
+     * @param recNums
+     *            record numbers, sorted by the values of the field (see {@link #sort(DBFReader, Field)}), must not be
+     *            <code>null</code>
+     */
+    DBFColumnIndex( DBFReader dbf, Field field, IntBuffer recNums ) {
+        this.dbf = dbf;
+        this.field = field;
+        this.numeric = field.type != 'C';
+        this.recNums = recNums;
+    }
+
+    /**
+     * Returns whether the given field can be indexed.
+     * 
+     * @param field
+     *            field, must not be <code>null</code>
+     * @return true, if the field is a text or numeric field
+     */
+    static boolean isIndexable( Field field ) {
+        return field.propertyType != null
+               && ( field.type == 'C' || field.type == 'N' || field.type == 'F' || field.type == 'I' );
+    }
+
+    /**
+     * Returns the record numbers of the given dbf file, sorted by the values of the given field.
+     * 
+     * @param dbf
+     *            dbf file, must not be <code>null</code>
+     * @param field
+     *            field, must be indexable (see {@link #isIndexable(Field)})
+     * @return sorted record numbers, never <code>null</code>
+     * @throws IOException
+     */
+    static int[] sort( DBFReader dbf, Field field )
+                            throws IOException {
+        int n = dbf.size();
+        int[] recNums = new int[n];
+        RecordComparator comparator;
+        if ( field.type == 'C' ) {
+            final String[] values = new String[n];
+            for ( int i = 0; i < n; i++ ) {
+                values[i] = dbf.getText( i, field );
+                recNums[i] = i;
+            }
+            comparator = new RecordComparator() {
+                @Override
+                int compare( int recNum1, int recNum2 ) {
+                    return values[recNum1].compareTo( values[recNum2] );
+                }
+            };
+        } else {
+            final double[] values = new double[n];
+            int numValues = 0;
+            for ( int i = 0; i < n; i++ ) {
+                values[i] = dbf.getNumber( i, field );
+                if ( !Double.isNaN( values[i] ) ) {
+                    recNums[numValues++] = i;
+                }
+            }
+            if ( numValues < n ) {
+                int[] nonEmpty = new int[numValues];
+                System.arraycopy( recNums, 0, nonEmpty, 0, numValues );
+                recNums = nonEmpty;
+            }
+            comparator = new RecordComparator() {
+                @Override
+                int compare( int recNum1, int recNum2 ) {
+                    return Double.compare( values[recNum1], values[recNum2] );
+                }
+            };
+        }
+        mergeSort( recNums, new int[recNums.length], 0, recNums.length, comparator );
+        return recNums;
+    }
+
+    private static void mergeSort( int[] a, int[] tmp, int from, int to, RecordComparator comparator ) {
+        if ( to - from < 2 ) {
+            return;
+        }
+        int mid = ( from + to ) >>> 1;
+        mergeSort( a, tmp, from, mid, comparator );
+        mergeSort( a, tmp, mid, to, comparator );
+        if ( comparator.compare( a[mid - 1], a[mid] ) <= 0 ) {
+            return;
+        }
+        System.arraycopy( a, from, tmp, from, to - from );
+        int i = from;
+        int j = mid;
+        for ( int k = from; k < to; k++ ) {
+            if ( j >= to || ( i < mid && comparator.compare( tmp[i], tmp[j] ) <= 0 ) ) {
+                a[k] = tmp[i++];
+            } else {
+                a[k] = tmp[j++];
+            }
+        }
+    }
+
+    /**
+     * @return the indexed field, never <code>null</code>
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * @return the record numbers, sorted by the values of the field, never <code>null</code>
+     */
+    IntBuffer getRecordNumbers() {
+        IntBuffer copy = recNums.duplicate();
+        copy.rewind();
+        return copy;
+    }
+
+    /**
+     * Returns the candidate records for the given operator.
+     * 
+     * @param op
+     *            comparison operator, must not be <code>null</code>
+     * @return record numbers of the candidates (superset of the records that match the operator), or <code>null</code>
+     *         if the index cannot be used for the operator
+     * @throws IOException
+     */
+    BitSet lookup( ComparisonOperator op )
+                            throws IOException {
+        if ( Boolean.FALSE.equals( op.isMatchCase() ) ) {
+            return null;
+        }
+        switch ( op.getSubType() ) {
+        case PROPERTY_IS_BETWEEN:
+            return lookupBetween( (PropertyIsBetween) op );
+        case PROPERTY_IS_LIKE:
+            return lookupLike( (PropertyIsLike) op );
+        case PROPERTY_IS_EQUAL_TO:
+        case PROPERTY_IS_LESS_THAN:
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+        case PROPERTY_IS_GREATER_THAN:
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+            return lookupBinary( (BinaryComparisonOperator) op );
+        default:
+            return null;
+        }
+    }
+
+    private BitSet lookupBinary( BinaryComparisonOperator op )
+                            throws IOException {
+        Object key = null;
+        boolean swapped = false;
+        if ( isIndexedProperty( op.getParameter1() ) ) {
+            key = getLiteralKey( op.getParameter2() );
+        } else if ( isIndexedProperty( op.getParameter2() ) ) {
+            key = getLiteralKey( op.getParameter1() );
+            swapped = true;
+        }
+        if ( key == null ) {
+            return null;
+        }
+        int size = recNums.limit();
+        switch ( op.getSubType() ) {
+        case PROPERTY_IS_EQUAL_TO:
+            return collect( lowerBound( key ), upperBound( key ) );
+        case PROPERTY_IS_LESS_THAN:
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+            return swapped ? collect( lowerBound( key ), size ) : collect( 0, upperBound( key ) );
+        case PROPERTY_IS_GREATER_THAN:
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+            return swapped ? collect( 0, upperBound( key ) ) : collect( lowerBound( key ), size );
+        default:
+            return null;
+        }
+    }
+
+    private BitSet lookupBetween( PropertyIsBetween op )
+                            throws IOException {
+        if ( !isIndexedProperty( op.getExpression() ) ) {
+            return null;
+        }
+        Object lower = getLiteralKey( op.getLowerBoundary() );
+        Object upper = getLiteralKey( op.getUpperBoundary() );
+        if ( lower == null || upper == null ) {
+            return null;
+        }
+        return collect( lowerBound( lower ), upperBound( upper ) );
+    }
+
+    private BitSet lookupLike( PropertyIsLike op )
+                            throws IOException {
+        if ( numeric || !isIndexedProperty( op.getExpression() ) || !( op.getPattern() instanceof Literal<?> ) ) {
+            return null;
+        }
+        String wildCard = op.getWildCard();
+        String singleChar = op.getSingleChar();
+        String escapeChar = op.getEscapeChar();
+        if ( wildCard.length() != 1 || singleChar.length() != 1 || escapeChar.length() != 1 ) {
+            return null;
+        }
+        Object value = ( (Literal<?>) op.getPattern() ).getValue();
+        if ( value == null ) {
+            return null;
+        }
+
+        // determine prefix (ends at the first unescaped wildcard / singlechar character)
+        String pattern = value.toString();
+        StringBuilder prefix = new StringBuilder();
+        boolean escapeMode = false;
+        boolean exact = true;
+        for ( int i = 0; i < pattern.length(); i++ ) {
+            char c = pattern.charAt( i );
+            if ( escapeMode ) {
+                prefix.append( c );
+                escapeMode = false;
+            } else if ( c == escapeChar.charAt( 0 ) ) {
+                escapeMode = true;
+            } else if ( c == wildCard.charAt( 0 ) || c == singleChar.charAt( 0 ) ) {
+                exact = false;
+                break;
+            } else {
+                prefix.append( c );
+            }
+        }
+        if ( !exact && prefix.length() == 0 ) {
+            return null;
+        }
+
+        String prefixString = prefix.toString();
+        int from = lowerBound( prefixString );
+        if ( exact ) {
+            return collect( from, upperBound( prefixString ) );
+        }
+        // values with the prefix directly follow the lower bound
+        int lo = from;
+        int hi = recNums.limit();
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( getText( mid ).startsWith( prefixString ) ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return collect( from, lo );
+    }
+
+    private boolean isIndexedProperty( Object expr ) {
+        if ( !( expr instanceof ValueReference ) ) {
+            return false;
+        }
+        ValueReference ref = (ValueReference) expr;
+        return ref.getAsQName() != null
+               && ref.getAsQName().getLocalPart().equals( field.propertyType.getName().getLocalPart() );
+    }
+
+    private Object getLiteralKey( Object expr ) {
+        if ( !( expr instanceof Literal<?> ) ) {
+            return null;
+        }
+        Object value = ( (Literal<?>) expr ).getValue();
+        if ( value instanceof PrimitiveValue ) {
+            value = ( (PrimitiveValue) value ).getValue();
+        }
+        if ( value == null ) {
+            return null;
+        }
+        if ( !numeric ) {
+            // numeric literals enforce numeric comparison
+            return value instanceof String ? value : null;
+        }
+        try {
+            double d = Double.parseDouble( value.toString().trim() ) + 0.0;
+            return Double.isNaN( d ) ? null : d;
+        } catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    // first position with a value greater than or equal to the key
+    private int lowerBound( Object key )
+                            throws IOException {
+        int lo = 0;
+        int hi = recNums.limit();
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( compare( mid, key ) < 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // first position with a value greater than the key
+    private int upperBound( Object key )
+                            throws IOException {
+        int lo = 0;
+        int hi = recNums.limit();
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( compare( mid, key ) <= 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int compare( int pos, Object key )
+                            throws IOException {
+        if ( numeric ) {
+            return Double.compare( dbf.getNumber( recNums.get( pos ), field ), (Double) key );
+        }
+        return getText( pos ).compareTo( (String) key );
+    }
+
+    private String getText( int pos )
+                            throws IOException {
+        return dbf.getText( recNums.get( pos ), field );
+    }
+
+    private BitSet collect( int from, int to ) {
+        BitSet result = new BitSet( dbf.size() );
+        for ( int pos = from; pos < to; pos++ ) {
+            result.set( recNums.get( pos ) );
+        }
+        return result;
+    }
+
+    private abstract static class RecordComparator {
+        abstract int compare( int recNum1, int recNum2 );
+    }
+}
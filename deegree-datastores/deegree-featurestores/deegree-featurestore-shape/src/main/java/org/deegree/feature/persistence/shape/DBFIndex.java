@@ -35,31 +35,46 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
 
-import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
-import org.deegree.db.ConnectionProvider;
+import org.deegree.feature.persistence.shape.DBFReader.Field;
+import org.deegree.feature.persistence.shape.MappedFileCache.MappedFile;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.ResourceId;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.Or;
 import org.deegree.filter.sort.SortProperty;
-import org.deegree.sqldialect.filter.UnmappableException;
-import org.deegree.sqldialect.filter.expression.SQLArgument;
-import org.deegree.sqldialect.filter.expression.SQLExpression;
+import org.slf4j.Logger;
 
 /**
- * This class converts the dbf file into a H2 database, to enable proper filtering.
+ * Alphanumeric index on the columns of a dbf file, used to determine the candidate records for filters.
+ * <p>
+ * Every indexed column is a {@link DBFColumnIndex} (record numbers sorted by value). The indexes are stored in a file
+ * next to the dbf file (extension <code>.dbx</code>) that is memory-mapped on startup (pinned in the
+ * {@link MappedFileCache} until the index is destroyed). It is rebuilt when it is older
+ * than the dbf file or does not contain the configured columns. Conjunctions are answered by intersecting the
+ * candidates of all indexable operands, disjunctions by the union of the candidates of their operands (if all of them
+ * are indexable).
+ * </p>
  * 
  * @author <a href="mailto:schmitz@lat-lon.de">Andreas Schmitz</a>
  * @author last edited by: $Author$
@@ -68,30 +83,168 @@ import org.deegree.sqldialect.filter.expression.SQLExpression;
  */
 public class DBFIndex {
 
-    private ConnectionProvider connProvider;
+    private static final Logger LOG = getLogger( DBFIndex.class );
+
+    // "DBFX"
+    private static final int MAGIC = 0x44424658;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<DBFColumnIndex> indexes = new ArrayList<DBFColumnIndex>();
+
+    // mapped index file, null if the index has been created in memory
+    private MappedFile mappedIndex;
 
     /**
+     * Opens (or creates) the index for the given dbf file.
+     * 
      * @param dbf
+     *            dbf file, must not be <code>null</code>
      * @param file
-     * @param envelopes
+     *            location of the dbf file, must not be <code>null</code>
+     * @param mappings
+     *            may be null, in which case all text and numeric columns are indexed (otherwise the columns of mappings
+     *            with index flag)
      * @throws IOException
      */
-    public DBFIndex( DBFReader dbf, File file, Pair<ArrayList<Pair<float[], Long>>, Boolean> envelopes,
-                     List<Mapping> mappings ) throws IOException {
-        connProvider = new DbfIndexImporter( dbf, file, envelopes, mappings ).createIndex();
+    public DBFIndex( DBFReader dbf, File file, List<Mapping> mappings ) throws IOException {
+        List<Field> fields = getIndexedFields( dbf, mappings );
+        String name = file.getAbsolutePath();
+        File indexFile = new File( name.substring( 0, name.lastIndexOf( '.' ) ) + ".dbx" );
+        if ( indexFile.exists() && !( indexFile.lastModified() < file.lastModified() ) ) {
+            try {
+                read( indexFile, dbf, fields );
+            } catch ( IOException e ) {
+                LOG.warn( "Could not read dbf index {}: {}", indexFile, e.getLocalizedMessage() );
+                indexes.clear();
+            }
+        }
+        if ( indexes.size() != fields.size() ) {
+            destroy();
+            create( indexFile, dbf, fields );
+        }
+    }
+
+    private List<Field> getIndexedFields( DBFReader dbf, List<Mapping> mappings ) {
+        List<Field> fields = new ArrayList<Field>();
+        if ( mappings == null ) {
+            for ( String name : dbf.getFieldNames() ) {
+                Field field = dbf.getField( name );
+                if ( DBFColumnIndex.isIndexable( field ) ) {
+                    fields.add( field );
+                }
+            }
+        } else {
+            for ( Mapping m : mappings ) {
+                if ( m.fieldname != null && m.index ) {
+                    Field field = dbf.getField( m.fieldname );
+                    if ( field != null && DBFColumnIndex.isIndexable( field ) ) {
+                        fields.add( field );
+                    } else {
+                        LOG.warn( "Column '{}' cannot be indexed (only text and numeric columns are supported).",
+                                  m.fieldname );
+                    }
+                }
+            }
+        }
+        return fields;
+    }
+
+    private void read( File indexFile, DBFReader dbf, List<Field> fields )
+                            throws IOException {
+        mappedIndex = MappedFileCache.getInstance().getPinned( indexFile );
+        ByteBuffer buffer = mappedIndex.getBuffer().duplicate();
+        if ( buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+             || buffer.getInt() != dbf.size() || buffer.getInt() != fields.size() ) {
+            LOG.debug( "Dbf index {} does not match the dbf file.", indexFile );
+            return;
+        }
+        for ( Field field : fields ) {
+            byte[] name = new byte[readLength( buffer, 1, indexFile )];
+            buffer.get( name );
+            if ( !field.name.equals( new String( name, "UTF-8" ) ) ) {
+                LOG.debug( "Dbf index {} does not match the configured columns.", indexFile );
+                indexes.clear();
+                return;
+            }
+            int size = readLength( buffer, 4, indexFile );
+            if ( size > dbf.size() ) {
+                throw new IOException( "Dbf index " + indexFile + " is corrupt." );
+            }
+            ByteBuffer slice = buffer.slice();
+            slice.limit( size * 4 );
+            indexes.add( new DBFColumnIndex( dbf, field, slice.asIntBuffer() ) );
+            buffer.position( buffer.position() + size * 4 );
+        }
+        LOG.debug( "Opened dbf index {}.", indexFile );
+    }
+
+    // reads a length (number of elements with the given size) and checks that the elements are contained in the buffer
+    private static int readLength( ByteBuffer buffer, int elementSize, File indexFile )
+                            throws IOException {
+        int length = buffer.remaining() < 4 ? -1 : buffer.getInt();
+        if ( length < 0 || (long) length * elementSize > buffer.remaining() ) {
+            throw new IOException( "Dbf index " + indexFile + " is truncated." );
+        }
+        return length;
+    }
+
+    private void create( File indexFile, DBFReader dbf, List<Field> fields )
+                            throws IOException {
+        long begin = System.currentTimeMillis();
+        for ( Field field : fields ) {
+            int[] recNums = DBFColumnIndex.sort( dbf, field );
+            indexes.add( new DBFColumnIndex( dbf, field, IntBuffer.wrap( recNums ) ) );
+        }
+        long elapsed = System.currentTimeMillis() - begin;
+        LOG.debug( "Indexing {} columns of the dbf file took {} [ms]", fields.size(), elapsed );
+        try {
+            write( indexFile, dbf.size() );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not write dbf index {} (index is kept in memory): {}", indexFile,
+                      e.getLocalizedMessage() );
+        }
+    }
+
+    private void write( File indexFile, int numRecords )
+                            throws IOException {
+        File tmpFile = new File( indexFile.getPath() + ".tmp" );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+        try {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT_VERSION );
+            out.writeInt( numRecords );
+            out.writeInt( indexes.size() );
+            for ( DBFColumnIndex index : indexes ) {
+                byte[] name = index.getField().name.getBytes( "UTF-8" );
+                out.writeInt( name.length );
+                out.write( name );
+                IntBuffer recNums = index.getRecordNumbers();
+                out.writeInt( recNums.remaining() );
+                while ( recNums.hasRemaining() ) {
+                    out.writeInt( recNums.get() );
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if ( ( indexFile.exists() && !indexFile.delete() ) || !tmpFile.renameTo( indexFile ) ) {
+            tmpFile.delete();
+            throw new IOException( "Could not rename " + tmpFile + " to " + indexFile + "." );
+        }
+        LOG.debug( "Wrote dbf index {}.", indexFile );
     }
 
     /**
-     * @param available
-     *            is modified in place to contain only matches!
+     * @param recNums
+     *            is filled with the numbers of the candidate records (if the filter could be evaluated using the index)
      * @param filter
      * @param sort
-     * @return null, if there was an error, else a pair of left overs (with possibly null values if everything could be
-     *         mapped)
+     * @return null, if the index cannot be used for the filter, else a pair of left overs (with possibly null values if
+     *         everything could be mapped)
      * @throws FilterEvaluationException
-     * @throws UnmappableException
      */
-    public Pair<Filter, SortProperty[]> query( List<Pair<Integer, Long>> available, Filter filter, SortProperty[] sort )
+    public Pair<Filter, SortProperty[]> query( Set<Integer> recNums, Filter filter, SortProperty[] sort )
                             throws FilterEvaluationException {
 
         if ( filter == null && ( sort == null || sort.length == 0 ) ) {
@@ -102,76 +255,82 @@ public class DBFIndex {
             return null;
         }
 
-        H2WhereBuilder where = null;
-        SQLExpression generated = null;
-        if ( filter instanceof OperatorFilter ) {
-            where = new H2WhereBuilder( null, (OperatorFilter) filter, sort );
-            generated = where.getWhere();
-            if ( generated == null ) {
-                return null;
+        if ( filter instanceof IdFilter ) {
+            for ( ResourceId rid : ( (IdFilter) filter ).getSelectedIds() ) {
+                String id = rid.getRid();
+                try {
+                    recNums.add( Integer.valueOf( id.substring( id.lastIndexOf( "_" ) + 1 ) ) );
+                } catch ( NumberFormatException e ) {
+                    LOG.debug( "Ignoring id '{}'.", id );
+                }
             }
+            return new Pair<Filter, SortProperty[]>( null, sort );
         }
 
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet set = null;
+        BitSet candidates = null;
         try {
-            conn = connProvider.getConnection();
-            if ( generated == null ) {
-                StringBuilder sb = new StringBuilder();
-                for ( ResourceId rid : ( (IdFilter) filter ).getSelectedIds() ) {
-                    String id = rid.getRid();
-                    sb.append( id.substring( id.lastIndexOf( "_" ) + 1 ) );
-                    sb.append( "," );
-                }
-                sb.deleteCharAt( sb.length() - 1 );
-                stmt = conn.prepareStatement( "select record_number,file_index from dbf_index where record_number in ("
-                                              + sb + ")" );
-            } else {
-                String clause = generated.getSQL().toString();
-
-                stmt = conn.prepareStatement( "select record_number,file_index from dbf_index where " + clause );
-
-                int i = 1;
-                for ( SQLArgument lit : generated.getArguments() ) {
-                    lit.setArgument( stmt, i++ );
-                    // TODO what about ElementNode?
-                    // Object o = lit.getValue();
-                    // if ( o instanceof PrimitiveValue ) {
-                    // o = ( (PrimitiveValue) o ).getValue();
-                    // }
-                    // if ( o instanceof ElementNode ) {
-                    // stmt.setString( i++, o.toString() );
-                    // } else {
-                    // stmt.setObject( i++, o );
-                    // }
+            candidates = getCandidates( ( (OperatorFilter) filter ).getOperator() );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not query dbf index: {}", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+        if ( candidates == null ) {
+            return null;
+        }
+        for ( int i = candidates.nextSetBit( 0 ); i >= 0; i = candidates.nextSetBit( i + 1 ) ) {
+            recNums.add( i );
+        }
+        // candidates are a superset of the matching records
+        return new Pair<Filter, SortProperty[]>( filter, sort );
+    }
+
+    private BitSet getCandidates( Operator op )
+                            throws IOException {
+        if ( op instanceof And ) {
+            BitSet intersection = null;
+            for ( Operator operand : ( (And) op ).getParams() ) {
+                BitSet candidates = getCandidates( operand );
+                if ( candidates != null ) {
+                    if ( intersection == null ) {
+                        intersection = candidates;
+                    } else {
+                        intersection.and( candidates );
+                    }
                 }
             }
-
-            set = stmt.executeQuery();
-
-            while ( set.next() ) {
-                available.add( new Pair<Integer, Long>( set.getInt( "record_number" ), set.getLong( "file_index" ) ) );
+            return intersection;
+        }
+        if ( op instanceof Or ) {
+            BitSet union = new BitSet();
+            for ( Operator operand : ( (Or) op ).getParams() ) {
+                BitSet candidates = getCandidates( operand );
+                if ( candidates == null ) {
+                    return null;
+                }
+                union.or( candidates );
             }
-
-            if ( where == null ) {
-                return new Pair<Filter, SortProperty[]>( null, sort );
+            return union;
+        }
+        if ( op instanceof ComparisonOperator ) {
+            for ( DBFColumnIndex index : indexes ) {
+                BitSet candidates = index.lookup( (ComparisonOperator) op );
+                if ( candidates != null ) {
+                    return candidates;
+                }
             }
-            return new Pair<Filter, SortProperty[]>( where.getPostFilter(), where.getPostSortCriteria() );
-        } catch ( SQLException e ) {
-            e.printStackTrace();
-        } finally {
-            JDBCUtils.close( set );
-            JDBCUtils.close( stmt );
-            JDBCUtils.close( conn );
         }
-
         return null;
-
     }
 
+    /**
+     * Releases the index.
+     */
     public void destroy() {
-        connProvider.destroy();
+        indexes.clear();
+        if ( mappedIndex != null ) {
+            mappedIndex.close();
+            mappedIndex = null;
+        }
     }
 
 }
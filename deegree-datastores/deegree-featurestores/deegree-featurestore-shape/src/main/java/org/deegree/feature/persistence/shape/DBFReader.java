@@ -45,12 +45,9 @@ import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -68,6 +65,7 @@ import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.shape.MappedFileCache.MappedFile;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
 import org.deegree.feature.property.SimpleProperty;
 import org.deegree.feature.types.GenericFeatureType;
@@ -88,6 +86,8 @@ public class DBFReader {
 
     private static final Logger LOG = getLogger( DBFReader.class );
 
+    private static final Charset ASCII = Charset.forName( "US-ASCII" );
+
     private final int noOfRecords, recordLength, headerLength;
 
     private HashMap<String, Field> fields = new HashMap<String, Field>();
@@ -100,17 +100,14 @@ public class DBFReader {
 
     private GenericFeatureType featureType;
 
-    private final RandomAccessFile file;
-
-    private FileChannel channel;
-
-    // buffer is not thread-safe (needs to be duplicated for every thread)
-    private final ByteBuffer sharedBuffer;
+    // mapped on demand, only the header is read on construction
+    private final MappedFile file;
 
     /**
      * Already reads/parses the header.
      * 
-     * @param in
+     * @param file
+     *            the dbf file, must not be <code>null</code>
      * @param encoding
      * @param ftName
      *            the name of the feature type, also used for namespace URI and namespace prefix of property
@@ -121,13 +118,14 @@ public class DBFReader {
      *            may be null, in which case the dbf names will be used
      * @throws IOException
      */
-    public DBFReader( RandomAccessFile in, Charset encoding, QName ftName, GeometryType geomType, List<Mapping> mappings )
+    DBFReader( MappedFile file, Charset encoding, QName ftName, GeometryType geomType, List<Mapping> mappings )
                             throws IOException {
         this.encoding = encoding;
-        this.file = in;
-        channel = file.getChannel();
-        sharedBuffer = channel.map( MapMode.READ_ONLY, 0, file.length() );
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        this.file = file;
+        ByteBuffer buffer = file.read( 0, 32 );
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        // the field descriptors follow the fixed part of the header
+        buffer = file.read( 0, buffer.getShort( 8 ) & 0xffff );
         buffer.order( ByteOrder.LITTLE_ENDIAN );
 
         int version = getUnsigned( buffer );
@@ -187,6 +185,8 @@ public class DBFReader {
             }
         }
 
+        // first byte of every record is the deletion flag
+        int offset = 1;
         int read;
         while ( ( read = getUnsigned( buffer ) ) != 13 ) {
             while ( read != 0 && buf.size() < 10 ) {
@@ -259,7 +259,8 @@ public class DBFReader {
             LOG.trace( "Found field with name '" + name + "' and type "
                        + ( pt != null ? pt.getPrimitiveType() : " no supported type." ) );
 
-            fields.put( name, new Field( type, pt, fieldLength ) );
+            fields.put( name, new Field( name, type, pt, fieldLength, offset ) );
+            offset += fieldLength;
             fieldOrder.add( name );
             types.add( pt );
             if ( map != null ) {
@@ -323,7 +324,7 @@ public class DBFReader {
     public HashMap<SimplePropertyType, Property> getEntry( int num )
                             throws IOException {
 
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        ByteBuffer buffer = file.getBuffer().asReadOnlyBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
         HashMap<SimplePropertyType, Property> map = new HashMap<SimplePropertyType, Property>();
         int pos = headerLength + num * recordLength;
@@ -425,16 +426,19 @@ public class DBFReader {
     }
 
     /**
-     * Closes the underlying input stream.
-     * 
-     * @throws IOException
+     * Releases the mapping of the dbf file.
      */
-    public void close()
-                            throws IOException {
-        channel.close();
+    public void close() {
         file.close();
     }
 
+    /**
+     * @return the names of the contained fields (as in the dbf file), in the order of the file
+     */
+    List<String> getFieldNames() {
+        return fieldOrder;
+    }
+
     /**
      * @return the property types of the contained fields
      */
@@ -448,17 +452,92 @@ public class DBFReader {
         return list;
     }
 
+    /**
+     * Returns the field with the given name.
+     * 
+     * @param name
+     *            name of the field (as in the dbf file), must not be <code>null</code>
+     * @return the field, or <code>null</code> if there is no such field
+     */
+    Field getField( String name ) {
+        return fields.get( name );
+    }
+
+    /**
+     * Reads the value of a text field ('C') directly from the mapped file.
+     * 
+     * @param num
+     *            zero based record number
+     * @param field
+     *            text field, must not be <code>null</code>
+     * @return the trimmed value, never <code>null</code>
+     * @throws IOException
+     */
+    String getText( int num, Field field )
+                            throws IOException {
+        return getString( getBytes( num, field ), encoding ).trim();
+    }
+
+    /**
+     * Reads the value of a numeric field ('N', 'F' or 'I') directly from the mapped file.
+     * 
+     * @param num
+     *            zero based record number
+     * @param field
+     *            numeric field, must not be <code>null</code>
+     * @return the value, {@link Double#NaN} if the field is empty or invalid
+     * @throws IOException
+     */
+    double getNumber( int num, Field field )
+                            throws IOException {
+        int pos = headerLength + num * recordLength + field.offset;
+        if ( field.type == 'I' ) {
+            ByteBuffer buffer = file.getBuffer();
+            // little endian
+            return ( buffer.get( pos ) & 0xff ) | ( buffer.get( pos + 1 ) & 0xff ) << 8
+                   | ( buffer.get( pos + 2 ) & 0xff ) << 16 | buffer.get( pos + 3 ) << 24;
+        }
+        String str = new String( getBytes( num, field ), ASCII ).trim();
+        if ( str.isEmpty() || str.startsWith( "*" ) ) {
+            return Double.NaN;
+        }
+        try {
+            // adding zero turns -0.0 into 0.0
+            return Double.parseDouble( str ) + 0.0;
+        } catch ( NumberFormatException e ) {
+            return Double.NaN;
+        }
+    }
+
+    private byte[] getBytes( int num, Field field )
+                            throws IOException {
+        ByteBuffer buffer = file.getBuffer();
+        int pos = headerLength + num * recordLength + field.offset;
+        byte[] bs = new byte[field.length];
+        for ( int i = 0; i < bs.length; i++ ) {
+            bs[i] = buffer.get( pos + i );
+        }
+        return bs;
+    }
+
     static class Field {
+        String name;
+
         char type;
 
         SimplePropertyType propertyType;
 
         int length;
 
-        Field( char c, SimplePropertyType pt, int l ) {
+        // position of the field inside a record
+        int offset;
+
+        Field( String name, char c, SimplePropertyType pt, int l, int offset ) {
+            this.name = name;
             type = c;
             propertyType = pt;
             length = l;
+            this.offset = offset;
         }
     }
 
@@ -0,0 +1,421 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Keeps a bounded number of shape and dbf files memory mapped.
+ * <p>
+ * Files are mapped lazily when they are accessed for the first time. When more than the maximum number of files are
+ * mapped, the least recently used ones are released (using a second chance strategy, so that accessing a mapped file
+ * only needs to set a flag). The file handles are closed directly after mapping, so open stores don't consume any file
+ * descriptors. The address space of a released mapping is freed by the garbage collector after the last query that
+ * still uses it has finished. A file that is accessed after it has been closed (e.g. by a query that is still running
+ * after the store has been reloaded) is mapped once more and keeps this mapping until its handle is released.
+ * </p>
+ * <p>
+ * Index files that have to stay mapped while they are in use are pinned (see {@link #getPinned(File)}). Pinned files
+ * are never released before they are closed, so they are counted against a separate maximum. Exceeding it does not
+ * fail, but logs a warning, as every open store with indexes keeps up to two pinned files mapped.
+ * </p>
+ * <p>
+ * The maximum number of mapped files of the shared instance can be set with the system property
+ * <code>deegree.shape.maxopenfiles</code>, the maximum number of pinned files with
+ * <code>deegree.shape.maxpinnedfiles</code>.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MappedFileCache {
+
+    private static final Logger LOG = getLogger( MappedFileCache.class );
+
+    /** Name of the system property that sets the maximum number of mapped files of the shared instance. */
+    public static final String MAX_OPEN_FILES_PROPERTY = "deegree.shape.maxopenfiles";
+
+    /** Default maximum number of mapped files. */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    /** Name of the system property that sets the maximum number of pinned files of the shared instance. */
+    public static final String MAX_PINNED_FILES_PROPERTY = "deegree.shape.maxpinnedfiles";
+
+    /** Default maximum number of pinned files (two indexes per store). */
+    public static final int DEFAULT_MAX_PINNED_FILES = 2 * DEFAULT_MAX_OPEN_FILES;
+
+    private static final MappedFileCache INSTANCE;
+
+    static {
+        int maxOpenFiles = Integer.getInteger( MAX_OPEN_FILES_PROPERTY, DEFAULT_MAX_OPEN_FILES );
+        int maxPinnedFiles = Integer.getInteger( MAX_PINNED_FILES_PROPERTY, DEFAULT_MAX_PINNED_FILES );
+        INSTANCE = new MappedFileCache( maxOpenFiles, maxPinnedFiles );
+    }
+
+    private final int maxOpenFiles;
+
+    private final int maxPinnedFiles;
+
+    // mapped files that may be released, least recently mapped first
+    private final LinkedList<MappedFile> open = new LinkedList<MappedFile>();
+
+    // mapped files that are kept until they are closed
+    private final LinkedList<MappedFile> pinned = new LinkedList<MappedFile>();
+
+    // set while the maximum number of pinned files is exceeded, so the warning is logged only once
+    private boolean pinnedExceeded;
+
+    private final AtomicLong opened = new AtomicLong();
+
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Creates a new {@link MappedFileCache} instance that allows the default maximum number of pinned files.
+     * 
+     * @param maxOpenFiles
+     *            maximum number of files (not counting pinned files) that are mapped at the same time, must be positive
+     */
+    public MappedFileCache( int maxOpenFiles ) {
+        this( maxOpenFiles, DEFAULT_MAX_PINNED_FILES );
+    }
+
+    /**
+     * Creates a new {@link MappedFileCache} instance.
+     * 
+     * @param maxOpenFiles
+     *            maximum number of files (not counting pinned files) that are mapped at the same time, must be positive
+     * @param maxPinnedFiles
+     *            number of pinned files that may be mapped at the same time before a warning is logged, must be
+     *            positive
+     */
+    public MappedFileCache( int maxOpenFiles, int maxPinnedFiles ) {
+        if ( maxOpenFiles < 1 ) {
+            throw new IllegalArgumentException( "The maximum number of mapped files must be positive." );
+        }
+        if ( maxPinnedFiles < 1 ) {
+            throw new IllegalArgumentException( "The maximum number of pinned files must be positive." );
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.maxPinnedFiles = maxPinnedFiles;
+    }
+
+    /**
+     * Returns the instance that is shared by all shape feature stores.
+     * 
+     * @return the shared instance, never <code>null</code>
+     */
+    public static MappedFileCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a handle for the given file. The file is not opened before its contents are accessed.
+     * 
+     * @param file
+     *            file to be accessed, must not be <code>null</code>
+     * @return handle for the file, never <code>null</code>
+     */
+    MappedFile get( File file ) {
+        return new MappedFile( file, this, false );
+    }
+
+    /**
+     * Returns a handle for the given file that is never released before it is closed. The file is not opened before
+     * its contents are accessed.
+     * 
+     * @param file
+     *            file to be accessed, must not be <code>null</code>
+     * @return handle for the file, never <code>null</code>
+     */
+    MappedFile getPinned( File file ) {
+        return new MappedFile( file, this, true );
+    }
+
+    /**
+     * Returns the maximum number of files (not counting pinned files) that are mapped at the same time.
+     * 
+     * @return the maximum number of mapped files
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * Returns the number of pinned files that may be mapped at the same time before a warning is logged.
+     * 
+     * @return the maximum number of pinned files
+     */
+    public int getMaxPinnedFiles() {
+        return maxPinnedFiles;
+    }
+
+    /**
+     * Returns the number of currently mapped files (not counting pinned files).
+     * 
+     * @return number of currently mapped files
+     */
+    public synchronized int getOpenFiles() {
+        return open.size();
+    }
+
+    /**
+     * Returns the number of currently mapped pinned files.
+     * 
+     * @return number of currently mapped pinned files
+     */
+    public synchronized int getPinnedFiles() {
+        return pinned.size();
+    }
+
+    /**
+     * Returns the number of times a file has been mapped (including re-mapping of evicted or closed files).
+     * 
+     * @return number of times a file has been mapped
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * Returns the number of mappings that have been released because the maximum number of mapped files was exceeded.
+     * 
+     * @return number of evicted mappings
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    @Override
+    public String toString() {
+        return "mapped file cache (mapped files: " + getOpenFiles() + "/" + maxOpenFiles + ", pinned files: "
+               + getPinnedFiles() + "/" + maxPinnedFiles + ", mapped: " + getOpened() + ", evicted: " + getEvicted()
+               + ")";
+    }
+
+    private synchronized ByteBuffer map( MappedFile file )
+                            throws IOException {
+        if ( file.buffer != null ) {
+            // mapped by a concurrent request
+            return file.buffer;
+        }
+        LOG.debug( "Mapping file '{}'.", file.file );
+        RandomAccessFile raf = new RandomAccessFile( file.file, "r" );
+        ByteBuffer buffer;
+        try {
+            // the mapping stays valid after closing the file
+            buffer = raf.getChannel().map( READ_ONLY, 0, raf.length() );
+        } finally {
+            raf.close();
+        }
+        opened.incrementAndGet();
+        file.buffer = buffer;
+        if ( file.closed ) {
+            // still used by a query that started before the file has been closed: the handle keeps the mapping, but
+            // it does not count against the maximum anymore
+            return buffer;
+        }
+        file.used = true;
+        if ( file.pinned ) {
+            pinned.add( file );
+            checkPinned();
+        } else {
+            open.addLast( file );
+            evict();
+        }
+        return buffer;
+    }
+
+    private void evict() {
+        // every file gets at most two chances
+        while ( open.size() > maxOpenFiles ) {
+            MappedFile eldest = open.removeFirst();
+            if ( eldest.used ) {
+                eldest.used = false;
+                open.addLast( eldest );
+            } else {
+                LOG.debug( "Releasing mapping of file '{}'.", eldest.file );
+                eldest.buffer = null;
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    private void checkPinned() {
+        if ( pinned.size() <= maxPinnedFiles ) {
+            pinnedExceeded = false;
+        } else if ( !pinnedExceeded ) {
+            pinnedExceeded = true;
+            LOG.warn( "{} index files are mapped permanently, which exceeds the maximum of {} pinned files. Consider "
+                      + "raising the system property '{}' or reducing the number of shape stores.",
+                      new Object[] { pinned.size(), maxPinnedFiles, MAX_PINNED_FILES_PROPERTY } );
+        }
+    }
+
+    private synchronized void release( MappedFile file ) {
+        file.closed = true;
+        // the buffer stays referenced, so readers that are still in use can finish their queries
+        if ( file.pinned ) {
+            pinned.remove( file );
+            checkPinned();
+        } else {
+            open.remove( file );
+        }
+    }
+
+    /**
+     * Handle for a file that is mapped on demand by a {@link MappedFileCache}.
+     * 
+     * @author <a href="mailto:agent@local">agent</a>
+     * @author last edited by: $Author$
+     * 
+     * @version $Revision$, $Date$
+     */
+    static class MappedFile {
+
+        private final File file;
+
+        private final MappedFileCache cache;
+
+        private final boolean pinned;
+
+        private volatile ByteBuffer buffer;
+
+        private volatile boolean used;
+
+        private volatile boolean closed;
+
+        private MappedFile( File file, MappedFileCache cache, boolean pinned ) {
+            this.file = file;
+            this.cache = cache;
+            this.pinned = pinned;
+        }
+
+        /**
+         * Returns the file.
+         * 
+         * @return the file, never <code>null</code>
+         */
+        File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns whether the file is currently mapped (and counted against the maximum number of mapped or pinned
+         * files).
+         * 
+         * @return true, if the file is mapped
+         */
+        boolean isMapped() {
+            return buffer != null && !closed;
+        }
+
+        /**
+         * Returns the contents of the file, mapping it if necessary.
+         * <p>
+         * The returned buffer is shared, callers must not modify its position or limit (use a duplicate for relative
+         * access).
+         * </p>
+         * 
+         * @return the mapped file, never <code>null</code>
+         * @throws IOException
+         *             if the file cannot be mapped
+         */
+        ByteBuffer getBuffer()
+                                throws IOException {
+            ByteBuffer b = buffer;
+            if ( b == null ) {
+                return cache.map( this );
+            }
+            if ( !used ) {
+                used = true;
+            }
+            return b;
+        }
+
+        /**
+         * Reads a part of the file without mapping it, e.g. for parsing the header.
+         * 
+         * @param pos
+         *            position of the first byte to be read
+         * @param length
+         *            number of bytes to be read
+         * @return buffer with the bytes (position 0), never <code>null</code>
+         * @throws IOException
+         *             if the file cannot be read or is too short
+         */
+        ByteBuffer read( long pos, int length )
+                                throws IOException {
+            ByteBuffer b = buffer;
+            if ( b != null ) {
+                ByteBuffer part = b.duplicate();
+                part.position( (int) pos );
+                part.limit( (int) pos + length );
+                return part.slice();
+            }
+            byte[] bytes = new byte[length];
+            RandomAccessFile raf = new RandomAccessFile( file, "r" );
+            try {
+                raf.seek( pos );
+                raf.readFully( bytes );
+            } finally {
+                raf.close();
+            }
+            return ByteBuffer.wrap( bytes );
+        }
+
+        /**
+         * Releases the mapping. Queries that are still in progress can access the contents until they have finished
+         * (the handle keeps the mapping until it is released itself), but the file does not count against the maximum
+         * number of mapped or pinned files anymore.
+         */
+        void close() {
+            cache.release( this );
+        }
+    }
+
+}
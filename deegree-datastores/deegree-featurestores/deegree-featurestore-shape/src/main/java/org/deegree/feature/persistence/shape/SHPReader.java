@@ -45,21 +45,25 @@ import static org.deegree.feature.types.property.GeometryPropertyType.GeometryTy
 import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.deegree.commons.index.LongResultBuffer;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.index.SpatialIndex;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.ScreenGeometryVisitor;
+import org.deegree.feature.persistence.shape.MappedFileCache.MappedFile;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
@@ -215,26 +219,20 @@ public class SHPReader {
 
     private boolean recordNumStartsWith0 = false;
 
-    private RandomAccessFile file;
-
-    private FileChannel channel;
-
-    // buffer is not thread-safe (needs to be duplicated for every thread)
-    private final ByteBuffer sharedBuffer;
+    // mapped on demand, only the header is read on construction
+    private final MappedFile file;
 
     /**
-     * @param inFile
+     * @param file
+     *            the shape file, must not be <code>null</code>
      * @param crs
      * @param rtree
      * @param startsWithZero
      * @throws IOException
      */
-    public SHPReader( RandomAccessFile inFile, ICRS crs, SpatialIndex<Long> rtree, boolean startsWithZero )
-                            throws IOException {
-        file = inFile;
-        channel = file.getChannel();
-        sharedBuffer = channel.map( MapMode.READ_ONLY, 0, file.length() );
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+    SHPReader( MappedFile file, ICRS crs, SpatialIndex<Long> rtree, boolean startsWithZero ) throws IOException {
+        this.file = file;
+        ByteBuffer buffer = file.read( 0, 100 );
         buffer.order( ByteOrder.BIG_ENDIAN );
         this.crs = crs;
         this.rtree = rtree;
@@ -349,6 +347,25 @@ public class SHPReader {
         return GEOMETRY;
     }
 
+    private long[] queryPointers( Envelope bbox ) {
+        long[] pointers;
+        if ( rtree instanceof PackedRTree ) {
+            // avoid boxing the pointers of large results
+            LongResultBuffer buffer = new LongResultBuffer();
+            ( (PackedRTree) rtree ).query( createEnvelope( bbox ), buffer );
+            pointers = buffer.toArray();
+        } else {
+            Collection<Long> result = rtree.query( createEnvelope( bbox ) );
+            pointers = new long[result.size()];
+            int i = 0;
+            for ( Long ptr : result ) {
+                pointers[i++] = ptr;
+            }
+        }
+        Arrays.sort( pointers );
+        return pointers;
+    }
+
     /**
      * @param bbox
      * @param ids
@@ -360,12 +377,11 @@ public class SHPReader {
 
         LOG.debug( "Querying shp with bbox {}", bbox );
 
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        ByteBuffer buffer = getBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.size() );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
+        long[] pointers = queryPointers( bbox );
+        List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.length );
+        for ( long ptr : pointers ) {
             buffer.position( (int) ( ptr - 8 ) );
             int num = getBEInt( buffer );
             if ( num == 0 && !recordNumStartsWith0 && rtree != null ) {
@@ -397,14 +413,13 @@ public class SHPReader {
     public LinkedList<Pair<Integer, Geometry>> query( Envelope bbox, boolean withGeometry, boolean exact ) {
 
         LOG.debug( "Querying shp with bbox {}", bbox );
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        ByteBuffer buffer = getBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
 
         LinkedList<Pair<Integer, Geometry>> list = new LinkedList<Pair<Integer, Geometry>>();
 
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
+        long[] pointers = queryPointers( bbox );
+        for ( long ptr : pointers ) {
             buffer.position( (int) ( ptr - 8 ) );
 
             int num = getBEInt( buffer );
@@ -512,7 +527,7 @@ public class SHPReader {
      * @return a list of all envelopes (minx, miny, maxx, maxy)
      */
     public Pair<ArrayList<Pair<float[], Long>>, Boolean> readEnvelopes() {
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        ByteBuffer buffer = getBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
         ArrayList<Pair<float[], Long>> list = new ArrayList<Pair<float[], Long>>();
         boolean startsFromZero = false;
@@ -560,6 +575,110 @@ public class SHPReader {
         return new Pair<ArrayList<Pair<float[], Long>>, Boolean>( list, startsFromZero );
     }
 
+    /**
+     * Decodes the geometries of the records that intersect the given bbox directly into screen coordinates (render-only
+     * read path that does not create any geometry objects). Consecutive vertices that fall into the same pixel are
+     * dropped.
+     * 
+     * @param bbox
+     *            query bbox (in the CRS of the shape file), must not be <code>null</code>
+     * @param worldToScreen
+     *            transformation to screen coordinates, must not be <code>null</code>
+     * @param visitor
+     *            receives the geometries, must not be <code>null</code>
+     * @return false, if the shape file contains multipatches (which cannot be decoded this way), true otherwise
+     */
+    public boolean readScreenGeometries( Envelope bbox, AffineTransform worldToScreen, ScreenGeometryVisitor visitor ) {
+        if ( type == MULTIPATCH ) {
+            return false;
+        }
+        ByteBuffer buffer = getBuffer();
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        // m00, m10, m01, m11, m02, m12
+        double[] m = new double[6];
+        worldToScreen.getMatrix( m );
+        Path2D.Double path = new Path2D.Double( Path2D.WIND_EVEN_ODD );
+
+        for ( long ptr : queryPointers( bbox ) ) {
+            int pos = (int) ptr;
+            boolean proceed = true;
+            switch ( buffer.getInt( pos ) ) {
+            case POINT:
+            case POINTM:
+            case POINTZ: {
+                double x = buffer.getDouble( pos + 4 );
+                double y = buffer.getDouble( pos + 12 );
+                proceed = visitor.visitPoint( m[0] * x + m[2] * y + m[4], m[1] * x + m[3] * y + m[5] );
+                break;
+            }
+            case MULTIPOINT:
+            case MULTIPOINTM:
+            case MULTIPOINTZ: {
+                // skip bbox
+                int numPoints = buffer.getInt( pos + 36 );
+                path.reset();
+                for ( int i = 0; i < numPoints; i++ ) {
+                    double x = buffer.getDouble( pos + 40 + i * 16 );
+                    double y = buffer.getDouble( pos + 48 + i * 16 );
+                    path.moveTo( m[0] * x + m[2] * y + m[4], m[1] * x + m[3] * y + m[5] );
+                }
+                proceed = visitor.visitPath( path, ScreenGeometryVisitor.POINTS );
+                break;
+            }
+            case POLYLINE:
+            case POLYLINEM:
+            case POLYLINEZ: {
+                readScreenParts( buffer, pos, m, path, false );
+                proceed = visitor.visitPath( path, ScreenGeometryVisitor.LINES );
+                break;
+            }
+            case POLYGON:
+            case POLYGONM:
+            case POLYGONZ: {
+                readScreenParts( buffer, pos, m, path, true );
+                proceed = visitor.visitPath( path, ScreenGeometryVisitor.POLYGONS );
+                break;
+            }
+            default:
+                // NULL shape
+            }
+            if ( !proceed ) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void readScreenParts( ByteBuffer buffer, int pos, double[] m, Path2D.Double path, boolean close ) {
+        // skip type and bbox
+        int numParts = buffer.getInt( pos + 36 );
+        int numPoints = buffer.getInt( pos + 40 );
+        int partsPos = pos + 44;
+        int pointsPos = partsPos + numParts * 4;
+        path.reset();
+        for ( int part = 0; part < numParts; part++ ) {
+            int first = buffer.getInt( partsPos + part * 4 );
+            int end = part + 1 < numParts ? buffer.getInt( partsPos + ( part + 1 ) * 4 ) : numPoints;
+            long lastPixel = 0;
+            for ( int i = first; i < end; i++ ) {
+                double x = buffer.getDouble( pointsPos + i * 16 );
+                double y = buffer.getDouble( pointsPos + i * 16 + 8 );
+                double sx = m[0] * x + m[2] * y + m[4];
+                double sy = m[1] * x + m[3] * y + m[5];
+                long pixel = ( (long) Math.floor( sx ) << 32 ) ^ ( (long) Math.floor( sy ) & 0xffffffffL );
+                if ( i == first ) {
+                    path.moveTo( sx, sy );
+                } else if ( pixel != lastPixel || i == end - 1 ) {
+                    path.lineTo( sx, sy );
+                }
+                lastPixel = pixel;
+            }
+            if ( close && end > first ) {
+                path.closePath();
+            }
+        }
+    }
+
     /**
      * Returns the geometry entry stored at the given position.
      * 
@@ -570,7 +689,7 @@ public class SHPReader {
     public Geometry readGeometry( long ptr ) {
 
         LOG.trace( "Retrieving geometry at position {}", ptr );
-        ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        ByteBuffer buffer = getBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
 
         buffer.position( (int) ( ptr - 4 ) );
@@ -1189,14 +1308,20 @@ public class SHPReader {
         return res;
     }
 
+    // the returned buffer is not shared, so it can be used by the current thread only
+    private ByteBuffer getBuffer() {
+        try {
+            return file.getBuffer().asReadOnlyBuffer();
+        } catch ( IOException e ) {
+            String msg = "Cannot access shape file '" + file.getFile() + "': " + e.getLocalizedMessage();
+            throw new ShapeFileIOException( msg, e );
+        }
+    }
+
     /**
-     * Closes the underlying file channel and random access file.
-     * 
-     * @throws IOException
+     * Releases the mapping of the shape file.
      */
-    public void close()
-                            throws IOException {
-        channel.close();
+    public void close() {
         file.close();
     }
 }
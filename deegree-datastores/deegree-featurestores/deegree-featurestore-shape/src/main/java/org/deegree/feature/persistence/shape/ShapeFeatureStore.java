@@ -35,18 +35,17 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
-import static org.deegree.commons.utils.CollectionUtils.unzipPair;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
 import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.deegree.filter.Filters.splitOffBBoxConstraint;
 import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.awt.geom.AffineTransform;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -62,6 +61,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.annotations.LoggingNotes;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.index.RTree;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
@@ -79,10 +79,13 @@ import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.ScreenGeometryFeatureStore;
+import org.deegree.feature.persistence.ScreenGeometryVisitor;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
 import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.shape.MappedFileCache.MappedFile;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
 import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
@@ -90,6 +93,7 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -121,12 +125,15 @@ import org.slf4j.Logger;
  * @version $Revision$, $Date$
  */
 @LoggingNotes(trace = "logs stack traces", debug = "logs information about reading the files, which srs etc.", warn = "logs reasons for not setting up the store", error = "logs grave errors that were not forseen to happen")
-public class ShapeFeatureStore implements FeatureStore {
+public class ShapeFeatureStore implements ScreenGeometryFeatureStore {
 
     private static final Logger LOG = getLogger( ShapeFeatureStore.class );
 
     private SHPReader shp;
 
+    // packed rtree index of the shape file (if it could be stored on disk)
+    private MappedFile rtxFile;
+
     private DBFReader dbf;
 
     private long shpLastModified, dbfLastModified;
@@ -176,7 +183,7 @@ public class ShapeFeatureStore implements FeatureStore {
      *            if null, the shape file base name will be used
      * @param ftPrefix
      * @param generateAlphanumericIndexes
-     *            whether to copy the dbf into a h2 database for indexing
+     *            whether to create an index on the dbf columns
      * @param cache
      *            used for caching retrieved feature instances, can be <code>null</code> (will create a default cache)
      * @param mappings
@@ -247,47 +254,79 @@ public class ShapeFeatureStore implements FeatureStore {
 
         shp = null;
 
+        File packedFile = new File( shpName + ".rtx" );
         File rtfile = new File( shpName + ".rti" );
-        RandomAccessFile raf = new RandomAccessFile( shpFile, "r" );
+        MappedFile file = MappedFileCache.getInstance().get( shpFile );
 
-        if ( rtfile.exists() && !( rtfile.lastModified() < shpFile.lastModified() ) && !forceIndexRebuild ) {
-            try {
-                LOG.debug( "Loading RTree from disk." );
-                RTree<Long> rtree = RTree.loadFromDisk( shpName + ".rti" );
-                shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
-            } catch ( IOException e ) {
-                LOG.debug( "Stack trace:", e );
-                LOG.warn( "Existing rtree index could not be read. Generating a new one..." );
+        if ( !forceIndexRebuild ) {
+            if ( !isUpToDate( packedFile ) && isUpToDate( rtfile ) ) {
+                try {
+                    LOG.debug( "Converting RTree index '{}' to packed format.", rtfile );
+                    PackedRTree.convert( rtfile, packedFile, PackedRTree.DEFAULT_NODE_SIZE );
+                } catch ( IOException e ) {
+                    LOG.debug( "Stack trace:", e );
+                    LOG.warn( "Existing rtree index could not be converted: {}", e.getLocalizedMessage() );
+                }
             }
-            if ( shp != null ) {
-                return shp;
+            if ( isUpToDate( packedFile ) ) {
+                try {
+                    LOG.debug( "Opening packed RTree from disk." );
+                    PackedRTree rtree = openPackedRTree( packedFile );
+                    shp = new SHPReader( file, crs, rtree, rtree.getExtraFlag() );
+                } catch ( IOException e ) {
+                    LOG.debug( "Stack trace:", e );
+                    LOG.warn( "Existing rtree index could not be read. Generating a new one..." );
+                }
+                if ( shp != null ) {
+                    return shp;
+                }
             }
         }
 
-        shp = new SHPReader( raf, crs, null, false );
+        shp = new SHPReader( file, crs, null, false );
 
-        LOG.debug( "Building rtree index in memory for '{}'", new File( shpName ).getName() );
-
-        Pair<RTree<Long>, Boolean> p = createIndex( shp );
-        LOG.debug( "done building index." );
-        shp = new SHPReader( raf, crs, p.first, p.second );
-        p.first.writeTreeToDisk( shpName + ".rti" );
+        LOG.debug( "Building rtree index for '{}'", new File( shpName ).getName() );
+        LOG.debug( "Read envelopes from shape file..." );
+        Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shp.readEnvelopes();
+        LOG.debug( "done reading envelopes." );
+        try {
+            PackedRTree.write( packedFile, p.first, PackedRTree.DEFAULT_NODE_SIZE, p.second );
+            PackedRTree rtree = openPackedRTree( packedFile );
+            LOG.debug( "done building index." );
+            shp = new SHPReader( file, crs, rtree, p.second );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not write rtree index file '{}': {}. Using in-memory index.", packedFile,
+                      e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            RTree<Long> rtree = new RTree<Long>( createEnvelope( shp.getEnvelope() ), -1 );
+            rtree.insertBulk( p.first );
+            shp = new SHPReader( file, crs, rtree, p.second );
+        }
         return shp;
     }
 
-    /**
-     * @param shapeReader
-     */
-    private static Pair<RTree<Long>, Boolean> createIndex( SHPReader shapeReader ) {
-        Envelope env = shapeReader.getEnvelope();
-        // use 128 values per rect.
-        RTree<Long> result = new RTree<Long>( createEnvelope( env ), -1 );
-        // to work around Java's non-existent variant type
-        LOG.debug( "Read envelopes from shape file..." );
-        Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shapeReader.readEnvelopes();
-        LOG.debug( "done reading envelopes." );
-        result.insertBulk( p.first );
-        return new Pair<RTree<Long>, Boolean>( result, p.second );
+    private PackedRTree openPackedRTree( File packedFile )
+                            throws IOException {
+        closePackedRTree();
+        // the index stays mapped as long as the shape file is open, but counts against the maximum of mapped files
+        rtxFile = MappedFileCache.getInstance().getPinned( packedFile );
+        try {
+            return PackedRTree.open( rtxFile.getBuffer() );
+        } catch ( IOException e ) {
+            closePackedRTree();
+            throw e;
+        }
+    }
+
+    private void closePackedRTree() {
+        if ( rtxFile != null ) {
+            rtxFile.close();
+            rtxFile = null;
+        }
+    }
+
+    private boolean isUpToDate( File indexFile ) {
+        return indexFile.exists() && !( indexFile.lastModified() < shpFile.lastModified() );
     }
 
     private void checkForUpdate() {
@@ -295,6 +334,7 @@ public class ShapeFeatureStore implements FeatureStore {
             synchronized ( shpFile ) {
                 if ( shpLastModified != shpFile.lastModified() ) {
                     shp.close();
+                    closePackedRTree();
                     LOG.debug( "Re-opening the shape file {}", shpName );
                     shp = getSHP( true );
                     shpLastModified = shpFile.lastModified();
@@ -305,11 +345,15 @@ public class ShapeFeatureStore implements FeatureStore {
                 if ( dbf != null && dbfLastModified != dbfFile.lastModified() ) {
                     dbf.close();
                     LOG.debug( "Re-opening the dbf file {}", shpName );
-                    dbf = new DBFReader( new RandomAccessFile( dbfFile, "r" ), encoding, ftName, shp.getGeometryType(),
-                                         mappings );
+                    dbf = new DBFReader( MappedFileCache.getInstance().get( dbfFile ), encoding, ftName,
+                                         shp.getGeometryType(), mappings );
+                    if ( dbfIndex != null ) {
+                        dbfIndex.destroy();
+                        dbfIndex = null;
+                    }
                     if ( generateAlphanumericIndexes ) {
                         // set up index
-                        dbfIndex = new DBFIndex( dbf, dbfFile, shp.readEnvelopes(), mappings );
+                        dbfIndex = new DBFIndex( dbf, dbfFile, mappings );
                     }
                     ft = dbf.getFeatureType();
                     schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
@@ -383,21 +427,20 @@ public class ShapeFeatureStore implements FeatureStore {
         Filter filter = query.getFilter();
         Pair<Filter, Envelope> filterPair = splitOffBBoxConstraint( filter );
 
-        List<Pair<Integer, Long>> recNumsAndPos = new LinkedList<Pair<Integer, Long>>();
         Envelope bbox = getTransformedEnvelope( query.getPrefilterBBoxEnvelope() );
 
         if ( bbox == null ) {
             getEnvelope( null );
         }
 
-        boolean queryIndex = filterPair.first == null || !generateAlphanumericIndexes;
-        Pair<Filter, SortProperty[]> p = queryIndex ? null : dbfIndex.query( recNumsAndPos, filterPair.first,
+        boolean queryIndex = filterPair.first == null || dbfIndex == null;
+        HashSet<Integer> recNums = new HashSet<Integer>();
+        Pair<Filter, SortProperty[]> p = queryIndex ? null : dbfIndex.query( recNums, filterPair.first,
                                                                              query.getSortProperties() );
-        HashSet<Integer> recNums = new HashSet<Integer>( unzipPair( recNumsAndPos ).first );
         if ( idFilterNums != null ) {
             recNums.addAll( idFilterNums );
         }
-        recNumsAndPos = shp.query( bbox, filter == null || p == null ? null : recNums );
+        List<Pair<Integer, Long>> recNumsAndPos = shp.query( bbox, filter == null || p == null ? null : recNums );
         LOG.debug( "{} records matching after BBOX filtering", recNumsAndPos.size() );
 
         // don't forget about filters if dbf index could not be queried
@@ -417,9 +460,41 @@ public class ShapeFeatureStore implements FeatureStore {
             rs = new MemoryFeatureInputStream( Features.sortFc( rs.toCollection(), p.second ) );
         }
 
+        if ( query.getStartIndex() > 0 ) {
+            LOG.debug( "Applying in-memory paging." );
+            rs = new PagedFeatureInputStream( rs, query.getStartIndex(), -1 );
+        }
+
         return rs;
     }
 
+    @Override
+    public boolean queryScreenGeometries( Query query, AffineTransform worldToScreen, ScreenGeometryVisitor visitor )
+                            throws FeatureStoreException {
+        if ( query.getTypeNames() == null || query.getTypeNames().length != 1
+             || !ft.getName().equals( query.getTypeNames()[0].getFeatureTypeName() ) ) {
+            return false;
+        }
+        if ( query.getStartIndex() > 0
+             || ( query.getSortProperties() != null && query.getSortProperties().length > 0 ) ) {
+            return false;
+        }
+        Envelope bbox = query.getPrefilterBBoxEnvelope();
+        if ( bbox == null || splitOffBBoxConstraint( query.getFilter() ).first != null ) {
+            return false;
+        }
+        // geometries would have to be transformed
+        if ( bbox.getCoordinateSystem() != null && !bbox.getCoordinateSystem().equals( crs ) ) {
+            return false;
+        }
+
+        checkForUpdate();
+        if ( !available ) {
+            return false;
+        }
+        return shp.readScreenGeometries( bbox, worldToScreen, visitor );
+    }
+
     @Override
     public FeatureInputStream query( final Query[] queries )
                             throws FeatureStoreException, FilterEvaluationException {
@@ -532,23 +607,17 @@ public class ShapeFeatureStore implements FeatureStore {
     @Override
     public void destroy() {
         cache.clear();
-        try {
-            if ( shp != null ) {
-                shp.close();
-            }
-        } catch ( IOException e ) {
-            LOG.debug( "SHP could not be closed:", e );
+        if ( shp != null ) {
+            shp.close();
         }
+        closePackedRTree();
         if ( dbf != null ) {
-            try {
-                dbf.close();
-            } catch ( IOException e ) {
-                LOG.debug( "DBF could not be closed:", e );
-            }
+            dbf.close();
         }
         if ( dbfIndex != null ) {
             dbfIndex.destroy();
         }
+        LOG.debug( "Closed shape file '{}', {}", shpName, MappedFileCache.getInstance() );
     }
 
     /**
@@ -720,12 +789,12 @@ public class ShapeFeatureStore implements FeatureStore {
         String namespace = ftName.getNamespaceURI();
 
         try {
-            dbf = new DBFReader( new RandomAccessFile( dbfFile, "r" ), encoding, ftName, shp.getGeometryType(),
-                                 mappings );
+            dbf = new DBFReader( MappedFileCache.getInstance().get( dbfFile ), encoding, ftName,
+                                 shp.getGeometryType(), mappings );
 
             if ( generateAlphanumericIndexes ) {
                 // set up index
-                dbfIndex = new DBFIndex( dbf, dbfFile, shp.readEnvelopes(), mappings );
+                dbfIndex = new DBFIndex( dbf, dbfFile, mappings );
             }
 
             ft = dbf.getFeatureType();
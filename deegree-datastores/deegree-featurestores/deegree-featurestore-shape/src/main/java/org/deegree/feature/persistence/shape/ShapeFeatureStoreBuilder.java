@@ -48,8 +48,11 @@ import java.util.List;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
+import org.deegree.feature.persistence.cache.WeightedFeatureStoreCache;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig;
+import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.FeatureCache;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.Mapping.GeometryProperty;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.Mapping.SimpleProperty;
 import org.deegree.workspace.ResourceBuilder;
@@ -70,6 +73,9 @@ public class ShapeFeatureStoreBuilder implements ResourceBuilder<FeatureStore> {
 
     private static final Logger LOG = LoggerFactory.getLogger( ShapeFeatureStoreBuilder.class );
 
+    // in megabytes
+    private static final long DEFAULT_CACHE_MEMORY = 64;
+
     private ShapeFeatureStoreConfig config;
 
     private ResourceLocation<FeatureStore> location;
@@ -128,10 +134,19 @@ public class ShapeFeatureStoreBuilder implements ResourceBuilder<FeatureStore> {
             }
         }
 
+        FeatureStoreCache cache = null;
+        FeatureCache cacheConfig = config.getFeatureCache();
+        if ( cacheConfig != null ) {
+            long maxMemory = cacheConfig.getMaxMemory() != null ? cacheConfig.getMaxMemory().longValue()
+                                                               : DEFAULT_CACHE_MEMORY;
+            long timeToLive = cacheConfig.getTimeToLive() != null ? cacheConfig.getTimeToLive().longValue() : 0;
+            cache = new WeightedFeatureStoreCache( maxMemory * 1024 * 1024, timeToLive * 1000 );
+        }
+
         Boolean genIdx = config.isGenerateAlphanumericIndexes();
         return new ShapeFeatureStore( shapeFileName, crs, cs, config.getFeatureTypeNamespace(),
                                       config.getFeatureTypeName(), config.getFeatureTypePrefix(), genIdx == null
-                                                                                                  || genIdx, null,
+                                                                                                  || genIdx, cache,
                                       mappings, metadata );
     }
 
@@ -0,0 +1,370 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static java.util.Arrays.asList;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsGreaterThanOrEqualTo;
+import org.deegree.filter.comparison.PropertyIsLessThan;
+import org.deegree.filter.comparison.PropertyIsLessThanOrEqualTo;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.Or;
+import org.deegree.filter.sort.SortProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DBFIndex} and {@link DBFColumnIndex}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DBFIndexTest {
+
+    private static final Charset ASCII = Charset.forName( "US-ASCII" );
+
+    private static final ValueReference NAME = new ValueReference( new QName( "NAME" ) );
+
+    private static final ValueReference VALUE = new ValueReference( new QName( "VALUE" ) );
+
+    // record numbers are zero based, the VALUE of record 2 is empty
+    private static final String[] NAMES = { "delta", "alpha", "charlie", "alpha", "bravo" };
+
+    private static final String[] VALUES = { "5", "1.5", "", "3", "-2" };
+
+    private File dbfFile;
+
+    private File indexFile;
+
+    private DBFReader dbf;
+
+    private DBFIndex index;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        dbfFile = File.createTempFile( "deegree-dbf", ".dbf" );
+        dbfFile.deleteOnExit();
+        String name = dbfFile.getPath();
+        indexFile = new File( name.substring( 0, name.lastIndexOf( '.' ) ) + ".dbx" );
+        indexFile.deleteOnExit();
+        writeDbf( dbfFile, NAMES, VALUES );
+    }
+
+    @After
+    public void tearDown() {
+        close();
+        indexFile.delete();
+        dbfFile.delete();
+    }
+
+    @Test
+    public void testIndexFileIsCreated()
+                            throws IOException {
+        open( null );
+        assertTrue( indexFile.exists() );
+        assertTrue( indexFile.length() > 0 );
+    }
+
+    @Test
+    public void testTextLookup()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null ) ), 1, 3 );
+        assertCandidates( op( new PropertyIsEqualTo( literal( "bravo" ), NAME, true, null ) ), 4 );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "echo" ), true, null ) ) );
+        assertCandidates( op( new PropertyIsLessThan( NAME, literal( "c" ), true, null ) ), 1, 3, 4 );
+        assertCandidates( op( new PropertyIsBetween( NAME, literal( "b" ), literal( "d" ), true, null ) ), 2, 4 );
+        assertCandidates( op( new PropertyIsLike( NAME, literal( "al*" ), "*", "?", "\\", true, null ) ), 1, 3 );
+        assertCandidates( op( new PropertyIsLike( NAME, literal( "charlie" ), "*", "?", "\\", true, null ) ), 2 );
+    }
+
+    @Test
+    public void testNumericLookup()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        assertCandidates( op( new PropertyIsEqualTo( VALUE, literal( "3" ), true, null ) ), 3 );
+        assertCandidates( op( new PropertyIsEqualTo( VALUE, literal( "3.0" ), true, null ) ), 3 );
+        // range bounds are inclusive, records with empty values are never candidates
+        assertCandidates( op( new PropertyIsGreaterThanOrEqualTo( VALUE, literal( "1.5" ), true, null ) ), 0, 1, 3 );
+        assertCandidates( op( new PropertyIsLessThanOrEqualTo( VALUE, literal( "100" ), true, null ) ), 0, 1, 3, 4 );
+        assertCandidates( op( new PropertyIsLessThan( literal( "3" ), VALUE, true, null ) ), 0, 3 );
+        assertCandidates( op( new PropertyIsBetween( VALUE, literal( "-5" ), literal( "2" ), true, null ) ), 1, 4 );
+    }
+
+    @Test
+    public void testLogicalOperators()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        Operator alpha = new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null );
+        Operator greater = new PropertyIsGreaterThanOrEqualTo( VALUE, literal( "2" ), true, null );
+        Operator bravo = new PropertyIsEqualTo( NAME, literal( "bravo" ), true, null );
+        Operator notIndexed = new PropertyIsEqualTo( new ValueReference( new QName( "OTHER" ) ), literal( "x" ),
+                                                     true, null );
+        assertCandidates( op( new And( alpha, greater ) ), 3 );
+        assertCandidates( op( new And( alpha, notIndexed ) ), 1, 3 );
+        assertCandidates( op( new Or( alpha, bravo ) ), 1, 3, 4 );
+        assertNull( query( op( new Or( alpha, notIndexed ) ) ) );
+    }
+
+    @Test
+    public void testUnsupportedOperators()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        assertNull( query( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), false, null ) ) ) );
+        assertNull( query( op( new PropertyIsLike( NAME, literal( "*a" ), "*", "?", "\\", true, null ) ) ) );
+        assertNull( query( op( new PropertyIsLike( VALUE, literal( "1*" ), "*", "?", "\\", true, null ) ) ) );
+        assertNull( query( op( new PropertyIsEqualTo( NAME, VALUE, true, null ) ) ) );
+    }
+
+    @Test
+    public void testIdFilter()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        Set<Integer> recNums = new HashSet<Integer>();
+        Pair<Filter, SortProperty[]> leftOvers = index.query( recNums, new IdFilter( "TEST_0", "TEST_2", "invalid" ),
+                                                              null );
+        assertNotNull( leftOvers );
+        assertNull( leftOvers.first );
+        assertEquals( new HashSet<Integer>( asList( 0, 2 ) ), recNums );
+    }
+
+    @Test
+    public void testUpToDateIndexIsReused()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        close();
+        long lastModified = dbfFile.lastModified() + 10000;
+        indexFile.setLastModified( lastModified );
+        open( null );
+        assertEquals( lastModified, indexFile.lastModified() );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null ) ), 1, 3 );
+        assertCandidates( op( new PropertyIsLessThan( literal( "3" ), VALUE, true, null ) ), 0, 3 );
+    }
+
+    @Test
+    public void testOutdatedIndexIsRebuilt()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        close();
+        // same number of records, so only the modification time reveals the change
+        writeDbf( dbfFile, new String[] { "alpha", "bravo", "charlie", "delta", "echo" },
+                  new String[] { "1", "2", "3", "4", "5" } );
+        dbfFile.setLastModified( indexFile.lastModified() + 10000 );
+        open( null );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null ) ), 0 );
+        assertCandidates( op( new PropertyIsGreaterThanOrEqualTo( VALUE, literal( "4" ), true, null ) ), 3, 4 );
+    }
+
+    @Test
+    public void testIndexWithDifferentRecordCountIsRebuilt()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        close();
+        writeDbf( dbfFile, new String[] { "echo", "alpha" }, new String[] { "7", "8" } );
+        indexFile.setLastModified( dbfFile.lastModified() + 10000 );
+        open( null );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null ) ), 1 );
+        assertCandidates( op( new PropertyIsLessThan( VALUE, literal( "10" ), true, null ) ), 0, 1 );
+    }
+
+    @Test
+    public void testIndexWithOtherColumnsIsRebuilt()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        close();
+        indexFile.setLastModified( dbfFile.lastModified() + 10000 );
+        open( asList( new Mapping( "NAME", "NAME", true ), new Mapping( "VALUE", "VALUE", false ) ) );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null ) ), 1, 3 );
+        assertNull( query( op( new PropertyIsEqualTo( VALUE, literal( "3" ), true, null ) ) ) );
+    }
+
+    @Test
+    public void testCorruptIndexIsRebuilt()
+                            throws IOException, FilterEvaluationException {
+        FileOutputStream out = new FileOutputStream( indexFile );
+        try {
+            out.write( new byte[] { 1, 2, 3 } );
+        } finally {
+            out.close();
+        }
+        indexFile.setLastModified( dbfFile.lastModified() + 10000 );
+        open( null );
+        assertCandidates( op( new PropertyIsEqualTo( NAME, literal( "alpha" ), true, null ) ), 1, 3 );
+    }
+
+    @Test
+    public void testTruncatedIndexIsRebuilt()
+                            throws IOException, FilterEvaluationException {
+        open( null );
+        close();
+        RandomAccessFile raf = new RandomAccessFile( indexFile, "rw" );
+        try {
+            raf.setLength( raf.length() - 8 );
+        } finally {
+            raf.close();
+        }
+        indexFile.setLastModified( dbfFile.lastModified() + 10000 );
+        open( null );
+        assertCandidates( op( new PropertyIsLessThan( literal( "3" ), VALUE, true, null ) ), 0, 3 );
+    }
+
+    private void open( List<Mapping> mappings )
+                            throws IOException {
+        dbf = new DBFReader( new MappedFileCache( 2 ).get( dbfFile ), ASCII, new QName( "TEST" ), GEOMETRY, null );
+        index = new DBFIndex( dbf, dbfFile, mappings );
+    }
+
+    private void close() {
+        if ( index != null ) {
+            index.destroy();
+            index = null;
+        }
+        if ( dbf != null ) {
+            dbf.close();
+            dbf = null;
+        }
+    }
+
+    private Set<Integer> query( Filter filter )
+                            throws FilterEvaluationException {
+        Set<Integer> recNums = new TreeSet<Integer>();
+        return index.query( recNums, filter, null ) == null ? null : recNums;
+    }
+
+    private void assertCandidates( Filter filter, Integer... expected )
+                            throws FilterEvaluationException {
+        Set<Integer> recNums = query( filter );
+        assertNotNull( recNums );
+        assertEquals( new TreeSet<Integer>( Arrays.asList( expected ) ), recNums );
+    }
+
+    private static Filter op( Operator op ) {
+        return new OperatorFilter( op );
+    }
+
+    private static Expression literal( String value ) {
+        return new Literal<PrimitiveValue>( value );
+    }
+
+    // dBase III file with a text column NAME (10 characters) and a numeric column VALUE (8 digits)
+    private static void writeDbf( File file, String[] names, String[] values )
+                            throws IOException {
+        int headerLength = 32 + 2 * 32 + 1;
+        int recordLength = 1 + 10 + 8;
+        ByteBuffer buffer = ByteBuffer.allocate( headerLength + names.length * recordLength + 1 );
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        buffer.put( (byte) 3 );
+        buffer.put( new byte[] { 113, 1, 1 } );
+        buffer.putInt( names.length );
+        buffer.putShort( (short) headerLength );
+        buffer.putShort( (short) recordLength );
+        buffer.position( 32 );
+        putField( buffer, "NAME", 'C', 10 );
+        putField( buffer, "VALUE", 'N', 8 );
+        buffer.put( (byte) 13 );
+        for ( int i = 0; i < names.length; i++ ) {
+            buffer.put( (byte) ' ' );
+            buffer.put( pad( names[i], 10, false ) );
+            buffer.put( pad( values[i], 8, true ) );
+        }
+        buffer.put( (byte) 0x1a );
+
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( buffer.array() );
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void putField( ByteBuffer buffer, String name, char type, int length ) {
+        int start = buffer.position();
+        buffer.put( name.getBytes( ASCII ) );
+        buffer.position( start + 11 );
+        buffer.put( (byte) type );
+        buffer.position( start + 16 );
+        buffer.put( (byte) length );
+        buffer.put( (byte) 0 );
+        buffer.position( start + 32 );
+    }
+
+    private static byte[] pad( String value, int length, boolean right ) {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = value.length(); i < length; i++ ) {
+            sb.append( ' ' );
+        }
+        return ( right ? sb + value : value + sb ).getBytes( ASCII );
+    }
+
+}
@@ -0,0 +1,256 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.deegree.feature.persistence.shape.MappedFileCache.MappedFile;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MappedFileCache}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MappedFileCacheTest {
+
+    @Test
+    public void testSecondChanceEviction()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 2 );
+        MappedFile a = cache.get( createFile( 1 ) );
+        MappedFile b = cache.get( createFile( 2 ) );
+        MappedFile c = cache.get( createFile( 3 ) );
+        MappedFile d = cache.get( createFile( 4 ) );
+
+        a.getBuffer();
+        b.getBuffer();
+        // no file has been accessed since it was mapped, so the eldest one is released
+        c.getBuffer();
+        assertFalse( a.isMapped() );
+        assertTrue( b.isMapped() );
+        assertTrue( c.isMapped() );
+
+        // b is accessed, so it gets a second chance and c is released instead
+        b.getBuffer();
+        d.getBuffer();
+        assertTrue( b.isMapped() );
+        assertFalse( c.isMapped() );
+        assertTrue( d.isMapped() );
+
+        // released files are mapped again on access
+        assertEquals( 1, a.getBuffer().get( 0 ) );
+        assertTrue( a.isMapped() );
+    }
+
+    @Test
+    public void testPinnedFilesAreNotEvicted()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 1 );
+        MappedFile pinned = cache.getPinned( createFile( 1 ) );
+        MappedFile a = cache.get( createFile( 2 ) );
+        MappedFile b = cache.get( createFile( 3 ) );
+
+        pinned.getBuffer();
+        assertEquals( 2, a.getBuffer().get( 0 ) );
+        assertEquals( 3, b.getBuffer().get( 0 ) );
+        // the pinned file does not count against the maximum of mapped files
+        assertTrue( pinned.isMapped() );
+        assertFalse( a.isMapped() );
+        assertTrue( b.isMapped() );
+        assertEquals( 1, cache.getOpenFiles() );
+        assertEquals( 1, cache.getPinnedFiles() );
+
+        pinned.close();
+        assertFalse( pinned.isMapped() );
+        assertEquals( 0, cache.getPinnedFiles() );
+    }
+
+    @Test
+    public void testPinnedFilesExceedingMaximumStayMapped()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 1, 1 );
+        MappedFile a = cache.getPinned( createFile( 1 ) );
+        MappedFile b = cache.getPinned( createFile( 2 ) );
+        MappedFile c = cache.get( createFile( 3 ) );
+
+        a.getBuffer();
+        b.getBuffer();
+        c.getBuffer();
+        // exceeding the maximum of pinned files only logs a warning
+        assertTrue( a.isMapped() );
+        assertTrue( b.isMapped() );
+        assertTrue( c.isMapped() );
+        assertEquals( 2, cache.getPinnedFiles() );
+        assertEquals( 1, cache.getOpenFiles() );
+        assertEquals( 0, cache.getEvicted() );
+        assertEquals( "mapped file cache (mapped files: 1/1, pinned files: 2/1, mapped: 3, evicted: 0)",
+                      cache.toString() );
+    }
+
+    @Test
+    public void testClosedFileIsUsableByRunningQueries()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 1 );
+        MappedFile a = cache.get( createFile( 1 ) );
+        MappedFile b = cache.get( createFile( 2 ) );
+
+        a.getBuffer();
+        a.close();
+        assertFalse( a.isMapped() );
+        assertEquals( 1, a.getBuffer().get( 0 ) );
+
+        // a does not count against the maximum anymore
+        b.getBuffer();
+        assertTrue( b.isMapped() );
+
+        // evicted before it has been closed
+        MappedFile c = cache.get( createFile( 3 ) );
+        c.getBuffer();
+        assertFalse( b.isMapped() );
+        b.close();
+        assertEquals( 2, b.getBuffer().get( 0 ) );
+        assertFalse( b.isMapped() );
+        assertTrue( c.isMapped() );
+    }
+
+    @Test
+    public void testClosedFileIsMappedOnlyOnce()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 1 );
+        MappedFile a = cache.get( createFile( 1 ) );
+        MappedFile b = cache.get( createFile( 2 ) );
+
+        a.getBuffer();
+        b.getBuffer();
+        assertFalse( a.isMapped() );
+        assertEquals( 2, cache.getOpened() );
+        assertEquals( 1, cache.getEvicted() );
+
+        // evicted and closed: mapped again, but only for the first access
+        a.close();
+        ByteBuffer buffer = a.getBuffer();
+        assertEquals( 3, cache.getOpened() );
+        assertSame( buffer, a.getBuffer() );
+        assertEquals( 1, a.getBuffer().get( 0 ) );
+        assertEquals( 3, cache.getOpened() );
+        assertFalse( a.isMapped() );
+
+        // the temporary mapping does not count against the maximum
+        assertEquals( 1, cache.getOpenFiles() );
+        assertTrue( b.isMapped() );
+        assertEquals( 1, cache.getEvicted() );
+    }
+
+    @Test
+    public void testCounters()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 2 );
+        MappedFile a = cache.get( createFile( 1 ) );
+        MappedFile b = cache.get( createFile( 2 ) );
+        MappedFile c = cache.get( createFile( 3 ) );
+        assertEquals( 0, cache.getOpenFiles() );
+
+        a.getBuffer();
+        b.getBuffer();
+        assertEquals( 2, cache.getOpenFiles() );
+        c.getBuffer();
+        assertEquals( 2, cache.getOpenFiles() );
+        assertEquals( 3, cache.getOpened() );
+        assertEquals( 1, cache.getEvicted() );
+
+        // mapped again
+        a.getBuffer();
+        assertEquals( 4, cache.getOpened() );
+        assertEquals( 2, cache.getEvicted() );
+
+        a.close();
+        assertEquals( 1, cache.getOpenFiles() );
+        assertEquals( "mapped file cache (mapped files: 1/2, pinned files: 0/512, mapped: 4, evicted: 2)",
+                      cache.toString() );
+    }
+
+    @Test
+    public void testRead()
+                            throws IOException {
+        MappedFileCache cache = new MappedFileCache( 1 );
+        MappedFile a = cache.get( createFile( 7 ) );
+        // reading a part does not map the file
+        ByteBuffer part = a.read( 1, 2 );
+        assertFalse( a.isMapped() );
+        assertEquals( 2, part.remaining() );
+        assertEquals( 8, part.get( 0 ) );
+        a.getBuffer();
+        part = a.read( 2, 2 );
+        assertEquals( 9, part.get( 0 ) );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaximum() {
+        new MappedFileCache( 0 );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPinnedMaximum() {
+        new MappedFileCache( 1, 0 );
+    }
+
+    private static File createFile( int firstByte )
+                            throws IOException {
+        File file = File.createTempFile( "deegree-mapped", ".bin" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            for ( int i = 0; i < 16; i++ ) {
+                out.write( firstByte + i );
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,315 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.deegree.commons.index.SpatialIndex;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.persistence.ScreenGeometryVisitor;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+/**
+ * Tests for decoding shape file geometries directly into screen coordinates (
+ * {@link SHPReader#readScreenGeometries(Envelope, AffineTransform, ScreenGeometryVisitor)}).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SHPReaderTest {
+
+    // world (0,0)-(10,10) to screen (0,100)-(100,0)
+    private static final AffineTransform WORLD_TO_SCREEN = new AffineTransform( 10, 0, 0, -10, 0, 100 );
+
+    private static final Envelope QUERY_BBOX = new GeometryFactory().createEnvelope( 0, 0, 10, 10, null );
+
+    @Test
+    public void testPolygons()
+                            throws IOException {
+        double[][] exterior = { { 1, 1 }, { 1, 4 }, { 4, 4 }, { 4, 1 }, { 1, 1 } };
+        double[][] interior = { { 2, 2 }, { 3, 2 }, { 3, 3 }, { 2, 3 }, { 2, 2 } };
+        double[][] outside = { { 50, 50 }, { 50, 51 }, { 51, 51 }, { 51, 50 }, { 50, 50 } };
+        SHPReader reader = createReader( SHPReader.POLYGON, new double[][][] { exterior, interior },
+                                         new double[][][] { outside } );
+        CollectingVisitor visitor = new CollectingVisitor( Integer.MAX_VALUE );
+        assertTrue( reader.readScreenGeometries( QUERY_BBOX, WORLD_TO_SCREEN, visitor ) );
+        reader.close();
+
+        assertEquals( 1, visitor.paths.size() );
+        assertEquals( ScreenGeometryVisitor.POLYGONS, (int) visitor.types.get( 0 ) );
+        List<List<double[]>> parts = visitor.paths.get( 0 );
+        assertEquals( 2, parts.size() );
+        assertPart( parts.get( 0 ), 10, 90, 10, 60, 40, 60, 40, 90, 10, 90 );
+        assertPart( parts.get( 1 ), 20, 80, 30, 80, 30, 70, 20, 70, 20, 80 );
+        assertEquals( 2, visitor.closed.get( 0 ).intValue() );
+    }
+
+    @Test
+    public void testLinesDropVerticesInSamePixel()
+                            throws IOException {
+        double[][] line1 = { { 0.01, 5 }, { 0.02, 5 }, { 0.03, 5 }, { 5, 5 }, { 9, 5 } };
+        // last vertex is kept, even if it falls into the same pixel
+        double[][] line2 = { { 1, 1 }, { 1.01, 1 } };
+        SHPReader reader = createReader( SHPReader.POLYLINE, new double[][][] { line1, line2 } );
+        CollectingVisitor visitor = new CollectingVisitor( Integer.MAX_VALUE );
+        assertTrue( reader.readScreenGeometries( QUERY_BBOX, WORLD_TO_SCREEN, visitor ) );
+        reader.close();
+
+        assertEquals( 1, visitor.paths.size() );
+        assertEquals( ScreenGeometryVisitor.LINES, (int) visitor.types.get( 0 ) );
+        List<List<double[]>> parts = visitor.paths.get( 0 );
+        assertEquals( 2, parts.size() );
+        assertPart( parts.get( 0 ), 0.1, 50, 50, 50, 90, 50 );
+        assertPart( parts.get( 1 ), 10, 90, 10.1, 90 );
+        assertEquals( 0, visitor.closed.get( 0 ).intValue() );
+    }
+
+    @Test
+    public void testVisitorStops()
+                            throws IOException {
+        double[][] line1 = { { 1, 1 }, { 2, 2 } };
+        double[][] line2 = { { 3, 3 }, { 4, 4 } };
+        double[][] line3 = { { 5, 5 }, { 6, 6 } };
+        SHPReader reader = createReader( SHPReader.POLYLINE, new double[][][] { line1 }, new double[][][] { line2 },
+                                         new double[][][] { line3 } );
+        CollectingVisitor visitor = new CollectingVisitor( 2 );
+        assertTrue( reader.readScreenGeometries( QUERY_BBOX, WORLD_TO_SCREEN, visitor ) );
+        reader.close();
+
+        // records are visited in file order
+        assertEquals( 2, visitor.paths.size() );
+        assertPart( visitor.paths.get( 0 ).get( 0 ), 10, 90, 20, 80 );
+        assertPart( visitor.paths.get( 1 ).get( 0 ), 30, 70, 40, 60 );
+    }
+
+    private static void assertPart( List<double[]> part, double... expected ) {
+        assertEquals( expected.length / 2, part.size() );
+        for ( int i = 0; i < part.size(); i++ ) {
+            assertEquals( expected[2 * i], part.get( i )[0], 1e-9 );
+            assertEquals( expected[2 * i + 1], part.get( i )[1], 1e-9 );
+        }
+    }
+
+    private static SHPReader createReader( int type, double[][][]... records )
+                            throws IOException {
+        File file = writeShapeFile( type, records );
+        ListIndex index = new ListIndex();
+        SHPReader reader = new SHPReader( new MappedFileCache( 1 ).get( file ), null, index, false );
+        index.insertBulk( reader.readEnvelopes().first );
+        return reader;
+    }
+
+    private static File writeShapeFile( int type, double[][][]... records )
+                            throws IOException {
+        List<ByteBuffer> contents = new ArrayList<ByteBuffer>();
+        int length = 100;
+        for ( double[][][] parts : records ) {
+            int numPoints = 0;
+            for ( double[][] part : parts ) {
+                numPoints += part.length;
+            }
+            ByteBuffer content = ByteBuffer.allocate( 44 + 4 * parts.length + 16 * numPoints );
+            content.order( ByteOrder.LITTLE_ENDIAN );
+            content.putInt( type );
+            double[] bbox = getBBox( parts );
+            for ( double d : bbox ) {
+                content.putDouble( d );
+            }
+            content.putInt( parts.length );
+            content.putInt( numPoints );
+            int first = 0;
+            for ( double[][] part : parts ) {
+                content.putInt( first );
+                first += part.length;
+            }
+            for ( double[][] part : parts ) {
+                for ( double[] point : part ) {
+                    content.putDouble( point[0] );
+                    content.putDouble( point[1] );
+                }
+            }
+            contents.add( content );
+            length += 8 + content.capacity();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate( length );
+        buffer.order( ByteOrder.BIG_ENDIAN );
+        buffer.putInt( SHPReader.FILETYPE );
+        buffer.position( 24 );
+        buffer.putInt( length / 2 );
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        buffer.putInt( SHPReader.VERSION );
+        buffer.putInt( type );
+        List<double[][]> allParts = new ArrayList<double[][]>();
+        for ( double[][][] parts : records ) {
+            allParts.addAll( Arrays.asList( parts ) );
+        }
+        for ( double d : getBBox( allParts.toArray( new double[allParts.size()][][] ) ) ) {
+            buffer.putDouble( d );
+        }
+        buffer.position( 100 );
+        int recNum = 1;
+        for ( ByteBuffer content : contents ) {
+            buffer.order( ByteOrder.BIG_ENDIAN );
+            buffer.putInt( recNum++ );
+            buffer.putInt( content.capacity() / 2 );
+            buffer.put( content.array() );
+        }
+
+        File file = File.createTempFile( "deegree-shp", ".shp" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( buffer.array() );
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    // minx, miny, maxx, maxy
+    private static double[] getBBox( double[][][] parts ) {
+        double[] bbox = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+        for ( double[][] part : parts ) {
+            for ( double[] point : part ) {
+                bbox[0] = Math.min( bbox[0], point[0] );
+                bbox[1] = Math.min( bbox[1], point[1] );
+                bbox[2] = Math.max( bbox[2], point[0] );
+                bbox[3] = Math.max( bbox[3], point[1] );
+            }
+        }
+        return bbox;
+    }
+
+    private static class CollectingVisitor implements ScreenGeometryVisitor {
+
+        private final int maxFeatures;
+
+        private final List<List<List<double[]>>> paths = new ArrayList<List<List<double[]>>>();
+
+        private final List<Integer> types = new ArrayList<Integer>();
+
+        private final List<Integer> closed = new ArrayList<Integer>();
+
+        private CollectingVisitor( int maxFeatures ) {
+            this.maxFeatures = maxFeatures;
+        }
+
+        @Override
+        public boolean visitPoint( double x, double y ) {
+            throw new AssertionError( "Unexpected point." );
+        }
+
+        @Override
+        public boolean visitPath( Path2D.Double path, int type ) {
+            // the path is reused by the reader, so the coordinates have to be copied
+            List<List<double[]>> parts = new ArrayList<List<double[]>>();
+            int numClosed = 0;
+            double[] coords = new double[6];
+            for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+                int segment = iter.currentSegment( coords );
+                if ( segment == PathIterator.SEG_MOVETO ) {
+                    parts.add( new ArrayList<double[]>() );
+                }
+                if ( segment == PathIterator.SEG_CLOSE ) {
+                    numClosed++;
+                } else {
+                    parts.get( parts.size() - 1 ).add( new double[] { coords[0], coords[1] } );
+                }
+            }
+            paths.add( parts );
+            types.add( type );
+            closed.add( numClosed );
+            return paths.size() < maxFeatures;
+        }
+    }
+
+    private static class ListIndex extends SpatialIndex<Long> {
+
+        private final List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+
+        @Override
+        public Collection<Long> query( float[] envelope ) {
+            List<Long> result = new ArrayList<Long>();
+            for ( Pair<float[], Long> entry : entries ) {
+                float[] env = entry.first;
+                if ( env != null && env[0] <= envelope[2] && env[2] >= envelope[0] && env[1] <= envelope[3]
+                     && env[3] >= envelope[1] ) {
+                    result.add( entry.second );
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void insertBulk( List<Pair<float[], Long>> listOfObjects ) {
+            entries.addAll( listOfObjects );
+        }
+
+        @Override
+        public void clear() {
+            entries.clear();
+        }
+
+        @Override
+        public boolean insert( float[] envelope, Long object ) {
+            return entries.add( new Pair<float[], Long>( envelope, object ) );
+        }
+
+        @Override
+        public boolean remove( Long object ) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -75,6 +75,7 @@ import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -307,7 +308,8 @@ public class SimpleSQLFeatureStore implements FeatureStore {
                 conn = connProvider.getConnection();
 
                 if ( q.getMaxFeatures() > 0 && connProvider.getDialect() instanceof PostGISDialect ) {
-                    sql += " limit " + q.getMaxFeatures();
+                    // skipped features (startIndex) are fetched as well, paging is performed in memory
+                    sql += " limit " + ( q.getStartIndex() + q.getMaxFeatures() );
                 }
 
                 stmt = conn.prepareStatement( sql );
@@ -372,6 +374,10 @@ public class SimpleSQLFeatureStore implements FeatureStore {
                     set = new FilteredFeatureInputStream( set, q.getFilter() );
                 }
 
+                if ( q.getStartIndex() > 0 ) {
+                    set = new PagedFeatureInputStream( set, q.getStartIndex(), -1 );
+                }
+
                 list.add( set );
             }
 
@@ -71,6 +71,12 @@ public class FeatureTypeMapping {
 
     private final List<Mapping> particles = new ArrayList<Mapping>();
 
+    private final int joinBatchSize;
+
+    private final HitsMode hitsMode;
+
+    private final int hitsLimit;
+
     /**
      * Creates a new {@link FeatureTypeMapping} instance.
      * 
@@ -84,7 +90,52 @@ public class FeatureTypeMapping {
      *            particle mappings for the feature type, must not be <code>null</code>
      */
     public FeatureTypeMapping( QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings ) {
+        this( ftName, table, fidMapping, particleMappings, 0 );
+    }
+
+    /**
+     * Creates a new {@link FeatureTypeMapping} instance.
+     * 
+     * @param ftName
+     *            name of the mapped feature type, must not be <code>null</code>
+     * @param table
+     *            name of the database table that the feature type is mapped to, must not be <code>null</code>
+     * @param fidMapping
+     *            mapping for the feature id, must not be <code>null</code>
+     * @param particleMappings
+     *            particle mappings for the feature type, must not be <code>null</code>
+     * @param joinBatchSize
+     *            number of features to build at once when fetching joined rows, <code>0</code> disables batching
+     */
+    public FeatureTypeMapping( QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings,
+                               int joinBatchSize ) {
+        this( ftName, table, fidMapping, particleMappings, joinBatchSize, HitsMode.EXACT, -1 );
+    }
+
+    /**
+     * Creates a new {@link FeatureTypeMapping} instance.
+     * 
+     * @param ftName
+     *            name of the mapped feature type, must not be <code>null</code>
+     * @param table
+     *            name of the database table that the feature type is mapped to, must not be <code>null</code>
+     * @param fidMapping
+     *            mapping for the feature id, must not be <code>null</code>
+     * @param particleMappings
+     *            particle mappings for the feature type, must not be <code>null</code>
+     * @param joinBatchSize
+     *            number of features to build at once when fetching joined rows, <code>0</code> disables batching
+     * @param hitsMode
+     *            strategy for determining the number of hits, must not be <code>null</code>
+     * @param hitsLimit
+     *            maximum number of hits to count (only used for {@link HitsMode#CAPPED})
+     */
+    public FeatureTypeMapping( QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings,
+                               int joinBatchSize, HitsMode hitsMode, int hitsLimit ) {
         this.ftName = ftName;
+        this.joinBatchSize = joinBatchSize;
+        this.hitsMode = hitsMode;
+        this.hitsLimit = hitsLimit;
         this.table = table;
         this.fidMapping = fidMapping;
         this.propToMapping = new HashMap<QName, Mapping>();
@@ -140,6 +191,34 @@ public class FeatureTypeMapping {
         return propToMapping.get( propName );
     }
 
+    /**
+     * Returns the number of features that are built together, so that the rows of joined tables can be fetched with a
+     * single SELECT per joined table and batch.
+     * 
+     * @return number of features per batch, <code>0</code> if joined rows are fetched individually for every feature
+     */
+    public int getJoinBatchSize() {
+        return joinBatchSize;
+    }
+
+    /**
+     * Returns the strategy for determining the number of features that are matched by a query.
+     * 
+     * @return strategy, never <code>null</code>
+     */
+    public HitsMode getHitsMode() {
+        return hitsMode;
+    }
+
+    /**
+     * Returns the maximum number of hits that are counted if the hits mode is {@link HitsMode#CAPPED}.
+     * 
+     * @return maximum number of hits
+     */
+    public int getHitsLimit() {
+        return hitsLimit;
+    }
+
     /**
      * Returns the {@link Mapping} particles.
      * 
@@ -39,6 +39,7 @@ import static org.deegree.commons.utils.JDBCUtils.close;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
@@ -49,12 +50,27 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
 
@@ -66,19 +82,21 @@ import org.deegree.commons.tom.CombinedReferenceResolver;
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.GMLReferenceResolver;
+import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
+import org.deegree.commons.utils.CloseableIterator;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.Feature;
-import org.deegree.feature.Features;
 import org.deegree.feature.persistence.FeatureInspector;
+import org.deegree.feature.persistence.EstimatingFeatureStore;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreGMLIdResolver;
@@ -86,11 +104,14 @@ import org.deegree.feature.persistence.FeatureStoreManager;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.cache.BBoxCache;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
+import org.deegree.feature.persistence.cache.QueryResultCache;
 import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
+import org.deegree.feature.persistence.cache.WeightedFeatureStoreCache;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
+import org.deegree.feature.persistence.sql.blob.BlobFeatureCodec;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
 import org.deegree.feature.persistence.sql.blob.FeatureBuilderBlob;
 import org.deegree.feature.persistence.sql.config.AbstractMappedSchemaBuilder;
@@ -101,6 +122,8 @@ import org.deegree.feature.persistence.sql.id.IdAnalysis;
 import org.deegree.feature.persistence.sql.jaxb.CustomConverterJAXB;
 import org.deegree.feature.persistence.sql.jaxb.CustomInspector;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.FeatureCache;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.QueryCache;
 import org.deegree.feature.persistence.sql.jaxb.VoidEscalationPolicyType;
 import org.deegree.feature.persistence.sql.rules.CompoundMapping;
 import org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational;
@@ -109,20 +132,28 @@ import org.deegree.feature.persistence.sql.rules.GeometryMapping;
 import org.deegree.feature.persistence.sql.rules.Mapping;
 import org.deegree.feature.persistence.sql.rules.PrimitiveMapping;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
+import org.deegree.feature.stream.ConcurrentFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
-import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
-import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
+import org.deegree.feature.stream.ParallelFilteredFeatureInputStream;
+import org.deegree.feature.stream.PrefetchManager;
+import org.deegree.feature.stream.SortedFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Filters;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.LogicalOperator;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.filter.spatial.BBOX;
+import org.deegree.filter.spatial.SpatialOperator;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
@@ -136,6 +167,7 @@ import org.deegree.sqldialect.filter.PropertyNameMapping;
 import org.deegree.sqldialect.filter.TableAliasManager;
 import org.deegree.sqldialect.filter.UnmappableException;
 import org.deegree.sqldialect.filter.expression.SQLArgument;
+import org.deegree.sqldialect.postgis.PostGISDialect;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
@@ -153,14 +185,30 @@ import org.slf4j.Logger;
  * @version $Revision$, $Date$
  */
 @LoggingNotes(info = "logs particle converter initialization", debug = "logs the SQL statements sent to the SQL server and startup/shutdown information")
-public class SQLFeatureStore implements FeatureStore {
+public class SQLFeatureStore implements EstimatingFeatureStore {
 
     private static final Logger LOG = getLogger( SQLFeatureStore.class );
 
     private static final int DEFAULT_FETCH_SIZE = 1000;
 
+    // rows are inserted one by one, unless batching is enabled explicitly
+    private static final int DEFAULT_INSERT_BATCH_SIZE = 0;
+
     private static final int DEFAULT_CACHE_SIZE = 10000;
 
+    // maximum number of features that are kept in memory when sorting, larger results are sorted on disk
+    private static final int SORT_MAX_FEATURES_IN_MEMORY = 10000;
+
+    // number of features that are evaluated by a single post-filter task
+    private static final int POST_FILTER_BATCH_SIZE = 100;
+
+    private static final int POST_FILTER_MAX_BATCHES = 8;
+
+    // in megabytes
+    private static final long DEFAULT_CACHE_MEMORY = 64;
+
+    private static final Pattern EXPLAIN_ROWS = Pattern.compile( "rows=(\\d+)" );
+
     private final SQLFeatureStoreJAXB config;
 
     private final URL configURL;
@@ -179,6 +227,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final FeatureStoreCache cache;
 
+    private final QueryResultCache queryCache;
+
     private BBoxCache bboxCache;
 
     private GMLReferenceResolver resolver = new FeatureStoreGMLIdResolver( this );
@@ -189,8 +239,14 @@ public class SQLFeatureStore implements FeatureStore {
 
     private int fetchSize;
 
+    private int insertBatchSize;
+
     private Boolean readAutoCommit;
 
+    private int queryThreads;
+
+    private ExecutorService queryExecutor;
+
     private final List<FeatureInspector> inspectors = new ArrayList<FeatureInspector>();
 
     private VoidEscalationPolicyType escalationPolicy;
@@ -201,6 +257,9 @@ public class SQLFeatureStore implements FeatureStore {
 
     private ConnectionProvider connProvider;
 
+    // number of subsequent SELECTs on joined tables that have been saved by fetching joined rows in batches
+    private final AtomicLong avoidedJoinSelects = new AtomicLong();
+
     /**
      * Creates a new {@link SQLFeatureStore} for the given configuration.
      * 
@@ -221,15 +280,38 @@ public class SQLFeatureStore implements FeatureStore {
         fetchSize = config.getJDBCConnId().getFetchSize() != null ? config.getJDBCConnId().getFetchSize().intValue()
                                                                  : DEFAULT_FETCH_SIZE;
         LOG.debug( "Fetch size: " + fetchSize );
+        insertBatchSize = config.getJDBCConnId().getInsertBatchSize() != null ? config.getJDBCConnId().getInsertBatchSize().intValue()
+                                                                             : DEFAULT_INSERT_BATCH_SIZE;
+        LOG.debug( "Insert batch size: " + insertBatchSize );
         readAutoCommit = config.getJDBCConnId().isReadAutoCommit() != null ? config.getJDBCConnId().isReadAutoCommit()
                                                                           : !dialect.requiresTransactionForCursorMode();
         LOG.debug( "Read auto commit: " + readAutoCommit );
-
-        if ( config.getFeatureCache() != null ) {
+        queryThreads = config.getJDBCConnId().getQueryThreads() != null ? config.getJDBCConnId().getQueryThreads().intValue()
+                                                                       : 1;
+        LOG.debug( "Query threads: " + queryThreads );
+
+        FeatureCache cacheConfig = config.getFeatureCache();
+        if ( cacheConfig != null && ( cacheConfig.getMaxMemory() != null || cacheConfig.getTimeToLive() != null ) ) {
+            long maxMemory = cacheConfig.getMaxMemory() != null ? cacheConfig.getMaxMemory().longValue()
+                                                               : DEFAULT_CACHE_MEMORY;
+            long timeToLive = cacheConfig.getTimeToLive() != null ? cacheConfig.getTimeToLive().longValue() : 0;
+            LOG.debug( "Feature cache: " + maxMemory + " MB, time to live: " + timeToLive + " s" );
+            cache = new WeightedFeatureStoreCache( maxMemory * 1024 * 1024, timeToLive * 1000 );
+        } else if ( cacheConfig != null ) {
             cache = new SimpleFeatureStoreCache( DEFAULT_CACHE_SIZE );
         } else {
             cache = null;
         }
+
+        QueryCache queryCacheConfig = config.getQueryCache();
+        if ( queryCacheConfig != null ) {
+            long timeToLive = queryCacheConfig.getTimeToLive() != null ? queryCacheConfig.getTimeToLive().longValue()
+                                                                      : 0;
+            queryCache = new QueryResultCache( queryCacheConfig.getMaxEntries().intValue(),
+                                               queryCacheConfig.getMaxFeatures().intValue(), timeToLive * 1000 );
+        } else {
+            queryCache = null;
+        }
     }
 
     private void initConverters() {
@@ -542,7 +624,7 @@ public class SQLFeatureStore implements FeatureStore {
             throw new UnsupportedOperationException( msg );
         }
 
-        FeatureInputStream rs = queryByIdFilterRelational( new IdFilter( id ), null );
+        FeatureInputStream rs = queryByIdFilterRelational( new IdFilter( id ), null, null );
         try {
             Iterator<Feature> iter = rs.iterator();
             if ( iter.hasNext() ) {
@@ -583,6 +665,46 @@ public class SQLFeatureStore implements FeatureStore {
         return cache;
     }
 
+    /**
+     * Returns the {@link QueryResultCache}.
+     * 
+     * @return the query result cache, or <code>null</code> if query results are not cached
+     */
+    public QueryResultCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Returns the maximum number of rows that are sent to the database in a single JDBC batch on insert.
+     * 
+     * @return maximum number of rows per batch, <code>0</code> if batching is disabled
+     */
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    /**
+     * Returns the number of subsequent SELECTs on joined tables that have been avoided by fetching the joined rows for
+     * a batch of features at once (see {@link FeatureBuilderRelational#buildFeatures(ResultSet, int)}).
+     * 
+     * @return number of SELECTs that would have been executed without batching minus the number of batched SELECTs
+     *         (since startup)
+     */
+    public long getAvoidedJoinSelects() {
+        return avoidedJoinSelects.get();
+    }
+
+    /**
+     * Adds to the number of subsequent SELECTs that have been avoided by fetching joined rows in batches.
+     * 
+     * @param selects
+     *            number of avoided SELECTs
+     * @return total number of avoided SELECTs
+     */
+    public long addAvoidedJoinSelects( long selects ) {
+        return avoidedJoinSelects.addAndGet( selects );
+    }
+
     /**
      * Returns a resolver instance for resolving references to objects that are stored in this feature store.
      * 
@@ -599,7 +721,9 @@ public class SQLFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( queryExecutor != null ) {
+            queryExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -629,7 +753,7 @@ public class SQLFeatureStore implements FeatureStore {
                 throw new FilterEvaluationException( msg );
             }
             // should be no problem iterating over the features (id queries usually request only a few ids)
-            hits = queryByIdFilter( (IdFilter) filter, query.getSortProperties() ).count();
+            hits = queryByIdFilter( (IdFilter) filter, query.getSortProperties(), null ).count();
         }
         return hits;
     }
@@ -650,6 +774,7 @@ public class SQLFeatureStore implements FeatureStore {
             throw new FeatureStoreException( msg );
         }
 
+        HitsMode hitsMode = getHitsMode( ftMapping );
         int hits = 0;
 
         Connection conn = null;
@@ -660,60 +785,30 @@ public class SQLFeatureStore implements FeatureStore {
             conn = getConnection();
             AbstractWhereBuilder wb = getWhereBuilder( ft, filter, query.getSortProperties(), conn );
 
-            if ( wb.getPostFilter() != null ) {
+            if ( wb.getPostFilter() != null && hitsMode != HitsMode.ESTIMATED ) {
                 conn.close();
                 LOG.debug( "Filter not fully mappable to WHERE clause. Need to iterate over all features to determine count." );
-                hits = queryByOperatorFilter( query, ftName, filter ).count();
-            } else {
-                StringBuilder sql = new StringBuilder( "SELECT " );
-                if ( wb.getWhere() == null ) {
-                    sql.append( "COUNT(*) FROM " );
-                    sql.append( ftMapping.getFtTable() );
+                FeatureInputStream features = queryByOperatorFilter( query, ftName, filter, false );
+                if ( hitsMode == HitsMode.CAPPED ) {
+                    hits = count( features, ftMapping.getHitsLimit() );
                 } else {
-                    sql.append( "COUNT(*) FROM (SELECT DISTINCT " );
-
-                    FIDMapping fidMapping = ftMapping.getFidMapping();
-                    List<Pair<SQLIdentifier, BaseType>> fidCols = fidMapping.getColumns();
-                    boolean first = true;
-                    for ( Pair<SQLIdentifier, BaseType> fidCol : fidCols ) {
-                        if ( !first ) {
-                            sql.append( "," );
-                        } else {
-                            first = false;
-                        }
-                        sql.append( fidCol.first );
-                    }
-
-                    sql.append( " FROM " );
-
-                    String ftTableAlias = wb.getAliasManager().getRootTableAlias();
-
-                    // pure relational query
-                    sql.append( ftMapping.getFtTable() );
-                    sql.append( ' ' );
-                    sql.append( ftTableAlias );
-
-                    for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
-                        for ( Join join : mappedPropName.getJoins() ) {
-                            sql.append( " LEFT OUTER JOIN " );
-                            sql.append( join.getToTable() );
-                            sql.append( ' ' );
-                            sql.append( join.getToTableAlias() );
-                            sql.append( " ON " );
-                            sql.append( join.getSQLJoinCondition() );
-                        }
-                    }
-
-                    LOG.debug( "WHERE clause: " + wb.getWhere() );
-                    if ( wb.getWhere() != null ) {
-                        sql.append( " WHERE " );
-                        sql.append( wb.getWhere().getSQL() );
+                    hits = features.count();
+                }
+            } else {
+                if ( wb.getPostFilter() != null ) {
+                    LOG.debug( "Filter not fully mappable to WHERE clause. Estimating hits for the mappable part." );
+                }
+                if ( hitsMode == HitsMode.ESTIMATED && wb.getWhere() == null ) {
+                    hits = getEstimatedRowCount( conn, ftMapping.getFtTable() );
+                    if ( hits >= 0 ) {
+                        return hits;
                     }
-                    sql.append( ") featureids" );
                 }
+
+                String sql = getHitsSql( hitsMode, ftMapping, wb );
                 LOG.debug( "SQL: {}", sql );
                 long begin = System.currentTimeMillis();
-                stmt = conn.prepareStatement( sql.toString() );
+                stmt = conn.prepareStatement( sql );
                 LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
                 int i = 1;
@@ -727,7 +822,11 @@ public class SQLFeatureStore implements FeatureStore {
                 rs = stmt.executeQuery();
                 LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
                 rs.next();
-                hits = rs.getInt( 1 );
+                if ( hitsMode == HitsMode.ESTIMATED ) {
+                    hits = parseEstimatedRows( rs.getString( 1 ) );
+                } else {
+                    hits = rs.getInt( 1 );
+                }
             }
         } catch ( Exception e ) {
             String msg = "Error performing hits query by operator filter: " + e.getMessage();
@@ -740,6 +839,163 @@ public class SQLFeatureStore implements FeatureStore {
         return hits;
     }
 
+    /**
+     * Returns the SQL statement that determines the number of hits for the given {@link HitsMode}. For
+     * {@link HitsMode#ESTIMATED}, this is an <code>EXPLAIN</code> statement, its output must be passed to
+     * {@link #parseEstimatedRows(String)}.
+     */
+    String getHitsSql( HitsMode hitsMode, FeatureTypeMapping ftMapping, AbstractWhereBuilder wb ) {
+        StringBuilder sql = new StringBuilder();
+        if ( hitsMode == HitsMode.ESTIMATED ) {
+            sql.append( "EXPLAIN " );
+            sql.append( getHitsSelect( ftMapping, wb ) );
+        } else if ( hitsMode == HitsMode.CAPPED ) {
+            sql.append( "SELECT COUNT(*) FROM (" );
+            sql.append( getDialect().getPagedSelect( getHitsSelect( ftMapping, wb ), false, 0,
+                                                     ftMapping.getHitsLimit() ) );
+            sql.append( ") featureids" );
+        } else if ( wb.getWhere() == null ) {
+            sql.append( "SELECT COUNT(*) FROM " );
+            sql.append( ftMapping.getFtTable() );
+        } else {
+            sql.append( "SELECT COUNT(*) FROM (" );
+            sql.append( getHitsSelect( ftMapping, wb ) );
+            sql.append( ") featureids" );
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Returns the <code>SELECT</code> statement for the ids of the features that match the WHERE clause of the given
+     * builder.
+     */
+    private String getHitsSelect( FeatureTypeMapping ftMapping, AbstractWhereBuilder wb ) {
+        if ( wb.getWhere() == null ) {
+            return "SELECT 1 FROM " + ftMapping.getFtTable();
+        }
+
+        StringBuilder sql = new StringBuilder( "SELECT DISTINCT " );
+        FIDMapping fidMapping = ftMapping.getFidMapping();
+        List<Pair<SQLIdentifier, BaseType>> fidCols = fidMapping.getColumns();
+        boolean first = true;
+        for ( Pair<SQLIdentifier, BaseType> fidCol : fidCols ) {
+            if ( !first ) {
+                sql.append( "," );
+            } else {
+                first = false;
+            }
+            sql.append( fidCol.first );
+        }
+
+        sql.append( " FROM " );
+
+        String ftTableAlias = wb.getAliasManager().getRootTableAlias();
+
+        // pure relational query
+        sql.append( ftMapping.getFtTable() );
+        sql.append( ' ' );
+        sql.append( ftTableAlias );
+
+        for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
+            for ( Join join : mappedPropName.getJoins() ) {
+                sql.append( " LEFT OUTER JOIN " );
+                sql.append( join.getToTable() );
+                sql.append( ' ' );
+                sql.append( join.getToTableAlias() );
+                sql.append( " ON " );
+                sql.append( join.getSQLJoinCondition() );
+            }
+        }
+
+        LOG.debug( "WHERE clause: " + wb.getWhere() );
+        sql.append( " WHERE " );
+        sql.append( wb.getWhere().getSQL() );
+        return sql.toString();
+    }
+
+    private HitsMode getHitsMode( FeatureTypeMapping ftMapping ) {
+        HitsMode hitsMode = ftMapping.getHitsMode();
+        if ( hitsMode == HitsMode.ESTIMATED && !( getDialect() instanceof PostGISDialect ) ) {
+            LOG.debug( "Estimated hits are only available for PostgreSQL/PostGIS. Determining exact hits." );
+            return HitsMode.EXACT;
+        }
+        return hitsMode;
+    }
+
+    /**
+     * Returns the number of rows of the given table according to the statistics of the PostgreSQL database.
+     * 
+     * @return number of rows, or <code>-1</code> if the table has not been analyzed yet
+     */
+    private int getEstimatedRowCount( Connection conn, TableName table )
+                            throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement( "SELECT reltuples FROM pg_class WHERE oid=?::regclass" );
+            stmt.setString( 1, table.toString() );
+            rs = stmt.executeQuery();
+            if ( rs.next() ) {
+                float reltuples = rs.getFloat( 1 );
+                // never analyzed: 0 (before PostgreSQL 14) or -1
+                if ( reltuples > 0 ) {
+                    return (int) Math.min( reltuples, Integer.MAX_VALUE );
+                }
+            }
+            return -1;
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+    }
+
+    /**
+     * Extracts the estimated number of rows from the first line of a PostgreSQL <code>EXPLAIN</code> output, e.g.
+     * <code>Seq Scan on table  (cost=0.00..155.00 rows=10000 width=4)</code>.
+     */
+    static int parseEstimatedRows( String plan )
+                            throws FeatureStoreException {
+        Matcher m = EXPLAIN_ROWS.matcher( plan );
+        if ( !m.find() ) {
+            throw new FeatureStoreException( "Unable to determine estimated rows from query plan '" + plan + "'." );
+        }
+        return (int) Math.min( Long.parseLong( m.group( 1 ) ), Integer.MAX_VALUE );
+    }
+
+    private int count( FeatureInputStream features, int limit ) {
+        int count = 0;
+        try {
+            Iterator<Feature> iter = features.iterator();
+            while ( count < limit && iter.hasNext() ) {
+                iter.next();
+                count++;
+            }
+        } finally {
+            features.close();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isExactHits( Query query, int hits ) {
+        if ( getSchema().getBlobMapping() != null || query.getTypeNames() == null
+             || query.getTypeNames().length != 1
+             || ( query.getFilter() != null && !( query.getFilter() instanceof OperatorFilter ) ) ) {
+            return true;
+        }
+        FeatureTypeMapping ftMapping = getMapping( query.getTypeNames()[0].getFeatureTypeName() );
+        if ( ftMapping == null ) {
+            return true;
+        }
+        switch ( getHitsMode( ftMapping ) ) {
+        case ESTIMATED:
+            return false;
+        case CAPPED:
+            return hits < ftMapping.getHitsLimit();
+        default:
+            return true;
+        }
+    }
+
     private int queryHitsByOperatorFilterBlob( Query query, QName ftName, OperatorFilter filter )
                             throws FeatureStoreException {
 
@@ -809,8 +1065,46 @@ public class SQLFeatureStore implements FeatureStore {
     public int[] queryHits( Query[] queries )
                             throws FeatureStoreException, FilterEvaluationException {
         int[] hits = new int[queries.length];
-        for ( int i = 0; i < queries.length; i++ ) {
-            hits[i] = queryHits( queries[i] );
+        if ( queryExecutor == null || queries.length < 2 ) {
+            for ( int i = 0; i < queries.length; i++ ) {
+                hits[i] = queryHits( queries[i] );
+            }
+            return hits;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>( queries.length );
+        for ( final Query query : queries ) {
+            futures.add( queryExecutor.submit( new Callable<Integer>() {
+                @Override
+                public Integer call()
+                                        throws Exception {
+                    return queryHits( query );
+                }
+            } ) );
+        }
+        try {
+            for ( int i = 0; i < queries.length; i++ ) {
+                hits[i] = futures.get( i ).get();
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new FeatureStoreException( e.getMessage(), e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof FeatureStoreException ) {
+                throw (FeatureStoreException) cause;
+            }
+            if ( cause instanceof FilterEvaluationException ) {
+                throw (FilterEvaluationException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new FeatureStoreException( cause.getMessage(), cause );
+        } finally {
+            for ( Future<Integer> future : futures ) {
+                future.cancel( false );
+            }
         }
         return hits;
     }
@@ -869,6 +1163,17 @@ public class SQLFeatureStore implements FeatureStore {
             throw new UnsupportedOperationException( msg );
         }
 
+        String cacheKey = queryCache != null ? queryCache.getKey( query ) : null;
+        // snapshot before the SQL is executed, so a concurrent commit prevents caching of the (stale) result
+        long cacheGeneration = queryCache != null ? queryCache.getGeneration() : 0;
+        if ( cacheKey != null ) {
+            FeatureInputStream cached = queryCache.get( cacheKey );
+            if ( cached != null ) {
+                LOG.debug( "Using cached query result." );
+                return cached;
+            }
+        }
+
         FeatureInputStream result = null;
         Filter filter = query.getFilter();
 
@@ -879,14 +1184,21 @@ public class SQLFeatureStore implements FeatureStore {
                 String msg = "Feature store is not configured to serve feature type '" + ftName + "'.";
                 throw new FeatureStoreException( msg );
             }
-            result = queryByOperatorFilter( query, ftName, (OperatorFilter) filter );
+            result = queryByOperatorFilter( query, ftName, (OperatorFilter) filter, true );
         } else {
             // must be an id filter based query
             if ( query.getFilter() == null || !( query.getFilter() instanceof IdFilter ) ) {
                 String msg = "Invalid query. If no type names are specified, it must contain an IdFilter.";
                 throw new FilterEvaluationException( msg );
             }
-            result = queryByIdFilter( (IdFilter) filter, query.getSortProperties() );
+            result = queryByIdFilter( (IdFilter) filter, query.getSortProperties(), getRequiredProperties( query, null ) );
+            if ( isPaged( query ) ) {
+                LOG.debug( "Applying in-memory paging." );
+                result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
+            }
+        }
+        if ( cacheKey != null ) {
+            result = queryCache.cache( cacheKey, query, result, cacheGeneration );
         }
         return result;
     }
@@ -899,10 +1211,14 @@ public class SQLFeatureStore implements FeatureStore {
         boolean wmsStyleQuery = false;
         Envelope env = queries[0].getPrefilterBBoxEnvelope();
         if ( getSchema().getBlobMapping() != null && queries[0].getFilter() == null
-             && queries[0].getSortProperties().length == 0 ) {
+             && queries[0].getSortProperties().length == 0 && queries[0].getStartIndex() == 0 ) {
             wmsStyleQuery = true;
             for ( int i = 1; i < queries.length; i++ ) {
                 Envelope queryBBox = queries[i].getPrefilterBBoxEnvelope();
+                if ( queries[i].getStartIndex() > 0 ) {
+                    wmsStyleQuery = false;
+                    break;
+                }
                 if ( queryBBox != env && queries[i].getFilter() != null && queries[i].getSortProperties() != null ) {
                     wmsStyleQuery = false;
                     break;
@@ -914,6 +1230,20 @@ public class SQLFeatureStore implements FeatureStore {
             return queryMultipleFts( queries, env );
         }
 
+        if ( queryExecutor != null && queries.length > 1 ) {
+            List<Callable<FeatureInputStream>> tasks = new ArrayList<Callable<FeatureInputStream>>( queries.length );
+            for ( final Query query : queries ) {
+                tasks.add( new Callable<FeatureInputStream>() {
+                    @Override
+                    public FeatureInputStream call()
+                                            throws Exception {
+                        return query( query );
+                    }
+                } );
+            }
+            return new ConcurrentFeatureInputStream( queryExecutor, tasks, queryThreads );
+        }
+
         Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
             int i = 0;
 
@@ -945,12 +1275,81 @@ public class SQLFeatureStore implements FeatureStore {
         return new CombinedFeatureInputStream( rsIter );
     }
 
-    private FeatureInputStream queryByIdFilter( IdFilter filter, SortProperty[] sortCrit )
+    private FeatureInputStream queryByIdFilter( IdFilter filter, SortProperty[] sortCrit, Set<QName> requiredProps )
                             throws FeatureStoreException {
         if ( blobMapping != null ) {
             return queryByIdFilterBlob( filter, sortCrit );
         }
-        return queryByIdFilterRelational( filter, sortCrit );
+        return queryByIdFilterRelational( filter, sortCrit, requiredProps );
+    }
+
+    /**
+     * Determines the properties that have to be built for the features returned by the given query.
+     * <p>
+     * Besides the properties requested by the query, this includes the properties that are referenced by the filter
+     * and the sort criteria (these may have to be evaluated in memory).
+     * </p>
+     * 
+     * @param query
+     *            query, must not be <code>null</code>
+     * @param ft
+     *            queried feature type, can be <code>null</code> (id filter queries)
+     * @return names of the properties to be built, <code>null</code> if all properties have to be built
+     */
+    private Set<QName> getRequiredProperties( Query query, FeatureType ft ) {
+        if ( query.getRequiredProperties() == null ) {
+            return null;
+        }
+        Set<QName> propNames = new HashSet<QName>( query.getRequiredProperties() );
+        List<ValueReference> refs = new ArrayList<ValueReference>();
+        if ( query.getFilter() != null ) {
+            refs.addAll( Arrays.asList( Filters.getPropertyNames( query.getFilter() ) ) );
+        }
+        for ( SortProperty sortProp : query.getSortProperties() ) {
+            refs.add( sortProp.getSortProperty() );
+        }
+        for ( ValueReference ref : refs ) {
+            QName propName = ref.getAsQName();
+            if ( propName == null ) {
+                LOG.debug( "Building all properties, '" + ref.getAsText() + "' is not a simple property name." );
+                return null;
+            }
+            propNames.add( propName );
+        }
+        if ( ft != null && query.getFilter() instanceof OperatorFilter
+             && hasUnboundSpatialOperator( ( (OperatorFilter) query.getFilter() ).getOperator() ) ) {
+            // spatial operators without property name consider all geometry properties
+            for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+                if ( pt instanceof GeometryPropertyType ) {
+                    propNames.add( pt.getName() );
+                }
+            }
+        }
+        return propNames;
+    }
+
+    private double getResolution( Query query ) {
+        Object resolution = query.getHint( HINT_RESOLUTION );
+        if ( resolution instanceof Number ) {
+            return ( (Number) resolution ).doubleValue();
+        }
+        return -1;
+    }
+
+    private boolean hasUnboundSpatialOperator( Operator operator ) {
+        switch ( operator.getType() ) {
+        case LOGICAL:
+            for ( Operator param : ( (LogicalOperator) operator ).getParams() ) {
+                if ( hasUnboundSpatialOperator( param ) ) {
+                    return true;
+                }
+            }
+            return false;
+        case SPATIAL:
+            return ( (SpatialOperator) operator ).getPropName() == null;
+        default:
+            return false;
+        }
     }
 
     private FeatureInputStream queryByIdFilterBlob( IdFilter filter, SortProperty[] sortCrit )
@@ -987,12 +1386,13 @@ public class SQLFeatureStore implements FeatureStore {
 
         // sort features
         if ( sortCrit.length > 0 ) {
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), sortCrit ) );
+            result = getSortedStream( result, sortCrit );
         }
         return result;
     }
 
-    private FeatureInputStream queryByIdFilterRelational( IdFilter filter, SortProperty[] sortCrit )
+    private FeatureInputStream queryByIdFilterRelational( IdFilter filter, SortProperty[] sortCrit,
+                                                          Set<QName> requiredProps )
                             throws FeatureStoreException {
 
         LinkedHashMap<QName, List<IdAnalysis>> ftNameToIdAnalysis = new LinkedHashMap<QName, List<IdAnalysis>>();
@@ -1032,7 +1432,7 @@ public class SQLFeatureStore implements FeatureStore {
 
             String tableAlias = "X1";
             FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
-                                                                   escalationPolicy );
+                                                                   escalationPolicy, requiredProps, -1, null );
             List<String> columns = builder.getInitialSelectColumns();
             StringBuilder sql = new StringBuilder( "SELECT " );
             sql.append( columns.get( 0 ) );
@@ -1082,7 +1482,7 @@ public class SQLFeatureStore implements FeatureStore {
             begin = System.currentTimeMillis();
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getFeatureIterator( builder, ftMapping, rs, conn, stmt ) );
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by id filter (relational mode): " + e.getMessage();
@@ -1099,11 +1499,16 @@ public class SQLFeatureStore implements FeatureStore {
         return conn;
     }
 
-    private FeatureInputStream queryByOperatorFilterBlob( Query query, QName ftName, OperatorFilter filter )
+    private FeatureInputStream queryByOperatorFilterBlob( Query query, QName ftName, OperatorFilter filter,
+                                                          boolean applyPaging )
                             throws FeatureStoreException {
 
         LOG.debug( "Performing blob query by operator filter" );
 
+        // filter and sort criteria are always evaluated in memory for BLOB queries
+        boolean pushDownPaging = applyPaging && isPaged( query ) && filter == null
+                                 && query.getSortProperties().length == 0;
+
         AbstractWhereBuilder wb = null;
         Connection conn = null;
         FeatureInputStream result = null;
@@ -1193,9 +1598,14 @@ public class SQLFeatureStore implements FeatureStore {
             // sql.append( wb.getOrderBy().getSQL() );
             // }
 
-            LOG.debug( "SQL: {}", sql );
+            String sqlString = sql.toString();
+            if ( pushDownPaging ) {
+                sqlString = getPagedSelect( sql, false, alias + "." + blobMapping.getGMLIdColumn(), query );
+            }
+
+            LOG.debug( "SQL: {}", sqlString );
             long begin = System.currentTimeMillis();
-            stmt = conn.prepareStatement( sql.toString() );
+            stmt = conn.prepareStatement( sqlString );
             LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
             int i = 1;
@@ -1233,26 +1643,32 @@ public class SQLFeatureStore implements FeatureStore {
 
         if ( filter != null ) {
             LOG.debug( "Applying in-memory post-filtering." );
-            result = new FilteredFeatureInputStream( result, filter );
+            result = getFilteredStream( result, filter );
         }
 
         if ( query.getSortProperties().length > 0 ) {
             LOG.debug( "Applying in-memory post-sorting." );
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), query.getSortProperties() ) );
+            result = getSortedStream( result, query.getSortProperties() );
+        }
+        if ( applyPaging && isPaged( query ) && !pushDownPaging ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
         }
         return result;
     }
 
-    private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter )
+    private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter,
+                                                      boolean applyPaging )
                             throws FeatureStoreException {
 
         LOG.debug( "Performing query by operator filter" );
 
         if ( getSchema().getBlobMapping() != null ) {
-            return queryByOperatorFilterBlob( query, ftName, filter );
+            return queryByOperatorFilterBlob( query, ftName, filter, applyPaging );
         }
 
         AbstractWhereBuilder wb = null;
+        boolean pushDownPaging = false;
         Connection conn = null;
         FeatureInputStream result = null;
         PreparedStatement stmt = null;
@@ -1274,7 +1690,10 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
             FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   escalationPolicy );
+                                                                   escalationPolicy,
+                                                                   getRequiredProperties( query, ft ),
+                                                                   getResolution( query ),
+                                                                   query.getPrefilterBBoxEnvelope() );
             List<String> columns = builder.getInitialSelectColumns();
 
             BlobMapping blobMapping = getSchema().getBlobMapping();
@@ -1316,9 +1735,26 @@ public class SQLFeatureStore implements FeatureStore {
                 sql.append( wb.getOrderBy().getSQL() );
             }
 
-            LOG.debug( "SQL: {}", sql );
+            // paging in SQL is only safe if every row corresponds to exactly one result feature
+            String sqlString = sql.toString();
+            pushDownPaging = applyPaging && isPaged( query ) && wb.getPostFilter() == null
+                             && wb.getPostSortCriteria() == null && !hasJoins( wb );
+            if ( pushDownPaging ) {
+                StringBuilder fidColumns = new StringBuilder();
+                for ( Pair<SQLIdentifier, BaseType> fidColumn : ftMapping.getFidMapping().getColumns() ) {
+                    if ( fidColumns.length() > 0 ) {
+                        fidColumns.append( ',' );
+                    }
+                    fidColumns.append( ftTableAlias );
+                    fidColumns.append( '.' );
+                    fidColumns.append( fidColumn.first );
+                }
+                sqlString = getPagedSelect( sql, wb.getOrderBy() != null, fidColumns.toString(), query );
+            }
+
+            LOG.debug( "SQL: {}", sqlString );
             long begin = System.currentTimeMillis();
-            stmt = conn.prepareStatement( sql.toString() );
+            stmt = conn.prepareStatement( sqlString );
             LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
             int i = 1;
@@ -1338,7 +1774,7 @@ public class SQLFeatureStore implements FeatureStore {
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getFeatureIterator( builder, ftMapping, rs, conn, stmt ) );
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by operator filter: " + e.getMessage();
@@ -1348,15 +1784,65 @@ public class SQLFeatureStore implements FeatureStore {
 
         if ( wb.getPostFilter() != null ) {
             LOG.debug( "Applying in-memory post-filtering." );
-            result = new FilteredFeatureInputStream( result, wb.getPostFilter() );
+            result = getFilteredStream( result, wb.getPostFilter() );
         }
         if ( wb.getPostSortCriteria() != null ) {
             LOG.debug( "Applying in-memory post-sorting." );
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), wb.getPostSortCriteria() ) );
+            result = getSortedStream( result, wb.getPostSortCriteria() );
+        }
+        if ( applyPaging && isPaged( query ) && !pushDownPaging ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
         }
         return result;
     }
 
+    private boolean isPaged( Query query ) {
+        return query.getStartIndex() > 0 || query.getMaxFeatures() > 0;
+    }
+
+    private FeatureInputStream getFilteredStream( FeatureInputStream rs, Filter filter ) {
+        return new ParallelFilteredFeatureInputStream( rs, filter, PrefetchManager.getPool( jdbcConnId ),
+                                                       POST_FILTER_BATCH_SIZE, POST_FILTER_MAX_BATCHES );
+    }
+
+    private FeatureInputStream getSortedStream( FeatureInputStream rs, SortProperty[] sortCrit ) {
+        return new SortedFeatureInputStream( rs, sortCrit, new BlobFeatureCodec( this ), SORT_MAX_FEATURES_IN_MEMORY );
+    }
+
+    private boolean hasJoins( AbstractWhereBuilder wb ) {
+        for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
+            if ( !mappedPropName.getJoins().isEmpty() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the paging parameters of the given query to a <code>SELECT</code> statement.
+     * 
+     * @param sql
+     *            complete <code>SELECT</code> statement, must not be <code>null</code>
+     * @param hasOrderBy
+     *            <code>true</code>, if the statement already contains an <code>ORDER BY</code> clause
+     * @param keyColumns
+     *            (qualified) columns that uniquely identify a row, used for ensuring a stable order of the pages if
+     *            the statement is not ordered yet, must not be <code>null</code>
+     * @param query
+     *            query that provides the paging parameters, must not be <code>null</code>
+     * @return paged <code>SELECT</code> statement, never <code>null</code>
+     */
+    private String getPagedSelect( StringBuilder sql, boolean hasOrderBy, String keyColumns, Query query ) {
+        int limit = query.getMaxFeatures() > 0 ? query.getMaxFeatures() : -1;
+        if ( !hasOrderBy && query.getStartIndex() > 0 ) {
+            sql.append( " ORDER BY " );
+            sql.append( keyColumns );
+            hasOrderBy = true;
+        }
+        return dialect.getPagedSelect( sql.toString(), hasOrderBy, query.getStartIndex(), limit );
+    }
+
     private FeatureInputStream queryMultipleFts( Query[] queries, Envelope looseBBox )
                             throws FeatureStoreException {
 
@@ -1462,6 +1948,94 @@ public class SQLFeatureStore implements FeatureStore {
         return dialect;
     }
 
+    private CloseableIterator<Feature> getFeatureIterator( FeatureBuilder builder, FeatureTypeMapping ftMapping,
+                                                          ResultSet rs, Connection conn, Statement stmt ) {
+        if ( ftMapping.getJoinBatchSize() > 0 && builder instanceof FeatureBuilderRelational ) {
+            return new BatchedFeatureResultSetIterator( (FeatureBuilderRelational) builder,
+                                                        ftMapping.getJoinBatchSize(), rs, conn, stmt );
+        }
+        return new FeatureResultSetIterator( builder, rs, conn, stmt );
+    }
+
+    /**
+     * Builds the features in batches, so the rows of joined tables can be fetched for all features of a batch at once.
+     */
+    private class BatchedFeatureResultSetIterator implements CloseableIterator<Feature> {
+
+        private final FeatureBuilderRelational builder;
+
+        private final int batchSize;
+
+        private final ResultSet rs;
+
+        private final Connection conn;
+
+        private final Statement stmt;
+
+        private Iterator<Feature> batch = Collections.<Feature> emptyList().iterator();
+
+        private boolean exhausted;
+
+        BatchedFeatureResultSetIterator( FeatureBuilderRelational builder, int batchSize, ResultSet rs,
+                                         Connection conn, Statement stmt ) {
+            this.builder = builder;
+            this.batchSize = batchSize;
+            this.rs = rs;
+            this.conn = conn;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( !batch.hasNext() && !exhausted ) {
+                try {
+                    List<Feature> features = builder.buildFeatures( rs, batchSize );
+                    exhausted = features.size() < batchSize;
+                    batch = features.iterator();
+                } catch ( SQLException e ) {
+                    close();
+                    throw new RuntimeException( e.getMessage(), e );
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            LOG.debug( "Closing JDBC ResultSet, Statement and Connection" );
+            JDBCUtils.close( rs, stmt, conn, LOG );
+        }
+
+        @Override
+        public List<Feature> getAsListAndClose() {
+            List<Feature> list = new ArrayList<Feature>();
+            getAsCollectionAndClose( list );
+            return list;
+        }
+
+        @Override
+        public Collection<Feature> getAsCollectionAndClose( Collection<Feature> collection ) {
+            while ( hasNext() ) {
+                collection.add( next() );
+            }
+            close();
+            return collection;
+        }
+    }
+
     private class FeatureResultSetIterator extends ResultSetIterator<Feature> {
 
         private final FeatureBuilder builder;
@@ -1488,6 +2062,10 @@ public class SQLFeatureStore implements FeatureStore {
         connProvider = workspace.getResource( ConnectionProviderProvider.class, getConnId() );
         LOG.debug( "init" );
 
+        if ( queryThreads > 1 ) {
+            queryExecutor = Executors.newFixedThreadPool( queryThreads, new QueryThreadFactory( getConnId() ) );
+        }
+
         List<String> resolverClasses = config.getCustomReferenceResolver();
         List<GMLReferenceResolver> resolvers = new ArrayList<GMLReferenceResolver>();
         for ( String resolver : resolverClasses ) {
@@ -1567,4 +2145,22 @@ public class SQLFeatureStore implements FeatureStore {
             escalationPolicy = VoidEscalationPolicyType.NONE;
         }
     }
-}
\ No newline at end of file
+
+    private static class QueryThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNo = new AtomicInteger();
+
+        private final String prefix;
+
+        private QueryThreadFactory( String connId ) {
+            this.prefix = "sqlfeaturestore-" + connId + "-query-";
+        }
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, prefix + threadNo.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -47,6 +47,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +71,7 @@ import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.BBoxTracker;
 import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
@@ -121,6 +123,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
     private static final Logger LOG = LoggerFactory.getLogger( SQLFeatureStoreTransaction.class );
 
+    // number of features per insert in bulk mode (BLOB mapping)
+    private static final int BULK_INSERT_CHUNK_SIZE = 1000;
+
     private final SQLFeatureStore fs;
 
     private final MappedAppSchema schema;
@@ -173,6 +178,10 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         LOG.debug( "Committing transaction." );
         try {
             conn.commit();
+            // invalidate first, a failing bbox cache update must not leave stale query results
+            if ( fs.getQueryCache() != null ) {
+                fs.getQueryCache().invalidate( bboxTracker );
+            }
             updateBBoxCache();
         } catch ( Throwable t ) {
             LOG.debug( t.getMessage(), t );
@@ -643,25 +652,11 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             } else {
                 // pure relational mode
                 List<FeatureRow> idAssignments = new ArrayList<FeatureRow>();
-                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode );
+                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode, fs.getInsertBatchSize() );
                 for ( Feature feature : features ) {
-                    FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
-                    if ( ftMapping == null ) {
-                        throw new FeatureStoreException( "Cannot insert feature of type '" + feature.getName()
-                                                         + "'. No mapping defined and BLOB mode is off." );
-                    }
-                    idAssignments.add( insertManager.insertFeature( feature, ftMapping ) );
-                    Pair<TableName, GeometryMapping> mapping = ftMapping.getDefaultGeometryMapping();
-                    if ( mapping != null ) {
-                        ICRS storageSrs = mapping.second.getCRS();
-                        bboxTracker.insert( feature, storageSrs );
-                    }
-                }
-                if ( insertManager.getDelayedRows() != 0 ) {
-                    String msg = "After insertion, " + insertManager.getDelayedRows()
-                                 + " delayed rows left uninserted. Probably a cyclic key constraint blocks insertion.";
-                    throw new RuntimeException( msg );
+                    idAssignments.add( insertFeatureRelational( insertManager, feature ) );
                 }
+                finishInsert( insertManager );
                 // TODO why is this necessary?
                 fids.clear();
                 for ( FeatureRow assignment : idAssignments ) {
@@ -680,6 +675,114 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         return new ArrayList<String>( fids );
     }
 
+    /**
+     * Inserts the features from the given stream in bulk, e.g. for loading large datasets.
+     * <p>
+     * In contrast to {@link #performInsert(FeatureCollection, IDGenMode)}, the features are processed one after
+     * another, so the stream never has to be held in memory completely and no list of the new feature ids is built.
+     * For PostgreSQL/PostGIS, the table rows are transferred using binary <code>COPY</code> (geometries as EWKB). For
+     * other databases, JDBC batches are used. Rows are always batched, regardless of the configured insert batch size
+     * (see {@link InsertRowManager#createBulkInsertManager(SQLFeatureStore, Connection, IDGenMode)}).
+     * </p>
+     * 
+     * @param features
+     *            features to be inserted, must not be <code>null</code> (is not closed by this method)
+     * @param mode
+     *            mode for deriving the ids of the inserted objects, must not be <code>null</code>
+     * @return number of inserted features (not counting features that are nested inside other features)
+     * @throws FeatureStoreException
+     *             if the insertion fails
+     */
+    public int performBulkInsert( FeatureInputStream features, IDGenMode mode )
+                            throws FeatureStoreException {
+
+        LOG.debug( "performBulkInsert()" );
+        long begin = System.currentTimeMillis();
+        int count = 0;
+
+        if ( blobMapping != null ) {
+            List<Feature> chunk = new ArrayList<Feature>( BULK_INSERT_CHUNK_SIZE );
+            for ( Feature feature : features ) {
+                chunk.add( feature );
+                if ( chunk.size() == BULK_INSERT_CHUNK_SIZE ) {
+                    performInsert( new GenericFeatureCollection( null, chunk ), mode );
+                    count += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if ( !chunk.isEmpty() ) {
+                performInsert( new GenericFeatureCollection( null, chunk ), mode );
+                count += chunk.size();
+            }
+        } else {
+            InsertRowManager insertManager = InsertRowManager.createBulkInsertManager( fs, conn, mode );
+            try {
+                for ( Feature member : features ) {
+                    Set<Feature> memberFeatures = new LinkedHashSet<Feature>();
+                    findFeaturesAndGeometries( member, new HashSet<Geometry>(), memberFeatures, new HashSet<String>(),
+                                               new HashSet<String>() );
+                    // nested features may be shared by several members, the insert manager knows the inserted ones
+                    Iterator<Feature> iter = memberFeatures.iterator();
+                    while ( iter.hasNext() ) {
+                        if ( insertManager.isInserted( iter.next().getId() ) ) {
+                            iter.remove();
+                        }
+                    }
+                    for ( FeatureInspector inspector : inspectors ) {
+                        for ( Feature f : memberFeatures ) {
+                            // TODO cope with inspectors that return a different instance
+                            inspector.inspect( f );
+                        }
+                    }
+                    for ( Feature feature : memberFeatures ) {
+                        insertFeatureRelational( insertManager, feature );
+                    }
+                    if ( ++count % 10000 == 0 ) {
+                        LOG.debug( "Bulk insert: processed " + count + " features" );
+                    }
+                }
+                finishInsert( insertManager );
+            } catch ( Throwable t ) {
+                String msg = "Error inserting feature: " + t.getMessage();
+                LOG.error( msg );
+                LOG.trace( "Stack trace:", t );
+                throw new FeatureStoreException( msg, t );
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - begin;
+        LOG.debug( "Bulk insertion of " + count + " features: " + elapsed + " [ms]" );
+        return count;
+    }
+
+    private FeatureRow insertFeatureRelational( InsertRowManager insertManager, Feature feature )
+                            throws SQLException, FeatureStoreException, FilterEvaluationException {
+        FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
+        if ( ftMapping == null ) {
+            throw new FeatureStoreException( "Cannot insert feature of type '" + feature.getName()
+                                             + "'. No mapping defined and BLOB mode is off." );
+        }
+        FeatureRow featureRow = insertManager.insertFeature( feature, ftMapping );
+        Pair<TableName, GeometryMapping> mapping = ftMapping.getDefaultGeometryMapping();
+        if ( mapping != null ) {
+            ICRS storageSrs = mapping.second.getCRS();
+            bboxTracker.insert( feature, storageSrs );
+        } else {
+            bboxTracker.insert( feature.getName() );
+        }
+        return featureRow;
+    }
+
+    private void finishInsert( InsertRowManager insertManager )
+                            throws SQLException {
+        insertManager.flush();
+        if ( insertManager.getDelayedRows() != 0 ) {
+            String msg = "After insertion, " + insertManager.getDelayedRows()
+                         + " delayed rows left uninserted. Probably a cyclic key constraint blocks insertion.";
+            throw new RuntimeException( msg );
+        }
+    }
+
     private String generateNewId() {
         return UUID.randomUUID().toString();
     }
@@ -0,0 +1,107 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.FeatureStoreGMLIdResolver;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
+import org.deegree.feature.stream.FeatureCodec;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.gml.GMLVersion;
+
+/**
+ * {@link FeatureCodec} that uses a {@link BlobCodec} for (temporarily) storing features of an {@link SQLFeatureStore},
+ * e.g. when sorting large query results on disk.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BlobFeatureCodec implements FeatureCodec {
+
+    private final BlobCodec codec;
+
+    private final SQLFeatureStore fs;
+
+    /**
+     * Creates a new {@link BlobFeatureCodec} instance.
+     * 
+     * @param fs
+     *            feature store that the features belong to, must not be <code>null</code>
+     */
+    public BlobFeatureCodec( SQLFeatureStore fs ) {
+        this.fs = fs;
+        this.codec = new BlobCodec( getGMLVersion( fs.getSchema() ), Compression.NONE );
+    }
+
+    private static GMLVersion getGMLVersion( AppSchema schema ) {
+        if ( schema.getGMLSchema() != null && schema.getGMLSchema().getVersion() != null ) {
+            return schema.getGMLSchema().getVersion();
+        }
+        return GMLVersion.GML_32;
+    }
+
+    @Override
+    public void encode( Feature feature, OutputStream os )
+                            throws IOException {
+        try {
+            codec.encode( feature, fs.getNamespaceContext(), os, null );
+        } catch ( IOException e ) {
+            throw e;
+        } catch ( Exception e ) {
+            throw new IOException( "Error encoding feature '" + feature.getId() + "': " + e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public Feature decode( InputStream is )
+                            throws IOException {
+        try {
+            return (Feature) codec.decode( is, fs.getNamespaceContext(), fs.getSchema(), null,
+                                           new FeatureStoreGMLIdResolver( fs ) );
+        } catch ( IOException e ) {
+            throw e;
+        } catch ( Exception e ) {
+            throw new IOException( "Error decoding feature: " + e.getMessage(), e );
+        }
+    }
+}
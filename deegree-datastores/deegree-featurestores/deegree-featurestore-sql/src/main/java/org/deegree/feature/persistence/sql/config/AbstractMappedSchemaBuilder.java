@@ -52,6 +52,7 @@ import java.util.List;
 import java.util.Map;
 
 import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
 
 import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.CommonTokenStream;
@@ -63,9 +64,12 @@ import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.mapping.antlr.FMLLexer;
 import org.deegree.feature.persistence.mapping.antlr.FMLParser;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.HitsMode;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
 import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
 import org.deegree.feature.persistence.sql.id.IDGenerator;
 import org.deegree.feature.persistence.sql.id.SequenceIDGenerator;
 import org.deegree.feature.persistence.sql.id.UUIDGenerator;
@@ -73,6 +77,7 @@ import org.deegree.feature.persistence.sql.jaxb.AbstractIDGeneratorType;
 import org.deegree.feature.persistence.sql.jaxb.AutoIdGenerator;
 import org.deegree.feature.persistence.sql.jaxb.FeatureTypeMappingJAXB;
 import org.deegree.feature.persistence.sql.jaxb.Join.AutoKeyColumn;
+import org.deegree.feature.persistence.sql.rules.Mapping;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.BLOBMapping;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.NamespaceHint;
@@ -96,6 +101,8 @@ public abstract class AbstractMappedSchemaBuilder {
 
     private static Logger LOG = LoggerFactory.getLogger( AbstractMappedSchemaBuilder.class );
 
+    private static final int DEFAULT_HITS_LIMIT = 10000;
+
     public static MappedAppSchema build( String configURL, SQLFeatureStoreJAXB config, SQLDialect dialect,
                                          Workspace workspace )
                             throws SQLException, FeatureStoreException {
@@ -130,12 +137,24 @@ public abstract class AbstractMappedSchemaBuilder {
 
     protected abstract MappedAppSchema getMappedSchema();
 
+    protected FeatureTypeMapping buildFtMapping( QName ftName, TableName table, FIDMapping fidMapping,
+                                                 List<Mapping> particleMappings, FeatureTypeMappingJAXB ftDecl ) {
+        int joinBatchSize = ftDecl.getJoinBatchSize() != null ? ftDecl.getJoinBatchSize().intValue() : 0;
+        HitsMode hitsMode = HitsMode.EXACT;
+        if ( ftDecl.getHits() != null ) {
+            hitsMode = HitsMode.valueOf( ftDecl.getHits().name() );
+        }
+        int hitsLimit = ftDecl.getHitsLimit() != null ? ftDecl.getHitsLimit().intValue() : DEFAULT_HITS_LIMIT;
+        return new FeatureTypeMapping( ftName, table, fidMapping, particleMappings, joinBatchSize, hitsMode, hitsLimit );
+    }
+
     protected IDGenerator buildGenerator( JAXBElement<? extends AbstractIDGeneratorType> jaxbElement ) {
         if ( jaxbElement == null || jaxbElement.getValue() == null || jaxbElement.getValue() instanceof AutoIdGenerator ) {
             return new AutoIDGenerator();
         } else if ( jaxbElement.getValue() instanceof org.deegree.feature.persistence.sql.jaxb.SequenceIDGenerator ) {
-            String sequence = ( (org.deegree.feature.persistence.sql.jaxb.SequenceIDGenerator) jaxbElement.getValue() ).getSequence();
-            return new SequenceIDGenerator( sequence );
+            org.deegree.feature.persistence.sql.jaxb.SequenceIDGenerator seqConfig = (org.deegree.feature.persistence.sql.jaxb.SequenceIDGenerator) jaxbElement.getValue();
+            int allocationSize = seqConfig.getAllocationSize() != null ? seqConfig.getAllocationSize().intValue() : 1;
+            return new SequenceIDGenerator( seqConfig.getSequence(), allocationSize );
         } else if ( jaxbElement.getValue() instanceof org.deegree.feature.persistence.sql.jaxb.UUIDGenerator ) {
             return new UUIDGenerator();
         }
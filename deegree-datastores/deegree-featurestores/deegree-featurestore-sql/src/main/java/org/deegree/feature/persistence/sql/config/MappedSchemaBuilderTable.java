@@ -199,13 +199,13 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
 
         List<JAXBElement<? extends AbstractParticleJAXB>> propDecls = ftDecl.getAbstractParticle();
         if ( propDecls != null && !propDecls.isEmpty() ) {
-            process( table, ftName, fidMapping, propDecls );
+            process( table, ftName, fidMapping, propDecls, ftDecl );
         } else {
-            process( table, ftName, fidMapping );
+            process( table, ftName, fidMapping, ftDecl );
         }
     }
 
-    private void process( TableName table, QName ftName, FIDMapping fidMapping )
+    private void process( TableName table, QName ftName, FIDMapping fidMapping, FeatureTypeMappingJAXB ftDecl )
                             throws SQLException {
 
         LOG.debug( "Deriving properties and mapping for feature type '" + ftName + "' from table '" + table + "'" );
@@ -254,12 +254,12 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
         FeatureType ft = new GenericFeatureType( ftName, pts, false );
         ftNameToFt.put( ftName, ft );
 
-        FeatureTypeMapping ftMapping = new FeatureTypeMapping( ftName, table, fidMapping, mappings );
+        FeatureTypeMapping ftMapping = buildFtMapping( ftName, table, fidMapping, mappings, ftDecl );
         ftNameToMapping.put( ftName, ftMapping );
     }
 
     private void process( TableName table, QName ftName, FIDMapping fidMapping,
-                          List<JAXBElement<? extends AbstractParticleJAXB>> propDecls )
+                          List<JAXBElement<? extends AbstractParticleJAXB>> propDecls, FeatureTypeMappingJAXB ftDecl )
                             throws FeatureStoreException, SQLException {
 
         List<PropertyType> pts = new ArrayList<PropertyType>();
@@ -275,7 +275,7 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
         FeatureType ft = new GenericFeatureType( ftName, pts, false );
         ftNameToFt.put( ftName, ft );
 
-        FeatureTypeMapping ftMapping = new FeatureTypeMapping( ftName, table, fidMapping, mappings );
+        FeatureTypeMapping ftMapping = buildFtMapping( ftName, table, fidMapping, mappings, ftDecl );
         ftNameToMapping.put( ftName, ftMapping );
     }
 
@@ -35,8 +35,23 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql.id;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.deegree.commons.utils.JDBCUtils;
+import org.deegree.sqldialect.SQLDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * {@link IDGenerator} that uses database sequences to generate new ids.
+ * <p>
+ * If an allocation size greater than one is configured, values are fetched from the sequence in blocks (with a single
+ * <code>SELECT</code>) and handed out from memory. Values of a block that are not used before the generator is
+ * discarded are lost, i.e. they leave gaps in the sequence of ids.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author: markus $
@@ -45,13 +60,102 @@ package org.deegree.feature.persistence.sql.id;
  */
 public class SequenceIDGenerator implements IDGenerator {
 
+    private static final Logger LOG = LoggerFactory.getLogger( SequenceIDGenerator.class );
+
     private final String sequence;
 
+    private final int allocationSize;
+
+    private int[] block = new int[0];
+
+    private int blockIdx;
+
+    /**
+     * Creates a new {@link SequenceIDGenerator} that fetches every value individually.
+     * 
+     * @param sequence
+     *            name of the database sequence, must not be <code>null</code>
+     */
     public SequenceIDGenerator( String sequence ) {
+        this( sequence, 1 );
+    }
+
+    /**
+     * Creates a new {@link SequenceIDGenerator} instance.
+     * 
+     * @param sequence
+     *            name of the database sequence, must not be <code>null</code>
+     * @param allocationSize
+     *            number of values to fetch from the sequence at once, must be positive
+     */
+    public SequenceIDGenerator( String sequence, int allocationSize ) {
         this.sequence = sequence;
+        this.allocationSize = allocationSize;
     }
 
     public String getSequence() {
         return sequence;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the number of values that are fetched from the sequence at once.
+     * 
+     * @return number of values fetched at once, at least <code>1</code>
+     */
+    public int getAllocationSize() {
+        return allocationSize;
+    }
+
+    /**
+     * Returns the next value, fetching a new block of values from the database sequence if necessary.
+     * 
+     * @param conn
+     *            connection to use for fetching values, must not be <code>null</code>
+     * @param dialect
+     *            SQL dialect of the database, must not be <code>null</code>
+     * @return next sequence value
+     * @throws SQLException
+     *             if fetching values from the sequence failed
+     */
+    public synchronized int getNextValue( Connection conn, SQLDialect dialect )
+                            throws SQLException {
+        if ( blockIdx == block.length ) {
+            block = fetchBlock( conn, dialect );
+            blockIdx = 0;
+        }
+        return block[blockIdx++];
+    }
+
+    private int[] fetchBlock( Connection conn, SQLDialect dialect )
+                            throws SQLException {
+        String sql = null;
+        if ( allocationSize > 1 ) {
+            sql = dialect.getSelectSequenceNextVals( sequence, allocationSize );
+        } else {
+            sql = dialect.getSelectSequenceNextVal( sequence );
+        }
+        int[] values = new int[allocationSize];
+        int numValues = 0;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            LOG.debug( "Determining feature ID(s) from db sequence: " + sql );
+            rs = stmt.executeQuery( sql );
+            while ( rs.next() && numValues < values.length ) {
+                values[numValues++] = rs.getInt( 1 );
+            }
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+        if ( numValues == 0 ) {
+            throw new SQLException( "No value returned for: " + sql );
+        }
+        if ( numValues < values.length ) {
+            int[] fetched = new int[numValues];
+            System.arraycopy( values, 0, fetched, 0, numValues );
+            return fetched;
+        }
+        return values;
+    }
+}
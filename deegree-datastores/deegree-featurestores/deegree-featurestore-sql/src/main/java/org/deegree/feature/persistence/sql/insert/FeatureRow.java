@@ -35,8 +35,6 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql.insert;
 
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,10 +104,8 @@ public class FeatureRow extends InsertRow {
     }
 
     @Override
-    void performInsert( Connection conn, boolean propagateAutoGenColumns )
-                            throws SQLException, FeatureStoreException {
-
-        super.performInsert( conn, propagateAutoGenColumns );
+    protected void afterInsert()
+                            throws FeatureStoreException {
 
         newId = buildNewFid();
         if ( newId == null ) {
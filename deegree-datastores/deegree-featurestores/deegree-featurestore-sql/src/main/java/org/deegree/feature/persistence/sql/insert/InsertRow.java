@@ -39,7 +39,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -47,16 +46,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 import org.deegree.commons.jdbc.SQLIdentifier;
 import org.deegree.commons.jdbc.TransactionRow;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
 import org.deegree.commons.tom.sql.ParticleConversion;
-import org.deegree.commons.utils.JDBCUtils;
+import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
 import org.deegree.feature.persistence.sql.id.IDGenerator;
 import org.deegree.feature.persistence.sql.id.SequenceIDGenerator;
 import org.deegree.feature.persistence.sql.id.UUIDGenerator;
+import org.deegree.geometry.Geometry;
+import org.deegree.sqldialect.postgis.PostGISCopyWriter;
+import org.deegree.sqldialect.postgis.PostGISGeometryConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,6 +77,8 @@ public abstract class InsertRow extends TransactionRow {
 
     private static Logger LOG = LoggerFactory.getLogger( InsertRow.class );
 
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile( "-?\\d+(\\.\\d+)?" );
+
     protected final InsertRowManager mgr;
 
     // parent rows
@@ -96,7 +103,7 @@ public abstract class InsertRow extends TransactionRow {
             for ( SQLIdentifier autoKeyColumn : keyColumnToGenerator.keySet() ) {
                 IDGenerator idGenerator = keyColumnToGenerator.get( autoKeyColumn );
                 if ( idGenerator instanceof SequenceIDGenerator ) {
-                    int seqVal = getSequenceNextVal( ( (SequenceIDGenerator) idGenerator ).getSequence() );
+                    int seqVal = getSequenceNextVal( (SequenceIDGenerator) idGenerator );
                     LOG.debug( "Got key value for column '" + autoKeyColumn.getName() + "' from sequence: " + seqVal );
                     addPreparedArgument( autoKeyColumn, seqVal );
                 } else if ( idGenerator instanceof UUIDGenerator ) {
@@ -112,26 +119,13 @@ public abstract class InsertRow extends TransactionRow {
         }
     }
 
-    private int getSequenceNextVal( String sequenceName )
+    private int getSequenceNextVal( SequenceIDGenerator generator )
                             throws FeatureStoreException {
-        String sql = mgr.getDialect().getSelectSequenceNextVal( sequenceName );
-        Statement stmt = null;
-        ResultSet rs = null;
         try {
-            stmt = mgr.getConnection().createStatement();
-            LOG.debug( "Determing feature ID from db sequence: " + sql );
-            rs = stmt.executeQuery( sql );
-            if ( rs.next() ) {
-                return rs.getInt( 1 );
-            } else {
-                String msg = "Error determining ID from db sequence. No value returned for: " + sql;
-                throw new FeatureStoreException( msg );
-            }
+            return generator.getNextValue( mgr.getConnection(), mgr.getDialect() );
         } catch ( SQLException e ) {
-            String msg = "Error determining ID from db sequence. No value returned for: " + sql;
+            String msg = "Error determining ID from db sequence '" + generator.getSequence() + "': " + e.getMessage();
             throw new FeatureStoreException( msg, e );
-        } finally {
-            JDBCUtils.close( rs, stmt, null, LOG );
         }
     }
 
@@ -212,22 +206,7 @@ public abstract class InsertRow extends TransactionRow {
             }
             stmt = conn.prepareStatement( sql, cols );
         }
-        int columnId = 1;
-        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
-            if ( entry.getValue() != null ) {
-                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
-                           + entry.getValue().getClass() + ")" );
-                if ( entry.getValue() instanceof ParticleConversion<?> ) {
-                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-                    conversion.setParticle( stmt, columnId++ );
-                } else {
-                    stmt.setObject( columnId++, entry.getValue() );
-                }
-            } else {
-                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
-                stmt.setObject( columnId++, null );
-            }
-        }
+        setArguments( stmt );
         stmt.execute();
 
         if ( !autoGenColumns.isEmpty() ) {
@@ -251,6 +230,148 @@ public abstract class InsertRow extends TransactionRow {
             }
         }
         stmt.close();
+        afterInsert();
+    }
+
+    /**
+     * Returns whether this {@link InsertRow} can be inserted as part of a JDBC batch, i.e. whether the values of all
+     * auto-generated columns that need to be retrieved are already known before the insert.
+     * 
+     * @param propagateNonFidAutoGenColumns
+     *            <code>true</code>, if auto generated key columns need to be processed (and propagated),
+     *            <code>false</code> otherwise
+     * @return <code>true</code>, if the row can be inserted as part of a batch, <code>false</code> otherwise
+     */
+    boolean isBatchable( boolean propagateNonFidAutoGenColumns ) {
+        for ( SQLIdentifier autoGenColumn : getAutogenColumns( propagateNonFidAutoGenColumns ) ) {
+            if ( get( autoGenColumn ) == null ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the insertion of this row to the batch of the given statement (which must have been prepared for the SQL
+     * returned by {@link #getSql()}).
+     * <p>
+     * The row is not actually inserted before the batch is executed, but it is treated as inserted from now on.
+     * </p>
+     * 
+     * @param stmt
+     *            statement to add the insert to, must not be <code>null</code>
+     * @throws SQLException
+     * @throws FeatureStoreException
+     */
+    void addToBatch( PreparedStatement stmt )
+                            throws SQLException, FeatureStoreException {
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Adding row to batch: " + this );
+        }
+        setArguments( stmt );
+        stmt.addBatch();
+        afterInsert();
+    }
+
+    /**
+     * Returns the values of this row for a binary <code>COPY</code> (PostgreSQL/PostGIS only).
+     * <p>
+     * Geometries are encoded as EWKB and primitive values are converted to their SQL representation. If a column is
+     * set using an SQL snippet that cannot be expressed as a plain value, <code>null</code> is returned (and the row
+     * has to be inserted using an INSERT statement).
+     * </p>
+     * 
+     * @return values (in the order of {@link #getColumns()}), or <code>null</code> if the row cannot be copied
+     * @throws SQLException
+     *             if a geometry cannot be transformed to the storage CRS
+     */
+    Object[] getCopyValues()
+                            throws SQLException {
+        Object[] values = new Object[columnToLiteral.size()];
+        int i = 0;
+        for ( Entry<SQLIdentifier, String> entry : columnToLiteral.entrySet() ) {
+            String literal = entry.getValue();
+            Object value = columnToObject.get( entry.getKey() );
+            if ( value instanceof ParticleConversion<?> ) {
+                ParticleConversion<?> conversion = (ParticleConversion<?>) value;
+                ParticleConverter<?> converter = conversion.getConverter();
+                if ( converter instanceof PostGISGeometryConverter ) {
+                    Geometry geom = (Geometry) conversion.getParticle();
+                    values[i++] = ( (PostGISGeometryConverter) converter ).toEWKB( geom );
+                } else if ( converter instanceof DefaultPrimitiveConverter && "?".equals( literal ) ) {
+                    PrimitiveValue primitive = (PrimitiveValue) conversion.getParticle();
+                    Object sqlValue = null;
+                    if ( primitive != null && primitive.getValue() != null ) {
+                        sqlValue = ( (DefaultPrimitiveConverter) converter ).toSqlValue( primitive.getValue() );
+                    }
+                    values[i++] = sqlValue;
+                } else {
+                    return null;
+                }
+            } else if ( "?".equals( literal ) ) {
+                values[i++] = value;
+            } else if ( NUMERIC_LITERAL.matcher( literal ).matches() ) {
+                // e.g. index of a numbered order column
+                values[i++] = literal;
+            } else {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds this row to the given {@link PostGISCopyWriter} (which must have been created for the table and columns of
+     * this row).
+     * <p>
+     * The row is not actually inserted before the COPY is executed, but it is treated as inserted from now on.
+     * </p>
+     * 
+     * @param writer
+     *            writer to add the row to, must not be <code>null</code>
+     * @param values
+     *            values of the row, as returned by {@link #getCopyValues()}, must not be <code>null</code>
+     * @throws IllegalArgumentException
+     *             if a value cannot be encoded (row has not been added in this case)
+     * @throws FeatureStoreException
+     */
+    void addToCopy( PostGISCopyWriter writer, Object[] values )
+                            throws FeatureStoreException {
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Adding row to COPY: " + this );
+        }
+        writer.addRow( values );
+        afterInsert();
+    }
+
+    /**
+     * Invoked after the row has been inserted (or has been added to a batch).
+     * 
+     * @throws FeatureStoreException
+     */
+    protected void afterInsert()
+                            throws FeatureStoreException {
+        // nothing to do by default
+    }
+
+    private void setArguments( PreparedStatement stmt )
+                            throws SQLException {
+        int columnId = 1;
+        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
+            if ( entry.getValue() != null ) {
+                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
+                           + entry.getValue().getClass() + ")" );
+                if ( entry.getValue() instanceof ParticleConversion<?> ) {
+                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+                    conversion.setParticle( stmt, columnId++ );
+                } else {
+                    stmt.setObject( columnId++, entry.getValue() );
+                }
+            } else {
+                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
+                stmt.setObject( columnId++, null );
+            }
+        }
     }
 
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
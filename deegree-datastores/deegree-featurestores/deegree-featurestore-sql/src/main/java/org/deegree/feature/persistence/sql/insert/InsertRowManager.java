@@ -36,6 +36,7 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -55,6 +56,7 @@ import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -81,6 +83,8 @@ import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
+import org.deegree.sqldialect.postgis.PostGISCopyWriter;
+import org.deegree.sqldialect.postgis.PostGISDialect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,6 +97,7 @@ import org.slf4j.LoggerFactory;
  * <li>Usability for complex structures/mappings</li>
  * <li>Coping with unresolved feature references (forward/backward xlinks)</li>
  * <li>Auto-generated feature ids/key columns</li>
+ * <li>Batching of INSERTs for rows whose key values are known in advance (JDBC batches or PostgreSQL binary COPY)</li>
  * </ul>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -114,9 +119,12 @@ public class InsertRowManager {
 
     private final TableDependencies tableDeps;
 
-    // key: original feature id (from Feature or FeatureReference), value: feature row
+    // key: original feature id (from Feature or FeatureReference), value: feature row that has not been inserted yet
     private final Map<String, FeatureRow> origFidToFeatureRow = new HashMap<String, FeatureRow>();
 
+    // key: original feature id, value: new id and key values of the inserted feature row (the row itself is dropped)
+    private final Map<String, InsertedFeature> origFidToInsertedFeature = new HashMap<String, InsertedFeature>();
+
     // key: insert row, value: dependent rows (never null)
     private final Map<InsertRow, List<InsertRow>> rowToChildRows = new HashMap<InsertRow, List<InsertRow>>();
 
@@ -126,6 +134,30 @@ public class InsertRowManager {
     // values: rows that have not been inserted yet, but can be inserted (no parents)
     private final Set<InsertRow> rootRows = new HashSet<InsertRow>();
 
+    // maximum number of open batch statements (one per distinct INSERT statement)
+    static final int MAX_BATCHES = 100;
+
+    // maximum number of rows per JDBC batch, 0 means no batching
+    private final int batchSize;
+
+    // pending JDBC batches in execution order (rows of a batch only depend on rows of preceding batches)
+    private final List<InsertBatch> batches = new ArrayList<InsertBatch>();
+
+    // key: row that depends on rows in pending batches, value: minimum index of the batch it may be added to
+    private final Map<InsertRow, Integer> rowToMinBatchIdx = new HashMap<InsertRow, Integer>();
+
+    // maximum number of rows per COPY/JDBC batch when bulk loading (independent of the configured insert batch size)
+    static final int BULK_BATCH_SIZE = 10000;
+
+    // maximum number of bytes that are buffered for a single COPY
+    private static final int MAX_COPY_BUFFER_SIZE = 16 * 1024 * 1024;
+
+    // use binary COPY instead of INSERT batches (PostgreSQL/PostGIS only)
+    private final boolean useCopy;
+
+    // key: COPY table/column key, value: PostgreSQL column types (null, if COPY is not possible)
+    private final Map<String, String[]> copyKeyToTypes = new HashMap<String, String[]>();
+
     /**
      * Creates a new {@link InsertRowManager} instance.
      * 
@@ -137,11 +169,79 @@ public class InsertRowManager {
      *            feature id generation mode, must not be <code>null</code>
      */
     public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode ) {
+        this( fs, conn, idGenMode, 0 );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance that uses JDBC batches for inserting rows.
+     * <p>
+     * Rows are added to batches if their key values are known before the insert (i.e. no auto-generated keys need to be
+     * retrieved). {@link #flush()} must be invoked after the last feature has been inserted.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows per JDBC batch, <code>0</code> disables batching
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize ) {
+        this( fs, conn, idGenMode, batchSize, false );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance that uses JDBC batches or PostgreSQL binary <code>COPY</code>
+     * for inserting rows.
+     * <p>
+     * If <code>useCopy</code> is <code>true</code>, rows are transferred using
+     * <code>COPY ... FROM STDIN (FORMAT binary)</code> (PostgreSQL/PostGIS only). Rows that cannot be copied (e.g.
+     * because of unsupported column types) are inserted using JDBC batches. {@link #flush()} must be invoked after the
+     * last feature has been inserted.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows per batch, <code>0</code> disables batching (and COPY)
+     * @param useCopy
+     *            <code>true</code>, if rows should be transferred using binary COPY, <code>false</code> otherwise
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize, boolean useCopy ) {
         this.fs = fs;
         this.dialect = fs.getDialect();
         this.conn = conn;
         this.idGenMode = idGenMode;
         this.tableDeps = fs.getSchema().getKeyDependencies();
+        this.batchSize = batchSize;
+        this.useCopy = useCopy;
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance for bulk loading.
+     * <p>
+     * In contrast to the insert batch size of the feature store (which is opt-in), rows are always batched using a
+     * fixed maximum batch size. For PostgreSQL/PostGIS, the rows are transferred using binary <code>COPY</code>.
+     * {@link #flush()} must be invoked after the last feature has been inserted.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @return new instance, never <code>null</code>
+     */
+    public static InsertRowManager createBulkInsertManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode ) {
+        boolean useCopy = fs.getDialect() instanceof PostGISDialect;
+        return new InsertRowManager( fs, conn, idGenMode, BULK_BATCH_SIZE, useCopy );
     }
 
     /**
@@ -175,11 +275,7 @@ public class InsertRowManager {
 
             LOG.debug( "Built rows for feature '" + feature.getId() + "': " + allRows.size() );
 
-            for ( InsertRow insertRow : allRows ) {
-                if ( !insertRow.hasParents() ) {
-                    rootRows.add( insertRow );
-                }
-            }
+            addRootRows( allRows );
 
             LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
             processHeap();
@@ -205,6 +301,11 @@ public class InsertRowManager {
                     // don't
                 }
 
+                @Override
+                boolean isBatchable( boolean propagateNonFidAutoGenColumns ) {
+                    return false;
+                }
+
                 @Override
                 public Object get( SQLIdentifier id ) {
                     int idx = 0;
@@ -227,11 +328,7 @@ public class InsertRowManager {
 
             LOG.debug( "Built rows for feature '" + feature.getId() + "': " + allRows.size() );
 
-            for ( InsertRow insertRow : allRows ) {
-                if ( !insertRow.hasParents() ) {
-                    rootRows.add( insertRow );
-                }
-            }
+            addRootRows( allRows );
 
             LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
             processHeap();
@@ -344,10 +441,15 @@ public class InsertRowManager {
                 }
             } else if ( mapping instanceof FeatureMapping ) {
                 FeatureRow subFeatureRow = null;
+                InsertedFeature insertedSubFeature = null;
                 String href = null;
                 Feature feature = (Feature) getPropValue( value );
+                if ( feature != null && feature.getId() != null ) {
+                    insertedSubFeature = origFidToInsertedFeature.get( feature.getId() );
+                }
                 if ( feature instanceof FeatureReference ) {
-                    if ( ( (FeatureReference) feature ).isLocal() || ( (FeatureReference) feature ).isResolved() ) {
+                    FeatureReference ref = (FeatureReference) feature;
+                    if ( insertedSubFeature == null && ( ref.isLocal() || ref.isResolved() ) ) {
                         subFeatureRow = lookupFeatureRow( feature.getId() );
                     }
                     // always use the uri if href is mapped explicitly
@@ -359,16 +461,25 @@ public class InsertRowManager {
                         String column = ( (DBField) me ).getColumn();
                         row.addPreparedArgument( column, href );
                     }
-                } else if ( feature != null ) {
+                } else if ( feature != null && insertedSubFeature == null ) {
                     subFeatureRow = lookupFeatureRow( feature );
                 }
 
-                if ( subFeatureRow != null ) {
+                if ( subFeatureRow != null || insertedSubFeature != null ) {
 
                     // TODO: pure href propagation (no fk)
 
                     if ( jc == null || jc.isEmpty() ) {
                         LOG.debug( "Skipping feature mapping (fk). Not mapped to database column." );
+                    } else if ( insertedSubFeature != null ) {
+                        // sub feature has been inserted before, propagate key values right away
+                        TableJoin join = jc.get( 0 );
+                        KeyPropagation keyPropagation = getKeyPropagation( (FeatureMapping) mapping, join );
+                        SQLIdentifier hrefCol = null;
+                        if ( ( (FeatureMapping) mapping ).getHrefMapping() != null ) {
+                            hrefCol = new SQLIdentifier( ( (FeatureMapping) mapping ).getHrefMapping().toString() );
+                        }
+                        insertedSubFeature.propagateKeys( currentRow, keyPropagation, hrefCol );
                     } else {
                         TableJoin join = jc.get( 0 );
                         KeyPropagation keyPropagation = getKeyPropagation( (FeatureMapping) mapping, join );
@@ -475,25 +586,49 @@ public class InsertRowManager {
         }
 
         if ( keyPropagation.getSourceTable().equals( join.getFromTable() ) ) {
-            ParentRowReference ref = new ParentRowReference( row, keyPropagation );
-            newRow.addParent( ref );
-            List<InsertRow> children = rowToChildRows.get( row );
-            if ( children == null ) {
-                children = new ArrayList<InsertRow>();
-                rowToChildRows.put( row, children );
-            }
-            children.add( newRow );
+            addDependency( row, newRow, keyPropagation );
         } else {
-            ParentRowReference ref = new ParentRowReference( newRow, keyPropagation );
-            row.addParent( ref );
-            List<InsertRow> children = new ArrayList<InsertRow>();
-            rowToChildRows.put( newRow, children );
-            children.add( row );
+            addDependency( newRow, row, keyPropagation );
         }
 
         return newRow;
     }
 
+    /**
+     * Records that the child row takes key values from the parent row, i.e. that it cannot be inserted before the
+     * parent row.
+     * 
+     * @param parent
+     *            row that provides the key values, must not be <code>null</code>
+     * @param child
+     *            row that receives the key values, must not be <code>null</code>
+     * @param keyPropagation
+     *            propagation of the key values, must not be <code>null</code>
+     */
+    void addDependency( InsertRow parent, InsertRow child, KeyPropagation keyPropagation ) {
+        child.addParent( new ParentRowReference( parent, keyPropagation ) );
+        List<InsertRow> children = rowToChildRows.get( parent );
+        if ( children == null ) {
+            children = new ArrayList<InsertRow>();
+            rowToChildRows.put( parent, children );
+        }
+        children.add( child );
+    }
+
+    /**
+     * Schedules those of the given rows that don't depend on any uninserted row for the next {@link #processHeap()}.
+     * 
+     * @param rows
+     *            rows, must not be <code>null</code>
+     */
+    void addRootRows( List<InsertRow> rows ) {
+        for ( InsertRow insertRow : rows ) {
+            if ( !insertRow.hasParents() ) {
+                rootRows.add( insertRow );
+            }
+        }
+    }
+
     private PrimitiveValue getPrimitiveValue( TypedObjectNode value ) {
         if ( value instanceof Property ) {
             value = ( (Property) value ).getValue();
@@ -518,8 +653,19 @@ public class InsertRowManager {
             List<InsertRow> rootRemoves = new ArrayList<InsertRow>();
             List<InsertRow> rootAdds = new ArrayList<InsertRow>();
             for ( InsertRow row : rootRows ) {
-                LOG.debug( "Inserting row " + row );
-                row.performInsert( conn, rowToChildRows.get( row ) != null );
+                boolean propagateAutoGenColumns = rowToChildRows.get( row ) != null;
+                int batchIdx = -1;
+                if ( batchSize > 0 && row.isBatchable( propagateAutoGenColumns ) ) {
+                    batchIdx = addToBatch( row );
+                } else {
+                    if ( rowToMinBatchIdx.containsKey( row ) ) {
+                        // depends on rows that are still pending in batches
+                        flush();
+                    }
+                    LOG.debug( "Inserting row " + row );
+                    row.performInsert( conn, propagateAutoGenColumns );
+                }
+                rowToMinBatchIdx.remove( row );
                 delayedRows.remove( row );
                 rootRemoves.add( row );
 
@@ -529,18 +675,168 @@ public class InsertRowManager {
                     for ( InsertRow childRow : childRows ) {
                         LOG.debug( "Child row: " + childRow );
                         childRow.removeParent( row );
+                        if ( batchIdx >= 0 ) {
+                            Integer minBatchIdx = rowToMinBatchIdx.get( childRow );
+                            if ( minBatchIdx == null || minBatchIdx <= batchIdx ) {
+                                rowToMinBatchIdx.put( childRow, batchIdx + 1 );
+                            }
+                        }
                         if ( !childRow.hasParents() ) {
                             rootAdds.add( childRow );
                         }
                     }
                     rowToChildRows.remove( row );
                 }
+                if ( row instanceof FeatureRow ) {
+                    releaseFeatureRow( (FeatureRow) row );
+                }
             }
             rootRows.removeAll( rootRemoves );
             rootRows.addAll( rootAdds );
         }
     }
 
+    /**
+     * Replaces the given (inserted) feature row by its new id and key values, so the row can be garbage collected.
+     */
+    private void releaseFeatureRow( FeatureRow row ) {
+        String origFid = row.getOriginalId();
+        if ( origFid == null || origFidToFeatureRow.get( origFid ) != row ) {
+            return;
+        }
+        origFidToFeatureRow.remove( origFid );
+        Map<SQLIdentifier, Object> keyColumnToValue = new HashMap<SQLIdentifier, Object>();
+        Set<SQLIdentifier> keyColumns = getKeyColumns( row.getTable() );
+        if ( keyColumns != null ) {
+            for ( SQLIdentifier keyColumn : keyColumns ) {
+                keyColumnToValue.put( keyColumn, row.get( keyColumn ) );
+            }
+        }
+        origFidToInsertedFeature.put( origFid, new InsertedFeature( row.getNewId(), keyColumnToValue ) );
+    }
+
+    /**
+     * Adds the given row to a pending batch that comes after all batches that contain rows it depends on.
+     * 
+     * @return index of the batch, <code>-1</code> if the batches have been executed already
+     */
+    private int addToBatch( InsertRow row )
+                            throws SQLException, FeatureStoreException {
+        Integer minBatchIdx = rowToMinBatchIdx.get( row );
+        int minIdx = minBatchIdx != null ? minBatchIdx : 0;
+        if ( useCopy ) {
+            List<String> columns = getColumnNames( row );
+            String copyKey = "COPY " + row.getTable() + " " + columns;
+            if ( isCopyable( copyKey, row, columns ) ) {
+                Object[] values = row.getCopyValues();
+                if ( values != null ) {
+                    int batchIdx = getBatch( copyKey, minIdx, row, columns );
+                    CopyBatch batch = (CopyBatch) batches.get( batchIdx );
+                    try {
+                        row.addToCopy( batch.writer, values );
+                        return rowAdded( batch, batchIdx );
+                    } catch ( IllegalArgumentException e ) {
+                        LOG.debug( "Unable to add row to COPY, using INSERT: " + e.getMessage() );
+                    }
+                }
+            }
+        }
+        String sql = row.getSql();
+        int batchIdx = getBatch( sql, minIdx, row, null );
+        StatementBatch batch = (StatementBatch) batches.get( batchIdx );
+        row.addToBatch( batch.stmt );
+        return rowAdded( batch, batchIdx );
+    }
+
+    /**
+     * Returns the index of the last pending batch with the given key (at or after the given index), creates a new
+     * batch if there is no such batch.
+     */
+    private int getBatch( String key, int minIdx, InsertRow row, List<String> copyColumns )
+                            throws SQLException {
+        for ( int i = batches.size() - 1; i >= minIdx; i-- ) {
+            if ( batches.get( i ).key.equals( key ) ) {
+                return i;
+            }
+        }
+        if ( batches.size() == MAX_BATCHES ) {
+            flush();
+        }
+        if ( copyColumns != null ) {
+            String table = row.getTable().toString();
+            batches.add( new CopyBatch( key, new PostGISCopyWriter( table, copyColumns, copyKeyToTypes.get( key ) ) ) );
+        } else {
+            batches.add( new StatementBatch( key, conn.prepareStatement( key ) ) );
+        }
+        return batches.size() - 1;
+    }
+
+    private int rowAdded( InsertBatch batch, int batchIdx )
+                            throws SQLException {
+        if ( ++batch.numRows == batchSize || batch.isFull() ) {
+            // batches must be executed in order
+            flush();
+            return -1;
+        }
+        return batchIdx;
+    }
+
+    private boolean isCopyable( String copyKey, InsertRow row, List<String> columns )
+                            throws SQLException {
+        if ( copyKeyToTypes.containsKey( copyKey ) ) {
+            return copyKeyToTypes.get( copyKey ) != null;
+        }
+        String[] types = PostGISCopyWriter.getColumnTypes( conn, row.getTable().toString(), columns );
+        for ( int i = 0; i < types.length; i++ ) {
+            if ( !PostGISCopyWriter.isSupported( types[i] ) ) {
+                LOG.debug( "Column '" + columns.get( i ) + "' of table '" + row.getTable() + "' has type '" + types[i]
+                           + "'. Using INSERTs instead of COPY." );
+                types = null;
+                break;
+            }
+        }
+        copyKeyToTypes.put( copyKey, types );
+        return types != null;
+    }
+
+    private List<String> getColumnNames( InsertRow row ) {
+        List<String> columns = new ArrayList<String>( row.getColumns().size() );
+        for ( SQLIdentifier column : row.getColumns() ) {
+            columns.add( column.toString() );
+        }
+        return columns;
+    }
+
+    /**
+     * Executes all pending batches, i.e. performs the INSERTs (or COPYs) for all rows that have been added to batches.
+     * <p>
+     * This method must be invoked after the last feature has been inserted (only required if batching is enabled).
+     * </p>
+     * 
+     * @throws SQLException
+     *             if the execution of a batch fails
+     */
+    public void flush()
+                            throws SQLException {
+        if ( batches.isEmpty() ) {
+            return;
+        }
+        try {
+            for ( InsertBatch batch : batches ) {
+                long begin = System.currentTimeMillis();
+                batch.execute( conn );
+                LOG.debug( "Executing batch of " + batch.numRows + " rows took "
+                           + ( System.currentTimeMillis() - begin ) + " [ms]: " + batch.key );
+            }
+        } finally {
+            for ( InsertBatch batch : batches ) {
+                batch.close();
+            }
+            batches.clear();
+            rowToMinBatchIdx.clear();
+        }
+    }
+
     /**
      * Returns the number of currently delayed rows (rows that depend on some other row to be inserted first).
      * 
@@ -550,4 +846,130 @@ public class InsertRowManager {
         return delayedRows.size();
     }
 
+    /**
+     * Returns whether a feature with the given id has already been passed to {@link #insertFeature}.
+     * 
+     * @param fid
+     *            original feature id, can be <code>null</code>
+     * @return <code>true</code>, if the feature has already been inserted (or is scheduled for insertion)
+     */
+    public boolean isInserted( String fid ) {
+        if ( fid == null ) {
+            return false;
+        }
+        if ( origFidToInsertedFeature.containsKey( fid ) ) {
+            return true;
+        }
+        FeatureRow featureRow = origFidToFeatureRow.get( fid );
+        return featureRow != null && featureRow.isAssigned();
+    }
+
+    /**
+     * What remains of a {@link FeatureRow} after it has been inserted: the new feature id and the values of the key
+     * columns (for propagating them to rows that reference the feature later on).
+     */
+    private static class InsertedFeature {
+
+        private final String newId;
+
+        private final Map<SQLIdentifier, Object> keyColumnToValue;
+
+        private InsertedFeature( String newId, Map<SQLIdentifier, Object> keyColumnToValue ) {
+            this.newId = newId;
+            this.keyColumnToValue = keyColumnToValue;
+        }
+
+        /**
+         * Sets the foreign key values (and the href column) of the given referencing row, see
+         * {@link InsertRow#removeParent(InsertRow)}.
+         */
+        private void propagateKeys( InsertRow row, KeyPropagation keyPropagation, SQLIdentifier hrefCol ) {
+            List<SQLIdentifier> fromColumns = keyPropagation.getPrimaryKeyColumns();
+            List<SQLIdentifier> toColumns = keyPropagation.getForeignKeyColumns();
+            for ( int i = 0; i < fromColumns.size(); i++ ) {
+                Object key = keyColumnToValue.get( fromColumns.get( i ) );
+                if ( key == null ) {
+                    String msg = "Unable to create foreign key relation. Encountered NULL value for foreign key "
+                                 + "column '" + fromColumns.get( i ) + "'.";
+                    throw new IllegalArgumentException( msg );
+                }
+                row.addPreparedArgument( toColumns.get( i ), key );
+            }
+            if ( hrefCol != null ) {
+                row.addPreparedArgument( hrefCol, "#" + newId );
+            }
+        }
+    }
+
+    private static abstract class InsertBatch {
+
+        // INSERT statement or COPY table/column key
+        final String key;
+
+        int numRows;
+
+        InsertBatch( String key ) {
+            this.key = key;
+        }
+
+        abstract boolean isFull();
+
+        abstract void execute( Connection conn )
+                                throws SQLException;
+
+        abstract void close();
+    }
+
+    private static class StatementBatch extends InsertBatch {
+
+        private final PreparedStatement stmt;
+
+        private StatementBatch( String sql, PreparedStatement stmt ) {
+            super( sql );
+            this.stmt = stmt;
+        }
+
+        @Override
+        boolean isFull() {
+            return false;
+        }
+
+        @Override
+        void execute( Connection conn )
+                                throws SQLException {
+            stmt.executeBatch();
+        }
+
+        @Override
+        void close() {
+            JDBCUtils.close( stmt );
+        }
+    }
+
+    private static class CopyBatch extends InsertBatch {
+
+        private final PostGISCopyWriter writer;
+
+        private CopyBatch( String key, PostGISCopyWriter writer ) {
+            super( key );
+            this.writer = writer;
+        }
+
+        @Override
+        boolean isFull() {
+            return writer.getBufferSize() >= MAX_COPY_BUFFER_SIZE;
+        }
+
+        @Override
+        void execute( Connection conn )
+                                throws SQLException {
+            writer.copy( conn );
+        }
+
+        @Override
+        void close() {
+            // nothing to do
+        }
+    }
+
 }
@@ -0,0 +1,123 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.Pair;
+
+/**
+ * {@link ResultRow} that holds the values of a result set row after the result set has moved on.
+ * <p>
+ * Used by {@link FeatureBuilderRelational} for building features from rows that have been fetched in batches. Besides
+ * the raw column values (needed for ids and join keys), the row stores the particles that have been created by the
+ * {@link ParticleConverter}s while the result set was still positioned on the row.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class BufferedRow implements ResultRow {
+
+    private final Object[] values;
+
+    private final Map<ParticleConverter<?>, TypedObjectNode> particles = new IdentityHashMap<ParticleConverter<?>, TypedObjectNode>();
+
+    /**
+     * Creates a new {@link BufferedRow} from the current row of the given {@link ResultSet}.
+     * 
+     * @param rs
+     *            result set positioned on a row, must not be <code>null</code>
+     * @param numColumns
+     *            number of columns to copy
+     * @throws SQLException
+     */
+    BufferedRow( ResultSet rs, int numColumns )
+                            throws SQLException {
+        values = new Object[numColumns];
+        for ( int i = 0; i < numColumns; i++ ) {
+            values[i] = rs.getObject( i + 1 );
+        }
+    }
+
+    /**
+     * Converts the columns of the current row of the given {@link ResultSet} into particles.
+     * 
+     * @param rs
+     *            result set positioned on the row that this row has been created from, must not be <code>null</code>
+     * @param conversions
+     *            converters and the (one-based) index of the column they are applied to, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void convert( ResultSet rs, List<Pair<ParticleConverter<?>, Integer>> conversions )
+                            throws SQLException {
+        for ( Pair<ParticleConverter<?>, Integer> conversion : conversions ) {
+            if ( !particles.containsKey( conversion.first ) ) {
+                try {
+                    particles.put( conversion.first, conversion.first.toParticle( rs, conversion.second ) );
+                } catch ( RuntimeException e ) {
+                    throw new SQLException( "Error converting column " + conversion.second + ": " + e.getMessage(), e );
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object getValue( int columnIndex )
+                            throws SQLException {
+        if ( columnIndex < 1 || columnIndex > values.length ) {
+            throw new SQLException( "Invalid column index: " + columnIndex );
+        }
+        return values[columnIndex - 1];
+    }
+
+    @Override
+    public TypedObjectNode getParticle( ParticleConverter<?> converter )
+                            throws SQLException {
+        if ( !particles.containsKey( converter ) ) {
+            throw new SQLException( "Column for converter " + converter + " has not been converted." );
+        }
+        return particles.get( converter );
+    }
+}
@@ -39,16 +39,20 @@ import static java.lang.Boolean.TRUE;
 import static org.deegree.commons.utils.JDBCUtils.close;
 import static org.jaxen.saxpath.Axis.CHILD;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -69,6 +73,7 @@ import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.sql.FeatureBuilder;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
@@ -79,14 +84,17 @@ import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.types.AppSchemaGeometryHierarchy;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
 import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
 import org.deegree.geometry.primitive.segments.CurveSegment;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
+import org.deegree.sqldialect.postgis.PostGISGeometryConverter;
 import org.jaxen.expr.Expr;
 import org.jaxen.expr.LocationPath;
 import org.jaxen.expr.NameStep;
@@ -128,6 +136,37 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private VoidEscalationPolicyType escalationPolicy;
 
+    // maximum number of keys in the IN list of a batched SELECT on a joined table
+    private static final int MAX_KEYS_PER_SELECT = 500;
+
+    // rows of joined tables that have been fetched for the current batch, grouped by join key (one list of rows for
+    // every parent row with the key)
+    private final Map<Mapping, Map<List<String>, LinkedList<List<BufferedRow>>>> prefetchedRows = new HashMap<Mapping, Map<List<String>, LinkedList<List<BufferedRow>>>>();
+
+    private final Map<Mapping, LinkedHashMap<String, Integer>> joinedColumns = new HashMap<Mapping, LinkedHashMap<String, Integer>>();
+
+    // converters (and column indexes) for the rows of the initial SELECT and the SELECTs on joined tables
+    private List<Pair<ParticleConverter<?>, Integer>> initialConversions;
+
+    private final Map<Mapping, List<Pair<ParticleConverter<?>, Integer>>> joinedConversions = new HashMap<Mapping, List<Pair<ParticleConverter<?>, Integer>>>();
+
+    // number of batched SELECTs on joined tables and number of joined row lists taken from them (current batch)
+    private int batchedSelects;
+
+    private int prefetchedJoins;
+
+    // mappings of the properties to be built (all mappings, unless restricted to required properties)
+    private final List<Mapping> mappings;
+
+    private final boolean partial;
+
+    private final double resolution;
+
+    private final Envelope resolutionBBox;
+
+    // generalization tolerances (by CRS of the stored geometries)
+    private final Map<ICRS, Double> tolerances = new HashMap<ICRS, Double>();
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -144,6 +183,38 @@ public class FeatureBuilderRelational implements FeatureBuilder {
      */
     public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
                                      String ftTableAlias, VoidEscalationPolicyType escalationPolicy ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, escalationPolicy, null, -1, null );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that only builds the specified properties and optionally
+     * generalizes the geometries.
+     * <p>
+     * The built features lack all other properties (or have generalized geometries), therefore they are not added to
+     * the feature cache.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param escalationPolicy
+     *            the void escalation policy, must not be <code>null</code>
+     * @param requiredProps
+     *            names of the properties to be built, can be <code>null</code> (all properties)
+     * @param resolution
+     *            if positive, geometries are generalized to this resolution (size of a pixel in units of the CRS of
+     *            the resolution bbox), if supported by the backend
+     * @param resolutionBBox
+     *            envelope that determines the CRS of the resolution, can be <code>null</code> (no generalization)
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, VoidEscalationPolicyType escalationPolicy,
+                                     Set<QName> requiredProps, double resolution, Envelope resolutionBBox ) {
         this.fs = fs;
         this.ft = ft;
         this.ftMapping = ftMapping;
@@ -155,6 +226,21 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             String ns = fs.getNamespaceContext().get( prefix );
             nsBindings.addNamespace( prefix, ns );
         }
+        if ( requiredProps == null ) {
+            mappings = ftMapping.getMappings();
+        } else {
+            mappings = new ArrayList<Mapping>();
+            for ( Mapping mapping : ftMapping.getMappings() ) {
+                QName childEl = getChildElementStepAsQName( mapping.getPath() );
+                if ( childEl == null || isRequired( childEl, requiredProps ) ) {
+                    mappings.add( mapping );
+                }
+            }
+            LOG.debug( "Building {} of {} mapped properties.", mappings.size(), ftMapping.getMappings().size() );
+        }
+        this.resolution = resolutionBBox != null ? resolution : -1;
+        this.resolutionBBox = resolutionBBox;
+        partial = mappings.size() < ftMapping.getMappings().size() || this.resolution > 0;
         // if ( ft.getSchema().getGMLSchema() != null ) {
         // this.gmlVersion = ft.getSchema().getGMLSchema().getVersion();
         // } else {
@@ -162,12 +248,64 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         // }
     }
 
+    private boolean isRequired( QName propName, Set<QName> requiredProps ) {
+        if ( requiredProps.contains( propName ) ) {
+            return true;
+        }
+        // unqualified names match properties with the same local name in any namespace
+        for ( QName requiredProp : requiredProps ) {
+            if ( requiredProp.getLocalPart().equals( propName.getLocalPart() )
+                 && ( requiredProp.getNamespaceURI().isEmpty() || propName.getNamespaceURI().isEmpty() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getGeometrySelectSnippet( ParticleConverter<?> converter ) {
+        if ( resolution > 0 && converter instanceof PostGISGeometryConverter ) {
+            PostGISGeometryConverter geomConverter = (PostGISGeometryConverter) converter;
+            double tolerance = getGeneralizationTolerance( geomConverter.getCrs() );
+            if ( tolerance > 0 ) {
+                return geomConverter.getSelectSnippet( tableAlias, tolerance );
+            }
+        }
+        return converter.getSelectSnippet( tableAlias );
+    }
+
+    private double getGeneralizationTolerance( ICRS storageCrs ) {
+        Double tolerance = tolerances.get( storageCrs );
+        if ( tolerance == null ) {
+            tolerance = -1.0;
+            ICRS bboxCrs = resolutionBBox.getCoordinateSystem();
+            if ( storageCrs == null || bboxCrs == null || storageCrs.equals( bboxCrs ) ) {
+                tolerance = resolution;
+            } else {
+                try {
+                    Envelope storageBBox = new GeometryTransformer( storageCrs ).transform( resolutionBBox );
+                    // ratio of the diagonals (independent of axis order)
+                    tolerance = resolution * getDiagonal( storageBBox ) / getDiagonal( resolutionBBox );
+                } catch ( Exception e ) {
+                    LOG.debug( "Not generalizing geometries. Query envelope cannot be transformed to storage CRS: "
+                               + e.getMessage() );
+                }
+            }
+            LOG.debug( "Generalization tolerance for storage CRS {}: {}", storageCrs, tolerance );
+            tolerances.put( storageCrs, tolerance );
+        }
+        return tolerance;
+    }
+
+    private double getDiagonal( Envelope env ) {
+        return Math.sqrt( env.getSpan0() * env.getSpan0() + env.getSpan1() * env.getSpan1() );
+    }
+
     @Override
     public List<String> getInitialSelectColumns() {
         for ( Pair<SQLIdentifier, BaseType> fidColumn : ftMapping.getFidMapping().getColumns() ) {
             addColumn( colToRsIdx, tableAlias + "." + fidColumn.first.getName() );
         }
-        for ( Mapping mapping : ftMapping.getMappings() ) {
+        for ( Mapping mapping : mappings ) {
             addSelectColumns( mapping, colToRsIdx, true );
         }
         LOG.debug( "Initial select columns: " + colToRsIdx );
@@ -212,7 +350,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( particleConverter ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -241,36 +379,14 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
         Feature feature = null;
         try {
-            String gmlId = ftMapping.getFidMapping().getPrefix();
-            List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
-            gmlId += rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
-            for ( int i = 1; i < fidColumns.size(); i++ ) {
-                gmlId += ftMapping.getFidMapping().getDelimiter()
-                         + rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
-            }
+            // no copying, the particles are converted from the result set when the feature is built
+            ResultRow row = new ResultSetRow( rs, getInitialConversions() );
+            String gmlId = getGmlId( row );
             if ( fs.getCache() != null ) {
                 feature = (Feature) fs.getCache().get( gmlId );
             }
             if ( feature == null ) {
-                LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode)." );
-                List<Property> props = new ArrayList<Property>();
-                for ( Mapping mapping : ftMapping.getMappings() ) {
-                    ValueReference propName = mapping.getPath();
-                    QName childEl = getChildElementStepAsQName( propName );
-                    if ( childEl != null ) {
-                        PropertyType pt = ft.getPropertyDeclaration( childEl );
-                        String idPrefix = gmlId + "_" + toIdPrefix( propName );
-                        addProperties( props, pt, mapping, rs, idPrefix );
-                    } else {
-                        LOG.warn( "Omitting mapping '" + mapping
-                                  + "'. Only single child element steps (optionally with number predicate)"
-                                  + " are currently supported." );
-                    }
-                }
-                feature = ft.newFeature( gmlId, props, null );
-                if ( fs.getCache() != null ) {
-                    fs.getCache().add( feature );
-                }
+                feature = buildFeature( gmlId, row );
             } else {
                 LOG.debug( "Cache hit." );
             }
@@ -281,6 +397,364 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return feature;
     }
 
+    private Feature buildFeature( String gmlId, ResultRow row )
+                            throws SQLException {
+
+        Feature feature = null;
+        try {
+            LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode)." );
+            List<Property> props = new ArrayList<Property>();
+            for ( Mapping mapping : mappings ) {
+                ValueReference propName = mapping.getPath();
+                QName childEl = getChildElementStepAsQName( propName );
+                if ( childEl != null ) {
+                    PropertyType pt = ft.getPropertyDeclaration( childEl );
+                    String idPrefix = gmlId + "_" + toIdPrefix( propName );
+                    addProperties( props, pt, mapping, row, idPrefix );
+                } else {
+                    LOG.warn( "Omitting mapping '" + mapping
+                              + "'. Only single child element steps (optionally with number predicate)"
+                              + " are currently supported." );
+                }
+            }
+            feature = ft.newFeature( gmlId, props, null );
+            if ( fs.getCache() != null && !partial ) {
+                fs.getCache().add( feature );
+            }
+        } catch ( Throwable t ) {
+            LOG.error( t.getMessage(), t );
+            throw new SQLException( t.getMessage(), t );
+        }
+        return feature;
+    }
+
+    /**
+     * Builds {@link Feature} instances from the next rows of the given {@link ResultSet}.
+     * <p>
+     * In contrast to {@link #buildFeature(ResultSet)}, the rows of joined tables are not fetched individually for every
+     * feature, but with a single SELECT per joined table for all features of the batch. The number of subsequent
+     * SELECTs saved by this is added to {@link SQLFeatureStore#getAvoidedJoinSelects()}.
+     * </p>
+     * 
+     * @param rs
+     *            result set, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows to consume from the result set, must be positive
+     * @return features built from the consumed rows (in result set order), empty if the result set has no more rows
+     * @throws SQLException
+     */
+    public List<Feature> buildFeatures( ResultSet rs, int batchSize )
+                            throws SQLException {
+
+        // features that are already cached don't need any joined rows (and no converted particles)
+        List<Feature> features = new ArrayList<Feature>();
+        List<String> gmlIds = new ArrayList<String>();
+        List<BufferedRow> uncachedRows = new ArrayList<BufferedRow>();
+        while ( features.size() < batchSize && rs.next() ) {
+            BufferedRow row = new BufferedRow( rs, colToRsIdx.size() );
+            String gmlId = getGmlId( row );
+            Feature feature = null;
+            if ( fs.getCache() != null ) {
+                feature = (Feature) fs.getCache().get( gmlId );
+            }
+            if ( feature == null ) {
+                row.convert( rs, getInitialConversions() );
+                gmlIds.add( gmlId );
+                uncachedRows.add( row );
+            } else {
+                LOG.debug( "Cache hit." );
+            }
+            features.add( feature );
+        }
+        if ( uncachedRows.isEmpty() ) {
+            return features;
+        }
+
+        batchedSelects = 0;
+        prefetchedJoins = 0;
+        try {
+            prefetchJoinedRows( mappings, uncachedRows, colToRsIdx );
+            int j = 0;
+            for ( int i = 0; i < features.size(); i++ ) {
+                if ( features.get( i ) == null ) {
+                    features.set( i, buildFeature( gmlIds.get( j ), uncachedRows.get( j ) ) );
+                    j++;
+                }
+            }
+        } finally {
+            prefetchedRows.clear();
+        }
+        int avoided = prefetchedJoins - batchedSelects;
+        long total = fs.addAvoidedJoinSelects( avoided );
+        LOG.debug( "Built {} features using {} batched SELECTs ({} subsequent SELECTs avoided, {} since startup).",
+                   new Object[] { uncachedRows.size(), batchedSelects, avoided, total } );
+        return features;
+    }
+
+    private String getGmlId( ResultRow row )
+                            throws SQLException {
+        String gmlId = ftMapping.getFidMapping().getPrefix();
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
+        gmlId += row.getValue( colToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
+        for ( int i = 1; i < fidColumns.size(); i++ ) {
+            gmlId += ftMapping.getFidMapping().getDelimiter()
+                     + row.getValue( colToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
+        }
+        return gmlId;
+    }
+
+    private List<Pair<ParticleConverter<?>, Integer>> getInitialConversions() {
+        if ( initialConversions == null ) {
+            initialConversions = new ArrayList<Pair<ParticleConverter<?>, Integer>>();
+            for ( Mapping mapping : mappings ) {
+                if ( mapping instanceof FeatureMapping || mapping.getJoinedTable() == null ) {
+                    addConversions( mapping, colToRsIdx, initialConversions );
+                }
+            }
+        }
+        return initialConversions;
+    }
+
+    private List<Pair<ParticleConverter<?>, Integer>> getJoinedConversions( TableJoin jc, Mapping mapping ) {
+        List<Pair<ParticleConverter<?>, Integer>> conversions = joinedConversions.get( mapping );
+        if ( conversions == null ) {
+            conversions = new ArrayList<Pair<ParticleConverter<?>, Integer>>();
+            addConversions( mapping, getJoinedColumns( jc, mapping ), conversions );
+            joinedConversions.put( mapping, conversions );
+        }
+        return conversions;
+    }
+
+    /**
+     * Collects the converters that build the particles of the given mapping from the rows of a SELECT (mappings that
+     * refer to joined tables are built from the rows of their own SELECT).
+     */
+    private void addConversions( Mapping mapping, LinkedHashMap<String, Integer> colToRsIdx,
+                                 List<Pair<ParticleConverter<?>, Integer>> conversions ) {
+        if ( mapping instanceof CompoundMapping ) {
+            for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                if ( particle instanceof FeatureMapping || particle.getJoinedTable() == null ) {
+                    addConversions( particle, colToRsIdx, conversions );
+                }
+            }
+            return;
+        }
+        ParticleConverter<?> converter = fs.getConverter( mapping );
+        if ( converter == null ) {
+            return;
+        }
+        String col = null;
+        if ( mapping instanceof PrimitiveMapping && ( (PrimitiveMapping) mapping ).getMapping() instanceof DBField ) {
+            col = converter.getSelectSnippet( tableAlias );
+        } else if ( mapping instanceof GeometryMapping
+                    && ( (GeometryMapping) mapping ).getMapping() instanceof DBField ) {
+            col = getGeometrySelectSnippet( converter );
+        } else if ( mapping instanceof FeatureMapping ) {
+            col = converter.getSelectSnippet( tableAlias );
+        }
+        Integer colIndex = col != null ? colToRsIdx.get( col ) : null;
+        if ( colIndex != null ) {
+            conversions.add( new Pair<ParticleConverter<?>, Integer>( converter, colIndex ) );
+        }
+    }
+
+    private void prefetchJoinedRows( List<Mapping> mappings, List<BufferedRow> rows,
+                                     LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+        for ( Mapping mapping : mappings ) {
+            if ( mapping instanceof FeatureMapping ) {
+                continue;
+            }
+            if ( mapping.getJoinedTable() != null ) {
+                TableJoin jc = mapping.getJoinedTable().get( 0 );
+                List<BufferedRow> joinedRows = fetchJoinedRows( jc, mapping, rows, colToRsIdx );
+                if ( mapping instanceof CompoundMapping ) {
+                    prefetchJoinedRows( ( (CompoundMapping) mapping ).getParticles(), joinedRows,
+                                        getJoinedColumns( jc, mapping ) );
+                }
+            } else if ( mapping instanceof CompoundMapping ) {
+                prefetchJoinedRows( ( (CompoundMapping) mapping ).getParticles(), rows, colToRsIdx );
+            }
+        }
+    }
+
+    private List<BufferedRow> fetchJoinedRows( TableJoin jc, Mapping mapping, List<BufferedRow> rows,
+                                               LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+
+        // every parent row gets its own copy of the joined rows (particles such as geometries are modified when built)
+        Map<List<String>, LinkedList<List<BufferedRow>>> keyToRows = new HashMap<List<String>, LinkedList<List<BufferedRow>>>();
+        prefetchedRows.put( mapping, keyToRows );
+
+        Map<List<String>, Object[]> keys = new LinkedHashMap<List<String>, Object[]>();
+        for ( BufferedRow row : rows ) {
+            Object[] key = getJoinKey( jc, row, colToRsIdx );
+            List<String> normalizedKey = normalizeKey( key );
+            if ( normalizedKey != null ) {
+                keys.put( normalizedKey, key );
+                LinkedList<List<BufferedRow>> copies = keyToRows.get( normalizedKey );
+                if ( copies == null ) {
+                    copies = new LinkedList<List<BufferedRow>>();
+                    keyToRows.put( normalizedKey, copies );
+                }
+                copies.add( new ArrayList<BufferedRow>() );
+            }
+        }
+
+        List<BufferedRow> joinedRows = new ArrayList<BufferedRow>();
+        List<Object[]> keyValues = new ArrayList<Object[]>( keys.values() );
+        for ( int start = 0; start < keyValues.size(); start += MAX_KEYS_PER_SELECT ) {
+            int end = Math.min( start + MAX_KEYS_PER_SELECT, keyValues.size() );
+            joinedRows.addAll( selectJoinedRows( jc, mapping, keyValues.subList( start, end ), keyToRows ) );
+            batchedSelects++;
+        }
+        return joinedRows;
+    }
+
+    private List<BufferedRow> selectJoinedRows( TableJoin jc, Mapping mapping, List<Object[]> keys,
+                                                Map<List<String>, LinkedList<List<BufferedRow>>> keyToRows )
+                            throws SQLException {
+
+        LinkedHashMap<String, Integer> rsToIdx = getJoinedColumns( jc, mapping );
+        List<Pair<ParticleConverter<?>, Integer>> conversions = getJoinedConversions( jc, mapping );
+
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        boolean first = true;
+        for ( String column : rsToIdx.keySet() ) {
+            if ( !first ) {
+                sql.append( ',' );
+            }
+            sql.append( column );
+            first = false;
+        }
+        sql.append( " FROM " );
+        sql.append( jc.getToTable() );
+        sql.append( ' ' );
+        sql.append( tableAlias );
+        sql.append( " WHERE " );
+        if ( jc.getToColumns().size() == 1 ) {
+            sql.append( jc.getToColumns().get( 0 ) );
+            sql.append( " IN (" );
+            for ( int i = 0; i < keys.size(); i++ ) {
+                if ( i > 0 ) {
+                    sql.append( ',' );
+                }
+                sql.append( '?' );
+            }
+            sql.append( ')' );
+        } else {
+            for ( int i = 0; i < keys.size(); i++ ) {
+                if ( i > 0 ) {
+                    sql.append( " OR " );
+                }
+                sql.append( '(' );
+                first = true;
+                for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+                    if ( !first ) {
+                        sql.append( " AND " );
+                    }
+                    sql.append( keyColumn );
+                    sql.append( " = ?" );
+                    first = false;
+                }
+                sql.append( ')' );
+            }
+        }
+        appendOrderBy( sql, jc );
+        LOG.debug( "SQL: {}", sql );
+
+        List<BufferedRow> rows = new ArrayList<BufferedRow>();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            long begin = System.currentTimeMillis();
+            stmt = conn.prepareStatement( sql.toString() );
+            int i = 1;
+            for ( Object[] key : keys ) {
+                for ( Object value : key ) {
+                    stmt.setObject( i++, value );
+                }
+            }
+            rs = stmt.executeQuery();
+            Object[] key = new Object[jc.getToColumns().size()];
+            while ( rs.next() ) {
+                int j = 0;
+                for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+                    key[j++] = rs.getObject( rsToIdx.get( tableAlias + "." + keyColumn ) );
+                }
+                LinkedList<List<BufferedRow>> copies = keyToRows.get( normalizeKey( key ) );
+                if ( copies == null ) {
+                    LOG.debug( "Ignoring joined row with unrequested key {}.", Arrays.toString( key ) );
+                    continue;
+                }
+                for ( List<BufferedRow> keyRows : copies ) {
+                    BufferedRow row = new BufferedRow( rs, rsToIdx.size() );
+                    row.convert( rs, conversions );
+                    keyRows.add( row );
+                    rows.add( row );
+                }
+            }
+            LOG.debug( "Executing batched SELECT for {} keys took {} [ms] ", keys.size(),
+                       System.currentTimeMillis() - begin );
+        } catch ( Throwable t ) {
+            String msg = "Error performing batched subsequent SELECT: " + t.getMessage();
+            LOG.error( msg, t );
+            throw new SQLException( msg, t );
+        } finally {
+            close( rs, stmt, null, LOG );
+        }
+        return rows;
+    }
+
+    private LinkedHashMap<String, Integer> getJoinedColumns( TableJoin jc, Mapping mapping ) {
+        LinkedHashMap<String, Integer> rsToIdx = joinedColumns.get( mapping );
+        if ( rsToIdx == null ) {
+            rsToIdx = getSubsequentSelectColumns( mapping );
+            // the key columns are needed for assigning the joined rows to the rows of the parent table
+            for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+                addColumn( rsToIdx, tableAlias + "." + keyColumn );
+            }
+            joinedColumns.put( mapping, rsToIdx );
+        }
+        return rsToIdx;
+    }
+
+    private Object[] getJoinKey( TableJoin jc, ResultRow row, LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+        Object[] key = new Object[jc.getFromColumns().size()];
+        int i = 0;
+        for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
+            key[i++] = row.getValue( colToRsIdx.get( tableAlias + "." + keyColumn ) );
+        }
+        return key;
+    }
+
+    /**
+     * Returns a representation of the given key values that does not depend on the Java types returned by the JDBC
+     * driver (e.g. <code>Integer</code> for the referencing and <code>Long</code> for the referenced column).
+     * 
+     * @return normalized key, <code>null</code> if any of the values is <code>null</code>
+     */
+    private List<String> normalizeKey( Object[] values ) {
+        List<String> key = new ArrayList<String>( values.length );
+        for ( Object value : values ) {
+            if ( value == null ) {
+                return null;
+            }
+            if ( value instanceof Number ) {
+                try {
+                    BigDecimal number = new BigDecimal( value.toString() );
+                    key.add( number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString() );
+                    continue;
+                } catch ( NumberFormatException e ) {
+                    // NaN or infinity, use string representation
+                }
+            }
+            key.add( value.toString() );
+        }
+        return key;
+    }
+
     private String toIdPrefix( ValueReference propName ) {
         String s = propName.getAsText();
         s = s.replace( "/", "_" );
@@ -291,11 +765,11 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return s;
     }
 
-    private void addProperties( List<Property> props, PropertyType pt, Mapping propMapping, ResultSet rs,
+    private void addProperties( List<Property> props, PropertyType pt, Mapping propMapping, ResultRow row,
                                 String idPrefix )
                             throws SQLException {
 
-        List<TypedObjectNode> particles = buildParticles( propMapping, rs, colToRsIdx, idPrefix );
+        List<TypedObjectNode> particles = buildParticles( propMapping, row, colToRsIdx, idPrefix );
         if ( particles.isEmpty() && pt.getMinOccurs() > 0 ) {
             if ( pt.isNillable() ) {
                 Map<QName, PrimitiveValue> attrs = Collections.singletonMap( new QName( CommonNamespaces.XSINS, "nil" ),
@@ -317,40 +791,36 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
     }
 
-    private List<TypedObjectNode> buildParticles( Mapping mapping, ResultSet rs,
+    private List<TypedObjectNode> buildParticles( Mapping mapping, ResultRow row,
                                                   LinkedHashMap<String, Integer> colToRsIdx, String idPrefix )
                             throws SQLException {
 
         if ( !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null ) {
+            TableJoin jc = mapping.getJoinedTable().get( 0 );
+            Object[] key = getJoinKey( jc, row, colToRsIdx );
+            List<BufferedRow> joinedRows = getPrefetchedRows( mapping, key );
+            if ( joinedRows == null ) {
+                return buildJoinedParticles( jc, mapping, key, idPrefix );
+            }
+            LinkedHashMap<String, Integer> joinedColToRsIdx = getJoinedColumns( jc, mapping );
             List<TypedObjectNode> values = new ArrayList<TypedObjectNode>();
-            ResultSet rs2 = null;
-            try {
-                Pair<ResultSet, LinkedHashMap<String, Integer>> p = getJoinedResultSet( mapping.getJoinedTable().get( 0 ),
-                                                                                        mapping, rs, colToRsIdx );
-                rs2 = p.first;
-                int i = 0;
-                while ( rs2.next() ) {
-                    TypedObjectNode particle = buildParticle( mapping, rs2, p.second, idPrefix + "_" + ( i++ ) );
-                    if ( particle != null ) {
-                        values.add( particle );
-                    }
-                }
-            } finally {
-                if ( rs2 != null ) {
-                    rs2.getStatement().close();
-                    rs2.close();
+            int i = 0;
+            for ( BufferedRow joinedRow : joinedRows ) {
+                TypedObjectNode particle = buildParticle( mapping, joinedRow, joinedColToRsIdx, idPrefix + "_" + ( i++ ) );
+                if ( particle != null ) {
+                    values.add( particle );
                 }
             }
             return values;
         }
-        TypedObjectNode particle = buildParticle( mapping, rs, colToRsIdx, idPrefix );
+        TypedObjectNode particle = buildParticle( mapping, row, colToRsIdx, idPrefix );
         if ( particle != null ) {
             return Collections.singletonList( particle );
         }
         return Collections.emptyList();
     }
 
-    private TypedObjectNode buildParticle( Mapping mapping, ResultSet rs, LinkedHashMap<String, Integer> colToRsIdx,
+    private TypedObjectNode buildParticle( Mapping mapping, ResultRow row, LinkedHashMap<String, Integer> colToRsIdx,
                                            String idPrefix )
                             throws SQLException {
 
@@ -363,17 +833,13 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             PrimitiveMapping pm = (PrimitiveMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
-                int colIndex = colToRsIdx.get( col );
-                particle = converter.toParticle( rs, colIndex );
+                particle = row.getParticle( converter );
             }
         } else if ( mapping instanceof GeometryMapping ) {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
-                int colIndex = colToRsIdx.get( col );
-                particle = converter.toParticle( rs, colIndex );
+                particle = row.getParticle( converter );
                 Geometry geom = ( (Geometry) particle );
                 if ( geom != null ) {
                     geom.setId( idPrefix );
@@ -382,9 +848,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         } else if ( mapping instanceof FeatureMapping ) {
             FeatureMapping fm = (FeatureMapping) mapping;
             // if ( fm.getJoinedTable() != null && !fm.getJoinedTable().isEmpty() ) {
-            String col = converter.getSelectSnippet( tableAlias );
-            int colIndex = colToRsIdx.get( col );
-            particle = converter.toParticle( rs, colIndex );
+            particle = row.getParticle( converter );
             // }
         } else if ( mapping instanceof ConstantMapping<?> ) {
             particle = ( (ConstantMapping<?>) mapping ).getValue();
@@ -399,7 +863,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             for ( Mapping particleMapping : cm.getParticles() ) {
 
                 // TODO idPrefix
-                List<TypedObjectNode> particleValues = buildParticles( particleMapping, rs, colToRsIdx, idPrefix );
+                List<TypedObjectNode> particleValues = buildParticles( particleMapping, row, colToRsIdx, idPrefix );
 
                 if ( !particleMapping.isVoidable() ) {
                     boolean found = false;
@@ -638,13 +1102,36 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return null;
     }
 
-    private Pair<ResultSet, LinkedHashMap<String, Integer>> getJoinedResultSet( TableJoin jc,
-                                                                                Mapping mapping,
-                                                                                ResultSet rs,
-                                                                                LinkedHashMap<String, Integer> colToRsIdx )
+    /**
+     * Returns the joined rows for the given key that have been fetched in advance by {@link #buildFeatures}.
+     * 
+     * @return joined rows, <code>null</code> if they have not been fetched in advance
+     */
+    private List<BufferedRow> getPrefetchedRows( Mapping mapping, Object[] key ) {
+        Map<List<String>, LinkedList<List<BufferedRow>>> keyToRows = prefetchedRows.get( mapping );
+        if ( keyToRows != null ) {
+            List<String> normalizedKey = normalizeKey( key );
+            if ( normalizedKey == null ) {
+                prefetchedJoins++;
+                return Collections.emptyList();
+            }
+            LinkedList<List<BufferedRow>> copies = keyToRows.get( normalizedKey );
+            if ( copies != null && !copies.isEmpty() ) {
+                prefetchedJoins++;
+                return copies.removeFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the particles of the given mapping from the rows of a subsequent SELECT on the joined table (streaming).
+     */
+    private List<TypedObjectNode> buildJoinedParticles( TableJoin jc, Mapping mapping, Object[] key, String idPrefix )
                             throws SQLException {
 
-        LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
+        LinkedHashMap<String, Integer> rsToIdx = getJoinedColumns( jc, mapping );
+        List<Pair<ParticleConverter<?>, Integer>> conversions = getJoinedConversions( jc, mapping );
 
         StringBuilder sql = new StringBuilder( "SELECT " );
         boolean first = true;
@@ -669,24 +1156,10 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             sql.append( " = ?" );
             first = false;
         }
-        if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
-            sql.append( " ORDER BY " );
-            first = true;
-            for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
-                if ( !first ) {
-                    sql.append( "," );
-                }
-                if ( orderColumn.toString().endsWith( "-" ) ) {
-                    sql.append( orderColumn.toString().substring( 0, orderColumn.toString().length() - 1 ) );
-                    sql.append( " DESC" );
-                } else {
-                    sql.append( orderColumn );
-                }
-                first = false;
-            }
-        }
+        appendOrderBy( sql, jc );
         LOG.debug( "SQL: {}", sql );
 
+        List<TypedObjectNode> values = new ArrayList<TypedObjectNode>();
         PreparedStatement stmt = null;
         ResultSet rs2 = null;
         try {
@@ -694,22 +1167,48 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             stmt = conn.prepareStatement( sql.toString() );
 
             LOG.debug( "Preparing subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            int i = 1;
-            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
-                Object key = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
-                LOG.debug( "? = '{}' ({})", key, keyColumn );
-                stmt.setObject( i++, key );
+            for ( int i = 0; i < key.length; i++ ) {
+                LOG.debug( "? = '{}' ({})", key[i], jc.getFromColumns().get( i ) );
+                stmt.setObject( i + 1, key[i] );
             }
             begin = System.currentTimeMillis();
             rs2 = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            ResultRow joinedRow = new ResultSetRow( rs2, conversions );
+            int i = 0;
+            while ( rs2.next() ) {
+                TypedObjectNode particle = buildParticle( mapping, joinedRow, rsToIdx, idPrefix + "_" + ( i++ ) );
+                if ( particle != null ) {
+                    values.add( particle );
+                }
+            }
         } catch ( Throwable t ) {
-            close( rs2, stmt, null, LOG );
             String msg = "Error performing subsequent SELECT: " + t.getMessage();
             LOG.error( msg, t );
             throw new SQLException( msg, t );
+        } finally {
+            close( rs2, stmt, null, LOG );
+        }
+        return values;
+    }
+
+    private void appendOrderBy( StringBuilder sql, TableJoin jc ) {
+        if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
+            sql.append( " ORDER BY " );
+            boolean first = true;
+            for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
+                if ( !first ) {
+                    sql.append( "," );
+                }
+                if ( orderColumn.toString().endsWith( "-" ) ) {
+                    sql.append( orderColumn.toString().substring( 0, orderColumn.toString().length() - 1 ) );
+                    sql.append( " DESC" );
+                } else {
+                    sql.append( orderColumn );
+                }
+                first = false;
+            }
         }
-        return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
     }
 
     private QName getChildElementStepAsQName( ValueReference ref ) {
@@ -0,0 +1,80 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import java.sql.SQLException;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.sql.ParticleConverter;
+
+/**
+ * A row that {@link FeatureBuilderRelational} builds feature particles from.
+ * <p>
+ * Rows are either read directly from a {@link java.sql.ResultSet} ({@link ResultSetRow}) or buffered, so they are
+ * still available after the result set has moved on ({@link BufferedRow}).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+interface ResultRow {
+
+    /**
+     * Returns the raw value of the specified column.
+     * 
+     * @param columnIndex
+     *            one-based index of the column
+     * @return column value, can be <code>null</code>
+     * @throws SQLException
+     *             if the index is invalid
+     */
+    Object getValue( int columnIndex )
+                            throws SQLException;
+
+    /**
+     * Returns the particle that the given converter creates for this row.
+     * 
+     * @param converter
+     *            converter, must not be <code>null</code>
+     * @return particle, can be <code>null</code> (SQL <code>NULL</code>)
+     * @throws SQLException
+     *             if the converter cannot be applied to this row
+     */
+    TypedObjectNode getParticle( ParticleConverter<?> converter )
+                            throws SQLException;
+}
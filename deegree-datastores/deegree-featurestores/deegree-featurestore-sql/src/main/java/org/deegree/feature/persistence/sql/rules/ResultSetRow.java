@@ -0,0 +1,97 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.Pair;
+
+/**
+ * {@link ResultRow} that reads the current row of a {@link ResultSet} directly.
+ * <p>
+ * Nothing is copied: values are read and particles are converted on demand, so the instance can be reused while
+ * iterating over the result set (it always reflects the row that the result set is positioned on).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ResultSetRow implements ResultRow {
+
+    private final ResultSet rs;
+
+    private final List<Pair<ParticleConverter<?>, Integer>> conversions;
+
+    /**
+     * Creates a new {@link ResultSetRow} instance.
+     * 
+     * @param rs
+     *            result set, must not be <code>null</code>
+     * @param conversions
+     *            converters and the (one-based) index of the column they are applied to, must not be <code>null</code>
+     */
+    ResultSetRow( ResultSet rs, List<Pair<ParticleConverter<?>, Integer>> conversions ) {
+        this.rs = rs;
+        this.conversions = conversions;
+    }
+
+    @Override
+    public Object getValue( int columnIndex )
+                            throws SQLException {
+        return rs.getObject( columnIndex );
+    }
+
+    @Override
+    public TypedObjectNode getParticle( ParticleConverter<?> converter )
+                            throws SQLException {
+        for ( Pair<ParticleConverter<?>, Integer> conversion : conversions ) {
+            if ( conversion.first == converter ) {
+                try {
+                    return converter.toParticle( rs, conversion.second );
+                } catch ( RuntimeException e ) {
+                    throw new SQLException( "Error converting column " + conversion.second + ": " + e.getMessage(), e );
+                }
+            }
+        }
+        throw new SQLException( "No column for converter " + converter + "." );
+    }
+}
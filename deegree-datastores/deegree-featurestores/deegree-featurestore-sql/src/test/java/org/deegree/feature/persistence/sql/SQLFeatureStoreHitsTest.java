@@ -0,0 +1,195 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.persistence.sql.rules.Mapping;
+import org.deegree.filter.Filter;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.filter.AbstractWhereBuilder;
+import org.deegree.sqldialect.filter.PropertyNameMapping;
+import org.deegree.sqldialect.filter.TableAliasManager;
+import org.deegree.sqldialect.filter.expression.SQLExpression;
+import org.deegree.sqldialect.postgis.PostGISDialect;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link HitsMode}s of {@link SQLFeatureStore}: generated SQL, parsing of the PostgreSQL query plan and
+ * reporting of inexact hits.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SQLFeatureStoreHitsTest {
+
+    private static final QName FT_NAME = QName.valueOf( "{http://www.deegree.org/app}Parent" );
+
+    private SQLFeatureStore fs;
+
+    private AbstractWhereBuilder wb;
+
+    private AbstractWhereBuilder filteredWb;
+
+    @Before
+    public void setUp() {
+        fs = mock( SQLFeatureStore.class );
+        when( fs.getDialect() ).thenReturn( new PostGISDialect( "2.0.0" ) );
+        when( fs.getSchema() ).thenReturn( mock( MappedAppSchema.class ) );
+        when( fs.getHitsSql( any( HitsMode.class ), any( FeatureTypeMapping.class ),
+                             any( AbstractWhereBuilder.class ) ) ).thenCallRealMethod();
+        when( fs.isExactHits( any( Query.class ), anyInt() ) ).thenCallRealMethod();
+
+        wb = mock( AbstractWhereBuilder.class );
+        when( wb.getWhere() ).thenReturn( null );
+
+        SQLExpression where = mock( SQLExpression.class );
+        when( where.getSQL() ).thenReturn( new StringBuilder( "X1.name = ?" ) );
+        filteredWb = mock( AbstractWhereBuilder.class );
+        when( filteredWb.getWhere() ).thenReturn( where );
+        when( filteredWb.getAliasManager() ).thenReturn( new TableAliasManager() );
+        when( filteredWb.getMappedPropertyNames() ).thenReturn( Collections.<PropertyNameMapping> emptyList() );
+    }
+
+    @Test
+    public void testExactHitsSql() {
+        FeatureTypeMapping ftMapping = map( HitsMode.EXACT, -1 );
+        assertEquals( "SELECT COUNT(*) FROM parent", fs.getHitsSql( HitsMode.EXACT, ftMapping, wb ) );
+        assertEquals( "SELECT COUNT(*) FROM (SELECT DISTINCT id FROM parent X1 WHERE X1.name = ?) featureids",
+                      fs.getHitsSql( HitsMode.EXACT, ftMapping, filteredWb ) );
+    }
+
+    @Test
+    public void testEstimatedHitsSql() {
+        FeatureTypeMapping ftMapping = map( HitsMode.ESTIMATED, -1 );
+        assertEquals( "EXPLAIN SELECT 1 FROM parent", fs.getHitsSql( HitsMode.ESTIMATED, ftMapping, wb ) );
+        assertEquals( "EXPLAIN SELECT DISTINCT id FROM parent X1 WHERE X1.name = ?",
+                      fs.getHitsSql( HitsMode.ESTIMATED, ftMapping, filteredWb ) );
+    }
+
+    @Test
+    public void testCappedHitsSql() {
+        FeatureTypeMapping ftMapping = map( HitsMode.CAPPED, 100 );
+        assertEquals( "SELECT COUNT(*) FROM (SELECT 1 FROM parent LIMIT 100) featureids",
+                      fs.getHitsSql( HitsMode.CAPPED, ftMapping, wb ) );
+        assertEquals( "SELECT COUNT(*) FROM (SELECT DISTINCT id FROM parent X1 WHERE X1.name = ? LIMIT 100) "
+                      + "featureids", fs.getHitsSql( HitsMode.CAPPED, ftMapping, filteredWb ) );
+    }
+
+    @Test
+    public void testParseEstimatedRows()
+                            throws FeatureStoreException {
+        String plan = "Seq Scan on parent  (cost=0.00..155.00 rows=10000 width=4)";
+        assertEquals( 10000, SQLFeatureStore.parseEstimatedRows( plan ) );
+        // only the estimate of the top node counts
+        plan = "HashAggregate  (cost=18.50..20.50 rows=200 width=4)\n"
+                      + "  ->  Seq Scan on parent x1  (cost=0.00..18.00 rows=5000 width=4)";
+        assertEquals( 200, SQLFeatureStore.parseEstimatedRows( plan ) );
+        assertEquals( 0, SQLFeatureStore.parseEstimatedRows( "Result  (cost=0.00..0.00 rows=0 width=0)" ) );
+        plan = "Seq Scan on big  (cost=0.00..1.00 rows=9876543210 width=4)";
+        assertEquals( Integer.MAX_VALUE, SQLFeatureStore.parseEstimatedRows( plan ) );
+    }
+
+    @Test(expected = FeatureStoreException.class)
+    public void testParseEstimatedRowsNoEstimate()
+                            throws FeatureStoreException {
+        SQLFeatureStore.parseEstimatedRows( "Seq Scan on parent" );
+    }
+
+    @Test
+    public void testExactHitsAreExact() {
+        when( fs.getMapping( FT_NAME ) ).thenReturn( map( HitsMode.EXACT, -1 ) );
+        assertTrue( fs.isExactHits( query(), 0 ) );
+        assertTrue( fs.isExactHits( query(), 100000 ) );
+    }
+
+    @Test
+    public void testEstimatedHitsAreNotExact() {
+        when( fs.getMapping( FT_NAME ) ).thenReturn( map( HitsMode.ESTIMATED, -1 ) );
+        assertFalse( fs.isExactHits( query(), 0 ) );
+        assertFalse( fs.isExactHits( query(), 42 ) );
+    }
+
+    @Test
+    public void testEstimatedHitsFallBackToExactWithoutPostGIS() {
+        when( fs.getDialect() ).thenReturn( mock( SQLDialect.class ) );
+        when( fs.getMapping( FT_NAME ) ).thenReturn( map( HitsMode.ESTIMATED, -1 ) );
+        assertTrue( fs.isExactHits( query(), 42 ) );
+    }
+
+    @Test
+    public void testCappedHitsAreExactBelowLimit() {
+        when( fs.getMapping( FT_NAME ) ).thenReturn( map( HitsMode.CAPPED, 100 ) );
+        assertTrue( fs.isExactHits( query(), 0 ) );
+        assertTrue( fs.isExactHits( query(), 99 ) );
+        // a lower bound only
+        assertFalse( fs.isExactHits( query(), 100 ) );
+    }
+
+    private static FeatureTypeMapping map( HitsMode hitsMode, int hitsLimit ) {
+        Pair<SQLIdentifier, BaseType> fidColumn = new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "id" ),
+                                                                                     BaseType.INTEGER );
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = Collections.singletonList( fidColumn );
+        FIDMapping fidMapping = new FIDMapping( "PARENT_", "_", fidColumns, null );
+        return new FeatureTypeMapping( FT_NAME, new TableName( "parent" ), fidMapping,
+                                       Collections.<Mapping> emptyList(), 0, hitsMode, hitsLimit );
+    }
+
+    private static Query query() {
+        return new Query( FT_NAME, (Filter) null, -1, -1, -1 );
+    }
+}
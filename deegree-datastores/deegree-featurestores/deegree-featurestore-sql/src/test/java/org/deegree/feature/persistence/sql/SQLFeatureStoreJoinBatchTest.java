@@ -0,0 +1,335 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.deegree.db.ConnectionProviderUtils.getSyntheticProvider;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.config.ResourceInitException;
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.test.TestDBProperties;
+import org.deegree.db.ConnectionProvider;
+import org.deegree.db.ConnectionProviderProvider;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreProvider;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.filter.Filter;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.workspace.PreparedResources;
+import org.deegree.workspace.ResourceLocation;
+import org.deegree.workspace.Workspace;
+import org.deegree.workspace.standard.DefaultResourceIdentifier;
+import org.deegree.workspace.standard.DefaultWorkspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SQLFeatureStore} test for building features in batches (<code>FeatureTypeMapping/@joinBatchSize</code>):
+ * features must be identical to the ones built with one SELECT per joined table and feature.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@RunWith(value = Parameterized.class)
+public class SQLFeatureStoreJoinBatchTest {
+
+    private static Logger LOG = LoggerFactory.getLogger( SQLFeatureStoreJoinBatchTest.class );
+
+    private static final QName PARENT = QName.valueOf( "{http://www.deegree.org/app}Parent" );
+
+    private static final QName NAME = QName.valueOf( "{http://www.deegree.org/app}name" );
+
+    private static final String[] DDL = {
+            "CREATE TABLE parent (id integer PRIMARY KEY, name varchar(100), code varchar(20))",
+            "CREATE TABLE parent_alias (code varchar(20), num integer, alias varchar(100))",
+            "CREATE TABLE child (id integer PRIMARY KEY, parentfk integer, num integer, label varchar(100))",
+            "CREATE TABLE child_tag (childfk integer, num integer, tag varchar(100))" };
+
+    // parents 2 and 5 have a NULL join key, parents 3 and 5 have no joined rows at all, parents 1 and 4 share a key
+    private static final String[] DATA = {
+            "INSERT INTO parent VALUES (1,'A','x')",
+            "INSERT INTO parent VALUES (2,'B',NULL)",
+            "INSERT INTO parent VALUES (3,'C','y')",
+            "INSERT INTO parent VALUES (4,'D','x')",
+            "INSERT INTO parent VALUES (5,'E',NULL)",
+            "INSERT INTO parent VALUES (6,'F','z')",
+            "INSERT INTO parent VALUES (7,'G','w')",
+            "INSERT INTO parent_alias VALUES ('x',2,'x2')",
+            "INSERT INTO parent_alias VALUES ('x',1,'x1')",
+            "INSERT INTO parent_alias VALUES ('z',1,'z1')",
+            "INSERT INTO parent_alias VALUES ('w',1,'w1')",
+            "INSERT INTO parent_alias VALUES ('unused',1,'u1')",
+            "INSERT INTO child VALUES (11,1,1,'c11')",
+            "INSERT INTO child VALUES (12,1,2,'c12')",
+            "INSERT INTO child VALUES (21,2,1,'c21')",
+            "INSERT INTO child VALUES (41,4,1,'c41')",
+            "INSERT INTO child VALUES (63,6,3,'c63')",
+            "INSERT INTO child VALUES (61,6,1,'c61')",
+            "INSERT INTO child VALUES (62,6,2,'c62')",
+            "INSERT INTO child VALUES (71,7,1,'c71')",
+            "INSERT INTO child_tag VALUES (11,2,'t2')",
+            "INSERT INTO child_tag VALUES (11,1,'t1')",
+            "INSERT INTO child_tag VALUES (41,1,'t3')",
+            "INSERT INTO child_tag VALUES (62,1,'t4')",
+            "INSERT INTO child_tag VALUES (71,1,'t5')" };
+
+    private final TestDBProperties settings;
+
+    private Workspace ws;
+
+    private PreparedResources prepared;
+
+    private SQLDialect dialect;
+
+    private FeatureStore fs;
+
+    private FeatureStore batchedFs;
+
+    public SQLFeatureStoreJoinBatchTest( TestDBProperties settings ) {
+        this.settings = settings;
+    }
+
+    @Before
+    public void setUp()
+                            throws Throwable {
+        initWorkspace();
+        ws.init( new DefaultResourceIdentifier<ConnectionProvider>( ConnectionProviderProvider.class, "admin" ),
+                 prepared );
+        ConnectionProvider prov = ws.getResource( ConnectionProviderProvider.class, "admin" );
+        dialect = prov.getDialect();
+        Connection adminConn = prov.getConnection();
+        try {
+            dialect.createDB( adminConn, settings.getDbName() );
+        } finally {
+            adminConn.close();
+        }
+        ws.init( new DefaultResourceIdentifier<ConnectionProvider>( ConnectionProviderProvider.class, "deegree-test" ),
+                 prepared );
+        populateTables();
+        fs = ws.init( new DefaultResourceIdentifier<FeatureStore>( FeatureStoreProvider.class, "parents" ), prepared );
+        batchedFs = ws.init( new DefaultResourceIdentifier<FeatureStore>( FeatureStoreProvider.class,
+                                                                          "parents_batched" ), prepared );
+    }
+
+    private void initWorkspace()
+                            throws ResourceInitException, URISyntaxException {
+        URL url = SQLFeatureStoreJoinBatchTest.class.getResource( "/org/deegree/feature/persistence/sql/join_batch/" );
+        ws = new DefaultWorkspace( new File( url.toURI() ) );
+        ws.startup();
+        ResourceLocation<ConnectionProvider> loc = getSyntheticProvider( "deegree-test", settings.getUrl(),
+                                                                         settings.getUser(), settings.getPass() );
+        ws.getLocationHandler().addExtraResource( loc );
+        loc = getSyntheticProvider( "admin", settings.getAdminUrl(), settings.getAdminUser(), settings.getAdminPass() );
+        ws.getLocationHandler().addExtraResource( loc );
+        ws.startup();
+        prepared = ws.prepare();
+    }
+
+    private void populateTables()
+                            throws SQLException {
+        ConnectionProvider prov = ws.getResource( ConnectionProviderProvider.class, "deegree-test" );
+        Connection conn = prov.getConnection();
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            for ( String sql : DDL ) {
+                stmt.execute( sql );
+            }
+            for ( String sql : DATA ) {
+                stmt.execute( sql );
+            }
+            if ( !conn.getAutoCommit() ) {
+                conn.commit();
+            }
+        } finally {
+            if ( stmt != null ) {
+                stmt.close();
+            }
+            conn.close();
+        }
+    }
+
+    @After
+    public void tearDown()
+                            throws Exception {
+        ConnectionProvider prov = ws.getResource( ConnectionProviderProvider.class, "admin" );
+        fs.destroy();
+        batchedFs.destroy();
+        ws.getResource( ConnectionProviderProvider.class, "deegree-test" ).destroy();
+        Connection adminConn = prov.getConnection();
+        try {
+            dialect.dropDB( adminConn, settings.getDbName() );
+        } finally {
+            adminConn.close();
+        }
+        ws.destroy();
+    }
+
+    @Test
+    public void testBatchedFeaturesMatchUnbatchedFeatures()
+                            throws FeatureStoreException, FilterEvaluationException {
+        Map<String, String> expected = queryParents( fs, null );
+        assertEquals( 7, expected.size() );
+        assertEquals( "PARENT_3[name=C]", expected.get( "PARENT_3" ) );
+        assertEquals( "PARENT_5[name=E]", expected.get( "PARENT_5" ) );
+        assertTrue( expected.get( "PARENT_1" ).contains( "alias=x1, alias=x2" ) );
+        assertTrue( expected.get( "PARENT_1" ).contains( "label=c11, tag=t1, tag=t2" ) );
+        assertTrue( expected.get( "PARENT_1" ).contains( "label=c12" ) );
+        assertTrue( expected.get( "PARENT_2" ).contains( "label=c21" ) );
+        assertFalse( expected.get( "PARENT_2" ).contains( "alias" ) );
+        assertTrue( expected.get( "PARENT_4" ).contains( "alias=x1, alias=x2" ) );
+
+        assertEquals( expected, queryParents( batchedFs, null ) );
+        assertEquals( 0, ( (SQLFeatureStore) fs ).getAvoidedJoinSelects() );
+        assertTrue( ( (SQLFeatureStore) batchedFs ).getAvoidedJoinSelects() > 0 );
+        // second query is answered from the feature cache (for some features)
+        assertEquals( expected, queryParents( batchedFs, null ) );
+    }
+
+    @Test
+    public void testBatchedFeaturesMatchUnbatchedFeaturesFiltered()
+                            throws FeatureStoreException, FilterEvaluationException {
+        for ( String name : new String[] { "A", "B", "C", "D", "E", "F", "G", "none" } ) {
+            PropertyIsEqualTo op = new PropertyIsEqualTo( new ValueReference( NAME ),
+                                                          new Literal<PrimitiveValue>( name ), true, null );
+            Filter filter = new OperatorFilter( op );
+            Map<String, String> expected = queryParents( fs, filter );
+            assertEquals( "none".equals( name ) ? 0 : 1, expected.size() );
+            assertEquals( expected, queryParents( batchedFs, filter ) );
+        }
+    }
+
+    private Map<String, String> queryParents( FeatureStore store, Filter filter )
+                            throws FeatureStoreException, FilterEvaluationException {
+        Map<String, String> idToFeature = new TreeMap<String, String>();
+        FeatureInputStream features = store.query( new Query( PARENT, filter, -1, -1, -1 ) );
+        try {
+            for ( Feature feature : features ) {
+                idToFeature.put( feature.getId(), toString( feature ) );
+            }
+        } finally {
+            features.close();
+        }
+        return idToFeature;
+    }
+
+    private static String toString( Feature feature ) {
+        StringBuilder sb = new StringBuilder( feature.getId() );
+        List<TypedObjectNode> props = new ArrayList<TypedObjectNode>( feature.getProperties() );
+        append( sb, props );
+        return sb.toString();
+    }
+
+    private static void append( StringBuilder sb, List<TypedObjectNode> nodes ) {
+        sb.append( '[' );
+        boolean first = true;
+        for ( TypedObjectNode node : nodes ) {
+            if ( !first ) {
+                sb.append( ", " );
+            }
+            append( sb, node );
+            first = false;
+        }
+        sb.append( ']' );
+    }
+
+    private static void append( StringBuilder sb, TypedObjectNode node ) {
+        if ( node instanceof PrimitiveValue ) {
+            sb.append( ( (PrimitiveValue) node ).getAsText() );
+        } else if ( node instanceof ElementNode ) {
+            ElementNode el = (ElementNode) node;
+            sb.append( el.getName().getLocalPart() );
+            List<TypedObjectNode> children = el.getChildren();
+            if ( children.size() == 1 && children.get( 0 ) instanceof PrimitiveValue ) {
+                sb.append( '=' );
+                append( sb, children.get( 0 ) );
+            } else {
+                append( sb, children );
+            }
+        } else {
+            sb.append( node );
+        }
+    }
+
+    @Parameters
+    public static Collection<TestDBProperties[]> data()
+                            throws IllegalArgumentException, IOException {
+        List<TestDBProperties[]> settings = new ArrayList<TestDBProperties[]>();
+        try {
+            for ( TestDBProperties testDBSettings : TestDBProperties.getAll() ) {
+                settings.add( new TestDBProperties[] { testDBSettings } );
+            }
+        } catch ( Throwable t ) {
+            LOG.error( "Access to test databases not configured properly: " + t.getMessage() );
+        }
+        return settings;
+    }
+}
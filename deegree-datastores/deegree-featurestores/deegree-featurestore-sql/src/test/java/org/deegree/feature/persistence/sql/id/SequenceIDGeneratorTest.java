@@ -0,0 +1,160 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.id;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.deegree.sqldialect.SQLDialect;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SequenceIDGenerator}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SequenceIDGeneratorTest {
+
+    private static final String SELECT_ONE = "SELECT nextval('seq')";
+
+    private static final String SELECT_BLOCK = "SELECT nextval('seq') FROM generate_series(1,3)";
+
+    private SQLDialect dialect;
+
+    private Connection conn;
+
+    private Statement stmt;
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        dialect = mock( SQLDialect.class );
+        when( dialect.getSelectSequenceNextVal( "seq" ) ).thenReturn( SELECT_ONE );
+        when( dialect.getSelectSequenceNextVals( "seq", 3 ) ).thenReturn( SELECT_BLOCK );
+        conn = mock( Connection.class );
+        stmt = mock( Statement.class );
+        when( conn.createStatement() ).thenReturn( stmt );
+    }
+
+    @Test
+    public void testDefaultAllocationSizeFetchesEveryValue()
+                            throws SQLException {
+        ResultSet rs1 = mockResultSet( 5 );
+        ResultSet rs2 = mockResultSet( 6 );
+        when( stmt.executeQuery( SELECT_ONE ) ).thenReturn( rs1, rs2 );
+
+        SequenceIDGenerator generator = new SequenceIDGenerator( "seq" );
+        assertEquals( 1, generator.getAllocationSize() );
+        assertEquals( 5, generator.getNextValue( conn, dialect ) );
+        assertEquals( 6, generator.getNextValue( conn, dialect ) );
+        verify( stmt, times( 2 ) ).executeQuery( SELECT_ONE );
+        verify( dialect, never() ).getSelectSequenceNextVals( "seq", 1 );
+    }
+
+    @Test
+    public void testBlockIsFetchedWithSingleSelect()
+                            throws SQLException {
+        ResultSet rs1 = mockResultSet( 10, 11, 12 );
+        ResultSet rs2 = mockResultSet( 20, 21, 22 );
+        when( stmt.executeQuery( SELECT_BLOCK ) ).thenReturn( rs1, rs2 );
+
+        SequenceIDGenerator generator = new SequenceIDGenerator( "seq", 3 );
+        assertEquals( 10, generator.getNextValue( conn, dialect ) );
+        assertEquals( 11, generator.getNextValue( conn, dialect ) );
+        assertEquals( 12, generator.getNextValue( conn, dialect ) );
+        verify( stmt, times( 1 ) ).executeQuery( SELECT_BLOCK );
+        assertEquals( 20, generator.getNextValue( conn, dialect ) );
+        verify( stmt, times( 2 ) ).executeQuery( SELECT_BLOCK );
+        verify( stmt, never() ).executeQuery( SELECT_ONE );
+        verify( rs1 ).close();
+    }
+
+    @Test
+    public void testIncompleteBlockIsUsedBeforeNextFetch()
+                            throws SQLException {
+        ResultSet rs1 = mockResultSet( 10, 11 );
+        ResultSet rs2 = mockResultSet( 30, 31, 32 );
+        when( stmt.executeQuery( SELECT_BLOCK ) ).thenReturn( rs1, rs2 );
+
+        SequenceIDGenerator generator = new SequenceIDGenerator( "seq", 3 );
+        assertEquals( 10, generator.getNextValue( conn, dialect ) );
+        assertEquals( 11, generator.getNextValue( conn, dialect ) );
+        assertEquals( 30, generator.getNextValue( conn, dialect ) );
+        verify( stmt, times( 2 ) ).executeQuery( SELECT_BLOCK );
+    }
+
+    @Test(expected = SQLException.class)
+    public void testNoValue()
+                            throws SQLException {
+        ResultSet rs = mockResultSet();
+        when( stmt.executeQuery( SELECT_BLOCK ) ).thenReturn( rs );
+        new SequenceIDGenerator( "seq", 3 ).getNextValue( conn, dialect );
+    }
+
+    private ResultSet mockResultSet( int... values )
+                            throws SQLException {
+        ResultSet rs = mock( ResultSet.class );
+        if ( values.length == 0 ) {
+            when( rs.next() ).thenReturn( false );
+            return rs;
+        }
+        // true for every value, false afterwards
+        Boolean[] more = new Boolean[values.length];
+        for ( int i = 0; i < values.length; i++ ) {
+            more[i] = i < values.length - 1 ? Boolean.TRUE : Boolean.FALSE;
+        }
+        when( rs.next() ).thenReturn( true, more );
+        Integer[] rest = new Integer[values.length - 1];
+        for ( int i = 1; i < values.length; i++ ) {
+            rest[i - 1] = values[i];
+        }
+        when( rs.getInt( 1 ) ).thenReturn( values[0], rest );
+        return rs;
+    }
+}
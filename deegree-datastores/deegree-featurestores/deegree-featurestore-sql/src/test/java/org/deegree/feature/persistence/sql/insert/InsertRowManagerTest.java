@@ -0,0 +1,287 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static org.deegree.feature.persistence.sql.insert.InsertRowManager.MAX_BATCHES;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.id.KeyPropagation;
+import org.deegree.feature.persistence.sql.id.TableDependencies;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.deegree.sqldialect.postgis.PostGISDialect;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Tests for the batching of INSERTs in {@link InsertRowManager}: rows must only be added to batches that are executed
+ * after the batches of the rows they depend on. Bulk loading must always batch (and use COPY for PostGIS).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class InsertRowManagerTest {
+
+    private static final KeyPropagation A_TO_B = new KeyPropagation( new TableName( "a" ),
+                                                                     Arrays.asList( new SQLIdentifier( "id" ) ),
+                                                                     new TableName( "b" ),
+                                                                     Arrays.asList( new SQLIdentifier( "parentfk" ) ) );
+
+    private SQLFeatureStore fs;
+
+    private Connection conn;
+
+    private final List<String> preparedSql = new ArrayList<String>();
+
+    private final List<PreparedStatement> stmts = new ArrayList<PreparedStatement>();
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        MappedAppSchema schema = mock( MappedAppSchema.class );
+        when( schema.getKeyDependencies() ).thenReturn( mock( TableDependencies.class ) );
+        fs = mock( SQLFeatureStore.class );
+        when( fs.getSchema() ).thenReturn( schema );
+        conn = mock( Connection.class );
+        when( conn.prepareStatement( anyString() ) ).thenAnswer( new Answer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer( InvocationOnMock invocation ) {
+                PreparedStatement stmt = mock( PreparedStatement.class );
+                preparedSql.add( (String) invocation.getArguments()[0] );
+                stmts.add( stmt );
+                return stmt;
+            }
+        } );
+    }
+
+    @Test
+    public void testRowsWithSameStatementShareBatch()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 10 );
+        insert( mgr, new TestRow( mgr, "a", 1, true ), new TestRow( mgr, "a", 2, true ), new TestRow( mgr, "a", 3,
+                                                                                                     true ) );
+        assertEquals( 1, stmts.size() );
+        verify( stmts.get( 0 ), times( 3 ) ).addBatch();
+        verify( stmts.get( 0 ), never() ).executeBatch();
+
+        mgr.flush();
+        verify( stmts.get( 0 ) ).executeBatch();
+        verify( stmts.get( 0 ) ).close();
+    }
+
+    @Test
+    public void testChildIsNotAddedToBatchBeforeParentBatch()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 10 );
+        TestRow b0 = new TestRow( mgr, "b", 10, true );
+        b0.addPreparedArgument( "parentfk", 99 );
+        insert( mgr, b0 );
+
+        TestRow a1 = new TestRow( mgr, "a", 1, true );
+        TestRow b1 = new TestRow( mgr, "b", 11, true );
+        mgr.addDependency( a1, b1, A_TO_B );
+        insert( mgr, a1, b1 );
+
+        // b1 has the same statement as b0, but must go into a new batch after the one of a1
+        assertEquals( 3, stmts.size() );
+        assertEquals( preparedSql.get( 0 ), preparedSql.get( 2 ) );
+        verify( stmts.get( 2 ) ).setObject( 2, 1 );
+
+        mgr.flush();
+        InOrder inOrder = inOrder( stmts.get( 0 ), stmts.get( 1 ), stmts.get( 2 ) );
+        inOrder.verify( stmts.get( 0 ) ).executeBatch();
+        inOrder.verify( stmts.get( 1 ) ).executeBatch();
+        inOrder.verify( stmts.get( 2 ) ).executeBatch();
+    }
+
+    @Test
+    public void testIndependentRowJoinsEarlierBatch()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 10 );
+        insert( mgr, new TestRow( mgr, "b", 10, true ) );
+        insert( mgr, new TestRow( mgr, "a", 1, true ) );
+        insert( mgr, new TestRow( mgr, "b", 11, true ) );
+
+        assertEquals( 2, stmts.size() );
+        verify( stmts.get( 0 ), times( 2 ) ).addBatch();
+    }
+
+    @Test
+    public void testFullBatchIsExecuted()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 2 );
+        insert( mgr, new TestRow( mgr, "a", 1, true ), new TestRow( mgr, "a", 2, true ), new TestRow( mgr, "a", 3,
+                                                                                                     true ) );
+        assertEquals( 2, stmts.size() );
+        verify( stmts.get( 0 ), times( 2 ) ).addBatch();
+        verify( stmts.get( 0 ) ).executeBatch();
+        verify( stmts.get( 1 ) ).addBatch();
+        verify( stmts.get( 1 ), never() ).executeBatch();
+
+        mgr.flush();
+        verify( stmts.get( 1 ) ).executeBatch();
+    }
+
+    @Test
+    public void testNumberOfPendingBatchesIsLimited()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 10 );
+        for ( int i = 0; i <= MAX_BATCHES; i++ ) {
+            insert( mgr, new TestRow( mgr, "t" + i, i, true ) );
+        }
+        assertEquals( MAX_BATCHES + 1, stmts.size() );
+        for ( int i = 0; i < MAX_BATCHES; i++ ) {
+            verify( stmts.get( i ) ).executeBatch();
+        }
+        verify( stmts.get( MAX_BATCHES ), never() ).executeBatch();
+    }
+
+    @Test
+    public void testUnbatchableRowFlushesBatchesItDependsOn()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 10 );
+        insert( mgr, new TestRow( mgr, "a", 1, true ) );
+        // independent, batch is not executed
+        insert( mgr, new TestRow( mgr, "c", 1, false ) );
+        assertEquals( 2, stmts.size() );
+        verify( stmts.get( 1 ) ).execute();
+        verify( stmts.get( 0 ), never() ).executeBatch();
+
+        TestRow a2 = new TestRow( mgr, "a", 2, true );
+        TestRow b2 = new TestRow( mgr, "b", 12, false );
+        mgr.addDependency( a2, b2, A_TO_B );
+        insert( mgr, a2, b2 );
+        assertEquals( 3, stmts.size() );
+        InOrder inOrder = inOrder( stmts.get( 0 ), stmts.get( 2 ) );
+        inOrder.verify( stmts.get( 0 ) ).executeBatch();
+        inOrder.verify( stmts.get( 2 ) ).execute();
+    }
+
+    @Test
+    public void testBatchingDisabled()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 0 );
+        TestRow a1 = new TestRow( mgr, "a", 1, true );
+        TestRow b1 = new TestRow( mgr, "b", 11, true );
+        mgr.addDependency( a1, b1, A_TO_B );
+        insert( mgr, a1, b1 );
+
+        assertEquals( 2, stmts.size() );
+        for ( PreparedStatement stmt : stmts ) {
+            verify( stmt ).execute();
+            verify( stmt, never() ).addBatch();
+        }
+    }
+
+    @Test
+    public void testBulkInsertUsesCopyWithoutConfiguredBatchSize()
+                            throws Exception {
+        when( fs.getDialect() ).thenReturn( new PostGISDialect( "2.0.0" ) );
+        when( fs.getInsertBatchSize() ).thenReturn( 0 );
+        ResultSetMetaData md = mock( ResultSetMetaData.class );
+        when( md.getColumnTypeName( 1 ) ).thenReturn( "int4" );
+        ResultSet rs = mock( ResultSet.class );
+        when( rs.getMetaData() ).thenReturn( md );
+        Statement typeStmt = mock( Statement.class );
+        when( typeStmt.executeQuery( anyString() ) ).thenReturn( rs );
+        when( conn.createStatement() ).thenReturn( typeStmt );
+        CopyManager copyManager = mock( CopyManager.class );
+        PGConnection pgConn = mock( PGConnection.class );
+        when( pgConn.getCopyAPI() ).thenReturn( copyManager );
+        when( conn.unwrap( PGConnection.class ) ).thenReturn( pgConn );
+
+        InsertRowManager mgr = InsertRowManager.createBulkInsertManager( fs, conn, IDGenMode.USE_EXISTING );
+        insert( mgr, new TestRow( mgr, "a", 1, true ), new TestRow( mgr, "a", 2, true ) );
+        mgr.flush();
+
+        assertEquals( 0, stmts.size() );
+        verify( copyManager ).copyIn( eq( "COPY a (id) FROM STDIN (FORMAT binary)" ), any( InputStream.class ) );
+    }
+
+    private void insert( InsertRowManager mgr, InsertRow... rows )
+                            throws SQLException, FeatureStoreException {
+        mgr.addRootRows( Arrays.asList( rows ) );
+        mgr.processHeap();
+    }
+
+    private static class TestRow extends InsertRow {
+
+        private final boolean batchable;
+
+        private TestRow( InsertRowManager mgr, String table, int id, boolean batchable ) {
+            super( mgr );
+            this.table = new TableName( table );
+            this.batchable = batchable;
+            addPreparedArgument( "id", id );
+        }
+
+        @Override
+        boolean isBatchable( boolean propagateNonFidAutoGenColumns ) {
+            return batchable && super.isBatchable( propagateNonFidAutoGenColumns );
+        }
+    }
+}
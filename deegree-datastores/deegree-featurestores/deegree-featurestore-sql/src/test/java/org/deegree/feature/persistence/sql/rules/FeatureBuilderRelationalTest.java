@@ -0,0 +1,189 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.Pair;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.persistence.sql.jaxb.VoidEscalationPolicyType;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.sqldialect.postgis.PostGISGeometryConverter;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the generalization of geometries by {@link FeatureBuilderRelational}: the tolerance passed to the
+ * {@link PostGISGeometryConverter} must be the resolution, converted to units of the storage CRS.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureBuilderRelationalTest {
+
+    private static final Pattern TOLERANCE = Pattern.compile( "ST_SnapToGrid\\(X1\\.geom,([^)]+)\\)" );
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private SQLFeatureStore fs;
+
+    private FeatureTypeMapping ftMapping;
+
+    private GeometryMapping geomMapping;
+
+    @Before
+    public void setUp() {
+        Pair<SQLIdentifier, BaseType> fidColumn = new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "fid" ),
+                                                                                     BaseType.INTEGER );
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = Collections.singletonList( fidColumn );
+        geomMapping = mock( GeometryMapping.class );
+        when( geomMapping.getJoinedTable() ).thenReturn( null );
+        fs = mock( SQLFeatureStore.class );
+        ftMapping = mock( FeatureTypeMapping.class );
+        when( ftMapping.getFidMapping() ).thenReturn( new FIDMapping( "FT_", "_", fidColumns, null ) );
+        when( ftMapping.getMappings() ).thenReturn( Collections.<Mapping> singletonList( geomMapping ) );
+    }
+
+    @Test
+    public void testNoGeneralization()
+                            throws Exception {
+        setStorageCrs( "EPSG:4326" );
+        Envelope bbox = geomFac.createEnvelope( 7, 50, 8, 51, lookup( "EPSG:4326" ) );
+        FeatureBuilderRelational builder = createBuilder( -1, bbox );
+        assertEquals( "ST_AsEWKB(X1.geom)", getGeometryColumn( builder ) );
+        builder = createBuilder( 0.001, null );
+        assertEquals( "ST_AsEWKB(X1.geom)", getGeometryColumn( builder ) );
+    }
+
+    @Test
+    public void testToleranceSameCrs()
+                            throws Exception {
+        setStorageCrs( "EPSG:25832" );
+        Envelope bbox = geomFac.createEnvelope( 400000, 5500000, 410000, 5510000, lookup( "EPSG:25832" ) );
+        assertEquals( 2.5, getTolerance( createBuilder( 2.5, bbox ) ), 0.0 );
+    }
+
+    @Test
+    public void testToleranceBBoxWithoutCrs()
+                            throws Exception {
+        setStorageCrs( "EPSG:25832" );
+        Envelope bbox = geomFac.createEnvelope( 400000, 5500000, 410000, 5510000, null );
+        assertEquals( 2.5, getTolerance( createBuilder( 2.5, bbox ) ), 0.0 );
+    }
+
+    @Test
+    public void testToleranceDifferentCrs()
+                            throws Exception {
+        ICRS storageCrs = setStorageCrs( "EPSG:25832" );
+        Envelope bbox = geomFac.createEnvelope( 7, 50, 8, 51, lookup( "EPSG:4326" ) );
+        double resolution = 0.001;
+        double tolerance = getTolerance( createBuilder( resolution, bbox ) );
+
+        // resolution scaled by the ratio of the bbox diagonals (in storage and bbox CRS)
+        Envelope storageBBox = new GeometryTransformer( storageCrs ).transform( bbox );
+        double expected = resolution * getDiagonal( storageBBox ) / getDiagonal( bbox );
+        assertEquals( expected, tolerance, expected * 1E-9 );
+        // degrees vs. meters
+        assertTrue( tolerance > 1.0 );
+    }
+
+    @Test
+    public void testNonPostGISConverterIsNotGeneralized()
+                            throws Exception {
+        ParticleConverter<?> converter = mock( ParticleConverter.class );
+        when( converter.getSelectSnippet( "X1" ) ).thenReturn( "X1.geom" );
+        doReturn( converter ).when( fs ).getConverter( geomMapping );
+        Envelope bbox = geomFac.createEnvelope( 7, 50, 8, 51, lookup( "EPSG:4326" ) );
+        assertEquals( "X1.geom", getGeometryColumn( createBuilder( 0.001, bbox ) ) );
+    }
+
+    private ICRS setStorageCrs( String crs )
+                            throws Exception {
+        ICRS storageCrs = lookup( crs );
+        ParticleConverter<?> converter = new PostGISGeometryConverter( "geom", storageCrs, "0", false );
+        doReturn( converter ).when( fs ).getConverter( geomMapping );
+        return storageCrs;
+    }
+
+    private ICRS lookup( String crs )
+                            throws Exception {
+        return CRSManager.lookup( crs );
+    }
+
+    private FeatureBuilderRelational createBuilder( double resolution, Envelope bbox ) {
+        return new FeatureBuilderRelational( fs, mock( FeatureType.class ), ftMapping, null, "X1",
+                                             VoidEscalationPolicyType.NONE, null, resolution, bbox );
+    }
+
+    private String getGeometryColumn( FeatureBuilderRelational builder ) {
+        List<String> columns = builder.getInitialSelectColumns();
+        assertEquals( 2, columns.size() );
+        assertEquals( "X1.fid", columns.get( 0 ) );
+        return columns.get( 1 );
+    }
+
+    private double getTolerance( FeatureBuilderRelational builder ) {
+        String column = getGeometryColumn( builder );
+        Matcher m = TOLERANCE.matcher( column );
+        assertTrue( "Not generalized: " + column, m.find() );
+        return Double.parseDouble( m.group( 1 ) );
+    }
+
+    private double getDiagonal( Envelope env ) {
+        return Math.sqrt( env.getSpan0() * env.getSpan0() + env.getSpan1() * env.getSpan1() );
+    }
+}
@@ -47,6 +47,7 @@ import org.apache.axiom.om.OMElement;
 import org.deegree.commons.xml.XMLAdapter;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.compiled.FilterCompiler;
 import org.deegree.metadata.MetadataRecord;
 import org.deegree.metadata.MetadataRecordFactory;
 import org.deegree.metadata.iso.ISORecord;
@@ -209,9 +210,10 @@ public class StoredISORecords {
             return applyNullFilter( startPosition, maxRecords );
         }
         List<ISORecord> result = new ArrayList<ISORecord>( maxRecords );
+        Filter compiled = FilterCompiler.compile( filter );
         int matched = 1;
         for ( ISORecord record : identifierToRecord.values() ) {
-            if ( record.eval( filter ) ) {
+            if ( record.eval( compiled ) ) {
                 if ( matched >= startPosition ) {
                     result.add( record );
                 }
@@ -262,8 +264,9 @@ public class StoredISORecords {
         if ( filter == null ) {
             result.addAll( identifierToRecord.values() );
         } else {
+            Filter compiled = FilterCompiler.compile( filter );
             for ( ISORecord record : identifierToRecord.values() ) {
-                if ( record.eval( filter ) ) {
+                if ( record.eval( compiled ) ) {
                     result.add( record );
                 }
             }
@@ -44,6 +44,7 @@ import static org.deegree.layer.persistence.feature.FilterBuilder.buildFilterFor
 import static org.deegree.style.utils.Styles.getStyleFilters;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -51,9 +52,12 @@ import java.util.Set;
 import javax.xml.namespace.QName;
 
 import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.types.AppSchemas;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
 import org.deegree.filter.Expression;
 import org.deegree.filter.Filters;
 import org.deegree.filter.OperatorFilter;
@@ -63,6 +67,7 @@ import org.deegree.geometry.Envelope;
 import org.deegree.layer.AbstractLayer;
 import org.deegree.layer.LayerQuery;
 import org.deegree.layer.metadata.LayerMetadata;
+import org.deegree.protocol.wfs.getfeature.TypeName;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
 import org.deegree.style.utils.Styles;
@@ -89,9 +94,22 @@ public class FeatureLayer extends AbstractLayer {
 
     private DimensionFilterBuilder dimFilterBuilder;
 
+    private final boolean generalizeToPixel;
+
     public FeatureLayer( LayerMetadata md, FeatureStore featureStore, QName featureType, OperatorFilter filter,
                          List<SortProperty> sortBy, List<SortProperty> sortByFeatureInfo ) {
+        this( md, featureStore, featureType, filter, sortBy, sortByFeatureInfo, false );
+    }
+
+    /**
+     * @param generalizeToPixel
+     *            if true, the feature store is asked to generalize the geometries to the pixel size of the requested
+     *            map (if supported by the feature store)
+     */
+    public FeatureLayer( LayerMetadata md, FeatureStore featureStore, QName featureType, OperatorFilter filter,
+                         List<SortProperty> sortBy, List<SortProperty> sortByFeatureInfo, boolean generalizeToPixel ) {
         super( md );
+        this.generalizeToPixel = generalizeToPixel;
         this.featureStore = featureStore;
         this.featureType = featureType;
         this.filter = filter;
@@ -143,19 +161,59 @@ public class FeatureLayer extends AbstractLayer {
 
         QueryBuilder builder = new QueryBuilder( featureStore, filter, ftName, bbox, query, geomProp, sortBy,
                                                  getMetadata().getName() );
-        List<Query> queries = builder.buildMapQueries();
+        List<Query> queries = builder.buildMapQueries( generalizeToPixel );
 
         if ( queries.isEmpty() ) {
             LOG.warn( "No queries were generated. Is the configuration correct?" );
             return null;
         }
 
+        queries = restrictToRequiredProperties( queries, style );
+
         Integer maxFeats = query.getRenderingOptions().getMaxFeatures( getMetadata().getName() );
         final int maxFeatures = maxFeats == null ? -1 : maxFeats;
 
         return new FeatureLayerData( queries, featureStore, maxFeatures, style, ftName );
     }
 
+    /**
+     * Restricts the given map queries to the properties that are needed for rendering with the given style (the
+     * properties used by the style and the geometry properties).
+     */
+    private List<Query> restrictToRequiredProperties( List<Query> queries, Style style ) {
+        List<ValueReference> propNames = style.getPropertyNames();
+        if ( propNames == null ) {
+            LOG.debug( "Properties used by style '{}' cannot be determined, querying complete features.",
+                       style.getName() );
+            return queries;
+        }
+        Set<QName> styleProps = new HashSet<QName>();
+        for ( ValueReference propName : propNames ) {
+            if ( propName.getAsQName() == null ) {
+                LOG.debug( "Style '{}' uses complex property name '{}', querying complete features.",
+                           style.getName(), propName.getAsText() );
+                return queries;
+            }
+            styleProps.add( propName.getAsQName() );
+        }
+        List<Query> restricted = new ArrayList<Query>( queries.size() );
+        for ( Query query : queries ) {
+            Set<QName> requiredProps = new HashSet<QName>( styleProps );
+            for ( TypeName typeName : query.getTypeNames() ) {
+                FeatureType ft = featureStore.getSchema().getFeatureType( typeName.getFeatureTypeName() );
+                if ( ft != null ) {
+                    for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+                        if ( pt instanceof GeometryPropertyType ) {
+                            requiredProps.add( pt.getName() );
+                        }
+                    }
+                }
+            }
+            restricted.add( new Query( query, requiredProps ) );
+        }
+        return restricted;
+    }
+
     @Override
     public FeatureLayerData infoQuery( final LayerQuery query, List<String> headers )
                             throws OWSException {
@@ -37,7 +37,11 @@ package org.deegree.layer.persistence.feature;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,16 +52,24 @@ import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.ScreenGeometryFeatureStore;
+import org.deegree.feature.persistence.ScreenGeometryVisitor;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.PrefetchManager;
 import org.deegree.feature.stream.ThreadedFeatureInputStream;
 import org.deegree.feature.types.AppSchemas;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.layer.LayerData;
+import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.style.se.unevaluated.Style;
+import org.deegree.style.styling.PointStyling;
+import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.TextStyling;
+import org.deegree.style.utils.Styles;
 import org.slf4j.Logger;
 
 /**
@@ -81,11 +93,14 @@ public class FeatureLayerData implements LayerData {
 
     private final FeatureStore featureStore;
 
+    private final QName ftName;
+
     public FeatureLayerData( List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style, QName ftName ) {
         this.queries = queries;
         this.featureStore = featureStore;
         this.maxFeatures = maxFeatures;
         this.style = style;
+        this.ftName = ftName;
         Map<String, QName> bindings = new HashMap<String, QName>();
         Set<QName> validNames = AppSchemas.collectProperyNames( featureStore.getSchema(), ftName );
         for ( QName name : validNames ) {
@@ -96,11 +111,14 @@ public class FeatureLayerData implements LayerData {
 
     @Override
     public void render( RenderContext context ) {
+        if ( renderScreenGeometries( context ) ) {
+            return;
+        }
         FeatureInputStream features = null;
         try {
             // TODO Should this always be done on this level? What about min and maxFill values?
             features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
-            features = new ThreadedFeatureInputStream( features, 100, 20 );
+            features = new ThreadedFeatureInputStream( features, PrefetchManager.getPool( getStoreId() ), 20, 5 );
 
             FeatureStreamRenderer renderer = new FeatureStreamRenderer( context, maxFeatures, evaluator );
             renderer.renderFeatureStream( features, style );
@@ -117,6 +135,94 @@ public class FeatureLayerData implements LayerData {
         }
     }
 
+    /**
+     * Renders the geometries directly in screen coordinates, if both the feature store and the style allow it (see
+     * {@link ScreenGeometryFeatureStore}).
+     * 
+     * @param context
+     *            render context, must not be <code>null</code>
+     * @return true, if the layer has been rendered, false if the regular feature path has to be used
+     */
+    private boolean renderScreenGeometries( RenderContext context ) {
+        if ( !( featureStore instanceof ScreenGeometryFeatureStore ) || queries.size() != 1
+             || !( context.getVectorRenderer() instanceof Java2DRenderer ) ) {
+            return false;
+        }
+        final List<Styling> stylings = getScreenStylings();
+        if ( stylings == null ) {
+            return false;
+        }
+        final Java2DRenderer renderer = (Java2DRenderer) context.getVectorRenderer();
+        AffineTransform worldToScreen = renderer.getWorldToScreen();
+        ScreenGeometryVisitor visitor = new ScreenGeometryVisitor() {
+
+            private int count;
+
+            @Override
+            public boolean visitPoint( double x, double y ) {
+                for ( Styling styling : stylings ) {
+                    if ( styling instanceof PointStyling ) {
+                        renderer.renderScreenPoint( styling, x, y );
+                    }
+                }
+                return maxFeatures <= 0 || ++count < maxFeatures;
+            }
+
+            @Override
+            public boolean visitPath( Path2D.Double path, int type ) {
+                for ( Styling styling : stylings ) {
+                    if ( type == POINTS ) {
+                        if ( styling instanceof PointStyling ) {
+                            renderer.renderScreenPath( styling, path, false );
+                        }
+                    } else {
+                        renderer.renderScreenPath( styling, path, type == POLYGONS );
+                    }
+                }
+                return maxFeatures <= 0 || ++count < maxFeatures;
+            }
+        };
+        try {
+            return ( (ScreenGeometryFeatureStore) featureStore ).queryScreenGeometries( queries.get( 0 ),
+                                                                                      worldToScreen, visitor );
+        } catch ( Throwable e ) {
+            LOG.warn( "Data could not be fetched from the feature store. The error was '{}'.", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+        return true;
+    }
+
+    /**
+     * @return the stylings to apply to every geometry, or <code>null</code>, if the style depends on the features
+     */
+    private List<Styling> getScreenStylings() {
+        if ( style == null || style.isDefault() || !style.isSimple()
+             || !Styles.getGeometryExpressions( style ).isEmpty() ) {
+            return null;
+        }
+        if ( style.getFeatureType() != null && !style.getFeatureType().equals( ftName ) ) {
+            return null;
+        }
+        List<Styling> stylings = new ArrayList<Styling>();
+        for ( LinkedList<Styling> base : style.getBases() ) {
+            for ( Styling styling : base ) {
+                if ( styling instanceof TextStyling ) {
+                    return null;
+                }
+                stylings.add( styling );
+            }
+        }
+        return stylings;
+    }
+
+    // the features of every store are prefetched by a separate pool
+    private String getStoreId() {
+        if ( featureStore.getMetadata() == null ) {
+            return null;
+        }
+        return featureStore.getMetadata().getIdentifier().getId();
+    }
+
     private static FeatureCollection clearDuplicates( FeatureInputStream rs ) {
         FeatureCollection col = null;
         try {
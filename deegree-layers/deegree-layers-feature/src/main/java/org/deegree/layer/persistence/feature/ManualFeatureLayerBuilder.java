@@ -118,7 +118,8 @@ class ManualFeatureLayerBuilder {
             Pair<Map<String, Style>, Map<String, Style>> p = parseStyles( workspace, lay.getName(), lay.getStyleRef() );
             md.setStyles( p.first );
             md.setLegendStyles( p.second );
-            Layer l = new FeatureLayer( md, store, featureType, filter, sortBy, sortByFeatureInfo );
+            boolean generalizeToPixel = lay.isGeneralizeToPixel() != null && lay.isGeneralizeToPixel();
+            Layer l = new FeatureLayer( md, store, featureType, filter, sortBy, sortByFeatureInfo, generalizeToPixel );
             map.put( lay.getName(), l );
         }
         return new MultipleLayerStore( map, metadata );
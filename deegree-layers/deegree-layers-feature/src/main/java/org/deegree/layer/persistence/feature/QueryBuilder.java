@@ -102,8 +102,14 @@ class QueryBuilder {
         this.layerName = layerName;
     }
 
-    List<Query> buildMapQueries() {
+    /**
+     * @param generalize
+     *            if true, the map resolution is passed to the feature store, so it can generalize the geometries
+     *            accordingly
+     */
+    List<Query> buildMapQueries( boolean generalize ) {
         List<Query> queries = new ArrayList<Query>();
+        final double resolution = generalize ? query.getResolution() : -1;
         Integer maxFeats = query.getRenderingOptions().getMaxFeatures( layerName );
         final int maxFeatures = maxFeats == null ? -1 : maxFeats;
         if ( ftName == null && featureStore != null ) {
@@ -114,12 +120,12 @@ class QueryBuilder {
                                      public Query apply( FeatureType u ) {
                                          Filter fil = Filters.addBBoxConstraint( bbox, filter2, geomProp );
                                          return createQuery( u.getName(), fil, round( query.getScale() ), maxFeatures,
-                                                             query.getResolution(), sortBy );
+                                                             resolution, sortBy );
                                      }
                                  } ) );
         } else {
             Query fquery = createQuery( ftName, Filters.addBBoxConstraint( bbox, filter, geomProp ),
-                                        round( query.getScale() ), maxFeatures, query.getResolution(), sortBy );
+                                        round( query.getScale() ), maxFeatures, resolution, sortBy );
             queries.add( fquery );
         }
 
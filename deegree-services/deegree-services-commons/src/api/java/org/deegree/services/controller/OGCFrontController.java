@@ -108,7 +108,7 @@ import org.deegree.commons.xml.XMLAdapter;
 import org.deegree.commons.xml.XMLProcessingException;
 import org.deegree.commons.xml.stax.XMLInputFactoryUtils;
 import org.deegree.commons.xml.stax.XMLStreamUtils;
-import org.deegree.feature.stream.ThreadedFeatureInputStream;
+import org.deegree.feature.stream.PrefetchManager;
 import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
@@ -1370,7 +1370,7 @@ public class OGCFrontController extends HttpServlet {
     private void plugClassLoaderLeaks() {
         // if the feature store manager does this, it breaks
         try {
-            ThreadedFeatureInputStream.shutdown();
+            PrefetchManager.shutdown();
         } catch ( Throwable e ) {
             // just eat it
         }
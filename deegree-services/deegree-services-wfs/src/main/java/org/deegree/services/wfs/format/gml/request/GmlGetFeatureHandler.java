@@ -58,6 +58,8 @@ import static org.deegree.services.wfs.query.StoredQueryHandler.GET_FEATURE_BY_I
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -72,6 +74,7 @@ import javax.xml.stream.XMLStreamWriter;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.tom.ResolveParams;
 import org.deegree.commons.tom.datetime.DateTime;
+import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.tom.ows.Version;
 import org.deegree.commons.utils.kvp.InvalidParameterValueException;
 import org.deegree.cs.exceptions.TransformationException;
@@ -79,12 +82,15 @@ import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.EstimatingFeatureStore;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.projection.ProjectionClause;
 import org.deegree.filter.projection.PropertyName;
@@ -330,7 +336,10 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
 
         int hitsTotal = 0;
+        boolean hitsTotalExact = true;
         int[] queryHits = new int[wfsQueryToIndex.size()];
+        boolean[] queryHitsExact = new boolean[queryHits.length];
+        Arrays.fill( queryHitsExact, true );
         DateTime[] queryTimeStamps = new DateTime[queryHits.length];
 
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
@@ -346,6 +355,10 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
                 int index = wfsQueryToIndex.get( wfsQuery );
                 hitsTotal += singleHits;
                 queryHits[index] = queryHits[index] + singleHits;
+                if ( !isExactHits( fs, query, singleHits ) ) {
+                    hitsTotalExact = false;
+                    queryHitsExact[index] = false;
+                }
                 queryTimeStamps[index] = getCurrentDateTimeWithoutMilliseconds();
             }
         }
@@ -373,14 +386,14 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
             xmlStream.writeStartElement( WFS_200_NS, "FeatureCollection" );
             xmlStream.writeNamespace( "wfs", WFS_200_NS );
             xmlStream.writeAttribute( "timeStamp", getTimestamp() );
-            xmlStream.writeAttribute( "numberMatched", "" + hitsTotal );
+            xmlStream.writeAttribute( "numberMatched", getNumberMatched( hitsTotal, hitsTotalExact ) );
             xmlStream.writeAttribute( "numberReturned", "0" );
             if ( queryHits.length > 1 ) {
                 for ( int j = 0; j < queryHits.length; j++ ) {
                     xmlStream.writeStartElement( "wfs", "member", WFS_200_NS );
                     xmlStream.writeEmptyElement( "wfs", "FeatureCollection", WFS_200_NS );
                     xmlStream.writeAttribute( "timeStamp", formatDateTime( queryTimeStamps[j] ) );
-                    xmlStream.writeAttribute( "numberMatched", "" + queryHits[j] );
+                    xmlStream.writeAttribute( "numberMatched", getNumberMatched( queryHits[j], queryHitsExact[j] ) );
                     xmlStream.writeAttribute( "numberReturned", "0" );
                     xmlStream.writeEndElement();
                 }
@@ -401,6 +414,21 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         xmlStream.flush();
     }
 
+    /**
+     * Returns whether the number of hits returned by the given store is exact.
+     */
+    static boolean isExactHits( FeatureStore fs, Query query, int hits ) {
+        return !( fs instanceof EstimatingFeatureStore ) || ( (EstimatingFeatureStore) fs ).isExactHits( query, hits );
+    }
+
+    /**
+     * Returns the value of the WFS 2.0 <code>numberMatched</code> attribute. WFS 2.0 allows to report "unknown" instead
+     * of an inexact number.
+     */
+    static String getNumberMatched( int hits, boolean exact ) {
+        return exact ? "" + hits : "unknown";
+    }
+
     private void writeFeatureMembersStream( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
                                             GMLVersion outputFormat, int maxFeatures, int startIndex,
                                             QName featureMemberEl, Lock lock )
@@ -427,10 +455,19 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve and write result features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        boolean pushDownPaging = isPagingPushable( analyzer, startIndex, lock );
+        if ( pushDownPaging ) {
+            // skipping is performed by the feature store
+            featuresSkipped = startIndex;
+        }
         GmlXlinkOptions resolveState = gmlStream.getReferenceResolveStrategy().getResolveOptions();
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            queries = restrictToRequestedProperties( queries, analyzer, options.isGenerateBoundedByForFeatures() );
+            if ( pushDownPaging ) {
+                queries[0] = new Query( queries[0], startIndex, maxFeatures );
+            }
             FeatureInputStream rs = fs.query( queries );
             try {
                 for ( Feature member : rs ) {
@@ -467,9 +504,19 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve maxfeatures features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        boolean pushDownPaging = isPagingPushable( analyzer, startIndex, lock );
+        if ( pushDownPaging ) {
+            // skipping is performed by the feature store
+            featuresSkipped = startIndex;
+        }
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            // the envelope of the collection is written
+            queries = restrictToRequestedProperties( queries, analyzer, true );
+            if ( pushDownPaging ) {
+                queries[0] = new Query( queries[0], startIndex, maxFeatures );
+            }
             FeatureInputStream rs = fs.query( queries );
             try {
                 for ( Feature feature : rs ) {
@@ -512,6 +559,82 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    /**
+     * Determines whether the paging parameters can be passed to the feature store, so that the skipped features don't
+     * have to be retrieved at all.
+     * <p>
+     * This is only possible if the request results in a single feature store query (otherwise, the start index refers to
+     * the combined result) and no lock is involved (unlocked features are not counted).
+     * </p>
+     */
+    private boolean isPagingPushable( QueryAnalyzer analyzer, int startIndex, Lock lock ) {
+        if ( startIndex <= 0 || lock != null ) {
+            return false;
+        }
+        Map<FeatureStore, List<Query>> fsToQueries = analyzer.getQueries();
+        return fsToQueries.size() == 1 && fsToQueries.values().iterator().next().size() == 1;
+    }
+
+    /**
+     * Restricts the given queries to the properties requested by <code>PropertyName</code> projections, so the feature
+     * store doesn't have to retrieve the other properties (which are not written anyway).
+     */
+    private Query[] restrictToRequestedProperties( Query[] queries, QueryAnalyzer analyzer, boolean envelopeRequired ) {
+        Set<QName> requiredProps = getRequiredProperties( analyzer.getProjections(), analyzer.getFeatureTypes(),
+                                                          envelopeRequired );
+        if ( requiredProps == null ) {
+            return queries;
+        }
+        Query[] restricted = new Query[queries.length];
+        for ( int i = 0; i < queries.length; i++ ) {
+            restricted[i] = new Query( queries[i], requiredProps );
+        }
+        return restricted;
+    }
+
+    /**
+     * Determines the properties that have to be retrieved for writing features with the given projections.
+     * <p>
+     * This is only possible if all projections are simple property names (otherwise, all properties are written).
+     * Besides the requested properties, the mandatory properties of the feature types (minOccurs > 0) are always
+     * retrieved, as they are written regardless of the projections. If the envelopes of the features are needed, the
+     * geometry properties are retrieved as well.
+     * </p>
+     * 
+     * @param projections
+     *            projections of the request, can be <code>null</code>
+     * @param fts
+     *            queried feature types, can be <code>null</code>
+     * @param envelopeRequired
+     *            true, if the envelopes of the features are needed
+     * @return names of the properties to retrieve, or <code>null</code> if all properties have to be retrieved
+     */
+    static Set<QName> getRequiredProperties( List<ProjectionClause> projections, Collection<FeatureType> fts,
+                                             boolean envelopeRequired ) {
+        if ( projections == null || projections.isEmpty() || fts == null ) {
+            return null;
+        }
+        Set<QName> requiredProps = new HashSet<QName>();
+        for ( ProjectionClause projection : projections ) {
+            if ( !( projection instanceof PropertyName ) ) {
+                return null;
+            }
+            QName propName = ( (PropertyName) projection ).getPropertyName().getAsQName();
+            if ( propName == null ) {
+                return null;
+            }
+            requiredProps.add( propName );
+        }
+        for ( FeatureType ft : fts ) {
+            for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+                if ( pt.getMinOccurs() > 0 || ( envelopeRequired && pt instanceof GeometryPropertyType ) ) {
+                    requiredProps.add( pt.getName() );
+                }
+            }
+        }
+        return requiredProps;
+    }
+
     private void writeBoundedBy( Version wfsVersion, GMLStreamWriter gmlStream, GMLVersion outputFormat, Envelope env )
                             throws XMLStreamException, UnknownCRSException, TransformationException {
 
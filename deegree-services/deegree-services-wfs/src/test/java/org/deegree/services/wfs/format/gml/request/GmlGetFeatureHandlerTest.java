@@ -0,0 +1,151 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.gml.request;
+
+import static java.util.Collections.singletonList;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.persistence.EstimatingFeatureStore;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
+import org.junit.Test;
+
+/**
+ * Tests the restriction of GetFeature queries to the properties requested by <code>PropertyName</code> projections and
+ * the reporting of inexact hits.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GmlGetFeatureHandlerTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final QName NAME = new QName( NS, "name" );
+
+    private static final QName COMMENT = new QName( NS, "comment" );
+
+    private static final QName GEOM = new QName( NS, "geom" );
+
+    private final Collection<FeatureType> fts = singletonList( createFeatureType() );
+
+    @Test
+    public void testMandatoryPropertyIsRetrievedWithPropertyName() {
+        Set<QName> required = GmlGetFeatureHandler.getRequiredProperties( project( COMMENT ), fts, false );
+        assertEquals( 2, required.size() );
+        assertTrue( required.contains( COMMENT ) );
+        // not requested, but minOccurs=1, so it is always written
+        assertTrue( required.contains( NAME ) );
+    }
+
+    @Test
+    public void testGeometryIsRetrievedForBoundedBy() {
+        Set<QName> required = GmlGetFeatureHandler.getRequiredProperties( project( NAME ), fts, true );
+        assertEquals( 2, required.size() );
+        assertTrue( required.contains( NAME ) );
+        assertTrue( required.contains( GEOM ) );
+    }
+
+    @Test
+    public void testNoProjection() {
+        assertNull( GmlGetFeatureHandler.getRequiredProperties( new ArrayList<ProjectionClause>(), fts, true ) );
+        assertNull( GmlGetFeatureHandler.getRequiredProperties( null, fts, true ) );
+    }
+
+    @Test
+    public void testHitsOfPlainStoreAreExact() {
+        Query query = new Query( COMMENT, null, -1, -1, -1 );
+        assertTrue( GmlGetFeatureHandler.isExactHits( mock( FeatureStore.class ), query, 42 ) );
+    }
+
+    @Test
+    public void testHitsOfEstimatingStore() {
+        Query query = new Query( COMMENT, null, -1, -1, -1 );
+        EstimatingFeatureStore fs = mock( EstimatingFeatureStore.class );
+        when( fs.isExactHits( query, 10 ) ).thenReturn( true );
+        when( fs.isExactHits( query, 10000 ) ).thenReturn( false );
+        assertTrue( GmlGetFeatureHandler.isExactHits( fs, query, 10 ) );
+        assertFalse( GmlGetFeatureHandler.isExactHits( fs, query, 10000 ) );
+    }
+
+    @Test
+    public void testNumberMatched() {
+        assertEquals( "0", GmlGetFeatureHandler.getNumberMatched( 0, true ) );
+        assertEquals( "10000", GmlGetFeatureHandler.getNumberMatched( 10000, true ) );
+        assertEquals( "unknown", GmlGetFeatureHandler.getNumberMatched( 10000, false ) );
+        assertEquals( "unknown", GmlGetFeatureHandler.getNumberMatched( 0, false ) );
+    }
+
+    private static List<ProjectionClause> project( QName propName ) {
+        List<ProjectionClause> projections = new ArrayList<ProjectionClause>();
+        projections.add( new PropertyName( new ValueReference( propName ), null, null ) );
+        return projections;
+    }
+
+    private static FeatureType createFeatureType() {
+        List<PropertyType> props = new ArrayList<PropertyType>();
+        props.add( new SimplePropertyType( NAME, 1, 1, STRING, null, null ) );
+        props.add( new SimplePropertyType( COMMENT, 0, 1, STRING, null, null ) );
+        props.add( new GeometryPropertyType( GEOM, 0, 1, null, null, GEOMETRY, DIM_2, BOTH ) );
+        return new GenericFeatureType( new QName( NS, "Building" ), props, false );
+    }
+}
@@ -0,0 +1,110 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.commons.index;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.annotations.Tool;
+import org.deegree.commons.index.PackedRTree;
+import org.slf4j.Logger;
+
+/**
+ * Converts r-tree index files (<code>.rti</code>, written by the shape feature store) to packed r-tree files (
+ * <code>.rtx</code>, see {@link PackedRTree}).
+ * <p>
+ * Arguments are <code>.rti</code> files or directories (all contained <code>.rti</code> files are converted). The
+ * packed files are written next to the original files, which are left untouched.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@Tool(value = "converts shape file r-tree indexes (.rti files or directories) to packed r-tree indexes (.rtx)")
+public class RTreeIndexConverter {
+
+    private static final Logger LOG = getLogger( RTreeIndexConverter.class );
+
+    private static void convert( File rtiFile )
+                            throws IOException {
+        String name = rtiFile.getPath();
+        File packedFile = new File( name.substring( 0, name.length() - 4 ) + ".rtx" );
+        long begin = System.currentTimeMillis();
+        PackedRTree.convert( rtiFile, packedFile, PackedRTree.DEFAULT_NODE_SIZE );
+        long elapsed = System.currentTimeMillis() - begin;
+        LOG.info( "Converted '" + rtiFile + "' to '" + packedFile + "' in " + elapsed + " [ms]." );
+    }
+
+    /**
+     * @param args
+     *            <code>.rti</code> files or directories
+     * @throws IOException
+     */
+    public static void main( String[] args )
+                            throws IOException {
+        if ( args.length == 0 ) {
+            LOG.info( "Usage: RTreeIndexConverter <file.rti|directory> [<file.rti|directory> ...]" );
+            return;
+        }
+        List<File> files = new ArrayList<File>();
+        for ( String arg : args ) {
+            File file = new File( arg );
+            if ( file.isDirectory() ) {
+                files.addAll( Arrays.asList( file.listFiles( new FileFilter() {
+                    @Override
+                    public boolean accept( File f ) {
+                        return f.isFile() && f.getName().toLowerCase().endsWith( ".rti" );
+                    }
+                } ) ) );
+            } else if ( file.getName().toLowerCase().endsWith( ".rti" ) ) {
+                files.add( file );
+            } else {
+                LOG.warn( "Skipping '" + file + "': not an .rti file or directory." );
+            }
+        }
+        for ( File file : files ) {
+            convert( file );
+        }
+    }
+}
@@ -38,7 +38,11 @@ package org.deegree.tools.feature.persistence;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
@@ -50,17 +54,23 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 import org.deegree.commons.annotations.Tool;
 import org.deegree.commons.config.ResourceInitException;
+import org.deegree.commons.tom.gml.GMLReference;
 import org.deegree.commons.tools.CommandUtils;
 import org.deegree.commons.xml.XMLParsingException;
 import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreProvider;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
+import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
+import org.deegree.gml.reference.GmlDocumentIdContext;
 import org.deegree.protocol.wfs.transaction.action.IDGenMode;
 import org.deegree.tools.i18n.Messages;
 import org.deegree.workspace.Workspace;
@@ -94,28 +104,51 @@ public class FeatureStoreLoader {
         insert, stats
     }
 
+    // number of features that are inserted at once (if the feature store does not support bulk inserts)
+    private static final int CHUNK_SIZE = 1000;
+
+    // number of features after which the GML id context is cleared (keeps memory usage bounded)
+    private static final int ID_CONTEXT_CLEAR_INTERVAL = 1000;
+
+    // number of features after which the progress is printed
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    // maximum number of unresolvable reference URIs that are included in the warning
+    private static final int MAX_REPORTED_REFS = 10;
+
     private static void insert( FeatureStore fs, String datasetFile, GMLVersion gmlVersion, IDGenMode mode )
                             throws XMLStreamException, FactoryConfigurationError, IOException, XMLParsingException,
                             UnknownCRSException, FeatureStoreException {
 
         File f = new File( datasetFile );
         URL url = f.toURI().toURL();
-        System.out.print( "- Reading dataset: '" + datasetFile + "'..." );
+        System.out.println( "- Reading dataset (streaming): '" + datasetFile + "'" );
         GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion, url );
         gmlReader.setApplicationSchema( fs.getSchema() );
-        FeatureCollection fc = gmlReader.readFeatureCollection();
-        System.out.println( "done." );
+        FeatureInputStream features = new IdContextClearingStream( gmlReader.readFeatureCollectionStream(),
+                                                                   gmlReader.getIdContext() );
 
         FeatureStoreTransaction ta = null;
         try {
             ta = fs.acquireTransaction();
-            System.out.print( "- Inserting features..." );
-            List<String> fids = ta.performInsert( fc, mode );
-            System.out.println( "done." );
-            for ( String fid : fids ) {
-                System.out.println( "- Inserted: " + fid );
+            System.out.println( "- Inserting features..." );
+            int count = 0;
+            if ( ta instanceof SQLFeatureStoreTransaction ) {
+                count = ( (SQLFeatureStoreTransaction) ta ).performBulkInsert( features, mode );
+            } else {
+                List<Feature> chunk = new ArrayList<Feature>( CHUNK_SIZE );
+                for ( Feature feature : features ) {
+                    chunk.add( feature );
+                    if ( chunk.size() == CHUNK_SIZE ) {
+                        count += ta.performInsert( new GenericFeatureCollection( null, chunk ), mode ).size();
+                        chunk.clear();
+                    }
+                }
+                if ( !chunk.isEmpty() ) {
+                    count += ta.performInsert( new GenericFeatureCollection( null, chunk ), mode ).size();
+                }
             }
-            System.out.println( "\n- Insert succeeded (" + fids.size() + " features). Committing transaction." );
+            System.out.println( "- Insert succeeded (" + count + " features). Committing transaction." );
             ta.commit();
         } catch ( Exception e ) {
             e.printStackTrace();
@@ -123,6 +156,9 @@ public class FeatureStoreLoader {
             if ( ta != null ) {
                 ta.rollback();
             }
+        } finally {
+            features.close();
+            gmlReader.close();
         }
     }
 
@@ -194,7 +230,7 @@ public class FeatureStoreLoader {
                 insert( fs, inputFileName, format, idGenMode );
                 break;
             case stats:
-                System.out.println( "TODO: Stats..." );
+                System.out.println( "Action 'stats' is not implemented." );
                 break;
             }
         } catch ( ParseException exp ) {
@@ -252,4 +288,94 @@ public class FeatureStoreLoader {
     private static void printHelp( Options options ) {
         CommandUtils.printHelp( options, FeatureStoreLoader.class.getSimpleName(), null, null );
     }
+
+    /**
+     * {@link FeatureInputStream} that clears the {@link GmlDocumentIdContext} of the GML reader periodically, so that
+     * already processed features can be garbage collected.
+     * <p>
+     * Local references are bound to their targets before clearing (see {@link GmlDocumentIdContext#clear()}), so only
+     * references to objects that have been read before an earlier clearing cannot be resolved. These are reported when
+     * the end of the stream is reached. Inserting them still works (the feature ids are derived from the URIs).
+     * </p>
+     */
+    private static class IdContextClearingStream implements FeatureInputStream {
+
+        private final FeatureInputStream features;
+
+        private final GmlDocumentIdContext idContext;
+
+        private IdContextClearingStream( FeatureInputStream features, GmlDocumentIdContext idContext ) {
+            this.features = features;
+            this.idContext = idContext;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = features.iterator();
+            return new Iterator<Feature>() {
+
+                private int count;
+
+                private boolean checked;
+
+                @Override
+                public boolean hasNext() {
+                    boolean hasNext = iter.hasNext();
+                    if ( !hasNext && !checked ) {
+                        checked = true;
+                        warnUnresolved( idContext.getUnresolvedLocalRefs() );
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public Feature next() {
+                    if ( ++count % ID_CONTEXT_CLEAR_INTERVAL == 0 ) {
+                        idContext.clear();
+                    }
+                    if ( count % PROGRESS_INTERVAL == 0 ) {
+                        System.out.println( "- Read " + count + " features..." );
+                    }
+                    return iter.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private static void warnUnresolved( List<GMLReference<?>> refs ) {
+            if ( refs.isEmpty() ) {
+                return;
+            }
+            Set<String> uris = new LinkedHashSet<String>();
+            for ( GMLReference<?> ref : refs ) {
+                if ( uris.size() == MAX_REPORTED_REFS ) {
+                    break;
+                }
+                uris.add( ref.getURI() );
+            }
+            System.err.println( "- Warning: " + refs.size() + " local reference(s) could not be resolved, e.g. " + uris
+                                + ". The referenced objects are either missing in the dataset or have been read more "
+                                + "than " + ID_CONTEXT_CLEAR_INTERVAL + " features before the referencing feature. "
+                                + "The references are stored using the ids from the URIs." );
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return features.toCollection();
+        }
+
+        @Override
+        public int count() {
+            return features.count();
+        }
+
+        @Override
+        public void close() {
+            features.close();
+        }
+    }
 }